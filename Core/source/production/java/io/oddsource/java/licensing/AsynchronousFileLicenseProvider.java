@@ -0,0 +1,264 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * A {@link FileLicenseProvider} that can also read license files without blocking the calling thread, using an
+ * {@link AsynchronousFileChannel}. It is configured exactly like {@link FileLicenseProvider}, and its blocking
+ * {@link #getLicense(Object)} behaves identically. When it is configured as the license manager's provider, the
+ * manager's asynchronous methods read license files through {@link #getLicenseAsync(Object)} instead.<br>
+ * <br>
+ * Only the reading of the file's contents is truly asynchronous. Finding the file (which, for licenses on the
+ * classpath, may mean searching the classpath), checking that it exists and can be read, opening the channel and
+ * checking the file's size are ordinary blocking file system calls, and they run on the
+ * {@link #setExecutor(Executor) configured executor} rather than on the calling thread. Licenses on the classpath that
+ * are inside JAR files have no file to open a channel on, so they are read from the JAR file with the same blocking
+ * code as {@link #getLicense(Object)}, also on the executor. Similarly, when the license manager asks whether an
+ * expired license is still current, it calls the blocking {@link #getLicenseIfModified(Object)} on its own executor.
+ * An executor dedicated to license retrieval is recommended for applications that load many licenses this way.<br>
+ * <br>
+ * Just as with the blocking read, a license file that does not exist, cannot be read, is larger than the
+ * {@link #setMaximumFileSize(int) maximum file size}, or fails part way through being read results in a null license.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class AsynchronousFileLicenseProvider extends FileLicenseProvider implements AsynchronousLicenseProvider
+{
+    private volatile Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Constructs an asynchronous file-based license provider with the same class loader as the loader of this class
+     * and {@link #setFileOnClasspath(boolean) fileOnClasspath} set to {@code false}.
+     */
+    public AsynchronousFileLicenseProvider()
+    {
+        super();
+    }
+
+    /**
+     * Constructs an asynchronous file-based license provider with the provided class loader and
+     * {@link #setFileOnClasspath(boolean) fileOnClasspath} set to {@code true}.
+     *
+     * @param classLoader The class loader to use for finding the file
+     */
+    public AsynchronousFileLicenseProvider(final ClassLoader classLoader)
+    {
+        super(classLoader);
+    }
+
+    @Override
+    public CompletionStage<SignedLicense> getLicenseAsync(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final CompletableFuture<SignedLicense> future = new CompletableFuture<>();
+        try
+        {
+            this.executor.execute(() -> {
+                try
+                {
+                    this.startReading(context, future);
+                }
+                catch(final RuntimeException e)
+                {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch(final RejectedExecutionException e)
+        {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Finds and opens the license file and starts reading it asynchronously. Called on the executor, since everything
+     * up to the read itself blocks.
+     *
+     * @param context The context for which to get the license
+     * @param future The future to complete with the license
+     */
+    private void startReading(final Object context, final CompletableFuture<SignedLicense> future)
+    {
+        final File file = this.getLicenseFile(context);
+        this.watchLicenseFile(context, file);
+        this.forgetFileState(context);
+        if(file == null && this.isFileOnClasspath())
+        {
+            // resources inside JAR files have no file to open a channel on, but are read from an already-open JAR
+            future.complete(this.getLicense(context));
+            return;
+        }
+
+        if(file == null || !file.exists() || !file.canRead())
+        {
+            future.complete(null);
+            return;
+        }
+
+        final AsynchronousFileChannel channel;
+        final ByteBuffer buffer;
+        try
+        {
+            channel = AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ);
+            final long size = channel.size();
+            if(size > this.getMaximumFileSize())
+            {
+                channel.close();
+                future.complete(null);
+                return;
+            }
+            buffer = ByteBuffer.allocate((int) size);
+        }
+        catch(final IOException e)
+        {
+            future.complete(null);
+            return;
+        }
+
+        channel.read(buffer, 0L, null, new ReadHandler(channel, buffer, future));
+    }
+
+    /**
+     * Gets the executor on which license files are found and opened. See {@link #setExecutor(Executor)}.
+     *
+     * @return the executor.
+     *
+     * @since 2.0.0
+     */
+    public Executor getExecutor()
+    {
+        return this.executor;
+    }
+
+    /**
+     * Sets the executor on which license files are found, checked and opened, and on which licenses inside JAR files
+     * are read, since all of those steps block. Defaults to the {@link ForkJoinPool#commonPool() common fork-join
+     * pool}.
+     *
+     * @param executor The executor for the blocking steps of reading a license file
+     *
+     * @since 2.0.0
+     */
+    public void setExecutor(final Executor executor)
+    {
+        if(executor == null)
+        {
+            throw new IllegalArgumentException("Argument executor cannot be null.");
+        }
+
+        this.executor = executor;
+    }
+
+    /**
+     * Called once the whole license file has been read, to decode (if necessary) and deserialize its contents.
+     *
+     * @param data The contents of the license file
+     *
+     * @return the signed license object.
+     */
+    private SignedLicense readLicense(final byte[] data)
+    {
+        return this.deserializeLicense(this.isBase64Encoded() ? Base64.decodeBase64(data) : data);
+    }
+
+    /**
+     * Keeps reading until the buffer is full or the end of the file is reached, then completes the future.
+     */
+    private final class ReadHandler implements CompletionHandler<Integer, Void>
+    {
+        private final AsynchronousFileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        private final CompletableFuture<SignedLicense> future;
+
+        private ReadHandler(
+            final AsynchronousFileChannel channel, final ByteBuffer buffer,
+            final CompletableFuture<SignedLicense> future
+        )
+        {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.future = future;
+        }
+
+        @Override
+        public void completed(final Integer read, final Void attachment)
+        {
+            if(read >= 0 && this.buffer.hasRemaining())
+            {
+                this.channel.read(this.buffer, this.buffer.position(), null, this);
+                return;
+            }
+
+            this.close();
+
+            // the file may have shrunk since its size was checked
+            final byte[] data = this.buffer.position() == this.buffer.capacity() ?
+                                this.buffer.array() :
+                                Arrays.copyOf(this.buffer.array(), this.buffer.position());
+            try
+            {
+                this.future.complete(AsynchronousFileLicenseProvider.this.readLicense(data));
+            }
+            catch(final RuntimeException e)
+            {
+                this.future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable exception, final Void attachment)
+        {
+            this.close();
+            this.future.complete(null);
+        }
+
+        private void close()
+        {
+            try
+            {
+                this.channel.close();
+            }
+            catch(final IOException ignore)
+            {
+            }
+        }
+    }
+}
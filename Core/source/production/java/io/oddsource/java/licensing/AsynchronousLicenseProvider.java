@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * This specifies an interface for providing the stored, still-encrypted license content and signature object without
+ * blocking the calling thread, for stores such as databases, remote services, or files read with asynchronous I/O.
+ * When the {@link LicenseProvider} configured for the {@link LicenseManager} also implements this interface, the
+ * manager's asynchronous methods (such as {@link LicenseManager#getLicenseAsync(Object)}) use it instead of blocking a
+ * thread on {@link LicenseProvider#getLicense(Object)}.<br>
+ * <br>
+ * {@link ExecutorLicenseProvider} adapts a blocking {@link LicenseProvider} to this interface, and
+ * {@link BlockingLicenseProvider} adapts an implementation of this interface to {@link LicenseProvider}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface AsynchronousLicenseProvider
+{
+    /**
+     * Gets the stored, still-encrypted license content and signature from the persistence store asynchronously. This
+     * method must not block; any failure should complete the returned stage exceptionally.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return a stage that completes with the signed license object, or with null if no license exists.
+     */
+    public abstract CompletionStage<SignedLicense> getLicenseAsync(Object context);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adapts an {@link AsynchronousLicenseProvider} to the blocking {@link LicenseProvider} interface, so that it can be
+ * configured as the license manager's provider. Blocking calls to {@link #getLicense(Object)} wait for the
+ * asynchronous provider to complete, while calls to {@link #getLicenseAsync(Object)} are passed straight through, so
+ * the license manager's asynchronous methods remain non-blocking.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class BlockingLicenseProvider implements LicenseProvider, AsynchronousLicenseProvider
+{
+    private final AsynchronousLicenseProvider provider;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The asynchronous provider to adapt
+     */
+    public BlockingLicenseProvider(final AsynchronousLicenseProvider provider)
+    {
+        if(provider == null)
+        {
+            throw new IllegalArgumentException("Argument provider cannot be null.");
+        }
+
+        this.provider = provider;
+    }
+
+    /**
+     * Gets the license from the asynchronous provider, waiting for it to complete. If the provider fails with an
+     * unchecked exception or error, it is rethrown as is; checked exceptions are wrapped in a
+     * {@link CompletionException}.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license object.
+     */
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        try
+        {
+            return this.provider.getLicenseAsync(context).toCompletableFuture().join();
+        }
+        catch(final CompletionException e)
+        {
+            final Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<SignedLicense> getLicenseAsync(final Object context)
+    {
+        return this.provider.getLicenseAsync(context);
+    }
+}
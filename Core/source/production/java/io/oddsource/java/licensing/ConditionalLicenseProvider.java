@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+/**
+ * This specifies an interface for license stores that can cheaply tell whether a stored license has changed since it
+ * was last retrieved, such as by comparing a file's size and modification time or with an HTTP conditional request.
+ * When the {@link LicenseProvider} configured for the {@link LicenseManager} also implements this interface and a
+ * cached license has expired, the manager calls {@link #getLicenseIfModified(Object)} instead of
+ * {@link LicenseProvider#getLicense(Object)}. If the license has not been modified, the manager keeps the license it
+ * already verified for another cache period instead of retrieving and verifying it again.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface ConditionalLicenseProvider
+{
+    /**
+     * The value returned by {@link #getLicenseIfModified(Object)} when the license has not been modified. It is
+     * compared by identity, so implementations must return this exact object.
+     */
+    public static final SignedLicense NOT_MODIFIED = new SignedLicense(new byte[0], new byte[0]);
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the persistence store, unless it has not
+     * changed since this provider last returned it for the same context. An implementation that cannot tell whether
+     * the license has changed (for example, because it has not returned the license for this context before) must
+     * return the license.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return {@link #NOT_MODIFIED} if the license has not changed, otherwise the signed license object, or null if
+     *     no license exists.
+     */
+    public abstract SignedLicense getLicenseIfModified(Object context);
+}
@@ -15,21 +15,34 @@
  */
 package io.oddsource.java.licensing;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.security.InvalidKeyException;
+import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
 
-import io.oddsource.java.licensing.encryption.KeyFileUtilities;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithms;
 import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
 import io.oddsource.java.licensing.exception.CorruptSignatureException;
 import io.oddsource.java.licensing.exception.InappropriateKeyException;
 import io.oddsource.java.licensing.exception.InvalidSignatureException;
 
 /**
- * This class manages the signatures for objects.
+ * This class manages the signatures for objects. Each manager signs and verifies with a single
+ * {@link SignatureAlgorithm}; the default is the legacy {@link SignatureAlgorithms#getLegacyAlgorithm() SHA-1 with
+ * RSA}.<br>
+ * <br>
+ * Looking up and initializing a {@link Signature} is comparatively expensive, so each manager keeps one initialized
+ * signature object per thread and reuses it for as long as that thread keeps signing or verifying with the same key.
+ * Managers are therefore safe to share between threads, and sharing one manager per algorithm is much cheaper than
+ * creating a new manager for every operation.
  *
  * @author Nick Williams
  * @version 1.0.0
@@ -38,11 +51,45 @@ import io.oddsource.java.licensing.exception.InvalidSignatureException;
 public final class DataSignatureManager
 {
     /**
-     * Constructs a data signature manager.
+     * The number of bytes read at a time when verifying streamed data.
+     */
+    static final int chunkSize = 8192;
+
+    private final SignatureAlgorithm algorithm;
+
+    private final ThreadLocal<CachedSignature> signatures = new ThreadLocal<>();
+
+    /**
+     * Constructs a data signature manager that uses the legacy SHA-1 with RSA signature algorithm.
      */
     public DataSignatureManager()
     {
+        this(SignatureAlgorithms.getLegacyAlgorithm());
+    }
+
+    /**
+     * Constructs a data signature manager that uses the given signature algorithm.
+     *
+     * @param algorithm The signature algorithm with which to sign and verify data
+     */
+    public DataSignatureManager(final SignatureAlgorithm algorithm)
+    {
+        if(algorithm == null)
+        {
+            throw new IllegalArgumentException("Parameter algorithm must not be null.");
+        }
 
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Returns the signature algorithm this manager signs and verifies with.
+     *
+     * @return the signature algorithm.
+     */
+    public final SignatureAlgorithm getSignatureAlgorithm()
+    {
+        return this.algorithm;
     }
 
     /**
@@ -59,34 +106,44 @@ public final class DataSignatureManager
     public final byte[] signData(final PrivateKey key, final byte[] data)
         throws AlgorithmNotSupportedException, InappropriateKeyException
     {
-        final Signature signature = this.getSignature();
-
-        try
+        final CachedSignature cached = this.getCachedSignature();
+        if(!cached.isInitializedWith(key))
         {
-            signature.initSign(key);
-        }
-        catch(final InvalidKeyException e)
-        {
-            throw new InappropriateKeyException("Failed to initialize the signature object with the private key.", e);
+            try
+            {
+                cached.signature.initSign(key);
+            }
+            catch(final InvalidKeyException e)
+            {
+                throw new InappropriateKeyException(
+                    "Failed to initialize the signature object with the private key.", e
+                );
+            }
         }
 
         try
         {
-            signature.update(data);
+            cached.signature.update(data);
         }
         catch(final SignatureException e)
         {
             throw new RuntimeException("Programming error on signature.update(data) (sign).", e);
         }
 
+        final byte[] signature;
         try
         {
-            return signature.sign();
+            signature = cached.signature.sign();
         }
         catch(final SignatureException e)
         {
             throw new RuntimeException("Programming error on signature.sign().", e);
         }
+
+        // signing resets the signature object to its freshly initialized state, so it can be reused with this key
+        cached.key = key;
+
+        return signature;
     }
 
     /**
@@ -105,32 +162,195 @@ public final class DataSignatureManager
         throws AlgorithmNotSupportedException, InappropriateKeyException, CorruptSignatureException,
                InvalidSignatureException
     {
-        final Signature signature = this.getSignature();
+        if(!this.isValid(key, data, signatureContent))
+        {
+            throw new InvalidSignatureException("The license signature is invalid.");
+        }
+    }
 
-        try
+    /**
+     * Verifies many signatures made with the same public key, such as a batch of licenses issued by one vendor. The
+     * signature object is initialized with the key once and then reused for every entry, and a bad signature does not
+     * stop the remaining entries from being checked.
+     *
+     * @param key The public key with which to verify the signatures
+     * @param data The data that was signed, one entry per signature
+     * @param signatureContents The signatures to verify, in the same order as the data
+     *
+     * @return whether each signature is valid, in the same order as the data.
+     *
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported.
+     * @throws InappropriateKeyException if the key is not a proper key for signature verification.
+     * @throws IllegalArgumentException if the number of data entries and signatures differ.
+     *
+     * @since 2.0.0
+     */
+    public final boolean[] verifyAll(final PublicKey key, final byte[][] data, final byte[][] signatureContents)
+        throws AlgorithmNotSupportedException, InappropriateKeyException
+    {
+        if(data.length != signatureContents.length)
         {
-            signature.initVerify(key);
+            throw new IllegalArgumentException("There must be exactly one signature for each data entry.");
         }
-        catch(final InvalidKeyException e)
+
+        final boolean[] results = new boolean[data.length];
+        for(int i = 0; i < data.length; i++)
         {
-            throw new InappropriateKeyException("Failed to initialize the signature object with the public key.", e);
+            try
+            {
+                results[i] = this.isValid(key, data[i], signatureContents[i]);
+            }
+            catch(final CorruptSignatureException e)
+            {
+                results[i] = false;
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Verifies the given signature on the data read from the given stream using the given public key. The data is read
+     * in fixed-size chunks until the end of the stream is reached, so it never needs to be held in memory all at once.
+     * The stream is not closed.
+     *
+     * @param key The public key with which to verify the signature
+     * @param data The stream containing the data that was signed
+     * @param signatureContent The signature to verify
+     *
+     * @throws IOException if reading from the stream fails.
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported.
+     * @throws InappropriateKeyException if the key is not a proper key for signature verification.
+     * @throws CorruptSignatureException if the signature was corrupt.
+     * @throws InvalidSignatureException if the signature was not valid.
+     */
+    public final void verifySignature(final PublicKey key, final InputStream data, final byte[] signatureContent)
+        throws IOException, AlgorithmNotSupportedException, InappropriateKeyException, CorruptSignatureException,
+               InvalidSignatureException
+    {
+        this.newVerifyingInputStream(key, data).verify(signatureContent);
+    }
+
+    /**
+     * Verifies the given signature on the data read from the given channel using the given public key. The data is
+     * read in fixed-size chunks until the end of the channel is reached, so it never needs to be held in memory all at
+     * once. The channel is not closed.
+     *
+     * @param key The public key with which to verify the signature
+     * @param data The channel containing the data that was signed
+     * @param signatureContent The signature to verify
+     *
+     * @throws IOException if reading from the channel fails.
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported.
+     * @throws InappropriateKeyException if the key is not a proper key for signature verification.
+     * @throws CorruptSignatureException if the signature was corrupt.
+     * @throws InvalidSignatureException if the signature was not valid.
+     */
+    public final void verifySignature(
+        final PublicKey key, final ReadableByteChannel data, final byte[] signatureContent
+    )
+        throws IOException, AlgorithmNotSupportedException, InappropriateKeyException, CorruptSignatureException,
+               InvalidSignatureException
+    {
+        final CachedSignature cached = this.getVerificationSignature(key);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(DataSignatureManager.chunkSize);
+        while(data.read(buffer) >= 0)
+        {
+            buffer.flip();
+            try
+            {
+                cached.signature.update(buffer);
+            }
+            catch(final SignatureException e)
+            {
+                throw new RuntimeException("Programming error on signature.update(data) (verify).", e);
+            }
+            buffer.clear();
         }
 
+        final boolean valid = DataSignatureManager.check(cached.signature, signatureContent);
+        cached.key = key;
+        if(!valid)
+        {
+            throw new InvalidSignatureException("The license signature is invalid.");
+        }
+    }
+
+    /**
+     * Wraps the given stream in a stream that feeds all data read through it into a verification of its signature
+     * using the given public key. Once all of the data has been consumed from the returned stream, call
+     * {@link SignatureVerifyingInputStream#verify(byte[])} to check the signature. This allows signed data to be
+     * verified in the same pass that it is decrypted and parsed.<br>
+     * <br>
+     * Because the returned stream may outlive this call, it uses its own signature object rather than the one cached
+     * for the current thread.
+     *
+     * @param key The public key with which to verify the signature
+     * @param data The stream containing the data that was signed
+     *
+     * @return the verifying stream.
+     *
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported.
+     * @throws InappropriateKeyException if the key is not a proper key for signature verification.
+     */
+    public final SignatureVerifyingInputStream newVerifyingInputStream(final PublicKey key, final InputStream data)
+        throws AlgorithmNotSupportedException, InappropriateKeyException
+    {
+        final Signature signature = this.getSignature();
+        DataSignatureManager.initVerify(signature, key);
+
+        return new SignatureVerifyingInputStream(signature, data);
+    }
+
+    /**
+     * Verifies the given signature on the given data using the signature object cached for the current thread.
+     *
+     * @param key The public key with which to verify the signature
+     * @param data The data that was signed
+     * @param signatureContent The signature to verify
+     *
+     * @return whether the signature is valid.
+     *
+     * @throws CorruptSignatureException if the signature was corrupt.
+     */
+    boolean isValid(final PublicKey key, final byte[] data, final byte[] signatureContent)
+        throws CorruptSignatureException
+    {
+        final CachedSignature cached = this.getVerificationSignature(key);
+
         try
         {
-            signature.update(data);
+            cached.signature.update(data);
         }
         catch(final SignatureException e)
         {
             throw new RuntimeException("Programming error on signature.update(data) (verify).", e);
         }
 
+        final boolean valid = DataSignatureManager.check(cached.signature, signatureContent);
+
+        // verification resets the signature object to its freshly initialized state, so it can be reused with this key
+        cached.key = key;
+
+        return valid;
+    }
+
+    static void verify(final Signature signature, final byte[] signatureContent)
+        throws CorruptSignatureException, InvalidSignatureException
+    {
+        if(!DataSignatureManager.check(signature, signatureContent))
+        {
+            throw new InvalidSignatureException("The license signature is invalid.");
+        }
+    }
+
+    private static boolean check(final Signature signature, final byte[] signatureContent)
+        throws CorruptSignatureException
+    {
         try
         {
-            if(!signature.verify(signatureContent))
-            {
-                throw new InvalidSignatureException("The license signature is invalid.");
-            }
+            return signature.verify(signatureContent);
         }
         catch(final SignatureException e)
         {
@@ -138,15 +358,87 @@ public final class DataSignatureManager
         }
     }
 
+    private static void initVerify(final Signature signature, final PublicKey key)
+    {
+        try
+        {
+            signature.initVerify(key);
+        }
+        catch(final InvalidKeyException e)
+        {
+            throw new InappropriateKeyException("Failed to initialize the signature object with the public key.", e);
+        }
+    }
+
+    private CachedSignature getVerificationSignature(final PublicKey key)
+    {
+        final CachedSignature cached = this.getCachedSignature();
+        if(!cached.isInitializedWith(key))
+        {
+            DataSignatureManager.initVerify(cached.signature, key);
+        }
+
+        return cached;
+    }
+
+    /**
+     * Returns the signature object for the current thread, creating it the first time.
+     *
+     * @return the signature object for the current thread.
+     */
+    private CachedSignature getCachedSignature()
+    {
+        CachedSignature cached = this.signatures.get();
+        if(cached == null)
+        {
+            cached = new CachedSignature(this.getSignature());
+            this.signatures.set(cached);
+        }
+
+        return cached;
+    }
+
     private Signature getSignature()
     {
         try
         {
-            return Signature.getInstance("SHA1with" + KeyFileUtilities.keyAlgorithm);
+            return Signature.getInstance(this.algorithm.getSignatureAlgorithmName());
         }
         catch(final NoSuchAlgorithmException e)
         {
-            throw new AlgorithmNotSupportedException("SHA-1 with " + KeyFileUtilities.keyAlgorithm);
+            throw new AlgorithmNotSupportedException(this.algorithm.getSignatureAlgorithmName(), e);
+        }
+    }
+
+    /**
+     * A signature object and the key it was last initialized with. While an operation is in progress the key is
+     * cleared, and it is only recorded again once the operation completes, so a failure part way through can never
+     * leave stale data in the signature object for the next operation.
+     */
+    private static final class CachedSignature
+    {
+        private final Signature signature;
+
+        private Key key;
+
+        private CachedSignature(final Signature signature)
+        {
+            this.signature = signature;
+        }
+
+        /**
+         * Checks whether the signature object is ready to use with the given key, and marks it as in use.
+         *
+         * @param key The key about to be used
+         *
+         * @return whether the signature object is already initialized with the key.
+         */
+        private boolean isInitializedWith(final Key key)
+        {
+            final boolean initialized = this.key != null && (this.key == key || this.key.equals(key));
+            this.key = null;
+
+            return initialized;
         }
     }
 }
@@ -54,7 +54,24 @@ public class DefaultLicenseValidator implements LicenseValidator
     @Override
     public void validateLicense(final License license) throws InvalidLicenseException
     {
-        final long time = Calendar.getInstance().getTimeInMillis();
+        this.validateLicense(license, Calendar.getInstance().getTimeInMillis());
+    }
+
+    /**
+     * Ensures the given date is between the license's good-after and good-before dates (the license had taken effect
+     * and had not expired as of that date).
+     *
+     * @param license The license to validate
+     * @param time The date to validate the license as of, in milliseconds since January 1, 1970
+     *
+     * @throws InvalidLicenseException when the license is invalid for any reason
+     * @see InvalidLicenseException
+     * @see ExpiredLicenseException
+     * @since 2.0.0
+     */
+    @Override
+    public void validateLicense(final License license, final long time) throws InvalidLicenseException
+    {
         if(license.getGoodAfterDate() > time)
         {
             throw new InvalidLicenseException(
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import io.oddsource.java.licensing.encryption.Encryptor;
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
+
+/**
+ * A cache of keys derived from the license password for authenticated license payloads, identified by the salt and
+ * iteration count they were derived with. Licenses encrypted with a salt other than the one configured for the
+ * license manager would otherwise cost a full key derivation every time they are decrypted.<br>
+ * <br>
+ * The cache holds a fixed number of keys and discards the least recently used key when it is full. It is safe for use
+ * by multiple threads.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class DerivedKeyCache
+{
+    private final int maximumSize;
+
+    private final LinkedList<PasswordDerivedKey> keys = new LinkedList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize The maximum number of keys to hold
+     */
+    DerivedKeyCache(final int maximumSize)
+    {
+        if(maximumSize < 1)
+        {
+            throw new IllegalArgumentException("Parameter maximumSize must be positive.");
+        }
+
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the key that the given authenticated payload was encrypted with, if it is in the cache.
+     *
+     * @param encrypted The encrypted license content
+     *
+     * @return the key, or null if it is not in the cache.
+     */
+    PasswordDerivedKey get(final byte[] encrypted)
+    {
+        synchronized(this.keys)
+        {
+            final Iterator<PasswordDerivedKey> iterator = this.keys.iterator();
+            while(iterator.hasNext())
+            {
+                final PasswordDerivedKey key = iterator.next();
+                if(Encryptor.isEncryptedWith(encrypted, key))
+                {
+                    iterator.remove();
+                    this.keys.addFirst(key);
+                    return key;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a derived key to the cache, replacing any key derived with the same salt and iteration count (which two
+     * threads that missed the cache at the same time would both derive) and discarding the least recently used key if
+     * the cache is full.
+     *
+     * @param key The derived key
+     */
+    void put(final PasswordDerivedKey key)
+    {
+        final byte[] salt = key.getSalt();
+        synchronized(this.keys)
+        {
+            this.keys.removeIf(
+                (cached) -> cached.getIterations() == key.getIterations() && Arrays.equals(cached.getSalt(), salt)
+            );
+            this.keys.addFirst(key);
+            while(this.keys.size() > this.maximumSize)
+            {
+                this.keys.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys in the cache.
+     *
+     * @return the number of keys.
+     */
+    int size()
+    {
+        synchronized(this.keys)
+        {
+            return this.keys.size();
+        }
+    }
+}
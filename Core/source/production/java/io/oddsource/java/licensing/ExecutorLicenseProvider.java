@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts a blocking {@link LicenseProvider} to the {@link AsynchronousLicenseProvider} interface by calling it on an
+ * executor. Blocking calls to {@link #getLicense(Object)} are passed straight through to the wrapped provider.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class ExecutorLicenseProvider implements LicenseProvider, AsynchronousLicenseProvider
+{
+    private final LicenseProvider provider;
+
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The blocking provider to adapt
+     * @param executor The executor on which to call the blocking provider
+     */
+    public ExecutorLicenseProvider(final LicenseProvider provider, final Executor executor)
+    {
+        if(provider == null)
+        {
+            throw new IllegalArgumentException("Argument provider cannot be null.");
+        }
+
+        if(executor == null)
+        {
+            throw new IllegalArgumentException("Argument executor cannot be null.");
+        }
+
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        return this.provider.getLicense(context);
+    }
+
+    @Override
+    public CompletionStage<SignedLicense> getLicenseAsync(final Object context)
+    {
+        return CompletableFuture.supplyAsync(() -> this.provider.getLicense(context), this.executor);
+    }
+}
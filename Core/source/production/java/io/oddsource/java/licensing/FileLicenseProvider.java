@@ -15,13 +15,32 @@
  */
 package io.oddsource.java.licensing;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
 
 /**
  * A default implementation of the {@link LicenseProvider} that assumes the binary data from the signed and serialized
@@ -30,14 +49,38 @@ import org.apache.commons.io.FileUtils;
  * whether or not the contents of the file are Base64 encoded.<br>
  * <br>
  * This implementation also assumes that license contexts (lookup keys) are always either strings or have a meaningful
- * {@link Object#toString()} implementation that can be used within the file name.
+ * {@link Object#toString()} implementation that can be used within the file name.<br>
+ * <br>
+ * If {@link #setWatchingForChanges(boolean) watching for changes} is turned on, the directories containing the
+ * license files that have been looked up are watched with a {@link java.nio.file.WatchService}, and any
+ * {@link LicenseChangeListener}s (including the license manager's) are notified as soon as a file is created, modified
+ * or deleted.<br>
+ * <br>
+ * The size, modification time and (where the file system has one) file key of each license file are recorded when it
+ * is read. As a {@link ConditionalLicenseProvider}, this provider reports a license as not modified if none of these
+ * have changed, so that the license manager does not need to read and verify it again. License files larger than the
+ * {@link #setMaximumFileSize(int) maximum file size} are ignored.<br>
+ * <br>
+ * When the file is on the classpath, the location of each resource is looked up once and then remembered. Resources
+ * inside JAR files are read directly from the JAR file, which is kept open, and are reported as not modified as long
+ * as their size, time and checksum are unchanged. The JAR file is opened again if its size, modification time or file
+ * key change (for example, because the application was redeployed), and {@link #close()} closes all of the JAR files
+ * this provider holds open.
  *
  * @author Nick Williams
  * @version 1.0.0
  * @since 1.0.0
  */
 public class FileLicenseProvider extends DeserializingLicenseProvider
+    implements ObservableLicenseProvider, ConditionalLicenseProvider, AutoCloseable
 {
+    /**
+     * The default maximum size of a license file, 16 megabytes.
+     */
+    public static final int defaultMaximumFileSize = 16 * 1024 * 1024;
+
+    private static final byte[] unmodified = new byte[0];
+
     private final ClassLoader classLoader;
 
     private String filePrefix = "";
@@ -48,6 +91,20 @@ public class FileLicenseProvider extends DeserializingLicenseProvider
 
     private boolean base64Encoded;
 
+    private int maximumFileSize = FileLicenseProvider.defaultMaximumFileSize;
+
+    private final Map<Object, FileState> fileStates = new ConcurrentHashMap<>();
+
+    private final Map<String, URL> resources = new ConcurrentHashMap<>();
+
+    private final Map<String, OpenJarFile> jarFiles = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock jarFileLock = new ReentrantReadWriteLock();
+
+    private final List<LicenseChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile LicenseFileWatcher watcher;
+
     /**
      * Constructs a file-based license provider with the same class loader as the loader of this class and
      * {@link #setFileOnClasspath(boolean) fileOnClasspath} set to {@code false}. The class loader is only used if
@@ -92,74 +149,449 @@ public class FileLicenseProvider extends DeserializingLicenseProvider
             throw new IllegalArgumentException("Argument context cannot be null.");
         }
 
-        final File file = this.getLicenseFile(context);
-        if(file == null || !file.exists() || !file.canRead())
+        return this.readLicense(context, false);
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the license file, unless the file's size,
+     * modification time and file key are the same as when this provider last read it for the same context.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return {@link ConditionalLicenseProvider#NOT_MODIFIED} if the file has not changed, otherwise the signed license
+     *     object, or null if no license is found.
+     *
+     * @since 2.0.0
+     */
+    @Override
+    public SignedLicense getLicenseIfModified(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final byte[] data = this.readLicense(context, true);
+        if(data == FileLicenseProvider.unmodified)
+        {
+            return ConditionalLicenseProvider.NOT_MODIFIED;
+        }
+
+        if(data == null)
         {
             return null;
         }
 
-        byte[] data = null;
         try
         {
-            data = FileUtils.readFileToByteArray(file);
+            return this.deserializeLicense(data);
+        }
+        catch(final RuntimeException e)
+        {
+            // the file was recorded as read, but a corrupt file must be read again rather than reported as unmodified
+            this.fileStates.remove(context);
+            throw e;
+        }
+    }
 
-            if(this.isBase64Encoded())
+    private byte[] readLicense(final Object context, final boolean onlyIfModified)
+    {
+        if(this.isFileOnClasspath())
+        {
+            final URL resource = this.getLicenseResource(this.getLicenseResourceName(context));
+            if(resource != null && !"file".equals(resource.getProtocol()))
             {
-                data = Base64.decodeBase64(data);
+                return this.readLicenseResource(context, resource, onlyIfModified);
             }
         }
-        catch(final IOException ignore)
-        {
-        }
 
-        return data;
+        final File file = this.getLicenseFile(context);
+        this.watchLicenseFile(context, file);
+
+        return this.readLicenseFile(context, file, onlyIfModified);
     }
 
     /**
-     * Gets the license file handle. Returns null if if no license is found, but if a license is found, this may
-     * return a file handle to a non-existent file. So, the file should be checked for existence and readability.
+     * Reads a license resource that is not a file on the file system. Resources inside JAR files on the file system
+     * are read from a JAR file handle that is kept open, and their entry's size, time and checksum are recorded for
+     * the context. Other resources are read through their URL and are always treated as modified.
      *
-     * @param context The context for which to get the license
+     * @param context The context the resource was looked up for
+     * @param resource The resource URL
+     * @param onlyIfModified Whether to skip reading the resource if it has not changed since it was last read
      *
-     * @return the license file handle.
+     * @return the decoded resource contents, {@link #unmodified} if the resource has not changed, or null if the
+     *     resource cannot be read or is too large.
      */
-    protected File getLicenseFile(final Object context)
+    private byte[] readLicenseResource(final Object context, final URL resource, final boolean onlyIfModified)
     {
-        String fileName = this.getFilePrefix() + context.toString() + this.getFileSuffix();
+        final JarURLConnection connection;
+        try
+        {
+            connection = "jar".equals(resource.getProtocol()) ? (JarURLConnection) resource.openConnection() : null;
+        }
+        catch(final IOException e)
+        {
+            this.fileStates.remove(context);
+            return null;
+        }
 
-        File file = null;
+        if(connection != null)
+        {
+            this.closeJarFileIfChanged(connection.getJarFileURL());
+        }
 
-        if(this.isFileOnClasspath())
+        // JAR files are only closed while no entry is being read from them
+        this.jarFileLock.readLock().lock();
+        try
         {
-            if(fileName.startsWith("/"))
-            {
-                fileName = fileName.substring(1);
-            }
+            return this.readLicenseResource(context, resource, connection, onlyIfModified);
+        }
+        finally
+        {
+            this.jarFileLock.readLock().unlock();
+        }
+    }
 
-            final URL url = this.classLoader.getResource(fileName);
-            if(url == null)
+    private byte[] readLicenseResource(
+        final Object context, final URL resource, final JarURLConnection connection, final boolean onlyIfModified
+    )
+    {
+        final FileState state;
+        byte[] data;
+        try
+        {
+            final JarFile jarFile = connection == null ? null : this.getJarFile(connection.getJarFileURL());
+            if(jarFile == null)
             {
-                fileName = null;
+                state = null;
+                try(final InputStream stream = resource.openStream())
+                {
+                    data = FileLicenseProvider.readFully(stream, this.maximumFileSize);
+                }
             }
             else
             {
-                try
+                final JarEntry entry = jarFile.getJarEntry(connection.getEntryName());
+                if(entry == null)
                 {
-                    file = new File(url.toURI());
+                    this.fileStates.remove(context);
+                    return null;
                 }
-                catch(final URISyntaxException e)
+
+                state = new FileState(entry.getSize(), FileTime.fromMillis(entry.getTime()), entry.getCrc());
+                if(onlyIfModified && state.equals(this.fileStates.get(context)))
                 {
-                    file = new File(url.getPath());
+                    return FileLicenseProvider.unmodified;
+                }
+
+                try(final InputStream stream = jarFile.getInputStream(entry))
+                {
+                    data = FileLicenseProvider.readFully(stream, this.maximumFileSize);
                 }
             }
         }
+        catch(final IOException e)
+        {
+            this.fileStates.remove(context);
+            return null;
+        }
 
-        if(file != null)
+        if(data == null || state == null)
+        {
+            this.fileStates.remove(context);
+        }
+        else
         {
-            return file;
+            this.fileStates.put(context, state);
         }
 
-        return fileName == null ? null : new File(fileName);
+        return data != null && this.isBase64Encoded() ? Base64.decodeBase64(data) : data;
+    }
+
+    private JarFile getJarFile(final URL jarFileUrl) throws IOException
+    {
+        final File file = FileLicenseProvider.getJarFileOnFileSystem(jarFileUrl);
+        if(file == null)
+        {
+            return null;
+        }
+
+        final String key = jarFileUrl.toString();
+        final OpenJarFile existing = this.jarFiles.get(key);
+        if(existing != null)
+        {
+            return existing.jarFile;
+        }
+
+        final FileState state = new FileState(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        final OpenJarFile opened = new OpenJarFile(new JarFile(file), state);
+        final OpenJarFile raced = this.jarFiles.putIfAbsent(key, opened);
+        if(raced != null)
+        {
+            opened.jarFile.close();
+            return raced.jarFile;
+        }
+
+        return opened.jarFile;
+    }
+
+    /**
+     * Closes the handle kept open for a JAR file if the file's size, modification time or file key have changed since
+     * it was opened, so that the next read opens the JAR file again instead of reading the replaced file's contents.
+     *
+     * @param jarFileUrl The URL of the JAR file
+     */
+    private void closeJarFileIfChanged(final URL jarFileUrl)
+    {
+        final OpenJarFile existing = this.jarFiles.get(jarFileUrl.toString());
+        if(existing == null)
+        {
+            return;
+        }
+
+        final File file = FileLicenseProvider.getJarFileOnFileSystem(jarFileUrl);
+        FileState state;
+        try
+        {
+            state = file == null ? null : new FileState(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        }
+        catch(final IOException e)
+        {
+            state = null;
+        }
+
+        if(existing.state.equals(state))
+        {
+            return;
+        }
+
+        this.jarFileLock.writeLock().lock();
+        try
+        {
+            if(this.jarFiles.remove(jarFileUrl.toString(), existing))
+            {
+                FileLicenseProvider.closeQuietly(existing.jarFile);
+            }
+        }
+        finally
+        {
+            this.jarFileLock.writeLock().unlock();
+        }
+    }
+
+    private static File getJarFileOnFileSystem(final URL jarFileUrl)
+    {
+        if(!"file".equals(jarFileUrl.getProtocol()))
+        {
+            // nested JAR files cannot be opened directly, so these are read through their URLs instead
+            return null;
+        }
+
+        try
+        {
+            return new File(jarFileUrl.toURI());
+        }
+        catch(final URISyntaxException | IllegalArgumentException e)
+        {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(final JarFile jarFile)
+    {
+        try
+        {
+            jarFile.close();
+        }
+        catch(final IOException ignore)
+        {
+        }
+    }
+
+    /**
+     * Closes the JAR files this provider holds open to read licenses on the classpath, and stops watching for changes
+     * if {@link #setWatchingForChanges(boolean) watching for changes} is turned on. The provider can still be used
+     * afterward, but opens JAR files again as it needs them.
+     */
+    @Override
+    public void close()
+    {
+        this.jarFileLock.writeLock().lock();
+        try
+        {
+            for(final OpenJarFile open : this.jarFiles.values())
+            {
+                FileLicenseProvider.closeQuietly(open.jarFile);
+            }
+            this.jarFiles.clear();
+        }
+        finally
+        {
+            this.jarFileLock.writeLock().unlock();
+        }
+
+        final LicenseFileWatcher current = this.watcher;
+        if(current != null)
+        {
+            this.watcher = null;
+            current.close();
+        }
+    }
+
+    private static byte[] readFully(final InputStream stream, final int maximumSize) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while((read = stream.read(buffer)) >= 0)
+        {
+            if(output.size() + read > maximumSize)
+            {
+                return null;
+            }
+            output.write(buffer, 0, read);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Reads the license file with a single stat of the file and a single channel read of at most the maximum file
+     * size, and records the file's attributes for the context.
+     *
+     * @param context The context the file was looked up for
+     * @param file The license file, or null if none was found
+     * @param onlyIfModified Whether to skip reading the file if it has not changed since it was last read
+     *
+     * @return the decoded file contents, {@link #unmodified} if the file has not changed, or null if the file does not
+     *     exist, cannot be read, or is too large.
+     */
+    private byte[] readLicenseFile(final Object context, final File file, final boolean onlyIfModified)
+    {
+        if(file == null)
+        {
+            this.fileStates.remove(context);
+            return null;
+        }
+
+        final Path path = file.toPath();
+        final FileState state;
+        byte[] data;
+        try
+        {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+            state = new FileState(attributes);
+            if(onlyIfModified && state.equals(this.fileStates.get(context)))
+            {
+                return FileLicenseProvider.unmodified;
+            }
+
+            if(!attributes.isRegularFile() || attributes.size() > this.maximumFileSize)
+            {
+                this.fileStates.remove(context);
+                return null;
+            }
+
+            data = FileLicenseProvider.readFully(path, (int) attributes.size());
+        }
+        catch(final IOException e)
+        {
+            this.fileStates.remove(context);
+            return null;
+        }
+
+        if(this.isBase64Encoded())
+        {
+            data = Base64.decodeBase64(data);
+        }
+
+        this.fileStates.put(context, state);
+
+        return data;
+    }
+
+    private static byte[] readFully(final Path path, final int size) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        try(final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+                // keep reading until the buffer is full or the end of the file is reached
+            }
+        }
+
+        // the file may have shrunk since its size was checked
+        return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+    }
+
+    /**
+     * Gets the license file handle. Returns null if if no license is found, but if a license is found, this may
+     * return a file handle to a non-existent file. So, the file should be checked for existence and readability. If
+     * the file is on the classpath but is not a file on the file system (for example, because it is inside a JAR
+     * file), this returns null as well; such licenses are still read by {@link #getLicenseData(Object)}.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the license file handle.
+     */
+    protected File getLicenseFile(final Object context)
+    {
+        final String fileName = this.getLicenseResourceName(context);
+
+        if(!this.isFileOnClasspath())
+        {
+            return new File(fileName);
+        }
+
+        final URL url = this.getLicenseResource(fileName);
+        if(url == null || !"file".equals(url.getProtocol()))
+        {
+            return null;
+        }
+
+        try
+        {
+            return new File(url.toURI());
+        }
+        catch(final URISyntaxException e)
+        {
+            return new File(url.getPath());
+        }
+    }
+
+    private String getLicenseResourceName(final Object context)
+    {
+        final String fileName = this.getFilePrefix() + context.toString() + this.getFileSuffix();
+
+        return this.isFileOnClasspath() && fileName.startsWith("/") ? fileName.substring(1) : fileName;
+    }
+
+    /**
+     * Finds a resource on the classpath. Resources that are found are remembered, so that the class loader, which may
+     * have to search a very long classpath, is only asked once.
+     *
+     * @param resourceName The name of the resource
+     *
+     * @return the resource URL, or null if it was not found.
+     */
+    private URL getLicenseResource(final String resourceName)
+    {
+        final URL cached = this.resources.get(resourceName);
+        if(cached != null)
+        {
+            return cached;
+        }
+
+        final URL url = this.classLoader.getResource(resourceName);
+        if(url != null)
+        {
+            this.resources.put(resourceName, url);
+        }
+
+        return url;
     }
 
     /**
@@ -274,8 +706,198 @@ public class FileLicenseProvider extends DeserializingLicenseProvider
         this.base64Encoded = base64Encoded;
     }
 
+    /**
+     * Gets the maximum size of a license file, in bytes. Larger files are treated as if they did not exist, which
+     * protects against reading a huge file into memory by mistake.
+     *
+     * @return the maximum file size.
+     *
+     * @since 2.0.0
+     */
+    public int getMaximumFileSize()
+    {
+        return this.maximumFileSize;
+    }
+
+    /**
+     * Sets the maximum size of a license file, in bytes. Larger files are treated as if they did not exist, which
+     * protects against reading a huge file into memory by mistake. Defaults to {@link #defaultMaximumFileSize}.
+     *
+     * @param maximumFileSize The maximum file size
+     *
+     * @since 2.0.0
+     */
+    public void setMaximumFileSize(final int maximumFileSize)
+    {
+        if(maximumFileSize < 1)
+        {
+            throw new IllegalArgumentException("Argument maximumFileSize must be positive.");
+        }
+
+        this.maximumFileSize = maximumFileSize;
+    }
+
+    /**
+     * Indicates whether the directories containing license files are watched for changes. See
+     * {@link #setWatchingForChanges(boolean)}.
+     *
+     * @return whether license files are watched for changes.
+     *
+     * @since 2.0.0
+     */
+    public boolean isWatchingForChanges()
+    {
+        return this.watcher != null;
+    }
+
+    /**
+     * Sets whether the directories containing license files are watched for changes. When this is turned on, every
+     * license file looked up afterwards is watched, whether or not it exists yet, and the
+     * {@link LicenseChangeListener}s added to this provider are notified with the context the file was looked up for
+     * whenever it is created, modified or deleted. Files on the classpath are only watched if they are ordinary files
+     * on the default file system, not entries inside a JAR file.<br>
+     * <br>
+     * How quickly changes are noticed depends on the platform's {@link java.nio.file.WatchService}; some platforms
+     * poll for changes only every few seconds.
+     *
+     * @param watchingForChanges Whether license files should be watched for changes
+     *
+     * @throws IOException if the watch service could not be created.
+     *
+     * @since 2.0.0
+     */
+    public void setWatchingForChanges(final boolean watchingForChanges) throws IOException
+    {
+        if(watchingForChanges == (this.watcher != null))
+        {
+            return;
+        }
+
+        if(watchingForChanges)
+        {
+            this.watcher = new LicenseFileWatcher(this::fireLicenseChanged);
+        }
+        else
+        {
+            this.watcher.close();
+            this.watcher = null;
+        }
+    }
+
+    @Override
+    public void addLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        if(listener == null)
+        {
+            throw new IllegalArgumentException("Argument listener cannot be null.");
+        }
+
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the given license file for changes, if watching for changes is turned on.
+     *
+     * @param context The context the file was looked up for
+     * @param file The license file, or null if none was found
+     */
+    void watchLicenseFile(final Object context, final File file)
+    {
+        final LicenseFileWatcher current = this.watcher;
+        if(current != null && file != null)
+        {
+            current.watch(context, file);
+        }
+    }
+
+    private void fireLicenseChanged(final Object context)
+    {
+        for(final LicenseChangeListener listener : this.listeners)
+        {
+            listener.licenseChanged(context);
+        }
+    }
+
+    /**
+     * Forgets the recorded attributes of the license file for the given context, so that the next call to
+     * {@link #getLicenseIfModified(Object)} reads the file. Called when the file is read by other means.
+     *
+     * @param context The context the file was looked up for
+     */
+    void forgetFileState(final Object context)
+    {
+        this.fileStates.remove(context);
+    }
+
     ClassLoader getClassLoader()
     {
         return this.classLoader;
     }
+
+    /**
+     * The attributes of a license file that change whenever the file does. For a resource inside a JAR file, the
+     * entry's checksum takes the place of the file key.
+     */
+    /**
+     * A JAR file kept open, along with the attributes the file had when it was opened.
+     */
+    private static final class OpenJarFile
+    {
+        private final JarFile jarFile;
+
+        private final FileState state;
+
+        private OpenJarFile(final JarFile jarFile, final FileState state)
+        {
+            this.jarFile = jarFile;
+            this.state = state;
+        }
+    }
+
+    private static final class FileState
+    {
+        private final long size;
+
+        private final FileTime lastModifiedTime;
+
+        private final Object fileKey;
+
+        private FileState(final BasicFileAttributes attributes)
+        {
+            this(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+        }
+
+        private FileState(final long size, final FileTime lastModifiedTime, final Object fileKey)
+        {
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.fileKey = fileKey;
+        }
+
+        @Override
+        public boolean equals(final Object object)
+        {
+            if(!(object instanceof FileState))
+            {
+                return false;
+            }
+
+            final FileState other = (FileState) object;
+
+            return this.size == other.size && this.lastModifiedTime.equals(other.lastModifiedTime) &&
+                   Objects.equals(this.fileKey, other.fileKey);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.size, this.lastModifiedTime, this.fileKey);
+        }
+    }
 }
@@ -0,0 +1,501 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link LicenseProvider} that reads licenses from several replicas of the same license store, such as two network
+ * file systems or two license servers, so that one slow replica does not slow down every license retrieval. The
+ * request goes to the first (primary) replica; if it has not answered after the hedge delay, the same request also
+ * goes to the next replica, and so on. The first replica to answer with a license wins, and the requests still under
+ * way are cancelled. A replica that fails or has no license for the context does not hold up the next one, which is
+ * asked immediately. Only if no replica has a license is null returned, or, if no replica answered at all, the first
+ * failure thrown.<br>
+ * <br>
+ * The hedge delay is by default the 95th percentile of the recent read times of the replicas, so that only the
+ * slowest five percent of requests are hedged, adding about five percent more requests to the replicas. Until enough
+ * read times have been observed, and when the percentile is {@link #setHedgePercentile(int) disabled}, the fixed
+ * {@link #setHedgeDelay(long) hedge delay} is used.<br>
+ * <br>
+ * Replicas that are {@link AsynchronousLicenseProvider}s are read through that interface. Others are read on an
+ * executor, which defaults to this provider's own pool of daemon threads, of which there are never more than there
+ * are reads under way. Blocking reads should not be run on the {@link java.util.concurrent.ForkJoinPool#commonPool()
+ * common pool}, where they can starve the hedged reads that are meant to overtake them. When the executor is an
+ * {@link ExecutorService}, as the default is, the threads of cancelled reads are interrupted, which stops reads that
+ * respond to interruption; other executors leave cancelled reads to run to completion.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class HedgedLicenseProvider implements LicenseProvider, AsynchronousLicenseProvider
+{
+    /**
+     * The default fixed hedge delay, in milliseconds.
+     */
+    public static final long defaultHedgeDelay = 100L;
+
+    /**
+     * The default percentile of recent read times used as the hedge delay.
+     */
+    public static final int defaultHedgePercentile = 95;
+
+    private static final int sampleCount = 128;
+
+    private static final int minimumSamples = 20;
+
+    private static final int samplesPerUpdate = 16;
+
+    private static final ScheduledThreadPoolExecutor timer = HedgedLicenseProvider.createTimer();
+
+    private final List<LicenseProvider> replicas;
+
+    private final Executor executor;
+
+    private final long[] samples = new long[HedgedLicenseProvider.sampleCount];
+
+    private final Lock samplesLock = new ReentrantLock();
+
+    private long sampled;
+
+    private volatile long hedgeDelay = HedgedLicenseProvider.defaultHedgeDelay;
+
+    private volatile int hedgePercentile = HedgedLicenseProvider.defaultHedgePercentile;
+
+    private volatile long observedHedgeDelay = -1L;
+
+    /**
+     * Constructs a hedged license provider that reads blocking replicas on its own daemon threads.
+     *
+     * @param replicas The replicas, the primary first
+     */
+    public HedgedLicenseProvider(final LicenseProvider... replicas)
+    {
+        this(null, replicas);
+    }
+
+    /**
+     * Constructs a hedged license provider that reads blocking replicas on the given executor.
+     *
+     * @param executor The executor on which to read blocking replicas, or null for this provider's own daemon threads
+     * @param replicas The replicas, the primary first
+     */
+    public HedgedLicenseProvider(final Executor executor, final LicenseProvider... replicas)
+    {
+        if(replicas == null || replicas.length == 0)
+        {
+            throw new IllegalArgumentException("Argument replicas cannot be null or empty.");
+        }
+
+        final List<LicenseProvider> list = new ArrayList<>(Arrays.asList(replicas));
+        if(list.contains(null))
+        {
+            throw new IllegalArgumentException("Argument replicas cannot contain null replicas.");
+        }
+
+        this.replicas = Collections.unmodifiableList(list);
+        this.executor = executor == null ? Executors.newCachedThreadPool(HedgedLicenseProvider::newThread) : executor;
+    }
+
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        try
+        {
+            return this.getLicenseAsync(context).toCompletableFuture().join();
+        }
+        catch(final CompletionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<SignedLicense> getLicenseAsync(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final HedgedRead read = new HedgedRead(context);
+        read.launchNext();
+
+        return read.result;
+    }
+
+    /**
+     * Gets the fixed hedge delay, used until enough read times have been observed or when the percentile is disabled.
+     *
+     * @return the fixed hedge delay in milliseconds.
+     */
+    public long getHedgeDelay()
+    {
+        return this.hedgeDelay;
+    }
+
+    /**
+     * Sets the fixed hedge delay, used until enough read times have been observed or when the percentile is disabled.
+     * Zero means that every replica is asked at once.
+     *
+     * @param hedgeDelay The fixed hedge delay in milliseconds, which cannot be negative
+     */
+    public void setHedgeDelay(final long hedgeDelay)
+    {
+        if(hedgeDelay < 0L)
+        {
+            throw new IllegalArgumentException("Argument hedgeDelay cannot be negative.");
+        }
+
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * Gets the percentile of recent read times used as the hedge delay.
+     *
+     * @return the percentile, or zero if the fixed hedge delay is always used.
+     */
+    public int getHedgePercentile()
+    {
+        return this.hedgePercentile;
+    }
+
+    /**
+     * Sets the percentile of recent read times used as the hedge delay, or zero to always use the fixed hedge delay.
+     *
+     * @param hedgePercentile The percentile, from 0 to 99
+     */
+    public void setHedgePercentile(final int hedgePercentile)
+    {
+        if(hedgePercentile < 0 || hedgePercentile > 99)
+        {
+            throw new IllegalArgumentException("Argument hedgePercentile must be from 0 to 99.");
+        }
+
+        this.hedgePercentile = hedgePercentile;
+        this.updateObservedHedgeDelay();
+    }
+
+    /**
+     * Gets the hedge delay currently in use: the configured percentile of recent read times, or the fixed hedge delay.
+     *
+     * @return the current hedge delay in milliseconds.
+     */
+    public long getCurrentHedgeDelay()
+    {
+        final long observed = this.observedHedgeDelay;
+
+        return this.hedgePercentile == 0 || observed < 0L ? this.hedgeDelay : observed;
+    }
+
+    private void recordReadTime(final long nanoseconds)
+    {
+        final boolean update;
+        this.samplesLock.lock();
+        try
+        {
+            this.samples[(int) (this.sampled % HedgedLicenseProvider.sampleCount)] = nanoseconds;
+            this.sampled++;
+            update = this.sampled >= HedgedLicenseProvider.minimumSamples &&
+                     (this.sampled % HedgedLicenseProvider.samplesPerUpdate == 0 ||
+                      this.sampled == HedgedLicenseProvider.minimumSamples);
+        }
+        finally
+        {
+            this.samplesLock.unlock();
+        }
+
+        if(update)
+        {
+            this.updateObservedHedgeDelay();
+        }
+    }
+
+    private void updateObservedHedgeDelay()
+    {
+        final long[] sorted;
+        this.samplesLock.lock();
+        try
+        {
+            if(this.sampled < HedgedLicenseProvider.minimumSamples)
+            {
+                return;
+            }
+            sorted = Arrays.copyOf(this.samples, (int) Math.min(this.sampled, HedgedLicenseProvider.sampleCount));
+        }
+        finally
+        {
+            this.samplesLock.unlock();
+        }
+
+        final int percentile = this.hedgePercentile;
+        if(percentile > 0)
+        {
+            Arrays.sort(sorted);
+            final int index = Math.min(sorted.length - 1, sorted.length * percentile / 100);
+            this.observedHedgeDelay = TimeUnit.NANOSECONDS.toMillis(sorted[index]);
+        }
+    }
+
+    private static RuntimeException toRuntimeException(final Throwable e)
+    {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer()
+    {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, HedgedLicenseProvider::newThread);
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static Thread newThread(final Runnable runnable)
+    {
+        final Thread thread = new Thread(runnable, "HedgedLicenseProvider");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * One hedged read of a license: the replicas asked so far, the pending hedge, and the result.
+     */
+    private final class HedgedRead
+    {
+        private final Object context;
+
+        private final CompletableFuture<SignedLicense> result = new CompletableFuture<>();
+
+        private final AtomicInteger launched = new AtomicInteger();
+
+        private final AtomicInteger finished = new AtomicInteger();
+
+        private final AtomicInteger winner = new AtomicInteger(-1);
+
+        private final Map<Integer, Future<?>> running = new ConcurrentHashMap<>();
+
+        private volatile ScheduledFuture<?> hedge;
+
+        private volatile boolean answered;
+
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private HedgedRead(final Object context)
+        {
+            this.context = context;
+        }
+
+        /**
+         * Asks the next replica, if there is one, and schedules a hedge to the one after it.
+         */
+        private void launchNext()
+        {
+            final int replica = this.launched.getAndIncrement();
+            final List<LicenseProvider> replicas = HedgedLicenseProvider.this.replicas;
+            if(replica >= replicas.size() || this.winner.get() >= 0 || this.result.isDone())
+            {
+                return;
+            }
+
+            final ScheduledFuture<?> previous = this.hedge;
+            if(previous != null)
+            {
+                previous.cancel(false);
+            }
+            if(replica + 1 < replicas.size())
+            {
+                this.hedge = HedgedLicenseProvider.timer.schedule(
+                    this::launchNext, HedgedLicenseProvider.this.getCurrentHedgeDelay(), TimeUnit.MILLISECONDS
+                );
+            }
+
+            final long start = System.nanoTime();
+            final LicenseProvider provider = replicas.get(replica);
+            if(provider instanceof AsynchronousLicenseProvider)
+            {
+                final CompletableFuture<SignedLicense> future;
+                try
+                {
+                    future = ((AsynchronousLicenseProvider) provider).getLicenseAsync(this.context)
+                                                                        .toCompletableFuture();
+                }
+                catch(final RuntimeException e)
+                {
+                    this.finish(replica, null, e, start);
+                    return;
+                }
+                this.running.put(replica, future);
+                future.whenComplete((license, e) -> this.finish(replica, license, e, start));
+            }
+            else
+            {
+                final Runnable read = () -> this.read(replica, provider, start);
+                final Executor executor = HedgedLicenseProvider.this.executor;
+                try
+                {
+                    if(executor instanceof ExecutorService)
+                    {
+                        this.running.put(replica, ((ExecutorService) executor).submit(read));
+                    }
+                    else
+                    {
+                        executor.execute(read);
+                    }
+                }
+                catch(final RuntimeException e)
+                {
+                    this.finish(replica, null, e, start);
+                }
+            }
+
+            // the read may have started just as another replica won
+            final Future<?> started = this.running.get(replica);
+            if(started != null && this.result.isDone() && this.winner.get() != replica)
+            {
+                started.cancel(true);
+            }
+        }
+
+        private void read(final int replica, final LicenseProvider provider, final long start)
+        {
+            if(this.result.isDone())
+            {
+                return;
+            }
+
+            SignedLicense license = null;
+            RuntimeException failure = null;
+            try
+            {
+                license = provider.getLicense(this.context);
+            }
+            catch(final RuntimeException e)
+            {
+                failure = e;
+            }
+            catch(final Error e)
+            {
+                this.cancelRemaining(replica);
+                this.result.completeExceptionally(e);
+                throw e;
+            }
+
+            this.finish(replica, license, failure, start);
+        }
+
+        private void finish(final int replica, final SignedLicense license, final Throwable e, final long start)
+        {
+            // reads cut short by cancellation would understate how long the replica takes
+            if(e == null && !this.result.isDone())
+            {
+                HedgedLicenseProvider.this.recordReadTime(System.nanoTime() - start);
+            }
+
+            if(license != null)
+            {
+                // the other reads are cancelled first, so that nothing that depends on the result sees them running
+                if(this.winner.compareAndSet(-1, replica))
+                {
+                    this.cancelRemaining(replica);
+                    this.result.complete(license);
+                }
+                return;
+            }
+
+            if(e == null)
+            {
+                this.answered = true;
+            }
+            else
+            {
+                final RuntimeException exception = HedgedLicenseProvider.toRuntimeException(e);
+                if(!this.failure.compareAndSet(null, exception) && this.failure.get() != exception)
+                {
+                    this.failure.get().addSuppressed(exception);
+                }
+            }
+
+            if(this.finished.incrementAndGet() >= HedgedLicenseProvider.this.replicas.size())
+            {
+                this.cancelRemaining(replica);
+                if(this.answered || this.failure.get() == null)
+                {
+                    this.result.complete(null);
+                }
+                else
+                {
+                    this.result.completeExceptionally(this.failure.get());
+                }
+            }
+            else
+            {
+                // a replica without an answer should not hold up the next one
+                this.launchNext();
+            }
+        }
+
+        /**
+         * Cancels the pending hedge and the reads still under way, except the given one, which is the read that is
+         * completing and must not be interrupted.
+         *
+         * @param replica The replica whose read is completing, or -1
+         */
+        private void cancelRemaining(final int replica)
+        {
+            final ScheduledFuture<?> pending = this.hedge;
+            if(pending != null)
+            {
+                pending.cancel(false);
+            }
+            for(final Map.Entry<Integer, Future<?>> entry : this.running.entrySet())
+            {
+                if(entry.getKey() != replica)
+                {
+                    entry.getValue().cancel(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * A {@link LicenseProvider} that retrieves serialized signed licenses (as stored in files for a
+ * {@link FileLicenseProvider}) from a license server over HTTP. The license for a context is retrieved with a GET
+ * request for the base URL followed by the URL-encoded context; the server responds with the license, or with status
+ * 404 if there is no license for the context.<br>
+ * <br>
+ * This provider remembers the {@code ETag} and {@code Last-Modified} headers of each license and sends them back with
+ * the next request for it, so a server that supports conditional requests responds to a request for an unchanged
+ * license with status 304 and no body. As a {@link ConditionalLicenseProvider}, it then tells the
+ * {@link LicenseManager} that the license has not changed, and the license is not verified or decrypted again.
+ * Responses are read completely, so that the connection can be kept alive and reused for later requests.<br>
+ * <br>
+ * If the server cannot be reached or responds with an error, the last license successfully retrieved for the context
+ * is used. With a {@link #setFallbackDirectory(File) fallback directory}, each license retrieved is also saved to disk,
+ * so that it can be used even after a restart while the server is unavailable. Only when there is no earlier copy of
+ * the license is a {@link LicenseStoreException} thrown.<br>
+ * <br>
+ * This implementation assumes that license contexts (lookup keys) are always either strings or have a meaningful
+ * {@link Object#toString()} implementation.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class HttpLicenseProvider extends DeserializingLicenseProvider implements ConditionalLicenseProvider
+{
+    /**
+     * The default time, in milliseconds, to wait for a connection to the license server.
+     */
+    public static final int defaultConnectTimeout = 5000;
+
+    /**
+     * The default time, in milliseconds, to wait for the license server to respond.
+     */
+    public static final int defaultReadTimeout = 10000;
+
+    /**
+     * The default maximum size of a license, in bytes.
+     */
+    public static final int defaultMaximumLicenseSize = 16 * 1024 * 1024;
+
+    private static final byte[] unmodified = new byte[0];
+
+    private final String baseUrl;
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+
+    private volatile int connectTimeout = HttpLicenseProvider.defaultConnectTimeout;
+
+    private volatile int readTimeout = HttpLicenseProvider.defaultReadTimeout;
+
+    private volatile int maximumLicenseSize = HttpLicenseProvider.defaultMaximumLicenseSize;
+
+    private volatile File fallbackDirectory;
+
+    /**
+     * Constructs an HTTP license provider for the given base URL. The URL for the license for a context is the base
+     * URL followed by the URL-encoded context, so the base URL normally ends with a slash.
+     *
+     * @param baseUrl The base URL of the licenses on the license server
+     */
+    public HttpLicenseProvider(final String baseUrl)
+    {
+        if(baseUrl == null || !(baseUrl.startsWith("http://") || baseUrl.startsWith("https://")))
+        {
+            throw new IllegalArgumentException("Argument baseUrl must be an HTTP or HTTPS URL.");
+        }
+
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Gets the stored, still-encrypted, still-serialized license content and signature from the license server, or
+     * the last copy retrieved if the license server is unavailable. Returns null (not an empty array) if the server
+     * has no license for the context.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license data.
+     *
+     * @throws LicenseStoreException if the license server is unavailable and there is no earlier copy of the license.
+     */
+    @Override
+    protected byte[] getLicenseData(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        return this.fetchLicense(context.toString(), false);
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the license server, unless the server
+     * reports that it has not changed since this provider last retrieved it. If the server is unavailable, the license
+     * is reported unchanged if this provider has retrieved it before.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return {@link ConditionalLicenseProvider#NOT_MODIFIED} if the license has not changed, otherwise the signed
+     *     license object, or null if no license is found.
+     *
+     * @throws LicenseStoreException if the license server is unavailable and there is no earlier copy of the license.
+     */
+    @Override
+    public SignedLicense getLicenseIfModified(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final byte[] data = this.fetchLicense(context.toString(), true);
+        if(data == HttpLicenseProvider.unmodified)
+        {
+            return ConditionalLicenseProvider.NOT_MODIFIED;
+        }
+
+        return data == null ? null : this.deserializeLicense(data);
+    }
+
+    /**
+     * Gets the base URL of the licenses on the license server.
+     *
+     * @return the base URL.
+     */
+    public String getBaseUrl()
+    {
+        return this.baseUrl;
+    }
+
+    /**
+     * Gets the time to wait for a connection to the license server.
+     *
+     * @return the connect timeout in milliseconds.
+     */
+    public int getConnectTimeout()
+    {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the time to wait for a connection to the license server.
+     *
+     * @param connectTimeout The connect timeout in milliseconds, which must be positive
+     */
+    public void setConnectTimeout(final int connectTimeout)
+    {
+        if(connectTimeout < 1)
+        {
+            throw new IllegalArgumentException("Argument connectTimeout must be positive.");
+        }
+
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Gets the time to wait for the license server to respond.
+     *
+     * @return the read timeout in milliseconds.
+     */
+    public int getReadTimeout()
+    {
+        return this.readTimeout;
+    }
+
+    /**
+     * Sets the time to wait for the license server to respond.
+     *
+     * @param readTimeout The read timeout in milliseconds, which must be positive
+     */
+    public void setReadTimeout(final int readTimeout)
+    {
+        if(readTimeout < 1)
+        {
+            throw new IllegalArgumentException("Argument readTimeout must be positive.");
+        }
+
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Gets the size of the largest license this provider will accept from the license server.
+     *
+     * @return the maximum license size in bytes.
+     */
+    public int getMaximumLicenseSize()
+    {
+        return this.maximumLicenseSize;
+    }
+
+    /**
+     * Sets the size of the largest license this provider will accept from the license server. Larger responses are
+     * treated as errors.
+     *
+     * @param maximumLicenseSize The maximum license size in bytes, which must be positive
+     */
+    public void setMaximumLicenseSize(final int maximumLicenseSize)
+    {
+        if(maximumLicenseSize < 1)
+        {
+            throw new IllegalArgumentException("Argument maximumLicenseSize must be positive.");
+        }
+
+        this.maximumLicenseSize = maximumLicenseSize;
+    }
+
+    /**
+     * Gets the directory in which the last copy of each license retrieved is saved.
+     *
+     * @return the fallback directory, or null if licenses are not saved to disk.
+     */
+    public File getFallbackDirectory()
+    {
+        return this.fallbackDirectory;
+    }
+
+    /**
+     * Sets the directory in which the last copy of each license retrieved is saved, to be used when the license server
+     * is unavailable, or null (the default) to keep the last copies only in memory. The directory is created if it
+     * does not exist.
+     *
+     * @param fallbackDirectory The fallback directory
+     *
+     * @throws IOException if the directory cannot be created.
+     */
+    public void setFallbackDirectory(final File fallbackDirectory) throws IOException
+    {
+        if(fallbackDirectory != null)
+        {
+            Files.createDirectories(fallbackDirectory.toPath());
+        }
+
+        this.fallbackDirectory = fallbackDirectory;
+    }
+
+    /**
+     * Retrieves the license from the license server, with a conditional request if it has been retrieved before, and
+     * falls back to the last copy retrieved if the server is unavailable.
+     *
+     * @param key The context
+     * @param onlyIfModified Whether to return {@link #unmodified} instead of the license if it has not changed
+     *
+     * @return the license data, {@link #unmodified}, or null if the server has no license for the context.
+     */
+    private byte[] fetchLicense(final String key, final boolean onlyIfModified)
+    {
+        final Response previous = this.responses.get(key);
+
+        Exception failure;
+        try
+        {
+            final HttpURLConnection connection = (HttpURLConnection) this.getLicenseUrl(key).openConnection();
+            connection.setConnectTimeout(this.connectTimeout);
+            connection.setReadTimeout(this.readTimeout);
+            connection.setUseCaches(false);
+            if(previous != null && previous.entityTag != null)
+            {
+                connection.setRequestProperty("If-None-Match", previous.entityTag);
+            }
+            if(previous != null && previous.lastModified != null)
+            {
+                connection.setRequestProperty("If-Modified-Since", previous.lastModified);
+            }
+
+            final int status = connection.getResponseCode();
+            if(status == HttpURLConnection.HTTP_OK)
+            {
+                final byte[] data = this.readResponse(connection.getInputStream());
+                this.responses.put(key, new Response(
+                    connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), data
+                ));
+                this.saveFallbackCopy(key, data);
+                return data;
+            }
+
+            HttpLicenseProvider.discardResponse(connection);
+            if(status == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null)
+            {
+                return onlyIfModified ? HttpLicenseProvider.unmodified : previous.data;
+            }
+            if(status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE)
+            {
+                this.responses.remove(key);
+                this.deleteFallbackCopy(key);
+                return null;
+            }
+
+            failure = new IOException("The license server responded with status " + status + ".");
+        }
+        catch(final IOException e)
+        {
+            failure = e;
+        }
+
+        if(previous != null)
+        {
+            return onlyIfModified ? HttpLicenseProvider.unmodified : previous.data;
+        }
+
+        final byte[] data = this.readFallbackCopy(key);
+        if(data == null)
+        {
+            throw new LicenseStoreException(
+                "Failed to retrieve the license for context " + key + " from the license server.", failure
+            );
+        }
+
+        // later requests are not conditional, but the saved copy is reported unchanged while the server is unavailable
+        this.responses.putIfAbsent(key, new Response(null, null, data));
+
+        return data;
+    }
+
+    private URL getLicenseUrl(final String key) throws IOException
+    {
+        try
+        {
+            return new URL(this.baseUrl + URLEncoder.encode(key, "UTF-8").replace("+", "%20"));
+        }
+        catch(final UnsupportedEncodingException e)
+        {
+            throw new AlgorithmNotSupportedException("UTF-8", e);
+        }
+    }
+
+    private byte[] readResponse(final InputStream stream) throws IOException
+    {
+        try(final InputStream input = stream)
+        {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while((read = input.read(buffer)) >= 0)
+            {
+                if(output.size() + read > this.maximumLicenseSize)
+                {
+                    throw new IOException("The license is larger than " + this.maximumLicenseSize + " bytes.");
+                }
+                output.write(buffer, 0, read);
+            }
+
+            return output.toByteArray();
+        }
+    }
+
+    /**
+     * Reads and discards the body of a response that is not a license, so that the connection can be reused.
+     *
+     * @param connection The connection
+     */
+    private static void discardResponse(final HttpURLConnection connection)
+    {
+        try(final InputStream input = connection.getErrorStream())
+        {
+            if(input != null)
+            {
+                final byte[] buffer = new byte[8192];
+                while(input.read(buffer) >= 0)
+                {
+                    // the body is not needed
+                }
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the connection simply will not be reused
+        }
+    }
+
+    private Path getFallbackPath(final String key)
+    {
+        final File directory = this.fallbackDirectory;
+        if(directory == null)
+        {
+            return null;
+        }
+
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException("SHA-256", e);
+        }
+
+        return directory.toPath().resolve(
+            Hex.encodeHexString(digest.digest(key.getBytes(LicensingCharsets.UTF_8))) + ".lic"
+        );
+    }
+
+    private void saveFallbackCopy(final String key, final byte[] data)
+    {
+        final Path path = this.getFallbackPath(key);
+        if(path == null)
+        {
+            return;
+        }
+
+        try
+        {
+            final Path temporary = Files.createTempFile(path.getParent(), "license", ".tmp");
+            try
+            {
+                Files.write(temporary, data);
+                try
+                {
+                    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                catch(final AtomicMoveNotSupportedException e)
+                {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the copy in memory is still used, and the license is saved again the next time it is retrieved
+        }
+    }
+
+    private byte[] readFallbackCopy(final String key)
+    {
+        final Path path = this.getFallbackPath(key);
+        if(path == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return Files.readAllBytes(path);
+        }
+        catch(final IOException e)
+        {
+            return null;
+        }
+    }
+
+    private void deleteFallbackCopy(final String key)
+    {
+        final Path path = this.getFallbackPath(key);
+        if(path != null)
+        {
+            try
+            {
+                Files.deleteIfExists(path);
+            }
+            catch(final IOException ignore)
+            {
+                // a copy left behind is only used while the server is unavailable
+            }
+        }
+    }
+
+    /**
+     * The last license retrieved for a context and the validators the server sent with it.
+     */
+    private static final class Response
+    {
+        private final String entityTag;
+
+        private final String lastModified;
+
+        private final byte[] data;
+
+        private Response(final String entityTag, final String lastModified, final byte[] data)
+        {
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+    }
+}
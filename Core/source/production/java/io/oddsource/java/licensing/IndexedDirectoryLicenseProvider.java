@@ -0,0 +1,658 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.codec.binary.Hex;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * A {@link LicenseProvider} for very large numbers of licenses, such as one per tenant of a multi-tenant application,
+ * stored as files in a single directory tree. Unlike {@link FileLicenseProvider}, which looks up one file per context
+ * by name in one directory, this provider spreads the license files over a two-level tree of subdirectories named
+ * after a hash of the context, so that no directory holds more than a few files, and keeps an index of every license
+ * in the tree in a single file.<br>
+ * <br>
+ * The index records, for each context, the size and SHA-256 digest of its license file, which is named after both the
+ * context and the digest. It is read into memory when
+ * the provider is constructed, so looking up a license takes constant time, and listing every context with a license
+ * ({@link #getContexts()}) never touches the directory tree. A license file whose size or digest does not match the
+ * index is treated as missing, so a lookup never returns a license that is inconsistent with the index. Licenses
+ * larger than {@link FileLicenseProvider#defaultMaximumFileSize} cannot be stored, and an index that records a larger
+ * size is rejected as corrupt.<br>
+ * <br>
+ * Licenses are added with {@link #putLicense(Object, SignedLicense)} and removed with {@link #removeLicense(Object)}.
+ * Each change is appended to the index, so it is cheap no matter how many licenses there are; the index can be
+ * rewritten without the superseded records with {@link #compactIndex()}. Only one process should change the tree at a
+ * time, but any number of processes can read it: a provider that cannot find a context, or finds a file that does not
+ * match its index, first reads any records other processes have appended to the index since.<br>
+ * <br>
+ * This implementation assumes that license contexts (lookup keys) are always either strings or have a meaningful
+ * {@link Object#toString()} implementation.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class IndexedDirectoryLicenseProvider extends DeserializingLicenseProvider implements WritableLicenseProvider
+{
+    /**
+     * The name of the index file in the root of the directory tree.
+     */
+    public static final String indexFileName = "licenses.idx";
+
+    private static final int indexMagic = 0x4C494458;
+
+    private static final byte indexVersion = 1;
+
+    private static final int indexHeaderLength = 5;
+
+    private static final String digestAlgorithm = "SHA-256";
+
+    private static final int digestLength = 32;
+
+    private static final int maximumContextLength = 0xFFFF;
+
+    private static final int maximumLicenseSize = FileLicenseProvider.defaultMaximumFileSize;
+
+    private static final long removed = -1L;
+
+    private final File directory;
+
+    private final File indexFile;
+
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+
+    private final Lock lock = new ReentrantLock();
+
+    private volatile long indexLength;
+
+    private volatile Object indexIdentity;
+
+    /**
+     * Constructs an indexed directory license provider for the given directory, which is created if it does not
+     * exist, and reads its index.
+     *
+     * @param directory The root of the directory tree
+     *
+     * @throws IOException if the directory cannot be created or the index cannot be read.
+     */
+    public IndexedDirectoryLicenseProvider(final File directory) throws IOException
+    {
+        if(directory == null)
+        {
+            throw new IllegalArgumentException("Argument directory cannot be null.");
+        }
+
+        Files.createDirectories(directory.toPath());
+
+        this.directory = directory;
+        this.indexFile = new File(directory, IndexedDirectoryLicenseProvider.indexFileName);
+
+        this.lock.lock();
+        try
+        {
+            this.refreshIndex();
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the stored, still-encrypted, still-serialized license content and signature from the directory tree.
+     * Returns null (not an empty array) if no license is found, or if the license file does not match the index.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license data.
+     */
+    @Override
+    protected byte[] getLicenseData(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final String key = context.toString();
+
+        final byte[] data = this.readLicenseFile(key, this.index.get(key));
+        if(data != null || !this.refreshIndexIfChanged())
+        {
+            return data;
+        }
+
+        // another process may have changed the license since the index was read
+        return this.readLicenseFile(key, this.index.get(key));
+    }
+
+    /**
+     * Gets the contexts of every license in the directory tree, from the index.
+     *
+     * @return an unmodifiable view of the contexts, which reflects later changes made through this provider.
+     */
+    public Set<String> getContexts()
+    {
+        this.refreshIndexIfChanged();
+
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    /**
+     * Stores the license for the given context in the directory tree, replacing any existing license for the context,
+     * and records it in the index. Each version of a license has its own file, named after its digest, which is
+     * written completely before it is recorded in the index; the file it replaces is only deleted afterwards. Readers
+     * therefore never see a partially written license, nor a license file that does not match the index they read.
+     *
+     * @param context The context for which to store the license
+     * @param signedLicense The signed license
+     *
+     * @throws IOException if the license file or the index cannot be written.
+     */
+    @Override
+    public void putLicense(final Object context, final SignedLicense signedLicense) throws IOException
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+        if(signedLicense == null)
+        {
+            throw new IllegalArgumentException("Argument signedLicense cannot be null.");
+        }
+
+        final String key = context.toString();
+        if(key.getBytes(LicensingCharsets.UTF_8).length > IndexedDirectoryLicenseProvider.maximumContextLength)
+        {
+            throw new IllegalArgumentException(
+                "Argument context cannot be longer than " + IndexedDirectoryLicenseProvider.maximumContextLength +
+                " bytes in UTF-8."
+            );
+        }
+
+        final byte[] data = new ObjectSerializer().writeObject(signedLicense);
+        if(data.length > IndexedDirectoryLicenseProvider.maximumLicenseSize)
+        {
+            throw new IllegalArgumentException(
+                "Argument signedLicense cannot be larger than " + IndexedDirectoryLicenseProvider.maximumLicenseSize +
+                " bytes serialized."
+            );
+        }
+
+        final IndexEntry entry = new IndexEntry(data.length, IndexedDirectoryLicenseProvider.digest(data));
+
+        this.lock.lock();
+        try
+        {
+            this.refreshIndex();
+
+            final Path path = this.getLicensePath(key, entry);
+            Files.createDirectories(path.getParent());
+
+            final Path temporary = Files.createTempFile(path.getParent(), "license", ".tmp");
+            try
+            {
+                Files.write(temporary, data);
+                IndexedDirectoryLicenseProvider.move(temporary, path);
+            }
+            finally
+            {
+                Files.deleteIfExists(temporary);
+            }
+
+            final IndexEntry replaced = this.index.get(key);
+            this.appendToIndex(key, entry);
+
+            // readers still holding the old index entry find its file gone, and read the index again
+            if(replaced != null && !path.equals(this.getLicensePath(key, replaced)))
+            {
+                Files.deleteIfExists(this.getLicensePath(key, replaced));
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the license for the given context from the directory tree and the index, if there is one.
+     *
+     * @param context The context whose license should be removed
+     *
+     * @throws IOException if the license file cannot be deleted or the index cannot be written.
+     */
+    @Override
+    public void removeLicense(final Object context) throws IOException
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final String key = context.toString();
+
+        this.lock.lock();
+        try
+        {
+            this.refreshIndex();
+
+            final IndexEntry entry = this.index.get(key);
+            if(entry != null)
+            {
+                // the index is changed first, so that readers never find an entry without its file
+                this.appendToIndex(key, null);
+                Files.deleteIfExists(this.getLicensePath(key, entry));
+            }
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the index with only the current entry for each context, dropping the records for replaced and removed
+     * licenses. The new index replaces the old one atomically.
+     *
+     * @throws IOException if the index cannot be written.
+     */
+    public void compactIndex() throws IOException
+    {
+        this.lock.lock();
+        try
+        {
+            this.refreshIndex();
+
+            final File temporary = new File(this.directory, IndexedDirectoryLicenseProvider.indexFileName + ".tmp");
+            try(final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary))
+            ))
+            {
+                IndexedDirectoryLicenseProvider.writeHeader(output);
+                for(final Map.Entry<String, IndexEntry> entry : this.index.entrySet())
+                {
+                    IndexedDirectoryLicenseProvider.writeRecord(output, entry.getKey(), entry.getValue());
+                }
+            }
+
+            IndexedDirectoryLicenseProvider.move(temporary.toPath(), this.indexFile.toPath());
+
+            final BasicFileAttributes attributes = this.readIndexAttributes();
+            this.indexLength = attributes.size();
+            this.indexIdentity = IndexedDirectoryLicenseProvider.getIdentity(attributes);
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the path of the current license file for a context, according to the index.
+     *
+     * @param key The context
+     *
+     * @return the path of the license file, or null if the index has no license for the context.
+     */
+    Path getLicensePath(final String key)
+    {
+        final IndexEntry entry = this.index.get(key);
+
+        return entry == null ? null : this.getLicensePath(key, entry);
+    }
+
+    /**
+     * Gets the path of the license file for a version of a context's license: two levels of subdirectories named
+     * after the first two bytes of the SHA-256 hash of the context, and a file named after the whole hash and the
+     * digest of the license file.
+     *
+     * @param key The context
+     * @param entry The index entry of the license
+     *
+     * @return the path of the license file.
+     */
+    private Path getLicensePath(final String key, final IndexEntry entry)
+    {
+        final String hash = Hex.encodeHexString(
+            IndexedDirectoryLicenseProvider.digest(key.getBytes(LicensingCharsets.UTF_8))
+        );
+
+        return this.directory.toPath().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(
+            hash + "-" + Hex.encodeHexString(entry.digest) + ".lic"
+        );
+    }
+
+    private byte[] readLicenseFile(final String key, final IndexEntry entry)
+    {
+        if(entry == null)
+        {
+            return null;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate((int) entry.size);
+        try(final FileChannel channel = FileChannel.open(this.getLicensePath(key, entry), StandardOpenOption.READ))
+        {
+            if(channel.size() != entry.size)
+            {
+                return null;
+            }
+
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+                // keep reading until the buffer is full or the end of the file is reached
+            }
+        }
+        catch(final IOException e)
+        {
+            return null;
+        }
+
+        final byte[] data = buffer.array();
+        if(buffer.hasRemaining() || !Arrays.equals(entry.digest, IndexedDirectoryLicenseProvider.digest(data)))
+        {
+            return null;
+        }
+
+        return data;
+    }
+
+    private boolean refreshIndexIfChanged()
+    {
+        try
+        {
+            if(this.isIndexUnchanged(this.readIndexAttributes()))
+            {
+                return false;
+            }
+        }
+        catch(final IOException e)
+        {
+            return false;
+        }
+
+        this.lock.lock();
+        try
+        {
+            this.refreshIndex();
+        }
+        catch(final IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads any records appended to the index since it was last read, or the whole index if it has been replaced.
+     * Must be called with the lock held.
+     *
+     * @throws IOException if the index cannot be read.
+     */
+    private void refreshIndex() throws IOException
+    {
+        final BasicFileAttributes attributes = this.readIndexAttributes();
+        if(this.isIndexUnchanged(attributes))
+        {
+            return;
+        }
+
+        final Object identity = attributes == null ? null : IndexedDirectoryLicenseProvider.getIdentity(attributes);
+
+        long offset = this.indexLength;
+        if(attributes == null || attributes.size() < offset || !Objects.equals(identity, this.indexIdentity))
+        {
+            // the index has been replaced, by compaction in another process or otherwise, so it is read again
+            this.index.clear();
+            offset = 0L;
+        }
+
+        this.indexIdentity = identity;
+        if(attributes == null)
+        {
+            this.indexLength = 0L;
+            return;
+        }
+
+        try(final FileChannel channel = FileChannel.open(this.indexFile.toPath(), StandardOpenOption.READ))
+        {
+            channel.position(offset);
+            final DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel))
+            );
+
+            long complete = offset;
+            try
+            {
+                if(offset == 0L)
+                {
+                    if(input.readInt() != IndexedDirectoryLicenseProvider.indexMagic ||
+                       input.readByte() != IndexedDirectoryLicenseProvider.indexVersion)
+                    {
+                        throw new IOException("The file " + this.indexFile + " is not a license index.");
+                    }
+                    complete = IndexedDirectoryLicenseProvider.indexHeaderLength;
+                }
+
+                while(true)
+                {
+                    final byte[] key = new byte[input.readUnsignedShort()];
+                    input.readFully(key);
+                    final long size = input.readLong();
+                    if(size == IndexedDirectoryLicenseProvider.removed)
+                    {
+                        this.index.remove(new String(key, LicensingCharsets.UTF_8));
+                        complete += 2 + key.length + 8;
+                    }
+                    else if(size < 0L || size > IndexedDirectoryLicenseProvider.maximumLicenseSize)
+                    {
+                        // the size is used to allocate the buffer the license file is read into
+                        throw new IOException("The license index " + this.indexFile + " is corrupt.");
+                    }
+                    else
+                    {
+                        final byte[] digest = new byte[IndexedDirectoryLicenseProvider.digestLength];
+                        input.readFully(digest);
+                        this.index.put(new String(key, LicensingCharsets.UTF_8), new IndexEntry(size, digest));
+                        complete += 2 + key.length + 8 + digest.length;
+                    }
+                }
+            }
+            catch(final EOFException e)
+            {
+                // a record that is still being written (or was never finished) is read next time, or overwritten
+            }
+
+            this.indexLength = complete;
+        }
+    }
+
+    /**
+     * Appends a record to the index and applies it to the index in memory. Must be called with the lock held, after
+     * the index has been refreshed.
+     *
+     * @param key The context
+     * @param entry The entry, or null to record the license's removal
+     *
+     * @throws IOException if the index cannot be written.
+     */
+    private void appendToIndex(final String key, final IndexEntry entry) throws IOException
+    {
+        try(final FileChannel channel = FileChannel.open(
+            this.indexFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+        ))
+        {
+            // anything after the last complete record is an unfinished record, which is overwritten
+            channel.truncate(this.indexLength);
+            channel.position(this.indexLength);
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(bytes);
+            if(this.indexLength == 0L)
+            {
+                IndexedDirectoryLicenseProvider.writeHeader(output);
+            }
+            IndexedDirectoryLicenseProvider.writeRecord(output, key, entry);
+            output.flush();
+
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while(buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(false);
+
+            this.indexLength = channel.position();
+        }
+
+        this.indexIdentity = IndexedDirectoryLicenseProvider.getIdentity(this.readIndexAttributes());
+
+        if(entry == null)
+        {
+            this.index.remove(key);
+        }
+        else
+        {
+            this.index.put(key, entry);
+        }
+    }
+
+    private BasicFileAttributes readIndexAttributes() throws IOException
+    {
+        try
+        {
+            return Files.readAttributes(this.indexFile.toPath(), BasicFileAttributes.class);
+        }
+        catch(final NoSuchFileException e)
+        {
+            return null;
+        }
+    }
+
+    private boolean isIndexUnchanged(final BasicFileAttributes attributes)
+    {
+        return attributes == null
+               ? this.indexLength == 0L && this.indexIdentity == null
+               : attributes.size() == this.indexLength &&
+                 Objects.equals(IndexedDirectoryLicenseProvider.getIdentity(attributes), this.indexIdentity);
+    }
+
+    private static Object getIdentity(final BasicFileAttributes attributes)
+    {
+        // the file key changes when the index is replaced; file systems without file keys use the creation time
+        return attributes.fileKey() == null ? attributes.creationTime() : attributes.fileKey();
+    }
+
+    private static void writeHeader(final DataOutputStream output) throws IOException
+    {
+        output.writeInt(IndexedDirectoryLicenseProvider.indexMagic);
+        output.writeByte(IndexedDirectoryLicenseProvider.indexVersion);
+    }
+
+    private static void writeRecord(final DataOutputStream output, final String key, final IndexEntry entry)
+        throws IOException
+    {
+        final byte[] bytes = key.getBytes(LicensingCharsets.UTF_8);
+        output.writeShort(bytes.length);
+        output.write(bytes);
+        if(entry == null)
+        {
+            output.writeLong(IndexedDirectoryLicenseProvider.removed);
+        }
+        else
+        {
+            output.writeLong(entry.size);
+            output.write(entry.digest);
+        }
+    }
+
+    private static void move(final Path source, final Path target) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(final AtomicMoveNotSupportedException e)
+        {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static byte[] digest(final byte[] data)
+    {
+        try
+        {
+            return MessageDigest.getInstance(IndexedDirectoryLicenseProvider.digestAlgorithm).digest(data);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(IndexedDirectoryLicenseProvider.digestAlgorithm, e);
+        }
+    }
+
+    /**
+     * The size and digest of a license file, as recorded in the index.
+     */
+    private static final class IndexEntry
+    {
+        private final long size;
+
+        private final byte[] digest;
+
+        private IndexEntry(final long size, final byte[] digest)
+        {
+            this.size = size;
+            this.digest = digest;
+        }
+    }
+}
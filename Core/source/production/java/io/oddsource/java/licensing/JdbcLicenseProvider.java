@@ -0,0 +1,659 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * A {@link LicenseProvider} that retrieves serialized signed licenses from a table in a relational database. The table
+ * must have a character column holding the context, a binary column holding the serialized {@link SignedLicense} (as
+ * stored in files for a {@link FileLicenseProvider}), and a timestamp column holding the time each license was last
+ * changed. The names of the table and columns can be changed, but default to {@code licenses}, {@code context},
+ * {@code license} and {@code last_modified}.<br>
+ * <br>
+ * Each lookup runs one query through a prepared statement that is kept, along with its connection, in a small pool
+ * for the next lookup, so lookups do not prepare statements or open connections after the first few. The statements
+ * are closed by {@link #close()}. If a query fails on a pooled connection, which the database may have closed since it
+ * was last used, the idle statements are discarded and the query is retried once on a new connection.<br>
+ * <br>
+ * As a {@link PrefetchingLicenseProvider}, this provider retrieves the licenses for many contexts with one {@code IN}
+ * query for each {@link #setBatchSize(int) batch} of contexts, which {@link LicenseManager#getLicenses(Collection)}
+ * uses for bulk loads. And as an {@link ObservableLicenseProvider}, it
+ * reports the licenses that {@link #checkForChanges(long)} finds have changed, so that the {@link LicenseManager}
+ * drops them from its cache; applications call it periodically to refresh changed licenses incrementally.<br>
+ * <br>
+ * If the database cannot be reached or a query fails, lookups throw a {@link LicenseStoreException} rather than
+ * returning null, which would mean that there is no license. This provider is safe for use by multiple threads.<br>
+ * <br>
+ * This implementation assumes that license contexts (lookup keys) are always either strings or have a meaningful
+ * {@link Object#toString()} implementation.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class JdbcLicenseProvider extends DeserializingLicenseProvider
+    implements PrefetchingLicenseProvider, ObservableLicenseProvider, AutoCloseable
+{
+    /**
+     * The default number of contexts retrieved by each prefetch query.
+     */
+    public static final int defaultBatchSize = 500;
+
+    /**
+     * The default number of idle prepared statements (and their connections) kept for later lookups.
+     */
+    public static final int defaultMaximumIdleStatements = 8;
+
+    private static final Pattern identifier = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?");
+
+    private static final byte[] absent = new byte[0];
+
+    private final DataSource dataSource;
+
+    private final BlockingQueue<PooledStatement> idleStatements = new LinkedBlockingQueue<>();
+
+    private final Map<String, byte[]> prefetched = new ConcurrentHashMap<>();
+
+    private final List<LicenseChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile String tableName = "licenses";
+
+    private volatile String contextColumn = "context";
+
+    private volatile String licenseColumn = "license";
+
+    private volatile String lastModifiedColumn = "last_modified";
+
+    private volatile int batchSize = JdbcLicenseProvider.defaultBatchSize;
+
+    private volatile int maximumIdleStatements = JdbcLicenseProvider.defaultMaximumIdleStatements;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a JDBC license provider that gets its connections from the given data source.
+     *
+     * @param dataSource The data source for the database holding the licenses
+     */
+    public JdbcLicenseProvider(final DataSource dataSource)
+    {
+        if(dataSource == null)
+        {
+            throw new IllegalArgumentException("Argument dataSource cannot be null.");
+        }
+
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Gets the stored, still-encrypted, still-serialized license content and signature from the database, or from the
+     * licenses prefetched for the context, if any. Returns null (not an empty array) if no license is found.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license data.
+     *
+     * @throws LicenseStoreException if the license could not be retrieved from the database.
+     */
+    @Override
+    protected byte[] getLicenseData(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final String key = context.toString();
+
+        final byte[] prefetchedData = this.prefetched.remove(key);
+        if(prefetchedData != null)
+        {
+            return prefetchedData == JdbcLicenseProvider.absent ? null : prefetchedData;
+        }
+
+        return this.execute(
+            (statement) -> {
+                statement.statement.setString(1, key);
+                try(final ResultSet resultSet = statement.statement.executeQuery())
+                {
+                    return resultSet.next() ? resultSet.getBytes(1) : null;
+                }
+            },
+            "Failed to retrieve the license for context " + key + "."
+        );
+    }
+
+    /**
+     * Retrieves the licenses for the given contexts from the database with one query for each
+     * {@link #setBatchSize(int) batch} of contexts, and holds them for the next lookup of each context.
+     *
+     * @param contexts The contexts for which to prefetch the licenses
+     *
+     * @throws LicenseStoreException if the licenses could not be retrieved from the database.
+     */
+    @Override
+    public void prefetchLicenses(final Collection<?> contexts)
+    {
+        if(contexts == null)
+        {
+            throw new IllegalArgumentException("Argument contexts cannot be null.");
+        }
+
+        final List<String> keys = new ArrayList<>(new LinkedHashSet<>(JdbcLicenseProvider.toKeys(contexts)));
+        if(keys.isEmpty())
+        {
+            return;
+        }
+
+        final int batch = this.batchSize;
+        this.execute(
+            (statement) -> {
+                for(int start = 0; start < keys.size(); start += batch)
+                {
+                    final List<String> batchKeys = keys.subList(start, Math.min(start + batch, keys.size()));
+                    final Map<String, byte[]> found = this.queryBatch(statement.connection, batchKeys);
+                    for(final String key : batchKeys)
+                    {
+                        final byte[] data = found.get(key);
+                        this.prefetched.put(key, data == null ? JdbcLicenseProvider.absent : data);
+                    }
+                }
+                return null;
+            },
+            "Failed to prefetch the licenses."
+        );
+    }
+
+    /**
+     * Discards the licenses still held for the given contexts from an earlier call to
+     * {@link #prefetchLicenses(Collection)}, so that they are retrieved from the database when they are next looked up.
+     *
+     * @param contexts The contexts whose prefetched licenses should be discarded
+     */
+    @Override
+    public void discardPrefetchedLicenses(final Collection<?> contexts)
+    {
+        if(contexts == null)
+        {
+            throw new IllegalArgumentException("Argument contexts cannot be null.");
+        }
+
+        for(final String key : JdbcLicenseProvider.toKeys(contexts))
+        {
+            this.prefetched.remove(key);
+        }
+    }
+
+    /**
+     * Finds the licenses whose last modified time is after the given time, discards any prefetched copies of them,
+     * and notifies the {@link LicenseChangeListener}s that they have changed. Applications that want changes to take
+     * effect without waiting for the {@link LicenseManager}'s cache to expire call this periodically, passing the time
+     * of the previous call; because the times are compared by the database, allowing for some clock difference
+     * between the application and the database is wise. Licenses that were deleted are not found.
+     *
+     * @param since The time, in milliseconds since the epoch, after which changed licenses are found
+     *
+     * @return the contexts of the changed licenses.
+     *
+     * @throws LicenseStoreException if the changed licenses could not be found.
+     */
+    public Set<String> checkForChanges(final long since)
+    {
+        final Set<String> changed = new LinkedHashSet<>();
+
+        final String sql =
+            "SELECT " + this.contextColumn + " FROM " + this.tableName + " WHERE " + this.lastModifiedColumn + " > ?";
+        this.execute(
+            (statement) -> {
+                // a retry on another connection starts over
+                changed.clear();
+                try(final PreparedStatement query = statement.connection.prepareStatement(sql))
+                {
+                    query.setTimestamp(1, new Timestamp(since));
+                    try(final ResultSet resultSet = query.executeQuery())
+                    {
+                        while(resultSet.next())
+                        {
+                            changed.add(resultSet.getString(1));
+                        }
+                    }
+                }
+                return null;
+            },
+            "Failed to find the changed licenses."
+        );
+
+        for(final String key : changed)
+        {
+            this.prefetched.remove(key);
+            for(final LicenseChangeListener listener : this.listeners)
+            {
+                try
+                {
+                    listener.licenseChanged(key);
+                }
+                catch(final RuntimeException ignore)
+                {
+                    // one faulty listener must not keep the others from being notified
+                }
+            }
+        }
+
+        return Collections.unmodifiableSet(changed);
+    }
+
+    @Override
+    public void addLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        if(listener == null)
+        {
+            throw new IllegalArgumentException("Argument listener cannot be null.");
+        }
+
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Closes the idle prepared statements and their connections. Statements in use are closed when they are no longer
+     * in use. The provider can still be used afterward, but no longer keeps statements for later lookups.
+     */
+    @Override
+    public void close()
+    {
+        this.closed = true;
+        this.closeIdleStatements();
+    }
+
+    /**
+     * Gets the name of the table holding the licenses.
+     *
+     * @return the table name.
+     */
+    public String getTableName()
+    {
+        return this.tableName;
+    }
+
+    /**
+     * Sets the name of the table holding the licenses, optionally qualified with a schema name.
+     *
+     * @param tableName The table name
+     */
+    public void setTableName(final String tableName)
+    {
+        this.tableName = JdbcLicenseProvider.checkIdentifier(tableName, "tableName");
+        this.closeIdleStatements();
+    }
+
+    /**
+     * Gets the name of the column holding the license contexts.
+     *
+     * @return the context column name.
+     */
+    public String getContextColumn()
+    {
+        return this.contextColumn;
+    }
+
+    /**
+     * Sets the name of the column holding the license contexts.
+     *
+     * @param contextColumn The context column name
+     */
+    public void setContextColumn(final String contextColumn)
+    {
+        this.contextColumn = JdbcLicenseProvider.checkIdentifier(contextColumn, "contextColumn");
+        this.closeIdleStatements();
+    }
+
+    /**
+     * Gets the name of the column holding the serialized signed licenses.
+     *
+     * @return the license column name.
+     */
+    public String getLicenseColumn()
+    {
+        return this.licenseColumn;
+    }
+
+    /**
+     * Sets the name of the column holding the serialized signed licenses.
+     *
+     * @param licenseColumn The license column name
+     */
+    public void setLicenseColumn(final String licenseColumn)
+    {
+        this.licenseColumn = JdbcLicenseProvider.checkIdentifier(licenseColumn, "licenseColumn");
+        this.closeIdleStatements();
+    }
+
+    /**
+     * Gets the name of the column holding the time each license was last changed.
+     *
+     * @return the last modified column name.
+     */
+    public String getLastModifiedColumn()
+    {
+        return this.lastModifiedColumn;
+    }
+
+    /**
+     * Sets the name of the column holding the time each license was last changed.
+     *
+     * @param lastModifiedColumn The last modified column name
+     */
+    public void setLastModifiedColumn(final String lastModifiedColumn)
+    {
+        this.lastModifiedColumn = JdbcLicenseProvider.checkIdentifier(lastModifiedColumn, "lastModifiedColumn");
+    }
+
+    /**
+     * Gets the number of contexts retrieved by each prefetch query.
+     *
+     * @return the batch size.
+     */
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    /**
+     * Sets the number of contexts retrieved by each prefetch query. Some databases limit the number of parameters in
+     * a query, so this may need to be lowered for them.
+     *
+     * @param batchSize The batch size, which must be positive
+     */
+    public void setBatchSize(final int batchSize)
+    {
+        if(batchSize < 1)
+        {
+            throw new IllegalArgumentException("Argument batchSize must be positive.");
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the number of idle prepared statements (and their connections) kept for later lookups.
+     *
+     * @return the maximum number of idle statements.
+     */
+    public int getMaximumIdleStatements()
+    {
+        return this.maximumIdleStatements;
+    }
+
+    /**
+     * Sets the number of idle prepared statements (and their connections) kept for later lookups. Zero means that
+     * every lookup gets a new connection from the data source, which suits data sources that pool connections and
+     * statements themselves.
+     *
+     * @param maximumIdleStatements The maximum number of idle statements, which cannot be negative
+     */
+    public void setMaximumIdleStatements(final int maximumIdleStatements)
+    {
+        if(maximumIdleStatements < 0)
+        {
+            throw new IllegalArgumentException("Argument maximumIdleStatements cannot be negative.");
+        }
+
+        this.maximumIdleStatements = maximumIdleStatements;
+        while(this.idleStatements.size() > maximumIdleStatements)
+        {
+            final PooledStatement statement = this.idleStatements.poll();
+            if(statement != null)
+            {
+                statement.close();
+            }
+        }
+    }
+
+    private String getLookupQuery()
+    {
+        return "SELECT " + this.licenseColumn + " FROM " + this.tableName + " WHERE " + this.contextColumn + " = ?";
+    }
+
+    private Map<String, byte[]> queryBatch(final Connection connection, final List<String> keys) throws SQLException
+    {
+        final StringBuilder query = new StringBuilder();
+        query.append("SELECT ").append(this.contextColumn).append(", ").append(this.licenseColumn)
+             .append(" FROM ").append(this.tableName).append(" WHERE ").append(this.contextColumn).append(" IN (?");
+        for(int i = 1; i < keys.size(); i++)
+        {
+            query.append(", ?");
+        }
+        query.append(')');
+
+        final Map<String, byte[]> found = new HashMap<>(keys.size() * 4 / 3 + 1);
+        try(final PreparedStatement statement = connection.prepareStatement(query.toString()))
+        {
+            for(int i = 0; i < keys.size(); i++)
+            {
+                statement.setString(i + 1, keys.get(i));
+            }
+
+            try(final ResultSet resultSet = statement.executeQuery())
+            {
+                while(resultSet.next())
+                {
+                    found.put(resultSet.getString(1), resultSet.getBytes(2));
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Runs database work with a pooled statement and its connection, and returns the statement to the pool afterward.
+     * A pooled connection may have been closed by the database since it was last used (after a restart or an idle
+     * timeout, for example), in which case the other idle connections most likely were too, so if the work fails on a
+     * pooled statement, the idle statements are discarded and the work is retried once on a new connection.
+     *
+     * @param work The work to run
+     * @param failureMessage The message of the exception thrown if the work fails
+     * @param <T> The type of the work's result
+     *
+     * @return the result of the work.
+     *
+     * @throws LicenseStoreException if the work fails.
+     */
+    private <T> T execute(final StatementWork<T> work, final String failureMessage)
+    {
+        for(int attempt = 1; ; attempt++)
+        {
+            final PooledStatement statement = this.borrowStatement();
+            final T result;
+            try
+            {
+                result = work.run(statement);
+            }
+            catch(final SQLException e)
+            {
+                statement.close();
+                if(!statement.reused || attempt > 1)
+                {
+                    throw new LicenseStoreException(failureMessage, e);
+                }
+                this.closeIdleStatements();
+                continue;
+            }
+
+            this.releaseStatement(statement);
+
+            return result;
+        }
+    }
+
+    private PooledStatement borrowStatement()
+    {
+        final String query = this.getLookupQuery();
+
+        PooledStatement statement;
+        while((statement = this.idleStatements.poll()) != null)
+        {
+            if(statement.query.equals(query))
+            {
+                statement.reused = true;
+                return statement;
+            }
+            statement.close();
+        }
+
+        Connection connection = null;
+        try
+        {
+            connection = this.dataSource.getConnection();
+            return new PooledStatement(query, connection, connection.prepareStatement(query));
+        }
+        catch(final SQLException e)
+        {
+            JdbcLicenseProvider.closeQuietly(connection);
+            throw new LicenseStoreException("Failed to connect to the license database.", e);
+        }
+    }
+
+    private void releaseStatement(final PooledStatement statement)
+    {
+        if(this.closed || !statement.query.equals(this.getLookupQuery()) ||
+           this.idleStatements.size() >= this.maximumIdleStatements || !this.idleStatements.offer(statement))
+        {
+            statement.close();
+            return;
+        }
+
+        // the provider may have been closed while the statement was being returned
+        if(this.closed && this.idleStatements.remove(statement))
+        {
+            statement.close();
+        }
+    }
+
+    private void closeIdleStatements()
+    {
+        PooledStatement statement;
+        while((statement = this.idleStatements.poll()) != null)
+        {
+            statement.close();
+        }
+    }
+
+    private static List<String> toKeys(final Collection<?> contexts)
+    {
+        final List<String> keys = new ArrayList<>(contexts.size());
+        for(final Object context : contexts)
+        {
+            if(context == null)
+            {
+                throw new IllegalArgumentException("Argument contexts cannot contain null contexts.");
+            }
+            keys.add(context.toString());
+        }
+
+        return keys;
+    }
+
+    private static String checkIdentifier(final String name, final String argument)
+    {
+        if(name == null || !JdbcLicenseProvider.identifier.matcher(name).matches())
+        {
+            throw new IllegalArgumentException("Argument " + argument + " must be a valid SQL identifier.");
+        }
+
+        return name;
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable)
+    {
+        if(closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch(final Exception ignore)
+            {
+                // the connection or statement is being discarded anyway
+            }
+        }
+    }
+
+    /**
+     * Database work done with a pooled statement and its connection.
+     *
+     * @param <T> The type of the work's result
+     */
+    @FunctionalInterface
+    private interface StatementWork<T>
+    {
+        T run(PooledStatement statement) throws SQLException;
+    }
+
+    /**
+     * A prepared lookup statement and the connection it belongs to.
+     */
+    private static final class PooledStatement
+    {
+        private final String query;
+
+        private final Connection connection;
+
+        private final PreparedStatement statement;
+
+        // set when the statement is taken from the pool, which hands it from thread to thread safely
+        private boolean reused;
+
+        private PooledStatement(final String query, final Connection connection, final PreparedStatement statement)
+        {
+            this.query = query;
+            this.connection = connection;
+            this.statement = statement;
+        }
+
+        private void close()
+        {
+            JdbcLicenseProvider.closeQuietly(this.statement);
+            JdbcLicenseProvider.closeQuietly(this.connection);
+        }
+    }
+}
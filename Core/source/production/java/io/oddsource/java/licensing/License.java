@@ -15,7 +15,10 @@
  */
 package io.oddsource.java.licensing;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -156,6 +159,99 @@ public final class License implements Serializable, Cloneable
         return new License(parts);
     }
 
+    /**
+     * Deserializes a serialized license read from a character stream into an actual License object. Unlike
+     * {@link #deserialize(byte[])}, this never holds the entire serialized license in memory; each field is parsed as
+     * soon as it has been read, and each feature is added to the license as soon as it has been read. This makes it
+     * suitable for licenses with very large numbers of features. The reader is not closed.
+     *
+     * @param reader The reader to read the serialized data from
+     *
+     * @return the unserialized license.
+     *
+     * @throws IOException if reading from the reader fails.
+     */
+    protected static License deserialize(final Reader reader) throws IOException
+    {
+        final License.Builder builder = new License.Builder();
+        final StringBuilder part = new StringBuilder();
+        int partIndex = 0;
+        boolean hasFeatures = false;
+
+        // the opening bracket is skipped and one character is always held back so that the closing bracket is dropped
+        int previous = reader.read() < 0 ? -1 : reader.read();
+        int current;
+        while(previous >= 0 && (current = reader.read()) >= 0)
+        {
+            if(previous == ']' && current == '[')
+            {
+                if(partIndex == License.licensePartsFeatures)
+                {
+                    throw new IllegalArgumentException("There should be exactly nine parts to the serialized license.");
+                }
+
+                License.setPart(builder, partIndex++, part.toString());
+                part.setLength(0);
+                previous = reader.read();
+            }
+            else if(partIndex == License.licensePartsFeatures && previous == ',' && current == ' ')
+            {
+                builder.addFeature(License.Feature.fromString(part.toString()));
+                hasFeatures = true;
+                part.setLength(0);
+                previous = reader.read();
+            }
+            else
+            {
+                part.append((char) previous);
+                previous = current;
+            }
+        }
+
+        if(partIndex != License.licensePartsFeatures)
+        {
+            throw new IllegalArgumentException("There should be exactly nine parts to the serialized license.");
+        }
+
+        if(part.length() > 0 && (hasFeatures || part.toString().trim().length() > 0))
+        {
+            builder.addFeature(License.Feature.fromString(part.toString()));
+        }
+
+        return builder.build();
+    }
+
+    private static void setPart(final License.Builder builder, final int partIndex, final String part)
+    {
+        switch(partIndex)
+        {
+            case License.licensePartsProductKey:
+                builder.withProductKey(part);
+                break;
+            case License.licensePartsHolder:
+                builder.withHolder(part);
+                break;
+            case License.licensePartsIssuer:
+                builder.withIssuer(part);
+                break;
+            case License.licensePartsSubject:
+                builder.withSubject(part);
+                break;
+            case License.licensePartsIssueDate:
+                builder.withIssueDate(Long.parseLong(part));
+                break;
+            case License.licensePartsGoodAfterDate:
+                builder.withGoodAfterDate(Long.parseLong(part));
+                break;
+            case License.licensePartsGoodBeforeDate:
+                builder.withGoodBeforeDate(Long.parseLong(part));
+                break;
+            default:
+                builder.withNumberOfLicenses(Integer.parseInt(part));
+                break;
+        }
+    }
+
     /**
      * Returns the product key for this license. The productKey, {@link #getIssuer() issuer},
      * {@link #getHolder() holder}, and {@link #getSubject() subject} are symbolically named; they are interchangeable
@@ -462,6 +558,80 @@ public final class License implements Serializable, Cloneable
         return true;
     }
 
+    /**
+     * Checks each of the features specified against this license at once. Bit {@code i} of the returned set is set if
+     * {@code featureNames[i]} is licensed and valid. Any features that contain expiration dates are checked against
+     * the current date, which is read once for the whole batch.
+     *
+     * @param featureNames The features to check
+     *
+     * @return the set of indexes of the features that are licensed and valid.
+     */
+    public final BitSet checkFeatures(final String... featureNames)
+    {
+        return this.checkFeatures(System.currentTimeMillis(), featureNames);
+    }
+
+    /**
+     * Checks each of the features specified against this license at once. Bit {@code i} of the returned set is set if
+     * {@code featureNames[i]} is licensed and valid. Any features that contain expiration dates are checked against
+     * the provided date.
+     *
+     * @param currentDate The date (millisecond timestamp) to check features against
+     * @param featureNames The features to check
+     *
+     * @return the set of indexes of the features that are licensed and valid.
+     */
+    public final BitSet checkFeatures(final long currentDate, final String... featureNames)
+    {
+        final BitSet licensed = new BitSet(featureNames.length);
+        for(int i = 0; i < featureNames.length; i++)
+        {
+            if(this.hasLicenseForFeature(currentDate, featureNames[i]))
+            {
+                licensed.set(i);
+            }
+        }
+        return licensed;
+    }
+
+    /**
+     * Checks each of the features specified against this license at once. Bit {@code i} of the returned set is set if
+     * {@code features[i]} is licensed and valid. Any features that contain expiration dates are checked against the
+     * current date, which is read once for the whole batch.
+     *
+     * @param features The features to check
+     *
+     * @return the set of indexes of the features that are licensed and valid.
+     */
+    public final BitSet checkFeatures(final FeatureObject... features)
+    {
+        return this.checkFeatures(System.currentTimeMillis(), features);
+    }
+
+    /**
+     * Checks each of the features specified against this license at once. Bit {@code i} of the returned set is set if
+     * {@code features[i]} is licensed and valid. Any features that contain expiration dates are checked against the
+     * provided date.
+     *
+     * @param currentDate The date (millisecond timestamp) to check features against
+     * @param features The features to check
+     *
+     * @return the set of indexes of the features that are licensed and valid.
+     */
+    public final BitSet checkFeatures(final long currentDate, final FeatureObject... features)
+    {
+        final BitSet licensed = new BitSet(features.length);
+        for(int i = 0; i < features.length; i++)
+        {
+            if(this.hasLicenseForFeature(currentDate, features[i]))
+            {
+                licensed.set(i);
+            }
+        }
+        return licensed;
+    }
+
     /**
      * Checks whether the provided license object is identical to this one in content, features and expiration dates,
      * deeply.
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of retrieving the licenses for many contexts at once with
+ * {@link LicenseManager#getLicenses(java.util.Collection)} or of warming up the license manager with
+ * {@link LicenseManager#warmUp(java.util.Collection)}. Every context appears exactly once, either in
+ * {@link #getLicenses()} or in {@link #getFailures()}, so that a problem with one license does not prevent the rest
+ * from being retrieved.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class LicenseBatchResult
+{
+    private final Map<Object, License> licenses;
+
+    private final Map<Object, RuntimeException> failures;
+
+    private final long durationInMilliseconds;
+
+    /**
+     * Constructor.
+     *
+     * @param licenses The licenses that were retrieved, by context
+     * @param failures The exceptions thrown while retrieving licenses, by context
+     * @param durationInMilliseconds How long the whole operation took
+     */
+    LicenseBatchResult(
+        final Map<Object, License> licenses, final Map<Object, RuntimeException> failures,
+        final long durationInMilliseconds
+    )
+    {
+        this.licenses = Collections.unmodifiableMap(licenses);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.durationInMilliseconds = durationInMilliseconds;
+    }
+
+    /**
+     * Gets the licenses that were retrieved successfully, in the order the contexts were given. A context that has no
+     * license is mapped to null.
+     *
+     * @return an unmodifiable map of contexts to their licenses.
+     */
+    public final Map<Object, License> getLicenses()
+    {
+        return this.licenses;
+    }
+
+    /**
+     * Gets the exceptions thrown while retrieving licenses, such as {@link
+     * io.oddsource.java.licensing.exception.InvalidSignatureException}, in the order the contexts were given.
+     *
+     * @return an unmodifiable map of contexts to the exceptions thrown while retrieving their licenses.
+     */
+    public final Map<Object, RuntimeException> getFailures()
+    {
+        return this.failures;
+    }
+
+    /**
+     * Indicates whether the license for any context could not be retrieved.
+     *
+     * @return {@code true} if there are any failures, {@code false} otherwise.
+     */
+    public final boolean hasFailures()
+    {
+        return !this.failures.isEmpty();
+    }
+
+    /**
+     * Gets how long the whole operation took, from the start of the call until every license was retrieved or had
+     * failed (and, for a warm-up, until the warm-up was complete).
+     *
+     * @return the duration in milliseconds.
+     */
+    public final long getDurationInMilliseconds()
+    {
+        return this.durationInMilliseconds;
+    }
+}
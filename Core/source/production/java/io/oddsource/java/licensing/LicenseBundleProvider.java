@@ -0,0 +1,390 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link LicenseProvider} that reads licenses for many contexts from a single bundle file, such as one distributed
+ * with the licenses for an entire fleet of customers. Opening one bundle is far cheaper at startup than opening one
+ * file per context, as with {@link FileLicenseProvider}.<br>
+ * <br>
+ * The bundle is memory-mapped when the provider is constructed and is never opened again, so looking up a license
+ * does not open or read any file; the operating system pages in the parts of the bundle that are used. The bundle
+ * contains a header, an index of the contexts sorted by their UTF-8 bytes, the contexts themselves, and the serialized
+ * signed licenses one after another. Lookups binary-search the index, so they take logarithmic time without decoding
+ * any context but the ones compared. Bundles are written with {@link #writeBundle(File, Map)} and cannot be larger
+ * than 2 GiB.<br>
+ * <br>
+ * This implementation assumes that license contexts (lookup keys) are always either strings or have a meaningful
+ * {@link Object#toString()} implementation.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class LicenseBundleProvider extends DeserializingLicenseProvider
+{
+    private static final int bundleMagic = 0x4C424E44;
+
+    private static final byte bundleVersion = 1;
+
+    private static final int headerLength = 9;
+
+    private static final int indexEntryLength = 16;
+
+    private final ByteBuffer bundle;
+
+    private final int count;
+
+    /**
+     * Constructs a license bundle provider that memory-maps the given bundle file and checks its index.
+     *
+     * @param file The bundle file
+     *
+     * @throws IOException if the bundle cannot be read, is larger than 2 GiB, or is not a valid bundle.
+     */
+    public LicenseBundleProvider(final File file) throws IOException
+    {
+        if(file == null)
+        {
+            throw new IllegalArgumentException("Argument file cannot be null.");
+        }
+
+        final MappedByteBuffer mapped;
+        try(final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if(channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("The license bundle " + file + " is larger than 2 GiB.");
+            }
+
+            // the mapping remains valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        }
+
+        this.bundle = mapped.asReadOnlyBuffer();
+        this.count = LicenseBundleProvider.checkBundle(this.bundle, file);
+    }
+
+    /**
+     * Gets the stored, still-encrypted, still-serialized license content and signature from the bundle. Returns null
+     * (not an empty array) if the bundle has no license for the context.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license data.
+     */
+    @Override
+    protected byte[] getLicenseData(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final byte[] key = context.toString().getBytes(LicensingCharsets.UTF_8);
+
+        int low = 0;
+        int high = this.count - 1;
+        while(low <= high)
+        {
+            final int middle = (low + high) >>> 1;
+            final int entry = LicenseBundleProvider.headerLength + middle * LicenseBundleProvider.indexEntryLength;
+            final int comparison = this.compareKey(entry, key);
+            if(comparison < 0)
+            {
+                low = middle + 1;
+            }
+            else if(comparison > 0)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                final byte[] data = new byte[this.bundle.getInt(entry + 12)];
+
+                // absolute bulk reads are not available, so each lookup reads through its own view of the bundle
+                final ByteBuffer view = this.bundle.duplicate();
+                view.position(this.bundle.getInt(entry + 8));
+                view.get(data);
+
+                return data;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the number of licenses in the bundle.
+     *
+     * @return the number of licenses.
+     */
+    public int getLicenseCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Gets the contexts of every license in the bundle, in the order of their UTF-8 bytes.
+     *
+     * @return an unmodifiable list of the contexts.
+     */
+    public List<String> getContexts()
+    {
+        final List<String> contexts = new ArrayList<>(this.count);
+        final ByteBuffer view = this.bundle.duplicate();
+        for(int i = 0; i < this.count; i++)
+        {
+            final int entry = LicenseBundleProvider.headerLength + i * LicenseBundleProvider.indexEntryLength;
+            final byte[] key = new byte[this.bundle.getInt(entry + 4)];
+            view.position(this.bundle.getInt(entry));
+            view.get(key);
+            contexts.add(new String(key, LicensingCharsets.UTF_8));
+        }
+
+        return Collections.unmodifiableList(contexts);
+    }
+
+    /**
+     * Writes a license bundle containing the given licenses, replacing the file if it exists. The bundle is written to
+     * a temporary file in the same directory, which then replaces the file atomically, so providers that have the old
+     * bundle mapped keep reading it intact and providers constructed afterwards see the new bundle. On systems that do
+     * not allow a file to be replaced while it is mapped, such as Windows, this fails while the old bundle is in use.
+     *
+     * @param file The bundle file to write
+     * @param licenses The signed licenses, keyed by context
+     *
+     * @throws IOException if the bundle cannot be written or would be larger than 2 GiB.
+     */
+    public static void writeBundle(final File file, final Map<?, SignedLicense> licenses) throws IOException
+    {
+        if(file == null)
+        {
+            throw new IllegalArgumentException("Argument file cannot be null.");
+        }
+        if(licenses == null)
+        {
+            throw new IllegalArgumentException("Argument licenses cannot be null.");
+        }
+
+        final List<BundleEntry> entries = new ArrayList<>(licenses.size());
+        final ObjectSerializer serializer = new ObjectSerializer();
+        for(final Map.Entry<?, SignedLicense> license : licenses.entrySet())
+        {
+            if(license.getKey() == null || license.getValue() == null)
+            {
+                throw new IllegalArgumentException("Argument licenses cannot contain null contexts or licenses.");
+            }
+
+            entries.add(new BundleEntry(
+                license.getKey().toString().getBytes(LicensingCharsets.UTF_8),
+                serializer.writeObject(license.getValue())
+            ));
+        }
+        Collections.sort(entries);
+
+        long length = LicenseBundleProvider.headerLength + (long) entries.size() *
+                                                           LicenseBundleProvider.indexEntryLength;
+        for(int i = 0; i < entries.size(); i++)
+        {
+            if(i > 0 && entries.get(i).compareTo(entries.get(i - 1)) == 0)
+            {
+                throw new IllegalArgumentException(
+                    "Argument licenses contains more than one license for context " +
+                    new String(entries.get(i).key, LicensingCharsets.UTF_8) + "."
+                );
+            }
+            length += entries.get(i).key.length + entries.get(i).data.length;
+        }
+        if(length > Integer.MAX_VALUE)
+        {
+            throw new IOException("The license bundle would be larger than 2 GiB.");
+        }
+
+        final Path target = file.getAbsoluteFile().toPath();
+        final Path temporary = Files.createTempFile(target.getParent(), "licenses", ".tmp");
+        try
+        {
+            LicenseBundleProvider.writeBundle(temporary, entries);
+            try
+            {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch(final AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeBundle(final Path file, final List<BundleEntry> entries) throws IOException
+    {
+        try(final DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(file))
+        ))
+        {
+            output.writeInt(LicenseBundleProvider.bundleMagic);
+            output.writeByte(LicenseBundleProvider.bundleVersion);
+            output.writeInt(entries.size());
+
+            int keyOffset = LicenseBundleProvider.headerLength + entries.size() *
+                                                                 LicenseBundleProvider.indexEntryLength;
+            int dataOffset = keyOffset;
+            for(final BundleEntry entry : entries)
+            {
+                dataOffset += entry.key.length;
+            }
+            for(final BundleEntry entry : entries)
+            {
+                output.writeInt(keyOffset);
+                output.writeInt(entry.key.length);
+                output.writeInt(dataOffset);
+                output.writeInt(entry.data.length);
+                keyOffset += entry.key.length;
+                dataOffset += entry.data.length;
+            }
+
+            for(final BundleEntry entry : entries)
+            {
+                output.write(entry.key);
+            }
+            for(final BundleEntry entry : entries)
+            {
+                output.write(entry.data);
+            }
+        }
+    }
+
+    /**
+     * Compares the context of the index entry at the given position with the given context, by unsigned bytes.
+     *
+     * @param entry The position of the index entry
+     * @param key The UTF-8 bytes of the context
+     *
+     * @return a negative number, zero or a positive number as the entry is less than, equal to or greater than the
+     *     context.
+     */
+    private int compareKey(final int entry, final byte[] key)
+    {
+        final int offset = this.bundle.getInt(entry);
+        final int length = this.bundle.getInt(entry + 4);
+        for(int i = 0; i < length && i < key.length; i++)
+        {
+            final int comparison = (this.bundle.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if(comparison != 0)
+            {
+                return comparison;
+            }
+        }
+
+        return length - key.length;
+    }
+
+    /**
+     * Checks the header of a bundle, and that every context and license in its index lies within the bundle, so that
+     * lookups never read outside the bundle.
+     *
+     * @param bundle The bundle
+     * @param file The bundle file, for error messages
+     *
+     * @return the number of licenses in the bundle.
+     *
+     * @throws IOException if the bundle is not valid.
+     */
+    private static int checkBundle(final ByteBuffer bundle, final File file) throws IOException
+    {
+        final int limit = bundle.limit();
+        if(limit < LicenseBundleProvider.headerLength || bundle.getInt(0) != LicenseBundleProvider.bundleMagic ||
+           bundle.get(4) != LicenseBundleProvider.bundleVersion)
+        {
+            throw new IOException("The file " + file + " is not a license bundle.");
+        }
+
+        final int count = bundle.getInt(5);
+        if(count < 0 || count > (limit - LicenseBundleProvider.headerLength) / LicenseBundleProvider.indexEntryLength)
+        {
+            throw new IOException("The license bundle " + file + " is corrupt.");
+        }
+
+        for(int i = 0; i < count; i++)
+        {
+            final int entry = LicenseBundleProvider.headerLength + i * LicenseBundleProvider.indexEntryLength;
+            final int keyOffset = bundle.getInt(entry);
+            final int keyLength = bundle.getInt(entry + 4);
+            final int dataOffset = bundle.getInt(entry + 8);
+            final int dataLength = bundle.getInt(entry + 12);
+            if(keyOffset < 0 || keyLength < 0 || keyLength > limit - keyOffset ||
+               dataOffset < 0 || dataLength < 0 || dataLength > limit - dataOffset)
+            {
+                throw new IOException("The license bundle " + file + " is corrupt.");
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * A context and its serialized license, ordered by the unsigned bytes of the context.
+     */
+    private static final class BundleEntry implements Comparable<BundleEntry>
+    {
+        private final byte[] key;
+
+        private final byte[] data;
+
+        private BundleEntry(final byte[] key, final byte[] data)
+        {
+            this.key = key;
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(final BundleEntry other)
+        {
+            for(int i = 0; i < this.key.length && i < other.key.length; i++)
+            {
+                final int comparison = (this.key[i] & 0xFF) - (other.key[i] & 0xFF);
+                if(comparison != 0)
+                {
+                    return comparison;
+                }
+            }
+
+            return this.key.length - other.key.length;
+        }
+    }
+}
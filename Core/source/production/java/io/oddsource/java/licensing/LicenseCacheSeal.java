@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Set;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * Seals verified licenses that are kept outside of the license manager's memory (see {@link PersistentLicenseCache}
+ * and {@link SharedLicenseCache}) with an HMAC-SHA256, so that they can be trusted when they are read back without
+ * verifying their signatures again. The MAC key is derived from a random secret generated when the cache is first
+ * used and kept in a key file next to it, together with the license password and the public key data, and each MAC
+ * covers the cache key of the signed license the license came from. A sealed license is therefore only accepted for
+ * the exact signed license, public key and password it was verified with, by a process that can read the key
+ * file.<br>
+ * <br>
+ * The seal is only as strong as the permissions on the cache: the public key data and the password ship with the
+ * application, so anyone who can read the key file can forge entries, and anyone who can write to the directory
+ * holding the cache can replace the key file and then the entries, changing the licenses the application sees. The
+ * key file is created readable only by its owner (and group, for a cache that processes of several users share) on
+ * file systems that support POSIX permissions, and the directory must be writable only by the users the
+ * application runs as.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class LicenseCacheSeal
+{
+    /**
+     * The length of a MAC, in bytes.
+     */
+    static final int macLength = 32;
+
+    /**
+     * The length of the random secret kept in a key file, in bytes.
+     */
+    static final int secretLength = 32;
+
+    private static final String digestAlgorithm = "SHA-256";
+
+    private static final String macAlgorithm = "HmacSHA256";
+
+    private static final byte[] keyDerivationLabel = "verified license cache".getBytes(LicensingCharsets.UTF_8);
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final SecretKeySpec macKey;
+
+    /**
+     * Constructor.
+     *
+     * @param secret The random secret, {@link #secretLength} bytes long
+     * @param publicKeyData The (encrypted) public key data that licenses are verified with
+     * @param password The license password
+     */
+    LicenseCacheSeal(final byte[] secret, final byte[] publicKeyData, final char[] password)
+    {
+        if(secret == null || secret.length != LicenseCacheSeal.secretLength)
+        {
+            throw new IllegalArgumentException("Parameter secret must be " + LicenseCacheSeal.secretLength +
+                                               " bytes long.");
+        }
+
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(LicenseCacheSeal.digestAlgorithm);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(LicenseCacheSeal.digestAlgorithm, e);
+        }
+
+        final byte[] publicKeyDigest = digest.digest(publicKeyData);
+
+        final ByteBuffer passwordBytes = LicensingCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        final byte[] passwordArray = new byte[passwordBytes.remaining()];
+        passwordBytes.get(passwordArray);
+
+        digest.update(LicenseCacheSeal.keyDerivationLabel);
+        digest.update(secret);
+        digest.update(publicKeyDigest);
+        digest.update(passwordArray);
+        final byte[] key = digest.digest();
+
+        this.macKey = new SecretKeySpec(key, LicenseCacheSeal.macAlgorithm);
+
+        Arrays.fill(key, (byte) 0);
+        Arrays.fill(passwordArray, (byte) 0);
+        if(passwordBytes.hasArray())
+        {
+            Arrays.fill(passwordBytes.array(), (byte) 0);
+        }
+    }
+
+    /**
+     * Reads the random secret from a key file, first generating it and creating the file with the given permissions
+     * if the file does not exist. When several processes create the file at once, they all end up using the secret
+     * that is in the file afterwards.
+     *
+     * @param keyFile The key file
+     * @param permissions The POSIX permissions of a new key file, such as {@code rw-------}, which are ignored on file
+     *     systems that do not support them
+     *
+     * @return the secret, {@link #secretLength} bytes long.
+     *
+     * @throws IOException if the key file cannot be read or created, or does not hold a secret.
+     */
+    static byte[] readOrCreateSecret(final Path keyFile, final String permissions) throws IOException
+    {
+        try
+        {
+            return LicenseCacheSeal.readSecret(keyFile);
+        }
+        catch(final NoSuchFileException ignore)
+        {
+            // this is the first use of the cache
+        }
+
+        final Path directory = keyFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        final byte[] secret = new byte[LicenseCacheSeal.secretLength];
+        LicenseCacheSeal.random.nextBytes(secret);
+
+        final Set<PosixFilePermission> posixPermissions;
+        final Path temporary;
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            posixPermissions = PosixFilePermissions.fromString(permissions);
+            temporary = Files.createTempFile(
+                directory, "seal", ".tmp", PosixFilePermissions.asFileAttribute(posixPermissions)
+            );
+        }
+        else
+        {
+            posixPermissions = null;
+            temporary = Files.createTempFile(directory, "seal", ".tmp");
+        }
+
+        try
+        {
+            if(posixPermissions != null)
+            {
+                // the umask may have taken away permissions that the processes sharing the cache need
+                Files.setPosixFilePermissions(temporary, posixPermissions);
+            }
+            Files.write(temporary, secret);
+            Files.move(temporary, keyFile);
+        }
+        catch(final FileAlreadyExistsException ignore)
+        {
+            // another process created it first, and its secret is used instead
+        }
+        finally
+        {
+            Arrays.fill(secret, (byte) 0);
+            Files.deleteIfExists(temporary);
+        }
+
+        return LicenseCacheSeal.readSecret(keyFile);
+    }
+
+    private static byte[] readSecret(final Path keyFile) throws IOException
+    {
+        final byte[] secret = Files.readAllBytes(keyFile);
+        if(secret.length != LicenseCacheSeal.secretLength)
+        {
+            Arrays.fill(secret, (byte) 0);
+            throw new IOException("The license cache key file " + keyFile + " is not valid.");
+        }
+
+        return secret;
+    }
+
+    /**
+     * Computes the MAC of sealed data.
+     *
+     * @param key The cache key of the signed license the data came from
+     * @param data The array containing the data
+     * @param offset The offset of the data in the array
+     * @param length The length of the data
+     *
+     * @return the MAC, {@link #macLength} bytes long.
+     */
+    byte[] seal(final String key, final byte[] data, final int offset, final int length)
+    {
+        final Mac mac;
+        try
+        {
+            mac = Mac.getInstance(LicenseCacheSeal.macAlgorithm);
+            mac.init(this.macKey);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(LicenseCacheSeal.macAlgorithm, e);
+        }
+        catch(final InvalidKeyException e)
+        {
+            throw new IllegalStateException("The cache MAC key is not valid.", e);
+        }
+
+        mac.update(key.getBytes(LicensingCharsets.UTF_8));
+        mac.update(data, offset, length);
+
+        return mac.doFinal();
+    }
+
+    /**
+     * Checks the MAC of sealed data in constant time.
+     *
+     * @param key The cache key of the signed license the data came from
+     * @param data The array containing the data and, directly after it, the MAC
+     * @param offset The offset of the data in the array
+     * @param length The length of the data
+     *
+     * @return {@code true} if the MAC is correct.
+     */
+    boolean isSealed(final String key, final byte[] data, final int offset, final int length)
+    {
+        if(offset + length + LicenseCacheSeal.macLength > data.length)
+        {
+            return false;
+        }
+
+        final byte[] expected = this.seal(key, data, offset, length);
+        final byte[] actual = Arrays.copyOfRange(
+            data, offset + length, offset + length + LicenseCacheSeal.macLength
+        );
+
+        return MessageDigest.isEqual(expected, actual);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+/**
+ * A listener notified when the stored license for a context changes, so that any copy of it held in memory can be
+ * discarded. See {@link ObservableLicenseProvider}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface LicenseChangeListener
+{
+    /**
+     * Called when the stored license for the given context has been created, modified or deleted. This may be called
+     * on any thread and must not block.
+     *
+     * @param context The context whose license changed
+     */
+    public abstract void licenseChanged(Object context);
+}
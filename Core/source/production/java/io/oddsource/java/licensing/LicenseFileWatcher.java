@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches the directories containing license files with a {@link WatchService} and reports changes to the files
+ * through a {@link LicenseChangeListener}. Each license file is mapped to the contexts that were used to look it up,
+ * so that the listener is given the same context objects the license manager caches licenses under. Events are
+ * received on a single daemon thread.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class LicenseFileWatcher
+{
+    private final LicenseChangeListener listener;
+
+    private final WatchService watchService;
+
+    private final Map<Path, Set<Object>> contexts = new ConcurrentHashMap<>();
+
+    private final Map<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor. Starts the thread that receives events.
+     *
+     * @param listener The listener to notify of changed licenses
+     *
+     * @throws IOException if the watch service could not be created.
+     */
+    LicenseFileWatcher(final LicenseChangeListener listener) throws IOException
+    {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        final Thread thread = new Thread(this::receiveEvents, "LicenseFileWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the given license file for changes on behalf of the given context. Files that are not on the
+     * default file system, or whose directories do not exist, are not watched.
+     *
+     * @param context The context the file was looked up for
+     * @param file The license file, which need not exist yet
+     */
+    void watch(final Object context, final File file)
+    {
+        final Path path = file.toPath().toAbsolutePath().normalize();
+        final Path directory = path.getParent();
+        if(directory == null || !Files.isDirectory(directory))
+        {
+            return;
+        }
+
+        this.contexts.computeIfAbsent(path, (key) -> ConcurrentHashMap.newKeySet()).add(context);
+
+        if(!this.directories.containsKey(directory))
+        {
+            try
+            {
+                this.directories.put(directory, directory.register(
+                    this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE
+                ));
+            }
+            catch(final IOException | ClosedWatchServiceException ignore)
+            {
+                // the license manager's cache time still applies to files that cannot be watched
+            }
+        }
+    }
+
+    /**
+     * Stops watching all files and ends the thread that receives events.
+     */
+    void close()
+    {
+        try
+        {
+            this.watchService.close();
+        }
+        catch(final IOException ignore)
+        {
+        }
+    }
+
+    private void receiveEvents()
+    {
+        while(true)
+        {
+            final WatchKey key;
+            try
+            {
+                key = this.watchService.take();
+            }
+            catch(final InterruptedException | ClosedWatchServiceException e)
+            {
+                return;
+            }
+
+            final Path directory = (Path) key.watchable();
+            for(final WatchEvent<?> event : key.pollEvents())
+            {
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    // some events were lost, so any file in the directory may have changed
+                    for(final Map.Entry<Path, Set<Object>> entry : this.contexts.entrySet())
+                    {
+                        if(directory.equals(entry.getKey().getParent()))
+                        {
+                            this.notifyListener(entry.getValue());
+                        }
+                    }
+                }
+                else
+                {
+                    this.notifyListener(this.contexts.get(directory.resolve((Path) event.context())));
+                }
+            }
+
+            if(!key.reset())
+            {
+                this.directories.remove(directory);
+            }
+        }
+    }
+
+    private void notifyListener(final Set<Object> changed)
+    {
+        if(changed != null)
+        {
+            for(final Object context : changed)
+            {
+                try
+                {
+                    this.listener.licenseChanged(context);
+                }
+                catch(final RuntimeException ignore)
+                {
+                    // one misbehaving listener must not stop the watcher
+                }
+            }
+        }
+    }
+}
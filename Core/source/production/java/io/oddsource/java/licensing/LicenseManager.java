@@ -15,15 +15,42 @@
  */
 package io.oddsource.java.licensing;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.lang.reflect.AnnotatedElement;
+import java.nio.file.Path;
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Hashtable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.oddsource.java.licensing.encryption.Encryptor;
 import io.oddsource.java.licensing.encryption.KeyFileUtilities;
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
 import io.oddsource.java.licensing.encryption.PublicKeyDataProvider;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithms;
 import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
 import io.oddsource.java.licensing.exception.CorruptSignatureException;
 import io.oddsource.java.licensing.exception.ExpiredLicenseException;
@@ -34,6 +61,7 @@ import io.oddsource.java.licensing.exception.InsecureEnvironmentError;
 import io.oddsource.java.licensing.exception.InvalidLicenseException;
 import io.oddsource.java.licensing.exception.InvalidSignatureException;
 import io.oddsource.java.licensing.exception.KeyNotFoundException;
+import io.oddsource.java.licensing.exception.LicenseStoreException;
 import io.oddsource.java.licensing.exception.ObjectTypeNotExpectedException;
 
 /**
@@ -49,7 +77,18 @@ import io.oddsource.java.licensing.exception.ObjectTypeNotExpectedException;
  * then the maximum cache object age is set to 10 seconds by default. The advantage of using a longer cache age is
  * increased client application performance, especially with multi-tenant SaaS applications with high load. The
  * disadvantage is decreased security, although that security concern is almost completely mitigated by the presence of
- * the {@link LicenseSecurityManager}.<br>
+ * the {@link LicenseSecurityManager}. Cached licenses are read without locking, and when several threads ask for the
+ * same uncached context at once only one of them retrieves the license while the others wait for its result. If the
+ * license provider throws a {@link LicenseStoreException} because its store is unavailable, the license last verified
+ * for the context, if any, is returned instead, even if it has expired from the cache, as long as it expired less than
+ * the {@link LicenseManagerProperties#setStaleCacheTimeInMinutes(int) stale cache time} ago; wrapping the provider in
+ * a {@link ResilientLicenseProvider} also bounds how long and how many retrievals can wait on the store.<br>
+ * <br>
+ * Every method that retrieves a license has an asynchronous variant (such as {@link #getLicenseAsync(Object)}) that
+ * returns a {@link CompletableFuture}. If the license is already cached, the future is completed before the method
+ * returns, on the calling thread; otherwise the license is loaded on the
+ * {@link LicenseManagerProperties#setAsynchronousExecutor(Executor) configured executor}, so that threads that must
+ * never block, such as event loop threads, can check licenses safely.<br>
  * <br>
  * This security manager is one of the most integral pieces to the license manager. It prevents reflection attacks from
  * disabling or compromising the security features in this product. It is instantiated when {@code createInstance} is
@@ -68,7 +107,18 @@ public final class LicenseManager
 
     private static final int millisecondsPerMinute = 60 * 1000;
 
-    private static LicenseManager instance;
+    private static final long defaultStaleTimeInMillis = 24L * 60L * 60L * 1000L;
+
+    private static final int defaultWarmUpIterations = 10000;
+
+    private static final int derivedKeyCacheSize = 8;
+
+    // more than enough to recognize the header of an authenticated payload
+    private static final int payloadPeekLength = 16;
+
+    private static final Lock instanceLock = new ReentrantLock();
+
+    private static volatile LicenseManager instance;
 
     private final PublicKeyDataProvider publicKeyDataProvider;
 
@@ -82,7 +132,32 @@ public final class LicenseManager
 
     private final int cacheTimeInMilliseconds;
 
-    private final Hashtable<Object, LicenseCacheEntry> licenseCache = new Hashtable<>();
+    private final long staleTimeInMilliseconds;
+
+    private final PasswordDerivedKey licenseKey;
+
+    private final DerivedKeyCache derivedKeyCache = new DerivedKeyCache(LicenseManager.derivedKeyCacheSize);
+
+    private final ConcurrentHashMap<Object, LicenseCacheEntry> licenseCache = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Object, CompletableFuture<License>> licenseLoads = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Object, Long> licenseGenerations = new ConcurrentHashMap<>();
+
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    private final ConcurrentHashMap<SignatureAlgorithm, DataSignatureManager> signatureManagers =
+        new ConcurrentHashMap<>();
+
+    private final VerifiedLicenseCache verifiedLicenseCache;
+
+    private final PersistentLicenseCache persistentLicenseCache;
+
+    private final SharedLicenseCache sharedLicenseCache;
+
+    private final Executor asynchronousExecutor;
+
+    private volatile long nextCacheSweep;
 
     private LicenseManager()
     {
@@ -123,6 +198,98 @@ public final class LicenseManager
         this.cacheTimeInMilliseconds = cacheTimeInMinutes < 1 ?
                                        LicenseManager.defaultCacheTimeInMillis :
                                        (cacheTimeInMinutes * LicenseManager.millisecondsPerMinute);
+        this.staleTimeInMilliseconds = LicenseManagerProperties.getStaleCacheTimeInMinutes() < 1 ?
+                                       LicenseManager.defaultStaleTimeInMillis :
+                                       (LicenseManagerProperties.getStaleCacheTimeInMinutes() *
+                                        (long) LicenseManager.millisecondsPerMinute);
+
+        this.asynchronousExecutor = LicenseManagerProperties.getAsynchronousExecutor();
+        this.verifiedLicenseCache = LicenseManagerProperties.getVerifiedLicenseCacheSize() < 1 ?
+                                    null :
+                                    new VerifiedLicenseCache(LicenseManagerProperties.getVerifiedLicenseCacheSize());
+
+        // derive the license key up front, if possible, so that the cost never lands on license requests
+        if(LicenseManagerProperties.getLicenseKeySalt() != null)
+        {
+            final char[] password = this.licensePasswordProvider.getPassword();
+            this.licenseKey = PasswordDerivedKey.derive(
+                password,
+                LicenseManagerProperties.getLicenseKeySalt(),
+                LicenseManagerProperties.getLicenseKeyIterations()
+            );
+            Arrays.fill(password, '\u0000');
+        }
+        else
+        {
+            this.licenseKey = null;
+        }
+
+        this.persistentLicenseCache = this.openPersistentLicenseCache();
+        this.sharedLicenseCache = this.openSharedLicenseCache();
+
+        if(this.licenseProvider instanceof ObservableLicenseProvider)
+        {
+            ((ObservableLicenseProvider) this.licenseProvider).addLicenseChangeListener(this::clearLicenseCache);
+        }
+    }
+
+    private PersistentLicenseCache openPersistentLicenseCache()
+    {
+        final File directory = LicenseManagerProperties.getVerifiedLicenseCacheDirectory();
+        if(directory == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new PersistentLicenseCache(directory, this.createLicenseCacheSeal(
+                PersistentLicenseCache.getKeyFile(directory), PersistentLicenseCache.keyFilePermissions
+            ));
+        }
+        catch(final IOException ignore)
+        {
+            // the persistent cache only saves work, so licenses are verified without it
+            return null;
+        }
+    }
+
+    private SharedLicenseCache openSharedLicenseCache()
+    {
+        final File file = LicenseManagerProperties.getSharedLicenseCacheFile();
+        if(file == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new SharedLicenseCache(file, this.createLicenseCacheSeal(
+                SharedLicenseCache.getKeyFile(file), SharedLicenseCache.keyFilePermissions
+            ));
+        }
+        catch(final IOException ignore)
+        {
+            // like the other caches, the shared cache only saves work, so licenses are verified without it
+            return null;
+        }
+    }
+
+    private LicenseCacheSeal createLicenseCacheSeal(final Path keyFile, final String permissions) throws IOException
+    {
+        final byte[] secret = LicenseCacheSeal.readOrCreateSecret(keyFile, permissions);
+        final char[] password = this.licensePasswordProvider.getPassword();
+        final byte[] keyData = this.publicKeyDataProvider.getEncryptedPublicKeyData();
+        try
+        {
+            return new LicenseCacheSeal(secret, keyData, password);
+        }
+        finally
+        {
+            Arrays.fill(secret, (byte) 0);
+            Arrays.fill(password, '\u0000');
+            Arrays.fill(keyData, (byte) 0);
+        }
     }
 
     /**
@@ -138,14 +305,29 @@ public final class LicenseManager
      * @throws InsecureEnvironmentError if the {@link LicenseSecurityManager} cannot be instantiated
      * @see LicenseSecurityManager for more information on the security features that protect the license manager
      */
-    public static synchronized LicenseManager getInstance()
+    public static LicenseManager getInstance()
     {
-        if(LicenseManager.instance == null)
+        LicenseManager manager = LicenseManager.instance;
+        if(manager != null)
         {
-            LicenseManager.instance = new LicenseManager();
+            return manager;
         }
 
-        return LicenseManager.instance;
+        // a lock rather than a monitor, because the providers called while constructing the manager may block
+        LicenseManager.instanceLock.lock();
+        try
+        {
+            if(LicenseManager.instance == null)
+            {
+                LicenseManager.instance = new LicenseManager();
+            }
+
+            return LicenseManager.instance;
+        }
+        finally
+        {
+            LicenseManager.instanceLock.unlock();
+        }
     }
 
     /**
@@ -165,6 +347,14 @@ public final class LicenseManager
         }
     }
 
+    private void validateLicense(final License license, final long time) throws InvalidLicenseException
+    {
+        if(this.licenseValidator != null)
+        {
+            this.licenseValidator.validateLicense(license, time);
+        }
+    }
+
     /**
      * Checks whether the license assigned to the specified context is licensed to use the feature specified.<br>
      * <br>
@@ -332,7 +522,11 @@ public final class LicenseManager
     public final boolean hasLicenseForFeatures(final Object context, final FeatureRestriction annotation)
         throws InvalidLicenseException
     {
-        final License license = this.getValidatedLicenseOrNullIfNonExistent(context);
+        return LicenseManager.hasLicenseForFeatures(this.getValidatedLicenseOrNullIfNonExistent(context), annotation);
+    }
+
+    private static boolean hasLicenseForFeatures(final License license, final FeatureRestriction annotation)
+    {
         if(license == null)
         {
             return false;
@@ -363,7 +557,11 @@ public final class LicenseManager
     public final boolean hasLicenseForFeatures(final Object context, final AnnotatedElement target)
         throws InvalidLicenseException
     {
-        final License license = this.getValidatedLicenseOrNullIfNonExistent(context);
+        return LicenseManager.hasLicenseForFeatures(this.getValidatedLicenseOrNullIfNonExistent(context), target);
+    }
+
+    private static boolean hasLicenseForFeatures(final License license, final AnnotatedElement target)
+    {
         if(license == null)
         {
             return false;
@@ -371,11 +569,157 @@ public final class LicenseManager
 
         final FeatureRestriction annotation = target.getAnnotation(FeatureRestriction.class);
 
-        return annotation == null || (
-            annotation.operand() == FeatureRestrictionOperand.AND ?
-            license.hasLicenseForAllFeatures(annotation.value()) :
-            license.hasLicenseForAnyFeature(annotation.value())
-        );
+        return annotation == null || LicenseManager.hasLicenseForFeatures(license, annotation);
+    }
+
+    /**
+     * Checks all of the features specified against the license assigned to the specified context at once. The license
+     * is retrieved and validated once for the whole batch, rather than once per feature as with
+     * {@link #hasLicenseForFeature(Object, String)}. Bit {@code i} of the returned set is set if
+     * {@code featureNames[i]} is licensed and valid.<br>
+     * <br>
+     * Throws the same exceptions as {@link #getLicense(Object)} and for the same reasons.
+     *
+     * @param context The context (account, client, etc.) for which to check the features against its license
+     * @param featureNames The features to check against the license
+     *
+     * @return the set of indexes of the features that are licensed, which is empty if the license does not exist.
+     *
+     * @throws InvalidLicenseException when the license is invalid for any reason.
+     * @throws ExpiredLicenseException when the license is expired.
+     */
+    public final BitSet checkFeatures(final Object context, final String... featureNames)
+        throws InvalidLicenseException
+    {
+        final License license = this.getValidatedLicenseOrNullIfNonExistent(context);
+        if(license == null)
+        {
+            return new BitSet(featureNames.length);
+        }
+
+        return license.checkFeatures(featureNames);
+    }
+
+    /**
+     * Checks all of the features specified against the license assigned to the specified context at once. The license
+     * is retrieved and validated once for the whole batch, rather than once per feature as with
+     * {@link #hasLicenseForFeature(Object, FeatureObject)}. Bit {@code i} of the returned set is set if
+     * {@code features[i]} is licensed and valid.<br>
+     * <br>
+     * Throws the same exceptions as {@link #getLicense(Object)} and for the same reasons.
+     *
+     * @param context The context (account, client, etc.) for which to check the features against its license
+     * @param features The features to check against the license
+     *
+     * @return the set of indexes of the features that are licensed, which is empty if the license does not exist.
+     *
+     * @throws InvalidLicenseException when the license is invalid for any reason.
+     * @throws ExpiredLicenseException when the license is expired.
+     */
+    public final BitSet checkFeatures(final Object context, final FeatureObject... features)
+        throws InvalidLicenseException
+    {
+        final License license = this.getValidatedLicenseOrNullIfNonExistent(context);
+        if(license == null)
+        {
+            return new BitSet(features.length);
+        }
+
+        return license.checkFeatures(features);
+    }
+
+    /**
+     * Checks all of the features specified against the licenses assigned to each of the specified contexts, as if by
+     * calling {@link #checkFeatures(Object, String...)} for each context. The licenses are retrieved together through
+     * {@link #getLicenses(Collection)}, and then every license is validated, and every feature checked, as of the same
+     * date, so the rows of the matrix are consistent with one another. Validators that do not override
+     * {@link LicenseValidator#validateLicense(License, long)} still use their own clock.<br>
+     * <br>
+     * Throws the same exceptions as {@link #getLicense(Object)} and for the same reasons, for the first context whose
+     * license cannot be retrieved or is invalid.
+     *
+     * @param contexts The contexts (accounts, clients, etc.) for which to check the features against their licenses
+     * @param featureNames The features to check against the licenses
+     *
+     * @return a map from each context, in iteration order, to the set of indexes of the features that are licensed.
+     *
+     * @throws InvalidLicenseException when a license is invalid for any reason.
+     * @throws ExpiredLicenseException when a license is expired.
+     */
+    public final Map<Object, BitSet> checkFeatureMatrix(final Collection<?> contexts, final String... featureNames)
+        throws InvalidLicenseException
+    {
+        final long time = System.currentTimeMillis();
+
+        final Map<Object, BitSet> matrix = new LinkedHashMap<>(contexts.size() * 4 / 3 + 1);
+        final Map<Object, License> licenses = this.getValidatedLicenses(contexts, time);
+        for(final Object context : contexts)
+        {
+            final License license = licenses.get(context);
+            matrix.put(
+                context,
+                license == null ? new BitSet(featureNames.length) : license.checkFeatures(time, featureNames)
+            );
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Checks all of the features specified against the licenses assigned to each of the specified contexts, as if by
+     * calling {@link #checkFeatures(Object, FeatureObject...)} for each context. Just as with
+     * {@link #checkFeatureMatrix(Collection, String...)}, the licenses are retrieved together, and every license is
+     * validated, and every feature checked, as of the same date.<br>
+     * <br>
+     * Throws the same exceptions as {@link #getLicense(Object)} and for the same reasons, for the first context whose
+     * license cannot be retrieved or is invalid.
+     *
+     * @param contexts The contexts (accounts, clients, etc.) for which to check the features against their licenses
+     * @param features The features to check against the licenses
+     *
+     * @return a map from each context, in iteration order, to the set of indexes of the features that are licensed.
+     *
+     * @throws InvalidLicenseException when a license is invalid for any reason.
+     * @throws ExpiredLicenseException when a license is expired.
+     *
+     * @since 2.0.0
+     */
+    public final Map<Object, BitSet> checkFeatureMatrix(final Collection<?> contexts, final FeatureObject... features)
+        throws InvalidLicenseException
+    {
+        final long time = System.currentTimeMillis();
+
+        final Map<Object, BitSet> matrix = new LinkedHashMap<>(contexts.size() * 4 / 3 + 1);
+        final Map<Object, License> licenses = this.getValidatedLicenses(contexts, time);
+        for(final Object context : contexts)
+        {
+            final License license = licenses.get(context);
+            matrix.put(context, license == null ? new BitSet(features.length) : license.checkFeatures(time, features));
+        }
+
+        return matrix;
+    }
+
+    private Map<Object, License> getValidatedLicenses(final Collection<?> contexts, final long time)
+        throws InvalidLicenseException
+    {
+        final LicenseBatchResult result = this.getLicenses(contexts);
+        for(final Object context : contexts)
+        {
+            final RuntimeException failure = result.getFailures().get(context);
+            if(failure != null)
+            {
+                throw failure;
+            }
+
+            final License license = result.getLicenses().get(context);
+            if(license != null)
+            {
+                this.validateLicense(license, time);
+            }
+        }
+
+        return result.getLicenses();
     }
 
     private License getValidatedLicenseOrNullIfNonExistent(final Object context)
@@ -430,95 +774,952 @@ public final class LicenseManager
 
         final long time = System.currentTimeMillis();
 
-        LicenseCacheEntry entry;
+        final License cached = this.getCachedLicense(context, time);
+        if(cached != null)
+        {
+            return cached;
+        }
+
+        // only one thread loads each context at a time; others wait for its result instead of loading it again
+        final CompletableFuture<License> load = new CompletableFuture<>();
+        final CompletableFuture<License> existing = this.licenseLoads.putIfAbsent(context, load);
+        if(existing != null)
+        {
+            return LicenseManager.join(existing);
+        }
 
-        synchronized(this.licenseCache)
+        try
+        {
+            // another thread may have finished loading this context between the cache check and claiming the load
+            final License recent = this.getCachedLicense(context, time);
+            final License license = recent != null ? recent : this.loadLicense(context, time);
+            load.complete(license);
+            return license;
+        }
+        catch(final RuntimeException | Error e)
         {
-            entry = this.licenseCache.get(context);
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            this.licenseLoads.remove(context, load);
+        }
+    }
 
-            if(entry != null && entry.license != null)
+    private static License join(final CompletableFuture<License> load)
+    {
+        try
+        {
+            return load.join();
+        }
+        catch(final CompletionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
             {
-                if(entry.expires <= time)
-                {
-                    entry = null;
-                    this.licenseCache.remove(context);
-                }
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
             }
+            throw e;
+        }
+    }
 
-            if(entry == null || entry.license == null)
+    private License loadLicense(final Object context, final long time)
+    {
+        final long generation = this.getGeneration(context);
+        final LicenseCacheEntry expired = this.getStaleCacheEntry(context, time);
+        if(expired == null || !(this.licenseProvider instanceof ConditionalLicenseProvider))
+        {
+            final SignedLicense signedLicense;
+            try
             {
-                final SignedLicense signedLicense = this.licenseProvider.getLicense(context);
-                if(signedLicense == null)
-                {
-                    return null;
-                }
+                signedLicense = this.licenseProvider.getLicense(context);
+            }
+            catch(final LicenseStoreException e)
+            {
+                return this.getLastKnownGoodLicense(context, e);
+            }
 
-                final License license = this.decryptAndVerifyLicense(signedLicense);
+            return this.cacheLicense(context, signedLicense, time, generation);
+        }
 
-                signedLicense.erase();
+        try
+        {
+            final SignedLicense signedLicense =
+                ((ConditionalLicenseProvider) this.licenseProvider).getLicenseIfModified(context);
+            if(signedLicense != ConditionalLicenseProvider.NOT_MODIFIED)
+            {
+                return this.cacheLicense(context, signedLicense, time, generation);
+            }
+        }
+        catch(final LicenseStoreException e)
+        {
+            return this.getLastKnownGoodLicense(context, e);
+        }
+        catch(final RuntimeException e)
+        {
+            // a changed license that cannot be read or verified must not later be reported as not modified, which
+            // would extend the old license indefinitely, so the next load retrieves the license unconditionally
+            this.licenseCache.remove(context, expired);
+            if(this.licenseProvider instanceof FileLicenseProvider)
+            {
+                ((FileLicenseProvider) this.licenseProvider).forgetFileState(context);
+            }
+            throw e;
+        }
 
-                final long expires = time + this.cacheTimeInMilliseconds;
+        // the license was verified when it was cached and has not changed since, so it is kept for another period
+        this.putCacheEntry(
+            context, new LicenseCacheEntry(expired.license, time + this.cacheTimeInMilliseconds), generation
+        );
 
-                entry = new LicenseCacheEntry(license, expires);
+        return expired.license;
+    }
 
-                this.licenseCache.put(context, entry);
-            }
+    /**
+     * Returns the last license verified for a context when the license store is unavailable, so that a store outage
+     * does not take licenses away. The expired cache entry is not extended, so the store is asked again next time,
+     * and once it has been expired for longer than the {@link LicenseManagerProperties#setStaleCacheTimeInMinutes(int)
+     * stale cache time} it is no longer returned.
+     *
+     * @param context The context
+     * @param e The failure of the license store
+     *
+     * @return the last verified license.
+     *
+     * @throws LicenseStoreException if no license has been verified for the context.
+     */
+    private License getLastKnownGoodLicense(final Object context, final LicenseStoreException e)
+    {
+        final LicenseCacheEntry entry = this.getStaleCacheEntry(context, System.currentTimeMillis());
+        if(entry == null)
+        {
+            throw e;
         }
 
         return entry.license;
     }
 
-    /**
-     * Clears the cache of licenses, forcing all license data to be re-retrieved from the license data provider on the
-     * next call to {@link #getLicense(Object)}.
-     */
-    public final void clearLicenseCache()
+    private License cacheLicense(
+        final Object context, final SignedLicense signedLicense, final long time, final long generation
+    )
     {
-        synchronized(this.licenseCache)
+        if(signedLicense == null)
         {
-            this.licenseCache.clear();
+            this.licenseCache.remove(context);
+            return null;
         }
+
+        final License license = this.getVerifiedLicense(signedLicense);
+
+        signedLicense.erase();
+
+        final long expires = time + this.cacheTimeInMilliseconds;
+
+        this.putCacheEntry(context, new LicenseCacheEntry(license, expires), generation);
+
+        this.sweepLicenseCache(time);
+
+        return license;
     }
 
     /**
-     * This method verifies the signed license object's signature. It throws an exception if the signature is invalid.
-     * Normally you will not need to call this method; all of the other methods in this class call this method at some
-     * point or another in one way or another (specifically by way of {@link #getLicense(Object)}). This is a
-     * convenience method useful for verifying the signature of an individual license without going through all of the
-     * retrieval and caching mechanisms normally used when calling {@link #getLicense(Object)}.
+     * Caches a license that was loaded for a context, unless the context's cache entry was invalidated after the load
+     * began, in which case the license may already be out of date and is returned without being cached. The check and
+     * the update are atomic with respect to {@link #clearLicenseCache(Object)} and {@link #clearLicenseCache()}, which
+     * advance the generation before removing the entry.
      *
-     * @param signedLicense The signed license object to verify
-     *
-     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported on this system.
-     * @throws InappropriateKeyException if there is a problem initializing the verification mechanism with the
-     *     public key.
-     * @throws CorruptSignatureException if the signature data has been corrupted (most likely tampered with).
-     * @throws InvalidSignatureException if the signature is invalid (most likely tampered with).
+     * @param context The context
+     * @param entry The cache entry
+     * @param generation The {@link #getGeneration(Object) generation} of the context when the load began
      */
-    public final void verifyLicenseSignature(final SignedLicense signedLicense)
-        throws AlgorithmNotSupportedException, InappropriateKeyException, CorruptSignatureException,
-               InvalidSignatureException
+    private void putCacheEntry(final Object context, final LicenseCacheEntry entry, final long generation)
     {
-        final char[] password = this.publicKeyPasswordProvider.getPassword();
-        final byte[] keyData = this.publicKeyDataProvider.getEncryptedPublicKeyData();
-
-        final PublicKey key = KeyFileUtilities.readEncryptedPublicKey(keyData, password);
+        this.licenseCache.compute(context, (key, current) -> this.getGeneration(key) == generation ? entry : current);
+    }
 
-        Arrays.fill(password, '\u0000');
-        Arrays.fill(keyData, (byte) 0);
+    /**
+     * Returns a number that changes whenever the cache entry for the context is invalidated, either on its own or by
+     * clearing the whole cache.
+     *
+     * @param context The context
+     *
+     * @return the generation of the context's cache entry.
+     */
+    private long getGeneration(final Object context)
+    {
+        final Long generation = this.licenseGenerations.get(context);
 
-        new DataSignatureManager().verifySignature(
-            key, signedLicense.getLicenseContent(), signedLicense.getSignatureContent()
-        );
+        // both counters only ever increase, so their sum changes whenever either of them does
+        return this.cacheGeneration.get() + (generation == null ? 0L : generation);
     }
 
     /**
-     * This method verifies the signed license object's signature, then decrypts the signed license and returns the
+     * Gets the cache entry for a context even if it has expired, unless it expired longer than the stale cache time
+     * ago, in which case it is removed.
+     *
+     * @param context The context
+     * @param time The current time
+     *
+     * @return the cache entry, or null.
+     */
+    private LicenseCacheEntry getStaleCacheEntry(final Object context, final long time)
+    {
+        final LicenseCacheEntry entry = this.licenseCache.get(context);
+        if(entry != null && entry.expires + this.staleTimeInMilliseconds <= time)
+        {
+            this.licenseCache.remove(context, entry);
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Removes the cache entries that expired longer than the stale cache time ago, at most once per cache period, so
+     * that contexts that are no longer requested do not stay in the cache forever.
+     *
+     * @param time The current time
+     */
+    private void sweepLicenseCache(final long time)
+    {
+        if(time < this.nextCacheSweep)
+        {
+            return;
+        }
+        this.nextCacheSweep = time + this.cacheTimeInMilliseconds;
+
+        final long staleBefore = time - this.staleTimeInMilliseconds;
+        this.licenseCache.values().removeIf((entry) -> entry.expires <= staleBefore);
+    }
+
+    private License getCachedLicense(final Object context, final long time)
+    {
+        final LicenseCacheEntry entry = this.licenseCache.get(context);
+        if(entry == null)
+        {
+            return null;
+        }
+
+        if(entry.expires <= time)
+        {
+            // the expired license is kept until replaced, in case a conditional provider confirms that it is current
+            // or the license store is unavailable and it is the last known good license
+            return null;
+        }
+
+        return entry.license;
+    }
+
+    /**
+     * Retrieves the license for the specified context asynchronously. If the license is cached and the cache has not
+     * become stale, the returned future is already complete. Otherwise the license is retrieved, verified and cached
+     * just as in {@link #getLicense(Object)} on the {@link LicenseManagerProperties#setAsynchronousExecutor(Executor)
+     * configured executor}, and the calling thread is not blocked. If the license provider is also an
+     * {@link AsynchronousLicenseProvider}, the license is retrieved through it, which need not occupy an executor
+     * thread while it waits, and only verified on the executor, unless it is also a {@link ConditionalLicenseProvider}
+     * being asked whether an expired license is still current, which blocks an executor thread just like a blocking
+     * provider does. Either way, concurrent requests for the same context, synchronous or not, share a single
+     * retrieval.<br>
+     * <br>
+     * The future completes exceptionally with the same exceptions {@link #getLicense(Object)} throws and for the same
+     * reasons.
+     *
+     * @param context The context (account, client, etc.) for which to retrieve the license object
+     *
+     * @return a future for the requested license object, which completes with null if none exists.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<License> getLicenseAsync(final Object context)
+    {
+        if(context == null)
+        {
+            return LicenseManager.failedFuture(new IllegalArgumentException("License context cannot be null."));
+        }
+
+        final long time = System.currentTimeMillis();
+
+        final License cached = this.getCachedLicense(context, time);
+        if(cached != null)
+        {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        // an expired license that a conditional provider may confirm as current is handled by the synchronous load
+        if(!(this.licenseProvider instanceof AsynchronousLicenseProvider) ||
+           this.licenseProvider instanceof ConditionalLicenseProvider && this.getStaleCacheEntry(context, time) != null)
+        {
+            return CompletableFuture.supplyAsync(() -> this.getLicense(context), this.asynchronousExecutor);
+        }
+
+        // the load is shared with getLicense, so each context is still retrieved and verified only once at a time
+        final CompletableFuture<License> load = new CompletableFuture<>();
+        final CompletableFuture<License> existing = this.licenseLoads.putIfAbsent(context, load);
+        if(existing != null)
+        {
+            return existing.thenApply((license) -> license);
+        }
+
+        final License recent = this.getCachedLicense(context, time);
+        if(recent != null)
+        {
+            load.complete(recent);
+            this.licenseLoads.remove(context, load);
+            return CompletableFuture.completedFuture(recent);
+        }
+
+        final long generation = this.getGeneration(context);
+        CompletionStage<SignedLicense> signedLicense;
+        try
+        {
+            signedLicense = ((AsynchronousLicenseProvider) this.licenseProvider).getLicenseAsync(context);
+        }
+        catch(final RuntimeException e)
+        {
+            signedLicense = LicenseManager.failedFuture(e);
+        }
+
+        signedLicense.handleAsync(
+            (license, e) -> e == null ?
+                            this.cacheLicense(context, license, time, generation) :
+                            this.recoverLicense(context, e),
+            this.asynchronousExecutor
+        ).whenComplete((license, e) -> {
+            if(e == null)
+            {
+                load.complete(license);
+            }
+            else
+            {
+                load.completeExceptionally(e);
+            }
+            this.licenseLoads.remove(context, load);
+        });
+
+        // callers each get their own future, so that none of them can complete the shared load
+        return load.thenApply((license) -> license);
+    }
+
+    private License recoverLicense(final Object context, final Throwable e)
+    {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if(cause instanceof LicenseStoreException)
+        {
+            return this.getLastKnownGoodLicense(context, (LicenseStoreException) cause);
+        }
+
+        throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    private CompletableFuture<License> getValidatedLicenseOrNullIfNonExistentAsync(final Object context)
+    {
+        // an already complete future runs the validation on the calling thread
+        return this.getLicenseAsync(context).thenApply((license) -> {
+            if(license != null)
+            {
+                this.validateLicense(license);
+            }
+            return license;
+        });
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(final Throwable exception)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
+
+    /**
+     * Retrieves the licenses for many contexts at once, such as for a nightly reconciliation of every account. Cached
+     * licenses are returned immediately, and all of the others are retrieved, verified and cached in parallel on the
+     * {@link LicenseManagerProperties#setAsynchronousExecutor(Executor) configured executor}, just as in
+     * {@link #getLicenseAsync(Object)}. This method returns once every license has been retrieved or has failed. If
+     * the license provider is also a {@link PrefetchingLicenseProvider}, the licenses that are not cached are first
+     * prefetched in bulk, and whatever the provider still holds for them is discarded before this method returns, so
+     * that later loads always go to the store.<br>
+     * <br>
+     * A failure for one context does not affect the others. Any exception {@link #getLicense(Object)} would throw for
+     * a context is recorded in {@link LicenseBatchResult#getFailures()} instead of being thrown. Duplicate contexts
+     * are retrieved only once.
+     *
+     * @param contexts The contexts (accounts, clients, etc.) for which to retrieve the license objects
+     *
+     * @return the licenses that were retrieved and the failures, by context.
+     *
+     * @since 2.0.0
+     */
+    public final LicenseBatchResult getLicenses(final Collection<?> contexts)
+    {
+        final long start = System.nanoTime();
+
+        final Set<Object> prefetched;
+        if(this.licenseProvider instanceof PrefetchingLicenseProvider)
+        {
+            prefetched = this.prefetchLicenses(contexts);
+        }
+        else
+        {
+            prefetched = Collections.emptySet();
+        }
+
+        final Map<Object, License> licenses = new LinkedHashMap<>(contexts.size() * 4 / 3 + 1);
+        final Map<Object, RuntimeException> failures = new LinkedHashMap<>();
+        try
+        {
+            final Map<Object, CompletableFuture<License>> futures = new LinkedHashMap<>(contexts.size() * 4 / 3 + 1);
+            for(final Object context : contexts)
+            {
+                if(!futures.containsKey(context))
+                {
+                    futures.put(context, this.getLicenseAsync(context));
+                }
+            }
+
+            for(final Map.Entry<Object, CompletableFuture<License>> entry : futures.entrySet())
+            {
+                try
+                {
+                    licenses.put(entry.getKey(), LicenseManager.join(entry.getValue()));
+                }
+                catch(final RuntimeException e)
+                {
+                    failures.put(entry.getKey(), e);
+                }
+            }
+        }
+        finally
+        {
+            if(!prefetched.isEmpty())
+            {
+                ((PrefetchingLicenseProvider) this.licenseProvider).discardPrefetchedLicenses(prefetched);
+            }
+        }
+
+        return new LicenseBatchResult(licenses, failures, LicenseManager.millisecondsSince(start));
+    }
+
+    /**
+     * Asks the prefetching license provider to retrieve the licenses for the given contexts that are not cached, so
+     * that retrieving them one at a time does not go to the store.
+     *
+     * @param contexts The contexts
+     *
+     * @return the contexts whose licenses were prefetched, which must be discarded once the batch is done.
+     */
+    private Set<Object> prefetchLicenses(final Collection<?> contexts)
+    {
+        final long time = System.currentTimeMillis();
+
+        final Set<Object> uncached = new LinkedHashSet<>();
+        for(final Object context : contexts)
+        {
+            if(context != null && this.getCachedLicense(context, time) == null)
+            {
+                uncached.add(context);
+            }
+        }
+
+        if(!uncached.isEmpty())
+        {
+            try
+            {
+                ((PrefetchingLicenseProvider) this.licenseProvider).prefetchLicenses(uncached);
+            }
+            catch(final RuntimeException ignore)
+            {
+                // each license is then retrieved on its own, and any failure is reported for its context
+            }
+        }
+
+        return uncached;
+    }
+
+    /**
+     * Warms up this license manager, typically at application startup, so that the first license checks made by
+     * users are not slowed down, using a default number of warm-up iterations. See
+     * {@link #warmUp(Collection, int)}.
+     *
+     * @param contexts The contexts (accounts, clients, etc.) whose licenses should be loaded into the cache
+     *
+     * @return the licenses that were preloaded, any failures, and how long the warm-up took.
+     *
+     * @throws KeyNotFoundException if the public key data could not be found.
+     * @throws InappropriateKeySpecificationException if an inappropriate key specification is provided.
+     *
+     * @since 2.0.0
+     */
+    public final LicenseBatchResult warmUp(final Collection<?> contexts)
+    {
+        return this.warmUp(contexts, LicenseManager.defaultWarmUpIterations);
+    }
+
+    /**
+     * Warms up this license manager, typically at application startup, so that the first license checks made by
+     * users are not slowed down. Without a warm-up, the first check pays for initializing the cryptography providers,
+     * loading the key, cipher and signature classes, decrypting the public key and verifying the license.<br>
+     * <br>
+     * This method first decrypts the public key and initializes a signature object, which loads and initializes the
+     * cryptography providers and classes. It then retrieves, verifies and caches the licenses for the given contexts in
+     * parallel, just like {@link #getLicenses(Collection)}. Finally, it runs the given number of cached license lookups
+     * and feature checks against the preloaded licenses, so that the just-in-time compiler optimizes them. The license
+     * validator is not run during the warm-up. A failure to load the license for one of the contexts is reported in
+     * the result rather than thrown.
+     *
+     * @param contexts The contexts (accounts, clients, etc.) whose licenses should be loaded into the cache
+     * @param iterations The number of license checks to run once the licenses are loaded
+     *
+     * @return the licenses that were preloaded, any failures, and how long the warm-up took.
+     *
+     * @throws KeyNotFoundException if the public key data could not be found.
+     * @throws InappropriateKeySpecificationException if an inappropriate key specification is provided.
+     *
+     * @since 2.0.0
+     */
+    public final LicenseBatchResult warmUp(final Collection<?> contexts, final int iterations)
+    {
+        final long start = System.nanoTime();
+
+        final PublicKey key = this.getPublicKey();
+        try
+        {
+            this.getSignatureManager(SignatureAlgorithms.getLegacyAlgorithm()).isValid(key, new byte[1], new byte[0]);
+        }
+        catch(final CorruptSignatureException ignore)
+        {
+            // the signature is deliberately invalid; only the initialization matters
+        }
+
+        final LicenseBatchResult loaded = this.getLicenses(contexts);
+
+        final List<Object> licensed = new ArrayList<>();
+        final List<String[]> featureNames = new ArrayList<>();
+        for(final Map.Entry<Object, License> entry : loaded.getLicenses().entrySet())
+        {
+            if(entry.getValue() != null)
+            {
+                licensed.add(entry.getKey());
+
+                final List<String> names = new ArrayList<>();
+                for(final License.Feature feature : entry.getValue().getFeatures())
+                {
+                    names.add(feature.getName());
+                }
+                featureNames.add(names.toArray(new String[names.size()]));
+            }
+        }
+
+        for(int i = 0; !licensed.isEmpty() && i < iterations; i++)
+        {
+            final int index = i % licensed.size();
+            final License license = this.getLicense(licensed.get(index));
+            if(license != null)
+            {
+                license.checkFeatures(featureNames.get(index));
+            }
+        }
+
+        return new LicenseBatchResult(
+            loaded.getLicenses(), loaded.getFailures(), LicenseManager.millisecondsSince(start)
+        );
+    }
+
+    private static long millisecondsSince(final long start)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForFeature(Object, String)}. See {@link #getLicenseAsync(Object)}
+     * for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param featureName The feature (or features) to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has this feature enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForFeatureAsync(final Object context, final String featureName)
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForFeature(featureName)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForFeature(Object, FeatureObject)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param feature The feature (or features) to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has this feature enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForFeatureAsync(
+        final Object context, final FeatureObject feature
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForFeature(feature)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForAnyFeature(Object, String...)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param featureNames The feature names to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has any one of these features
+     *     enabled, {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForAnyFeatureAsync(
+        final Object context, final String... featureNames
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForAnyFeature(featureNames)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForAnyFeature(Object, FeatureObject...)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param features The features to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has any one of these features
+     *     enabled, {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForAnyFeatureAsync(
+        final Object context, final FeatureObject... features
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForAnyFeature(features)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForAllFeatures(Object, String...)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param featureNames The feature names to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has all of these features enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForAllFeaturesAsync(
+        final Object context, final String... featureNames
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForAllFeatures(featureNames)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForAllFeatures(Object, FeatureObject...)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param features The features to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has all of these features enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForAllFeaturesAsync(
+        final Object context, final FeatureObject... features
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> license != null && license.hasLicenseForAllFeatures(features)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForFeatures(Object, FeatureRestriction)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param annotation The annotation to check against the license
+     *
+     * @return a future that completes with {@code true} if the license exists and has the required features enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForFeaturesAsync(
+        final Object context, final FeatureRestriction annotation
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> LicenseManager.hasLicenseForFeatures(license, annotation)
+        );
+    }
+
+    /**
+     * The asynchronous variant of {@link #hasLicenseForFeatures(Object, AnnotatedElement)}. See
+     * {@link #getLicenseAsync(Object)} for how the future is completed.
+     *
+     * @param context The context (account, client, etc.) for which to check the feature(s) against its license
+     * @param target The target to check for feature restrictions
+     *
+     * @return a future that completes with {@code true} if the license exists and has the required features enabled,
+     *     {@code false} otherwise.
+     *
+     * @since 2.0.0
+     */
+    public final CompletableFuture<Boolean> hasLicenseForFeaturesAsync(
+        final Object context, final AnnotatedElement target
+    )
+    {
+        return this.getValidatedLicenseOrNullIfNonExistentAsync(context).thenApply(
+            (license) -> LicenseManager.hasLicenseForFeatures(license, target)
+        );
+    }
+
+    private License getVerifiedLicense(final SignedLicense signedLicense)
+    {
+        if(this.verifiedLicenseCache == null && this.sharedLicenseCache == null && this.persistentLicenseCache == null)
+        {
+            return this.decryptAndVerifyLicense(signedLicense);
+        }
+
+        final String key = VerifiedLicenseCache.getKey(signedLicense);
+
+        License license = this.verifiedLicenseCache == null ? null : this.verifiedLicenseCache.get(key);
+        if(license != null)
+        {
+            return license;
+        }
+
+        // a license verified by another process on this host is used without checking its signature again
+        license = this.sharedLicenseCache == null ? null : this.sharedLicenseCache.get(key);
+        if(license == null)
+        {
+            // a license verified before the application restarted is restored without checking its signature again
+            license = this.persistentLicenseCache == null ? null : this.persistentLicenseCache.get(key);
+            if(license == null)
+            {
+                license = this.decryptAndVerifyLicense(signedLicense);
+                if(this.persistentLicenseCache != null)
+                {
+                    this.persistentLicenseCache.put(key, license);
+                }
+            }
+
+            if(this.sharedLicenseCache != null)
+            {
+                this.sharedLicenseCache.put(key, license);
+            }
+        }
+
+        if(this.verifiedLicenseCache != null)
+        {
+            this.verifiedLicenseCache.put(key, license);
+        }
+
+        return license;
+    }
+
+    /**
+     * Clears the cache of licenses, forcing all license data to be re-retrieved from the license data provider on the
+     * next call to {@link #getLicense(Object)}. If the
+     * {@link LicenseManagerProperties#setVerifiedLicenseCacheSize(int) verified license cache} or the
+     * {@link LicenseManagerProperties#setVerifiedLicenseCacheDirectory(File) persistent verified license cache} is
+     * enabled, it is cleared as well, so all licenses are verified again. The
+     * {@link LicenseManagerProperties#setSharedLicenseCacheFile(File) shared license cache} is not cleared, because
+     * the other processes on the host use it too, so licenses found there are not verified again; see
+     * {@link #clearSharedLicenseCache()}.
+     */
+    public final void clearLicenseCache()
+    {
+        // loads already under way must neither cache what they read nor be joined by later requests
+        this.cacheGeneration.incrementAndGet();
+        this.licenseLoads.clear();
+        this.licenseCache.clear();
+
+        if(this.verifiedLicenseCache != null)
+        {
+            this.verifiedLicenseCache.clear();
+        }
+
+        if(this.persistentLicenseCache != null)
+        {
+            this.persistentLicenseCache.clear();
+        }
+    }
+
+    /**
+     * Removes all licenses from the {@link LicenseManagerProperties#setSharedLicenseCacheFile(File) shared license
+     * cache}, for every process on the host that shares it, so that all of them verify their licenses again. Unlike
+     * {@link #clearLicenseCache()}, this affects the other processes as well, so it is meant for administrative use,
+     * such as after licenses have been revoked. It does nothing if the shared license cache is not enabled.
+     *
+     * @since 2.0.0
+     */
+    public final void clearSharedLicenseCache()
+    {
+        if(this.sharedLicenseCache != null)
+        {
+            this.sharedLicenseCache.clear();
+        }
+    }
+
+    /**
+     * Removes the license for the specified context from the cache, forcing its license data to be re-retrieved from
+     * the license data provider on the next call to {@link #getLicense(Object)}. This is called automatically when the
+     * license provider is an {@link ObservableLicenseProvider} that reports a change to the context's license. A load
+     * of the context's license that is already under way when this is called still returns what it read to the
+     * callers already waiting for it, but does not cache it, and later calls start a new load.
+     *
+     * @param context The context (account, client, etc.) whose license should be removed from the cache
+     *
+     * @since 2.0.0
+     */
+    public final void clearLicenseCache(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("License context cannot be null.");
+        }
+
+        // a load already under way may have read the old license, so it must neither cache it nor be joined
+        this.licenseGenerations.merge(context, 1L, Long::sum);
+        this.licenseLoads.remove(context);
+        this.licenseCache.remove(context);
+    }
+
+    /**
+     * This method verifies the signed license object's signature. It throws an exception if the signature is invalid.
+     * Normally you will not need to call this method; all of the other methods in this class call this method at some
+     * point or another in one way or another (specifically by way of {@link #getLicense(Object)}). This is a
+     * convenience method useful for verifying the signature of an individual license without going through all of the
+     * retrieval and caching mechanisms normally used when calling {@link #getLicense(Object)}.<br>
+     * <br>
+     * The signature is verified with the algorithm named in the signed license, or with SHA-1 with RSA if the license
+     * does not name one.
+     *
+     * @param signedLicense The signed license object to verify
+     *
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported on this system.
+     * @throws InappropriateKeyException if there is a problem initializing the verification mechanism with the
+     *     public key.
+     * @throws CorruptSignatureException if the signature data has been corrupted (most likely tampered with).
+     * @throws InvalidSignatureException if the signature is invalid (most likely tampered with).
+     */
+    public final void verifyLicenseSignature(final SignedLicense signedLicense)
+        throws AlgorithmNotSupportedException, InappropriateKeyException, CorruptSignatureException,
+               InvalidSignatureException
+    {
+        final SignatureAlgorithm algorithm = SignatureAlgorithms.forIdentifier(signedLicense.getSignatureAlgorithm());
+
+        this.getSignatureManager(algorithm).verifySignature(
+            this.getPublicKey(), signedLicense.getLicenseContent(), signedLicense.getSignatureContent()
+        );
+    }
+
+    /**
+     * This method verifies the signatures of many signed licenses at once, such as when auditing every license issued
+     * to a customer. The public key is read and decrypted only once for the whole batch, and the signature objects are
+     * reused from one license to the next. Unlike {@link #verifyLicenseSignature(SignedLicense)}, a bad license does
+     * not throw an exception; it is simply reported as invalid, and the remaining licenses are still checked.
+     *
+     * @param signedLicenses The signed license objects to verify
+     *
+     * @return whether each license's signature is valid, in the same order as the licenses. Licenses signed with an
+     *     algorithm that is not supported on this system are reported as invalid.
+     *
+     * @throws InappropriateKeyException if there is a problem initializing the verification mechanism with the
+     *     public key.
+     *
+     * @since 2.0.0
+     */
+    public final boolean[] verifyLicenseSignatures(final SignedLicense... signedLicenses)
+        throws InappropriateKeyException
+    {
+        final boolean[] results = new boolean[signedLicenses.length];
+        if(signedLicenses.length == 0)
+        {
+            return results;
+        }
+
+        final PublicKey key = this.getPublicKey();
+        for(int i = 0; i < signedLicenses.length; i++)
+        {
+            try
+            {
+                results[i] = this.getSignatureManager(
+                    SignatureAlgorithms.forIdentifier(signedLicenses[i].getSignatureAlgorithm())
+                ).isValid(key, signedLicenses[i].getLicenseContent(), signedLicenses[i].getSignatureContent());
+            }
+            catch(final AlgorithmNotSupportedException | CorruptSignatureException e)
+            {
+                results[i] = false;
+            }
+        }
+
+        return results;
+    }
+
+    private DataSignatureManager getSignatureManager(final SignatureAlgorithm algorithm)
+    {
+        final DataSignatureManager manager = this.signatureManagers.get(algorithm);
+        if(manager != null)
+        {
+            return manager;
+        }
+
+        final DataSignatureManager created = new DataSignatureManager(algorithm);
+        final DataSignatureManager existing = this.signatureManagers.putIfAbsent(algorithm, created);
+
+        return existing == null ? created : existing;
+    }
+
+    private PublicKey getPublicKey()
+    {
+        final char[] password = this.publicKeyPasswordProvider.getPassword();
+        final byte[] keyData = this.publicKeyDataProvider.getEncryptedPublicKeyData();
+
+        final PublicKey key = KeyFileUtilities.readEncryptedPublicKey(keyData, password);
+
+        Arrays.fill(password, '\u0000');
+        Arrays.fill(keyData, (byte) 0);
+
+        return key;
+    }
+
+    /**
+     * This method verifies the signed license object's signature, then decrypts the signed license and returns the
      * decrypted license. It throws an exception if the signature is invalid. Normally you will not need to call this
      * method; all of the other methods in this class call this method at some point or another in one way or another
      * (specifically by way of {@link #getLicense(Object)}). This is a convenience method useful for verifying the
      * signature of and interpreting an individual license without going through all of the retrieval and caching
-     * mechanisms normally used when calling {@link #getLicense(Object)}.
+     * mechanisms normally used when calling {@link #getLicense(Object)}.<br>
+     * <br>
+     * Licenses encrypted in the legacy format and in the authenticated AES-GCM format (see
+     * {@link Encryptor#encryptAuthenticated(byte[], char[])}) are both accepted.
      *
      * @param signedLicense The signed license object to verify
      *
@@ -535,10 +1736,14 @@ public final class LicenseManager
     {
         this.verifyLicenseSignature(signedLicense);
 
+        return this.decryptLicense(signedLicense.getLicenseContent());
+    }
+
+    private License decryptLicense(final byte[] encrypted)
+    {
         final char[] password = this.licensePasswordProvider.getPassword();
-        final byte[] encrypted = signedLicense.getLicenseContent();
 
-        final byte[] unencrypted = Encryptor.decryptRaw(encrypted, password);
+        final byte[] unencrypted = Encryptor.decryptRaw(encrypted, password, this.getLicenseKey(encrypted, password));
 
         Arrays.fill(password, '\u0000');
         Arrays.fill(encrypted, (byte) 0);
@@ -550,6 +1755,163 @@ public final class LicenseManager
         return license;
     }
 
+    private PasswordDerivedKey getLicenseKey(final byte[] encrypted, final char[] password)
+    {
+        if(!Encryptor.isAuthenticatedPayload(encrypted) ||
+           this.licenseKey != null && Encryptor.isEncryptedWith(encrypted, this.licenseKey))
+        {
+            return this.licenseKey;
+        }
+
+        // licenses encrypted with another salt would otherwise pay for a full key derivation on every cache miss
+        PasswordDerivedKey key = this.derivedKeyCache.get(encrypted);
+        if(key == null)
+        {
+            key = Encryptor.deriveKey(encrypted, password);
+            if(key == null)
+            {
+                return this.licenseKey;
+            }
+            this.derivedKeyCache.put(key);
+        }
+
+        return key;
+    }
+
+    private static byte[] peek(final PushbackInputStream stream, final int length) throws IOException
+    {
+        final byte[] start = new byte[length];
+        int read = 0;
+        int count;
+        while(read < length && (count = stream.read(start, read, length - read)) >= 0)
+        {
+            read += count;
+        }
+        stream.unread(start, 0, read);
+
+        return Arrays.copyOf(start, read);
+    }
+
+    private static byte[] readFully(final InputStream stream) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[LicenseManager.payloadPeekLength * 256];
+        int count;
+        while((count = stream.read(buffer)) >= 0)
+        {
+            output.write(buffer, 0, count);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * This method verifies the signature of, decrypts and interprets a license read from a stream, all in a single
+     * pass over the data. The encrypted license content is read in fixed-size chunks, each of which is fed to the
+     * signature verification and the decryption at the same time, and the decrypted features are handed to the license
+     * parser as soon as they have been decrypted. Neither the encrypted nor the decrypted license content ever needs to
+     * be held in memory all at once, which makes this suitable for very large licenses. The license is only returned
+     * once the signature has been verified on all of the data. The stream is closed when this method returns.<br>
+     * <br>
+     * If the data cannot be decrypted or parsed, the signature is still verified on all of the data, and any signature
+     * failure takes precedence, just as it does in {@link #decryptAndVerifyLicense(SignedLicense)}. Licenses in the
+     * authenticated AES-GCM format are accepted as well, but are read completely and their signature verified before
+     * they are decrypted, since their header determines how costly deriving the decryption key is.
+     *
+     * @param licenseContent The stream containing the encrypted license content
+     * @param signatureContent The signature for the license content
+     *
+     * @return the decrypted license object.
+     *
+     * @throws IOException if reading from the stream fails.
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported on this system.
+     * @throws InappropriateKeyException if there is a problem initializing the verification mechanism with the
+     *     public key.
+     * @throws CorruptSignatureException if the signature data has been corrupted (most likely tampered with).
+     * @throws InvalidSignatureException if the signature is invalid (most likely tampered with).
+     * @throws FailedToDecryptException if the license could not be decrypted.
+     */
+    public final License decryptAndVerifyLicense(final InputStream licenseContent, final byte[] signatureContent)
+        throws IOException
+    {
+        return this.decryptAndVerifyLicense(licenseContent, signatureContent, SignatureAlgorithms.getLegacyAlgorithm());
+    }
+
+    /**
+     * This method verifies the signature of, decrypts and interprets a license read from a stream, all in a single
+     * pass over the data, just like {@link #decryptAndVerifyLicense(InputStream, byte[])}, but verifies the signature
+     * with the given algorithm.
+     *
+     * @param licenseContent The stream containing the encrypted license content
+     * @param signatureContent The signature for the license content
+     * @param signatureAlgorithm The algorithm the license content was signed with
+     *
+     * @return the decrypted license object.
+     *
+     * @throws IOException if reading from the stream fails.
+     * @throws AlgorithmNotSupportedException if the signature algorithm is not supported on this system.
+     * @throws InappropriateKeyException if there is a problem initializing the verification mechanism with the
+     *     public key.
+     * @throws CorruptSignatureException if the signature data has been corrupted (most likely tampered with).
+     * @throws InvalidSignatureException if the signature is invalid (most likely tampered with).
+     * @throws FailedToDecryptException if the license could not be decrypted.
+     */
+    public final License decryptAndVerifyLicense(
+        final InputStream licenseContent, final byte[] signatureContent, final SignatureAlgorithm signatureAlgorithm
+    )
+        throws IOException
+    {
+        final PushbackInputStream content = new PushbackInputStream(licenseContent, LicenseManager.payloadPeekLength);
+        final byte[] start = LicenseManager.peek(content, LicenseManager.payloadPeekLength);
+        if(Encryptor.isAuthenticatedPayload(start))
+        {
+            // an unsigned header could otherwise make the key derivation run for as long as it asks
+            try
+            {
+                final byte[] encrypted = LicenseManager.readFully(content);
+                this.getSignatureManager(signatureAlgorithm).verifySignature(
+                    this.getPublicKey(), encrypted, signatureContent
+                );
+                return this.decryptLicense(encrypted);
+            }
+            finally
+            {
+                content.close();
+            }
+        }
+
+        final SignatureVerifyingInputStream verifying = this.getSignatureManager(
+            signatureAlgorithm
+        ).newVerifyingInputStream(this.getPublicKey(), content);
+
+        final char[] password = this.licensePasswordProvider.getPassword();
+        final InputStream decrypting = Encryptor.newDecryptingInputStream(verifying, password, this.licenseKey);
+        Arrays.fill(password, '\u0000');
+
+        try
+        {
+            final License license;
+            try
+            {
+                license = License.deserialize(new InputStreamReader(decrypting, LicensingCharsets.UTF_8));
+            }
+            catch(final RuntimeException e)
+            {
+                // tampering should be reported as such, so the signature check comes first
+                verifying.verify(signatureContent);
+                throw e;
+            }
+
+            verifying.verify(signatureContent);
+
+            return license;
+        }
+        finally
+        {
+            decrypting.close();
+        }
+    }
+
     /**
      * An entry in the memory-based license cache.
      */
@@ -15,6 +15,11 @@
  */
 package io.oddsource.java.licensing;
 
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
 import io.oddsource.java.licensing.encryption.PublicKeyDataProvider;
 
@@ -40,6 +45,20 @@ public final class LicenseManagerProperties
 
     private static int cacheTimeInMinutes;
 
+    private static int staleCacheTimeInMinutes;
+
+    private static byte[] licenseKeySalt;
+
+    private static int licenseKeyIterations;
+
+    private static int verifiedLicenseCacheSize;
+
+    private static File verifiedLicenseCacheDirectory;
+
+    private static File sharedLicenseCacheFile;
+
+    private static Executor asynchronousExecutor;
+
     /**
      * This class cannot be instantiated.
      */
@@ -157,4 +176,179 @@ public final class LicenseManagerProperties
     {
         return cacheTimeInMinutes;
     }
+
+    /**
+     * Sets the length of time in minutes that a license is kept after its cache entry has expired. Until then, it is
+     * returned as the last known good license if the license store is unavailable, and a
+     * {@link ConditionalLicenseProvider} can confirm that it is still current; after that, it is removed, so that
+     * contexts that are no longer requested do not stay in memory forever (anything less than 1 minute results in
+     * the default).<br>
+     * <br>
+     * This field is <b>optional</b> and defaults to one day.
+     *
+     * @param staleCacheTimeInMinutes The length of time in minutes to keep expired license information
+     *
+     * @since 2.0.0
+     */
+    public static void setStaleCacheTimeInMinutes(final int staleCacheTimeInMinutes)
+    {
+        LicenseManagerProperties.staleCacheTimeInMinutes = staleCacheTimeInMinutes;
+    }
+
+    static int getStaleCacheTimeInMinutes()
+    {
+        return LicenseManagerProperties.staleCacheTimeInMinutes;
+    }
+
+    /**
+     * Sets the salt and PBKDF2 iteration count that licenses in the authenticated payload format were encrypted with
+     * (see {@link io.oddsource.java.licensing.licensor.LicenseCreatorProperties#setLicenseKeyDerivation(byte[], int)
+     * LicenseCreatorProperties.setLicenseKeyDerivation}), so that the license manager derives the decryption key once
+     * when it is created instead of every time a license is decrypted. Licenses encrypted with other parameters are
+     * still accepted, but their keys are derived as they are decrypted.<br>
+     * <br>
+     * This field is <b>optional</b>. If it is not set, no key is derived in advance.
+     *
+     * @param salt The salt, which must be {@link PasswordDerivedKey#saltLength} bytes long, or null
+     * @param iterations The PBKDF2 iteration count, or zero for {@link PasswordDerivedKey#defaultIterations}
+     *
+     * @since 2.0.0
+     */
+    public static void setLicenseKeyDerivation(final byte[] salt, final int iterations)
+    {
+        LicenseManagerProperties.licenseKeySalt = salt == null ? null : salt.clone();
+        LicenseManagerProperties.licenseKeyIterations = iterations;
+    }
+
+    static byte[] getLicenseKeySalt()
+    {
+        return LicenseManagerProperties.licenseKeySalt;
+    }
+
+    static int getLicenseKeyIterations()
+    {
+        return LicenseManagerProperties.licenseKeyIterations < 1 ?
+               PasswordDerivedKey.defaultIterations :
+               LicenseManagerProperties.licenseKeyIterations;
+    }
+
+    /**
+     * Sets the maximum number of verified licenses to remember by content, in addition to the per-context cache
+     * configured with {@link #setCacheTimeInMinutes(int)}. When a license is retrieved for a context whose cache entry
+     * is missing or has expired, a digest of the signed license's content and signature is looked up in this cache
+     * first. If the same bytes have been verified before (for example, a site license shared by many users, or a
+     * license that has not changed since it was last retrieved), the already verified license is returned without
+     * checking the signature or decrypting the license again. Licenses are validated with the
+     * {@link #setLicenseValidator(LicenseValidator) license validator} on every use either way.<br>
+     * <br>
+     * This field is <b>optional</b> and defaults to zero, which disables the cache.
+     *
+     * @param verifiedLicenseCacheSize The maximum number of verified licenses to remember, or zero to disable
+     *
+     * @since 2.0.0
+     */
+    public static void setVerifiedLicenseCacheSize(final int verifiedLicenseCacheSize)
+    {
+        LicenseManagerProperties.verifiedLicenseCacheSize = verifiedLicenseCacheSize;
+    }
+
+    static int getVerifiedLicenseCacheSize()
+    {
+        return LicenseManagerProperties.verifiedLicenseCacheSize;
+    }
+
+    /**
+     * Sets a directory in which to keep licenses that have been verified and decrypted, so that they do not have to
+     * be verified again after the application restarts. When a license is retrieved that is not in the
+     * {@link #setVerifiedLicenseCacheSize(int) verified license cache} in memory, it is looked up in this directory
+     * by a digest of the signed license's content and signature before its signature is checked. Each entry is sealed
+     * with a MAC keyed by a random secret, which is generated when the directory is first used and kept in a key file
+     * in it, and by the license password and the public key data; an entry that does not match the signed license,
+     * the public key, the password, or the secret exactly is ignored, so the license is verified in full. Licenses are
+     * validated with the {@link #setLicenseValidator(LicenseValidator) license validator} on every use either way.<br>
+     * <br>
+     * Anyone who can write to the directory can replace the key file and the entries, and so change the licenses the
+     * application sees, so the directory must be writable only by the user the application runs as. The entries hold
+     * decrypted licenses, so it should be readable only by that user as well; the key file and the entries are
+     * created readable and writable only by their owner. The directory may be shared by several processes, and is
+     * created if it does not exist. Entries that have not been written or read for 30 days are deleted, so the
+     * directory does not keep growing with licenses that are no longer used.<br>
+     * <br>
+     * This field is <b>optional</b>. If it is not set, verified licenses are not kept across restarts.
+     *
+     * @param verifiedLicenseCacheDirectory The directory in which to keep verified licenses, or null to disable
+     *
+     * @since 2.0.0
+     */
+    public static void setVerifiedLicenseCacheDirectory(final File verifiedLicenseCacheDirectory)
+    {
+        LicenseManagerProperties.verifiedLicenseCacheDirectory = verifiedLicenseCacheDirectory;
+    }
+
+    static File getVerifiedLicenseCacheDirectory()
+    {
+        return LicenseManagerProperties.verifiedLicenseCacheDirectory;
+    }
+
+    /**
+     * Sets a file, shared by all of the processes on a host that use the same licenses, through which those processes
+     * share the licenses they have verified. The file is mapped into memory, so a license verified and decrypted by
+     * one process is found by the others without reading the disk or verifying its signature, and is held in memory
+     * once for all of them. Lookups never block on other processes. Like the
+     * {@link #setVerifiedLicenseCacheDirectory(File) persistent verified license cache}, each entry is sealed with a
+     * MAC keyed by a random secret kept in a key file next to the cache file (the cache file's name followed by
+     * {@code .key}) and by the license password and the public key data, so a process only uses licenses verified
+     * with the same public key and password as its own. Licenses are validated with the
+     * {@link #setLicenseValidator(LicenseValidator) license validator} on every use either way.<br>
+     * <br>
+     * The file is created with room for 1,024 licenses of up to about 4 KB each if it does not exist; larger licenses
+     * are not shared. When the file is full, licenses verified later replace those verified earlier. If the file
+     * cannot be opened, or is not a shared license cache, licenses are verified without it.<br>
+     * <br>
+     * Processes running as different users can share the file through a group: it is created readable and writable
+     * by its owner and group, and the key file readable by them. Anyone who can write to the file or to the directory
+     * holding it can change the licenses the processes see, and anyone who can read the key file can forge entries,
+     * so the group and the directory must be limited to the users the processes run as. Since every process uses the
+     * file, {@link LicenseManager#clearLicenseCache()} leaves it alone; use
+     * {@link LicenseManager#clearSharedLicenseCache()} to clear it for all of them.<br>
+     * <br>
+     * This field is <b>optional</b>. If it is not set, verified licenses are not shared with other processes.
+     *
+     * @param sharedLicenseCacheFile The file through which to share verified licenses, or null to disable
+     *
+     * @since 2.0.0
+     */
+    public static void setSharedLicenseCacheFile(final File sharedLicenseCacheFile)
+    {
+        LicenseManagerProperties.sharedLicenseCacheFile = sharedLicenseCacheFile;
+    }
+
+    static File getSharedLicenseCacheFile()
+    {
+        return LicenseManagerProperties.sharedLicenseCacheFile;
+    }
+
+    /**
+     * Sets the executor on which the asynchronous methods of the license manager (such as
+     * {@link LicenseManager#getLicenseAsync(Object)}) retrieve and verify licenses that are not already cached. Since
+     * retrieving a license may block on I/O, an executor dedicated to that purpose is recommended for applications
+     * that use the asynchronous methods heavily.<br>
+     * <br>
+     * This field is <b>optional</b> and defaults to the {@link ForkJoinPool#commonPool() common fork-join pool}.
+     *
+     * @param asynchronousExecutor The executor for asynchronous license retrieval
+     *
+     * @since 2.0.0
+     */
+    public static void setAsynchronousExecutor(final Executor asynchronousExecutor)
+    {
+        LicenseManagerProperties.asynchronousExecutor = asynchronousExecutor;
+    }
+
+    static Executor getAsynchronousExecutor()
+    {
+        return LicenseManagerProperties.asynchronousExecutor == null ?
+               ForkJoinPool.commonPool() :
+               LicenseManagerProperties.asynchronousExecutor;
+    }
 }
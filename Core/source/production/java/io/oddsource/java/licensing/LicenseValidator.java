@@ -45,4 +45,22 @@ public interface LicenseValidator
      * @throws ExpiredLicenseException when the license is expired.
      */
     public abstract void validateLicense(License license) throws InvalidLicenseException;
+
+    /**
+     * Validates the license provided as of the given date, and throws an exception if the license is invalid for any
+     * reason. The license manager calls this when it validates several licenses at once, so that they are all
+     * validated against the same date. The default implementation ignores the date and calls
+     * {@link #validateLicense(License)}; validators that check the license's dates should override it.
+     *
+     * @param license The license to validate
+     * @param currentDate The date to validate the license as of, in milliseconds since January 1, 1970
+     *
+     * @throws InvalidLicenseException when the license is invalid for any reason.
+     * @throws ExpiredLicenseException when the license is expired.
+     * @since 2.0.0
+     */
+    public default void validateLicense(final License license, final long currentDate) throws InvalidLicenseException
+    {
+        this.validateLicense(license);
+    }
 }
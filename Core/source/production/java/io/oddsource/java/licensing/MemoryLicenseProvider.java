@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link LicenseProvider} that holds signed licenses in memory, keyed by context. It is mostly useful as the first
+ * tier of a {@link TieredLicenseProvider}, in front of slower license stores. The licenses are held as they were
+ * stored, still signed and encrypted, so every license is still verified by the {@link LicenseManager} when it is
+ * retrieved. Each license is copied when it is stored and again when it is retrieved, because the
+ * {@link LicenseManager} erases the signed licenses it has verified. This provider is safe for use by multiple
+ * threads.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class MemoryLicenseProvider implements LicenseProvider, WritableLicenseProvider
+{
+    private final Map<Object, SignedLicense> licenses = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty memory license provider.
+     */
+    public MemoryLicenseProvider()
+    {
+
+    }
+
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final SignedLicense signedLicense = this.licenses.get(context);
+        return signedLicense == null ? null : MemoryLicenseProvider.copy(signedLicense);
+    }
+
+    @Override
+    public void putLicense(final Object context, final SignedLicense signedLicense)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+        if(signedLicense == null)
+        {
+            throw new IllegalArgumentException("Argument signedLicense cannot be null.");
+        }
+
+        this.licenses.put(context, MemoryLicenseProvider.copy(signedLicense));
+    }
+
+    @Override
+    public void removeLicense(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        this.licenses.remove(context);
+    }
+
+    /**
+     * Gets the number of licenses held.
+     *
+     * @return the number of licenses.
+     */
+    public int size()
+    {
+        return this.licenses.size();
+    }
+
+    /**
+     * Removes all licenses.
+     */
+    public void clear()
+    {
+        this.licenses.clear();
+    }
+
+    private static SignedLicense copy(final SignedLicense signedLicense)
+    {
+        return new SignedLicense(
+            signedLicense.getLicenseContent(),
+            signedLicense.getSignatureContent(),
+            signedLicense.getSignatureAlgorithm()
+        );
+    }
+}
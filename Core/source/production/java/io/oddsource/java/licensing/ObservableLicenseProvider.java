@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+/**
+ * This specifies an interface for license stores that can tell when a stored license changes, such as a
+ * {@link FileLicenseProvider} that is {@link FileLicenseProvider#setWatchingForChanges(boolean) watching for changes}.
+ * When the {@link LicenseProvider} configured for the {@link LicenseManager} also implements this interface, the
+ * manager registers a listener that removes a context's license from its cache as soon as the store reports a change.
+ * Changed licenses then take effect almost immediately, so the manager's cache time can be set much longer.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface ObservableLicenseProvider
+{
+    /**
+     * Adds a listener to be notified when the stored license for a context changes.
+     *
+     * @param listener The listener to add
+     */
+    public abstract void addLicenseChangeListener(LicenseChangeListener listener);
+
+    /**
+     * Removes a listener previously added with {@link #addLicenseChangeListener(LicenseChangeListener)}.
+     *
+     * @param listener The listener to remove
+     */
+    public abstract void removeLicenseChangeListener(LicenseChangeListener listener);
+}
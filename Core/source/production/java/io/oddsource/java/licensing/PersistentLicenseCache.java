@@ -0,0 +1,359 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * A cache of licenses that have already been verified and decrypted, kept on disk so that it survives restarts of the
+ * application. Entries are keyed, like those of {@link VerifiedLicenseCache}, by a digest of the signed license they
+ * came from, so a license is only found here if its bytes are exactly those that were verified before.<br>
+ * <br>
+ * Each entry is sealed with a {@link LicenseCacheSeal} whose secret is kept in a key file in the same directory, so
+ * an entry written for another key pair, password or installation, and an entry that has been altered or moved to
+ * another file, all fail the check. An entry that fails the check, or that cannot be read for any other reason, is
+ * simply treated as missing, and the license is verified in full.<br>
+ * <br>
+ * The seal does not protect the cache from anyone who can write to the directory: they can replace the key file and
+ * then the entries, and so change the licenses the application sees. The directory must therefore be writable only
+ * by the user the application runs as, and since the entries hold the decrypted licenses, it should be readable only
+ * by that user as well. The key file and the entry files are created readable and writable only by their owner on
+ * file systems that support POSIX permissions. The cache is safe for use by multiple threads and by multiple
+ * processes sharing the directory.<br>
+ * <br>
+ * An entry is never replaced by the entry for a different license, so without pruning, the directory would grow with
+ * every license ever verified. Entries that have not been written or read for longer than the maximum age (30 days by
+ * default) are therefore deleted when licenses are written to the cache, at most once per hour; a license whose entry
+ * was deleted is simply verified in full the next time it is retrieved. Entries read successfully have their
+ * modification time renewed once it is older than half the maximum age, so that licenses in use are kept.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class PersistentLicenseCache
+{
+    /**
+     * The POSIX permissions of a new key file.
+     */
+    static final String keyFilePermissions = "rw-------";
+
+    private static final String keyFileName = "cache.key";
+
+    private static final int magic = 0x4C564C43;
+
+    private static final byte version = 1;
+
+    private static final int headerLength = 4 + 1 + 4;
+
+    private static final int maximumLicenseLength = 1024 * 1024;
+
+    private static final String extension = ".lvc";
+
+    private static final String temporaryPrefix = "license";
+
+    private static final String temporaryExtension = ".tmp";
+
+    private static final long defaultMaximumAge = TimeUnit.DAYS.toMillis(30);
+
+    private static final long maximumPruneInterval = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+
+    private final LicenseCacheSeal seal;
+
+    private final long maximumAge;
+
+    private final AtomicLong nextPrune = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory in which to keep the cache, which is created if it does not exist
+     * @param seal The seal with which entries are protected
+     */
+    PersistentLicenseCache(final File directory, final LicenseCacheSeal seal)
+    {
+        this(directory, seal, PersistentLicenseCache.defaultMaximumAge);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory in which to keep the cache, which is created if it does not exist
+     * @param seal The seal with which entries are protected
+     * @param maximumAge How long, in milliseconds, an entry that is not written or read is kept
+     */
+    PersistentLicenseCache(final File directory, final LicenseCacheSeal seal, final long maximumAge)
+    {
+        if(directory == null)
+        {
+            throw new IllegalArgumentException("Parameter directory must not be null.");
+        }
+
+        if(seal == null)
+        {
+            throw new IllegalArgumentException("Parameter seal must not be null.");
+        }
+
+        if(maximumAge < 1L)
+        {
+            throw new IllegalArgumentException("Parameter maximumAge must be positive.");
+        }
+
+        this.directory = directory.toPath();
+        this.seal = seal;
+        this.maximumAge = maximumAge;
+    }
+
+    /**
+     * Returns the verified license with the given key, if a sealed entry for it exists and passes the check.
+     *
+     * @param key The cache key, as computed by {@link VerifiedLicenseCache#getKey(SignedLicense)}
+     *
+     * @return the license, or null if it is not in the cache or its entry is not valid.
+     */
+    License get(final String key)
+    {
+        final Path path = this.getPath(key);
+        final byte[] entry;
+        try
+        {
+            entry = Files.readAllBytes(path);
+        }
+        catch(final IOException ignore)
+        {
+            // most often, the license has not been cached
+            return null;
+        }
+
+        try
+        {
+            final ByteBuffer buffer = ByteBuffer.wrap(entry);
+            if(entry.length < PersistentLicenseCache.headerLength + LicenseCacheSeal.macLength ||
+               buffer.getInt() != PersistentLicenseCache.magic || buffer.get() != PersistentLicenseCache.version)
+            {
+                return null;
+            }
+
+            final int length = buffer.getInt();
+            if(length < 0 ||
+               length != entry.length - PersistentLicenseCache.headerLength - LicenseCacheSeal.macLength ||
+               !this.seal.isSealed(key, entry, 0, PersistentLicenseCache.headerLength + length))
+            {
+                return null;
+            }
+
+            final int start = PersistentLicenseCache.headerLength;
+            final byte[] serialized = Arrays.copyOfRange(entry, start, start + length);
+            final License license = License.deserialize(serialized);
+            Arrays.fill(serialized, (byte) 0);
+
+            this.renew(path);
+
+            return license;
+        }
+        catch(final RuntimeException ignore)
+        {
+            return null;
+        }
+        finally
+        {
+            Arrays.fill(entry, (byte) 0);
+        }
+    }
+
+    /**
+     * Writes a license that has been verified and decrypted to the cache. If the entry cannot be written, the license
+     * is simply verified again the next time the application starts.
+     *
+     * @param key The cache key of the signed license the license came from
+     * @param license The verified license
+     */
+    void put(final String key, final License license)
+    {
+        final byte[] serialized = license.serialize();
+        if(serialized.length > PersistentLicenseCache.maximumLicenseLength)
+        {
+            return;
+        }
+
+        final int length = PersistentLicenseCache.headerLength + serialized.length;
+        final byte[] entry = new byte[length + LicenseCacheSeal.macLength];
+        ByteBuffer.wrap(entry).putInt(PersistentLicenseCache.magic).put(PersistentLicenseCache.version)
+                  .putInt(serialized.length).put(serialized);
+        System.arraycopy(this.seal.seal(key, entry, 0, length), 0, entry, length, LicenseCacheSeal.macLength);
+
+        try
+        {
+            final Path path = this.getPath(key);
+            Files.createDirectories(this.directory);
+
+            final Path temporary = Files.createTempFile(
+                this.directory, PersistentLicenseCache.temporaryPrefix, PersistentLicenseCache.temporaryExtension
+            );
+            try
+            {
+                Files.write(temporary, entry);
+                try
+                {
+                    Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                catch(final AtomicMoveNotSupportedException e)
+                {
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            finally
+            {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the license is still cached in memory, if that cache is enabled
+        }
+        finally
+        {
+            Arrays.fill(serialized, (byte) 0);
+            Arrays.fill(entry, (byte) 0);
+        }
+
+        final long time = System.currentTimeMillis();
+        final long nextPrune = this.nextPrune.get();
+        if(time >= nextPrune && this.nextPrune.compareAndSet(
+            nextPrune, time + Math.min(this.maximumAge, PersistentLicenseCache.maximumPruneInterval)
+        ))
+        {
+            this.prune(time);
+        }
+    }
+
+    /**
+     * Deletes the entries, and the temporary files of writes that never finished, that have not been written or read
+     * for longer than the maximum age. Files that cannot be deleted are left alone.
+     *
+     * @param time The current time
+     */
+    void prune(final long time)
+    {
+        final String pattern = "{*" + PersistentLicenseCache.extension + "," + PersistentLicenseCache.temporaryPrefix +
+                               "*" + PersistentLicenseCache.temporaryExtension + "}";
+        try(final DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory, pattern))
+        {
+            for(final Path entry : entries)
+            {
+                try
+                {
+                    if(time - Files.getLastModifiedTime(entry).toMillis() > this.maximumAge)
+                    {
+                        Files.deleteIfExists(entry);
+                    }
+                }
+                catch(final IOException ignore)
+                {
+                    // another process may have deleted or be using it; it is pruned again later
+                }
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the directory does not exist yet or cannot be read
+        }
+    }
+
+    /**
+     * Renews the modification time of an entry that has been read, if it is older than half the maximum age, so
+     * that the entry is not pruned while its license is in use.
+     *
+     * @param path The entry
+     */
+    private void renew(final Path path)
+    {
+        try
+        {
+            final long time = System.currentTimeMillis();
+            if(time - Files.getLastModifiedTime(path).toMillis() > this.maximumAge / 2L)
+            {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(time));
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the entry is written again if it is pruned and the license is verified again
+        }
+    }
+
+    /**
+     * Removes all licenses from the cache. Entries that cannot be deleted are left alone.
+     */
+    void clear()
+    {
+        try(final DirectoryStream<Path> entries = Files.newDirectoryStream(
+            this.directory, "*" + PersistentLicenseCache.extension
+        ))
+        {
+            for(final Path entry : entries)
+            {
+                try
+                {
+                    Files.deleteIfExists(entry);
+                }
+                catch(final IOException ignore)
+                {
+                    // another process may be using it; it is overwritten when the license is verified again
+                }
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // the directory does not exist yet or cannot be read
+        }
+    }
+
+    /**
+     * Gets the key file holding the secret of the seal for the cache in the given directory.
+     *
+     * @param directory The cache directory
+     *
+     * @return the key file.
+     */
+    static Path getKeyFile(final File directory)
+    {
+        return directory.toPath().resolve(PersistentLicenseCache.keyFileName);
+    }
+
+    Path getPath(final String key)
+    {
+        return this.directory.resolve(
+            Hex.encodeHexString(Base64.decodeBase64(key)) + PersistentLicenseCache.extension
+        );
+    }
+}
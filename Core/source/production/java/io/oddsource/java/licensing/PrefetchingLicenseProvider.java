@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.Collection;
+
+/**
+ * This specifies an interface for license stores that can retrieve the licenses for many contexts at once more cheaply
+ * than one at a time, such as a {@link JdbcLicenseProvider} that retrieves them with a few queries. When the
+ * {@link LicenseProvider} configured for the {@link LicenseManager} also implements this interface,
+ * {@link LicenseManager#getLicenses(Collection)} asks it to prefetch the licenses that are not cached before retrieving
+ * them one at a time, and those retrievals are then answered from the prefetched licenses. Once the batch has been
+ * retrieved, the manager asks the provider to discard whatever it still holds for those contexts, so that prefetched
+ * licenses never outlive the batch they were fetched for.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface PrefetchingLicenseProvider
+{
+    /**
+     * Retrieves the stored licenses for the given contexts in bulk and holds them, so that the next
+     * {@link LicenseProvider#getLicense(Object)} call for each of these contexts does not have to go to the store. A
+     * context without a stored license is also remembered, so that retrieving it does not go to the store either.
+     *
+     * @param contexts The contexts for which to prefetch the licenses
+     */
+    public abstract void prefetchLicenses(Collection<?> contexts);
+
+    /**
+     * Discards any licenses still held for the given contexts from an earlier call to
+     * {@link #prefetchLicenses(Collection)}, so that the next {@link LicenseProvider#getLicense(Object)} call for each
+     * of these contexts goes to the store again.
+     *
+     * @param contexts The contexts whose prefetched licenses should be discarded
+     */
+    public abstract void discardPrefetchedLicenses(Collection<?> contexts);
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * Wraps a {@link LicenseProvider} so that a slow or failing license store cannot hold up or exhaust the threads of the
+ * application that retrieve licenses through it. It adds three protections:<br>
+ * <br>
+ * A deadline: each retrieval runs on a separate thread, and the caller waits for it for at most the
+ * {@link #setTimeoutInMilliseconds(long) timeout}, after which the retrieval is interrupted.<br>
+ * <br>
+ * A circuit breaker: after a number of {@link #setFailureThreshold(int) consecutive failures} (including timeouts),
+ * the circuit opens and retrievals fail immediately, without reaching the store, for the
+ * {@link #setOpenDurationInMilliseconds(long) open duration}. After that, one retrieval is let through as a trial;
+ * if it succeeds the circuit closes, and if it fails the circuit opens again.<br>
+ * <br>
+ * A bulkhead: at most a {@link #setMaximumConcurrentRetrievals(int) maximum number} of retrievals run at once, and
+ * retrievals beyond that fail immediately. A retrieval counts until it actually finishes, even after its caller has
+ * timed out, so a store that hangs ties up at most that many threads.<br>
+ * <br>
+ * Every failure is reported as a {@link LicenseStoreException}, for which the {@link LicenseManager} returns the last
+ * license it verified for the context, if any. A provider that returns null (no license) has not failed. If the
+ * wrapped provider is a {@link ConditionalLicenseProvider} or an {@link ObservableLicenseProvider}, this provider
+ * passes those capabilities through.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class ResilientLicenseProvider implements LicenseProvider, ConditionalLicenseProvider, ObservableLicenseProvider
+{
+    /**
+     * The default time, in milliseconds, to wait for a retrieval.
+     */
+    public static final long defaultTimeoutInMilliseconds = 5000L;
+
+    /**
+     * The default number of consecutive failures after which the circuit opens.
+     */
+    public static final int defaultFailureThreshold = 5;
+
+    /**
+     * The default time, in milliseconds, for which the circuit stays open.
+     */
+    public static final long defaultOpenDurationInMilliseconds = 30000L;
+
+    /**
+     * The default maximum number of retrievals that can run at once.
+     */
+    public static final int defaultMaximumConcurrentRetrievals = 16;
+
+    private final LicenseProvider provider;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicBoolean trialUnderWay = new AtomicBoolean();
+
+    private final AtomicInteger retrievals = new AtomicInteger();
+
+    private volatile long openUntil;
+
+    private volatile long timeoutInMilliseconds = ResilientLicenseProvider.defaultTimeoutInMilliseconds;
+
+    private volatile int failureThreshold = ResilientLicenseProvider.defaultFailureThreshold;
+
+    private volatile long openDurationInMilliseconds = ResilientLicenseProvider.defaultOpenDurationInMilliseconds;
+
+    private volatile int maximumConcurrentRetrievals = ResilientLicenseProvider.defaultMaximumConcurrentRetrievals;
+
+    /**
+     * Constructs a resilient license provider that runs retrievals on its own daemon threads, of which there are never
+     * more than the maximum number of concurrent retrievals.
+     *
+     * @param provider The license provider to protect
+     */
+    public ResilientLicenseProvider(final LicenseProvider provider)
+    {
+        this(provider, Executors.newCachedThreadPool(ResilientLicenseProvider::newThread));
+    }
+
+    /**
+     * Constructs a resilient license provider that runs retrievals on the given executor, which should have at least
+     * as many threads as the maximum number of concurrent retrievals.
+     *
+     * @param provider The license provider to protect
+     * @param executor The executor on which to run retrievals
+     */
+    public ResilientLicenseProvider(final LicenseProvider provider, final ExecutorService executor)
+    {
+        if(provider == null)
+        {
+            throw new IllegalArgumentException("Argument provider cannot be null.");
+        }
+        if(executor == null)
+        {
+            throw new IllegalArgumentException("Argument executor cannot be null.");
+        }
+
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the wrapped provider, within the timeout.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license object, or null if no license exists.
+     *
+     * @throws LicenseStoreException if the retrieval failed or timed out, the circuit is open, or too many retrievals
+     *     are under way.
+     */
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        return this.retrieve(context, () -> this.provider.getLicense(context));
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the wrapped provider if it has changed,
+     * within the timeout. If the wrapped provider is not a {@link ConditionalLicenseProvider}, the license is always
+     * retrieved.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return {@link ConditionalLicenseProvider#NOT_MODIFIED} if the license has not changed, otherwise the signed
+     *     license object, or null if no license is found.
+     *
+     * @throws LicenseStoreException if the retrieval failed or timed out, the circuit is open, or too many retrievals
+     *     are under way.
+     */
+    @Override
+    public SignedLicense getLicenseIfModified(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        if(!(this.provider instanceof ConditionalLicenseProvider))
+        {
+            return this.getLicense(context);
+        }
+
+        return this.retrieve(context, () -> ((ConditionalLicenseProvider) this.provider).getLicenseIfModified(context));
+    }
+
+    @Override
+    public void addLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        if(this.provider instanceof ObservableLicenseProvider)
+        {
+            ((ObservableLicenseProvider) this.provider).addLicenseChangeListener(listener);
+        }
+    }
+
+    @Override
+    public void removeLicenseChangeListener(final LicenseChangeListener listener)
+    {
+        if(this.provider instanceof ObservableLicenseProvider)
+        {
+            ((ObservableLicenseProvider) this.provider).removeLicenseChangeListener(listener);
+        }
+    }
+
+    /**
+     * Indicates whether the circuit is open, so that retrievals fail without reaching the store.
+     *
+     * @return {@code true} if the circuit is open.
+     */
+    public boolean isCircuitOpen()
+    {
+        return System.currentTimeMillis() < this.openUntil;
+    }
+
+    /**
+     * Gets the number of retrievals under way, including any whose callers have timed out.
+     *
+     * @return the number of retrievals.
+     */
+    public int getRetrievalsUnderWay()
+    {
+        return this.retrievals.get();
+    }
+
+    /**
+     * Gets the time to wait for a retrieval.
+     *
+     * @return the timeout in milliseconds.
+     */
+    public long getTimeoutInMilliseconds()
+    {
+        return this.timeoutInMilliseconds;
+    }
+
+    /**
+     * Sets the time to wait for a retrieval.
+     *
+     * @param timeoutInMilliseconds The timeout in milliseconds, which must be positive
+     */
+    public void setTimeoutInMilliseconds(final long timeoutInMilliseconds)
+    {
+        if(timeoutInMilliseconds < 1L)
+        {
+            throw new IllegalArgumentException("Argument timeoutInMilliseconds must be positive.");
+        }
+
+        this.timeoutInMilliseconds = timeoutInMilliseconds;
+    }
+
+    /**
+     * Gets the number of consecutive failures after which the circuit opens.
+     *
+     * @return the failure threshold.
+     */
+    public int getFailureThreshold()
+    {
+        return this.failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which the circuit opens.
+     *
+     * @param failureThreshold The failure threshold, which must be positive
+     */
+    public void setFailureThreshold(final int failureThreshold)
+    {
+        if(failureThreshold < 1)
+        {
+            throw new IllegalArgumentException("Argument failureThreshold must be positive.");
+        }
+
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Gets the time for which the circuit stays open before a trial retrieval is let through.
+     *
+     * @return the open duration in milliseconds.
+     */
+    public long getOpenDurationInMilliseconds()
+    {
+        return this.openDurationInMilliseconds;
+    }
+
+    /**
+     * Sets the time for which the circuit stays open before a trial retrieval is let through.
+     *
+     * @param openDurationInMilliseconds The open duration in milliseconds, which must be positive
+     */
+    public void setOpenDurationInMilliseconds(final long openDurationInMilliseconds)
+    {
+        if(openDurationInMilliseconds < 1L)
+        {
+            throw new IllegalArgumentException("Argument openDurationInMilliseconds must be positive.");
+        }
+
+        this.openDurationInMilliseconds = openDurationInMilliseconds;
+    }
+
+    /**
+     * Gets the maximum number of retrievals that can run at once.
+     *
+     * @return the maximum number of concurrent retrievals.
+     */
+    public int getMaximumConcurrentRetrievals()
+    {
+        return this.maximumConcurrentRetrievals;
+    }
+
+    /**
+     * Sets the maximum number of retrievals that can run at once.
+     *
+     * @param maximumConcurrentRetrievals The maximum number of concurrent retrievals, which must be positive
+     */
+    public void setMaximumConcurrentRetrievals(final int maximumConcurrentRetrievals)
+    {
+        if(maximumConcurrentRetrievals < 1)
+        {
+            throw new IllegalArgumentException("Argument maximumConcurrentRetrievals must be positive.");
+        }
+
+        this.maximumConcurrentRetrievals = maximumConcurrentRetrievals;
+    }
+
+    private SignedLicense retrieve(final Object context, final Callable<SignedLicense> retrieval)
+    {
+        final boolean trial = this.allowRetrieval(context);
+
+        if(this.retrievals.incrementAndGet() > this.maximumConcurrentRetrievals)
+        {
+            this.retrievals.decrementAndGet();
+            this.endTrial(trial);
+            throw new LicenseStoreException(
+                "Too many license retrievals are under way to retrieve the license for context " + context + "."
+            );
+        }
+
+        // set by whichever comes first, the retrieval starting or being cancelled, so the permit is released once
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final Future<SignedLicense> future;
+        try
+        {
+            future = this.executor.submit(() -> this.run(retrieval, claimed));
+        }
+        catch(final RejectedExecutionException e)
+        {
+            this.retrievals.decrementAndGet();
+            this.endTrial(trial);
+            throw new LicenseStoreException("Failed to start retrieving the license for context " + context + ".", e);
+        }
+
+        try
+        {
+            final SignedLicense license = future.get(this.timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+            this.recordSuccess();
+            return license;
+        }
+        catch(final TimeoutException e)
+        {
+            this.cancel(future, claimed);
+            this.recordFailure(trial);
+            throw new LicenseStoreException("Timed out retrieving the license for context " + context + ".", e);
+        }
+        catch(final ExecutionException e)
+        {
+            this.recordFailure(trial);
+            if(e.getCause() instanceof LicenseStoreException)
+            {
+                throw (LicenseStoreException) e.getCause();
+            }
+            throw new LicenseStoreException(
+                "Failed to retrieve the license for context " + context + ".", e.getCause()
+            );
+        }
+        catch(final InterruptedException e)
+        {
+            this.cancel(future, claimed);
+            this.endTrial(trial);
+            Thread.currentThread().interrupt();
+            throw new LicenseStoreException(
+                "Interrupted while retrieving the license for context " + context + ".", e
+            );
+        }
+    }
+
+    private SignedLicense run(final Callable<SignedLicense> retrieval, final AtomicBoolean claimed) throws Exception
+    {
+        if(!claimed.compareAndSet(false, true))
+        {
+            return null;
+        }
+
+        try
+        {
+            return retrieval.call();
+        }
+        finally
+        {
+            this.retrievals.decrementAndGet();
+        }
+    }
+
+    private void cancel(final Future<SignedLicense> future, final AtomicBoolean claimed)
+    {
+        future.cancel(true);
+        if(claimed.compareAndSet(false, true))
+        {
+            this.retrievals.decrementAndGet();
+        }
+    }
+
+    /**
+     * Checks the circuit breaker before a retrieval.
+     *
+     * @param context The context, for the error message
+     *
+     * @return whether the retrieval is the trial retrieval of a half-open circuit.
+     *
+     * @throws LicenseStoreException if the circuit is open, or half-open with a trial retrieval already under way.
+     */
+    private boolean allowRetrieval(final Object context)
+    {
+        final long openUntil = this.openUntil;
+        if(openUntil == 0L)
+        {
+            return false;
+        }
+
+        if(System.currentTimeMillis() >= openUntil && this.trialUnderWay.compareAndSet(false, true))
+        {
+            return true;
+        }
+
+        throw new LicenseStoreException(
+            "The license store is unavailable, so the license for context " + context + " was not retrieved."
+        );
+    }
+
+    private void recordSuccess()
+    {
+        this.consecutiveFailures.set(0);
+        this.openUntil = 0L;
+        this.trialUnderWay.set(false);
+    }
+
+    private void recordFailure(final boolean trial)
+    {
+        if(trial || this.consecutiveFailures.incrementAndGet() >= this.failureThreshold)
+        {
+            this.openUntil = System.currentTimeMillis() + this.openDurationInMilliseconds;
+        }
+        this.endTrial(trial);
+    }
+
+    private void endTrial(final boolean trial)
+    {
+        if(trial)
+        {
+            this.trialUnderWay.set(false);
+        }
+    }
+
+    private static Thread newThread(final Runnable runnable)
+    {
+        final Thread thread = new Thread(runnable, "ResilientLicenseProvider");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * A cache of licenses that have already been verified and decrypted, held in a memory-mapped file that several
+ * processes on the same host share, so that a license verified by one of them need not be verified by the others.
+ * Entries are keyed, like those of {@link VerifiedLicenseCache}, by a digest of the signed license they came from, and
+ * sealed with a {@link LicenseCacheSeal} whose secret is kept in a key file next to the cache file, so a process
+ * only accepts an entry written for the exact signed license, public key and password that it uses itself. As with
+ * the {@link PersistentLicenseCache}, anyone who can write to the directory holding the cache file can replace the
+ * key file and then the entries, and so change the licenses the processes see.<br>
+ * <br>
+ * The file holds a fixed number of fixed-size slots in an open-addressed hash table. Readers never lock: each slot
+ * begins with a sequence number that a writer makes odd before it changes the slot and even again afterwards, and a
+ * reader that sees an odd number, or a different number after copying the slot than before, reads the slot again.
+ * Because Java offers no portable memory fences for mapped memory, the seal is the final check: a copy that is torn
+ * in a way the sequence number does not reveal fails the seal and is treated as missing. Writers, which are rare
+ * because each license is written once per host, take a file lock on the header so that only one process writes at a
+ * time. When all of the slots a license can occupy are taken, the first of them is overwritten.<br>
+ * <br>
+ * Licenses too large for a slot are not shared. Any entry that cannot be read is treated as missing, and the license
+ * is verified in full.<br>
+ * <br>
+ * Processes of several users can share the file through a group. On file systems that support POSIX permissions, it
+ * is created readable and writable by its owner and group ({@code rw-rw----}), and its key file readable by them
+ * ({@code rw-r-----}); the directory should give the group the same group ownership, for instance with the setgid
+ * bit. Every member of the group can read the decrypted licenses and forge entries, so the group must contain only
+ * the users the processes run as.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class SharedLicenseCache
+{
+    /**
+     * The number of slots in a newly created cache file.
+     */
+    static final int defaultSlotCount = 1024;
+
+    /**
+     * The size of each slot in a newly created cache file, in bytes.
+     */
+    static final int defaultSlotSize = 4096;
+
+    /**
+     * The POSIX permissions of a new key file.
+     */
+    static final String keyFilePermissions = "rw-r-----";
+
+    private static final String keyFileExtension = ".key";
+
+    private static final int magic = 0x4C534843;
+
+    private static final int version = 1;
+
+    private static final int headerLength = 64;
+
+    private static final int digestLength = 32;
+
+    private static final int sequenceLength = 8;
+
+    // each copied slot holds the key digest, the length, the serialized license and the MAC
+    private static final int recordHeaderLength = SharedLicenseCache.digestLength + 4;
+
+    private static final int maximumProbes = 8;
+
+    private static final int maximumReadAttempts = 64;
+
+    private static final String filePermissions = "rw-rw----";
+
+    // file locks are held by the whole process, so threads of one process take turns before locking the file
+    private static final Lock writeLock = new ReentrantLock();
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int slotCount;
+
+    private final int slotSize;
+
+    private final LicenseCacheSeal seal;
+
+    /**
+     * Opens the cache file, creating it with {@link #defaultSlotCount} slots of {@link #defaultSlotSize} bytes if it
+     * does not exist. An existing cache file keeps the number and size of slots it was created with.
+     *
+     * @param file The cache file
+     * @param seal The seal with which entries are protected
+     *
+     * @throws IOException if the file cannot be opened or mapped, or is not a license cache file.
+     */
+    SharedLicenseCache(final File file, final LicenseCacheSeal seal) throws IOException
+    {
+        this(file, SharedLicenseCache.defaultSlotCount, SharedLicenseCache.defaultSlotSize, seal);
+    }
+
+    /**
+     * Opens the cache file, creating it with the given number and size of slots if it does not exist. An existing
+     * cache file keeps the number and size of slots it was created with.
+     *
+     * @param file The cache file
+     * @param slotCount The number of slots in a new cache file
+     * @param slotSize The size of each slot in a new cache file, in bytes
+     * @param seal The seal with which entries are protected
+     *
+     * @throws IOException if the file cannot be opened or mapped, or is not a license cache file.
+     */
+    SharedLicenseCache(final File file, final int slotCount, final int slotSize, final LicenseCacheSeal seal)
+        throws IOException
+    {
+        if(file == null)
+        {
+            throw new IllegalArgumentException("Parameter file must not be null.");
+        }
+
+        if(seal == null)
+        {
+            throw new IllegalArgumentException("Parameter seal must not be null.");
+        }
+
+        if(!SharedLicenseCache.isValidLayout(slotCount, slotSize))
+        {
+            throw new IllegalArgumentException("The slot count or slot size is out of range.");
+        }
+
+        this.seal = seal;
+        this.channel = SharedLicenseCache.open(file);
+        try
+        {
+            final ByteBuffer header = ByteBuffer.allocate(SharedLicenseCache.headerLength);
+            SharedLicenseCache.writeLock.lock();
+            try
+            {
+                final FileLock lock = this.channel.lock(0L, SharedLicenseCache.headerLength, false);
+                try
+                {
+                    if(this.channel.size() < SharedLicenseCache.headerLength)
+                    {
+                        header.putInt(SharedLicenseCache.magic).putInt(SharedLicenseCache.version)
+                              .putInt(slotCount).putInt(slotSize).rewind();
+                        this.channel.write(header, 0L);
+                        header.clear();
+                    }
+
+                    while(header.hasRemaining() && this.channel.read(header, header.position()) >= 0)
+                    {
+                        // read the whole header
+                    }
+                    header.flip();
+
+                    if(header.remaining() < SharedLicenseCache.headerLength ||
+                       header.getInt() != SharedLicenseCache.magic || header.getInt() != SharedLicenseCache.version)
+                    {
+                        throw new IOException("The file " + file + " is not a shared license cache.");
+                    }
+
+                    this.slotCount = header.getInt();
+                    this.slotSize = header.getInt();
+                    if(!SharedLicenseCache.isValidLayout(this.slotCount, this.slotSize))
+                    {
+                        throw new IOException("The shared license cache " + file + " is corrupt.");
+                    }
+
+                    final long length = SharedLicenseCache.headerLength + (long) this.slotCount * this.slotSize;
+
+                    if(this.channel.size() < length)
+                    {
+                        // extending the file with one byte at the end leaves the slots zeroed, that is, empty
+                        this.channel.write(ByteBuffer.allocate(1), length - 1L);
+                    }
+
+                    this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, length);
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            finally
+            {
+                SharedLicenseCache.writeLock.unlock();
+            }
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the verified license with the given key, if a sealed entry for it is in the cache.
+     *
+     * @param key The cache key, as computed by {@link VerifiedLicenseCache#getKey(SignedLicense)}
+     *
+     * @return the license, or null if it is not in the cache or its entry cannot be read.
+     */
+    License get(final String key)
+    {
+        final byte[] digest = Base64.decodeBase64(key);
+        if(digest.length != SharedLicenseCache.digestLength)
+        {
+            return null;
+        }
+
+        final int home = this.getHomeSlot(digest);
+        for(int probe = 0; probe < SharedLicenseCache.maximumProbes && probe < this.slotCount; probe++)
+        {
+            final byte[] record = this.readSlot(this.getSlotOffset(home + probe));
+            if(record == null || SharedLicenseCache.isEmpty(record))
+            {
+                return null;
+            }
+
+            if(SharedLicenseCache.hasDigest(record, digest))
+            {
+                try
+                {
+                    return this.unseal(key, record);
+                }
+                finally
+                {
+                    Arrays.fill(record, (byte) 0);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Adds a license that has been verified and decrypted to the cache, for all processes sharing it. If the license
+     * is too large for a slot, or the cache file cannot be locked, the license is not shared.
+     *
+     * @param key The cache key of the signed license the license came from
+     * @param license The verified license
+     */
+    void put(final String key, final License license)
+    {
+        final byte[] digest = Base64.decodeBase64(key);
+        final byte[] serialized = license.serialize();
+        try
+        {
+            final int recordLength = SharedLicenseCache.recordHeaderLength + serialized.length;
+            if(digest.length != SharedLicenseCache.digestLength ||
+               SharedLicenseCache.sequenceLength + recordLength + LicenseCacheSeal.macLength > this.slotSize)
+            {
+                return;
+            }
+
+            final byte[] record = new byte[recordLength + LicenseCacheSeal.macLength];
+            ByteBuffer.wrap(record).put(digest).putInt(serialized.length).put(serialized)
+                      .put(this.seal.seal(key, serialized, 0, serialized.length));
+
+            SharedLicenseCache.writeLock.lock();
+            try
+            {
+                final FileLock lock = this.channel.lock(0L, SharedLicenseCache.headerLength, false);
+                try
+                {
+                    this.writeSlot(this.findSlotForWrite(digest), record);
+                }
+                finally
+                {
+                    lock.release();
+                }
+            }
+            catch(final IOException ignore)
+            {
+                // the license is simply not shared
+            }
+            finally
+            {
+                SharedLicenseCache.writeLock.unlock();
+            }
+
+            Arrays.fill(record, (byte) 0);
+        }
+        finally
+        {
+            Arrays.fill(serialized, (byte) 0);
+        }
+    }
+
+    /**
+     * Removes all licenses from the cache, for all processes sharing it.
+     */
+    void clear()
+    {
+        final byte[] empty = new byte[SharedLicenseCache.recordHeaderLength];
+        SharedLicenseCache.writeLock.lock();
+        try
+        {
+            final FileLock lock = this.channel.lock(0L, SharedLicenseCache.headerLength, false);
+            try
+            {
+                for(int slot = 0; slot < this.slotCount; slot++)
+                {
+                    this.writeSlot(this.getSlotOffset(slot), empty);
+                }
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        catch(final IOException ignore)
+        {
+            // entries that remain are still valid, since they are sealed
+        }
+        finally
+        {
+            SharedLicenseCache.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the cache file. The cache must not be used afterwards.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    void close() throws IOException
+    {
+        this.channel.close();
+    }
+
+    int getSlotCount()
+    {
+        return this.slotCount;
+    }
+
+    private static boolean isValidLayout(final int slotCount, final int slotSize)
+    {
+        return slotCount > 0 &&
+               slotSize > SharedLicenseCache.sequenceLength + SharedLicenseCache.recordHeaderLength +
+                          LicenseCacheSeal.macLength &&
+               (long) slotCount * slotSize <= Integer.MAX_VALUE - SharedLicenseCache.headerLength;
+    }
+
+    private int getHomeSlot(final byte[] digest)
+    {
+        // the digest is uniformly distributed, so any four of its bytes make a good hash
+        return (ByteBuffer.wrap(digest).getInt() & Integer.MAX_VALUE) % this.slotCount;
+    }
+
+    private int getSlotOffset(final int slot)
+    {
+        return SharedLicenseCache.headerLength + (slot % this.slotCount) * this.slotSize;
+    }
+
+    private int findSlotForWrite(final byte[] digest)
+    {
+        final int home = this.getHomeSlot(digest);
+        for(int probe = 0; probe < SharedLicenseCache.maximumProbes && probe < this.slotCount; probe++)
+        {
+            final int offset = this.getSlotOffset(home + probe);
+            final byte[] record = this.readSlot(offset);
+            if(record == null || SharedLicenseCache.isEmpty(record) || SharedLicenseCache.hasDigest(record, digest))
+            {
+                return offset;
+            }
+        }
+
+        return this.getSlotOffset(home);
+    }
+
+    /**
+     * Copies the record in a slot, without locking.
+     *
+     * @param offset The offset of the slot
+     *
+     * @return the record, or null if a writer kept changing the slot.
+     */
+    private byte[] readSlot(final int offset)
+    {
+        final ByteBuffer slot = this.buffer.duplicate();
+        final int maximumLength = this.slotSize - SharedLicenseCache.sequenceLength -
+                                  SharedLicenseCache.recordHeaderLength - LicenseCacheSeal.macLength;
+
+        for(int attempt = 0; attempt < SharedLicenseCache.maximumReadAttempts; attempt++)
+        {
+            final long before = slot.getLong(offset);
+            if((before & 1L) != 0L)
+            {
+                Thread.yield();
+                continue;
+            }
+
+            int length = slot.getInt(offset + SharedLicenseCache.sequenceLength + SharedLicenseCache.digestLength);
+            if(length < 0 || length > maximumLength)
+            {
+                length = 0;
+            }
+
+            final byte[] record = new byte[SharedLicenseCache.recordHeaderLength + length +
+                                           (length == 0 ? 0 : LicenseCacheSeal.macLength)];
+            slot.position(offset + SharedLicenseCache.sequenceLength);
+            slot.get(record);
+
+            if(slot.getLong(offset) == before)
+            {
+                return record;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes a record to a slot. The caller must hold the write lock.
+     *
+     * @param offset The offset of the slot
+     * @param record The record
+     */
+    private void writeSlot(final int offset, final byte[] record)
+    {
+        final ByteBuffer slot = this.buffer.duplicate();
+
+        // if a writer died while writing, the number is already odd, and the slot is recovered once this write ends
+        final long writing = slot.getLong(offset) | 1L;
+        slot.putLong(offset, writing);
+
+        slot.position(offset + SharedLicenseCache.sequenceLength);
+        slot.put(record);
+
+        slot.putLong(offset, writing + 1L);
+    }
+
+    private License unseal(final String key, final byte[] record)
+    {
+        final int length = ByteBuffer.wrap(record, SharedLicenseCache.digestLength, 4).getInt();
+        if(length != record.length - SharedLicenseCache.recordHeaderLength - LicenseCacheSeal.macLength ||
+           !this.seal.isSealed(key, record, SharedLicenseCache.recordHeaderLength, length))
+        {
+            return null;
+        }
+
+        final int start = SharedLicenseCache.recordHeaderLength;
+        final byte[] serialized = Arrays.copyOfRange(record, start, start + length);
+        try
+        {
+            return License.deserialize(serialized);
+        }
+        catch(final RuntimeException ignore)
+        {
+            return null;
+        }
+        finally
+        {
+            Arrays.fill(serialized, (byte) 0);
+        }
+    }
+
+    private static boolean isEmpty(final byte[] record)
+    {
+        for(int i = 0; i < SharedLicenseCache.recordHeaderLength; i++)
+        {
+            if(record[i] != 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean hasDigest(final byte[] record, final byte[] digest)
+    {
+        for(int i = 0; i < SharedLicenseCache.digestLength; i++)
+        {
+            if(record[i] != digest[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the key file holding the secret of the seal for the given cache file.
+     *
+     * @param file The cache file
+     *
+     * @return the key file.
+     */
+    static Path getKeyFile(final File file)
+    {
+        return new File(file.getPath() + SharedLicenseCache.keyFileExtension).toPath();
+    }
+
+    private static FileChannel open(final File file) throws IOException
+    {
+        final Path path = file.toPath();
+        if(!FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        final Set<PosixFilePermission> permissions = PosixFilePermissions.fromString(
+            SharedLicenseCache.filePermissions
+        );
+        final Set<OpenOption> options = new HashSet<>(Arrays.asList(
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+        ));
+
+        final FileChannel channel;
+        try
+        {
+            channel = FileChannel.open(path, options, PosixFilePermissions.asFileAttribute(permissions));
+        }
+        catch(final FileAlreadyExistsException ignore)
+        {
+            return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        try
+        {
+            // the umask may have taken away the group's access, which the processes of other users need
+            Files.setPosixFilePermissions(path, permissions);
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+
+        return channel;
+    }
+}
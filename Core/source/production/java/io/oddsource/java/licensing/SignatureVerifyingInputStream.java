@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+import io.oddsource.java.licensing.exception.CorruptSignatureException;
+import io.oddsource.java.licensing.exception.InvalidSignatureException;
+
+/**
+ * An input stream that feeds every byte read through it into a signature verification. This allows signed data to be
+ * verified in the same pass that it is consumed (for example, decrypted and parsed) without first reading all of it
+ * into memory. Once the data has been consumed, call {@link #verify(byte[])} to check the signature.<br>
+ * <br>
+ * Instances are obtained from {@link DataSignatureManager#newVerifyingInputStream(java.security.PublicKey,
+ * InputStream)}. Marking and resetting are not supported.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class SignatureVerifyingInputStream extends FilterInputStream
+{
+    private final Signature signature;
+
+    private boolean verified;
+
+    /**
+     * Constructor.
+     *
+     * @param signature The signature object, already initialized for verification
+     * @param in The stream containing the signed data
+     */
+    SignatureVerifyingInputStream(final Signature signature, final InputStream in)
+    {
+        super(in);
+
+        this.signature = signature;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        final int read = this.in.read();
+        if(read >= 0)
+        {
+            this.update(new byte[] {(byte) read}, 0, 1);
+        }
+
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException
+    {
+        final int read = this.in.read(bytes, offset, length);
+        if(read > 0)
+        {
+            this.update(bytes, offset, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long length) throws IOException
+    {
+        // skipped bytes must still be part of the verification
+        final byte[] buffer = new byte[(int) Math.min(length, DataSignatureManager.chunkSize)];
+
+        long skipped = 0;
+        while(skipped < length)
+        {
+            final int read = this.read(buffer, 0, (int) Math.min(buffer.length, length - skipped));
+            if(read < 0)
+            {
+                break;
+            }
+
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readLimit)
+    {
+
+    }
+
+    @Override
+    public synchronized void reset() throws IOException
+    {
+        throw new IOException("Mark and reset are not supported.");
+    }
+
+    /**
+     * Reads any data remaining in the stream and then verifies the given signature on all of the data that passed
+     * through this stream. This method may only be called once.
+     *
+     * @param signatureContent The signature to verify
+     *
+     * @throws IOException if reading the remaining data fails.
+     * @throws CorruptSignatureException if the signature was corrupt.
+     * @throws InvalidSignatureException if the signature was not valid.
+     */
+    public void verify(final byte[] signatureContent)
+        throws IOException, CorruptSignatureException, InvalidSignatureException
+    {
+        if(this.verified)
+        {
+            throw new IllegalStateException("The signature has already been verified.");
+        }
+
+        this.skip(Long.MAX_VALUE);
+        this.verified = true;
+
+        DataSignatureManager.verify(this.signature, signatureContent);
+    }
+
+    private void update(final byte[] bytes, final int offset, final int length)
+    {
+        try
+        {
+            this.signature.update(bytes, offset, length);
+        }
+        catch(final SignatureException e)
+        {
+            throw new RuntimeException("Programming error on signature.update(data) (verify).", e);
+        }
+    }
+}
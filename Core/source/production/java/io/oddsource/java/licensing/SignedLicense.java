@@ -19,7 +19,10 @@ import java.io.Serializable;
 import java.util.Arrays;
 
 /**
- * This class contains the encrypted license content and the signature for the encrypted license content.
+ * This class contains the encrypted license content and the signature for the encrypted license content, along with
+ * the identifier of the {@link io.oddsource.java.licensing.encryption.SignatureAlgorithm} the content was signed
+ * with. Licenses signed before signature algorithms were selectable have no identifier and were signed with SHA-1 with
+ * RSA.
  *
  * @author Nick Williams
  * @version 1.0.0
@@ -33,16 +36,34 @@ public final class SignedLicense implements Serializable
 
     private final byte[] signatureContent;
 
+    private final String signatureAlgorithm;
+
     /**
-     * Constructor.
+     * Constructor for a license signed with the legacy SHA-1 with RSA signature algorithm.
      *
      * @param licenseContent The license content
      * @param signatureContent The signature for the license content
      */
     public SignedLicense(final byte[] licenseContent, final byte[] signatureContent)
+    {
+        this(licenseContent, signatureContent, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param licenseContent The license content
+     * @param signatureContent The signature for the license content
+     * @param signatureAlgorithm The identifier of the algorithm the signature was created with, or null for the legacy
+     *     SHA-1 with RSA algorithm
+     *
+     * @since 2.0.0
+     */
+    public SignedLicense(final byte[] licenseContent, final byte[] signatureContent, final String signatureAlgorithm)
     {
         this.licenseContent = Arrays.copyOf(licenseContent, licenseContent.length);
         this.signatureContent = Arrays.copyOf(signatureContent, signatureContent.length);
+        this.signatureAlgorithm = signatureAlgorithm;
     }
 
     /**
@@ -68,6 +89,19 @@ public final class SignedLicense implements Serializable
         return Arrays.copyOf(this.signatureContent, this.signatureContent.length);
     }
 
+    /**
+     * Get the identifier of the algorithm the license content was signed with. This is null for licenses signed with
+     * the legacy SHA-1 with RSA algorithm.
+     *
+     * @return the signature algorithm identifier, or null.
+     *
+     * @since 2.0.0
+     */
+    public final String getSignatureAlgorithm()
+    {
+        return this.signatureAlgorithm;
+    }
+
     /**
      * Erase the contents of this object. This is a security feature to write
      * zeroes to the license and signature data so that it doesn't hang around
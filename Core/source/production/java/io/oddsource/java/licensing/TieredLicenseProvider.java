@@ -0,0 +1,648 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link LicenseProvider} that retrieves licenses from several tiers of license stores, from fastest to slowest,
+ * such as a {@link MemoryLicenseProvider}, then an {@link IndexedDirectoryLicenseProvider}, then an
+ * {@link HttpLicenseProvider}. The last tier is the authoritative source of licenses; the others hold copies.<br>
+ * <br>
+ * Tiers are queried in order, and the first tier with a license for the context answers. When a slower tier answers,
+ * the license is copied into every faster tier that is a {@link WritableLicenseProvider}, so that it is found there
+ * next time. Each tier but the last has a time to live: a copy that has been in the tier for longer than that, or that
+ * was already in the tier when this provider started, is stale. A stale copy is still returned at once, so slower
+ * tiers are never queried while the caller waits if any faster tier has a copy, and the copy is refreshed from the
+ * slower tiers in the background. If the last tier has no license for the context when a copy is refreshed, the copies
+ * are removed. Use {@link #lookUpLicense(Object)} to find out which tier answered and whether its copy was fresh.<br>
+ * <br>
+ * A faster tier that is not writable, such as a read-only mirror, never receives copies, so the time to live of its
+ * licenses counts from when each license was first found there (and the license is then stale, as if it had been there
+ * when this provider started) and starts over each time it is found stale. Its licenses are thus refreshed from the
+ * slower tiers, into the writable tiers faster than it, once per time to live rather than on every lookup.<br>
+ * <br>
+ * Licenses saved with {@link #putLicense(Object, SignedLicense)} are written through to every writable tier, or, if
+ * write-through is disabled, only to the slowest writable tier, while faster tiers drop their copies and pick up the
+ * new license when it is next retrieved. A copy read from a slower tier before a license was saved or removed is
+ * never written to the faster tiers afterward, so it cannot overwrite the new license. Instances are created with a
+ * {@link Builder}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public class TieredLicenseProvider implements LicenseProvider, WritableLicenseProvider
+{
+    private final List<Tier> tiers;
+
+    private final boolean writeThrough;
+
+    private final Executor refreshExecutor;
+
+    private final Map<Object, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    private final Map<Object, ContextVersion> versions = new ConcurrentHashMap<>();
+
+    private TieredLicenseProvider(final Builder builder)
+    {
+        // each provider records its own copy times, even when several are built from the same builder
+        final List<Tier> tiers = new ArrayList<>(builder.tiers.size());
+        for(final Tier tier : builder.tiers)
+        {
+            tiers.add(new Tier(tier.provider, tier.timeToLive));
+        }
+
+        this.tiers = Collections.unmodifiableList(tiers);
+        this.writeThrough = builder.writeThrough;
+        this.refreshExecutor = builder.refreshExecutor;
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the fastest tier that has a license for the
+     * context. See {@link #lookUpLicense(Object)}.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the signed license object, or null if no tier has a license for the context.
+     */
+    @Override
+    public SignedLicense getLicense(final Object context)
+    {
+        return this.lookUpLicense(context).getLicense();
+    }
+
+    /**
+     * Gets the stored, still-encrypted license content and signature from the fastest tier that has a license for the
+     * context, along with which tier answered and whether its copy of the license was fresh. If a tier fails, the next
+     * tier is queried; the failure is only thrown if no other tier has a license for the context.
+     *
+     * @param context The context for which to get the license
+     *
+     * @return the result of the lookup.
+     */
+    public Lookup lookUpLicense(final Object context)
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final long time = System.currentTimeMillis();
+        final int last = this.tiers.size() - 1;
+        final long version = this.getVersion(context).value;
+
+        RuntimeException failure = null;
+        for(int i = 0; i <= last; i++)
+        {
+            final Tier tier = this.tiers.get(i);
+
+            final SignedLicense license;
+            try
+            {
+                license = tier.provider.getLicense(context);
+            }
+            catch(final RuntimeException e)
+            {
+                failure = failure == null ? e : failure;
+                continue;
+            }
+
+            if(license == null)
+            {
+                tier.stored.remove(context);
+                continue;
+            }
+
+            final boolean fresh = i == last || tier.isFresh(context, time);
+            if(fresh)
+            {
+                this.copyToFasterTiers(context, license, i, time, version);
+            }
+            else
+            {
+                if(!(tier.provider instanceof WritableLicenseProvider))
+                {
+                    // copies are never written to this tier, so its time to live starts over when it is found stale
+                    tier.stored.put(context, time);
+                }
+                this.scheduleRefresh(context, i);
+            }
+
+            return new Lookup(license, i, fresh);
+        }
+
+        if(failure != null)
+        {
+            throw failure;
+        }
+
+        return new Lookup(null, -1, true);
+    }
+
+    /**
+     * Saves the license for the given context to every writable tier if write-through is enabled, or otherwise to
+     * the slowest writable tier only, removing it from the faster tiers.
+     *
+     * @param context The context for which to save the license
+     * @param signedLicense The signed license
+     *
+     * @throws IOException if the license could not be saved to or removed from a tier; the other tiers are still
+     *     updated.
+     */
+    @Override
+    public void putLicense(final Object context, final SignedLicense signedLicense) throws IOException
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+        if(signedLicense == null)
+        {
+            throw new IllegalArgumentException("Argument signedLicense cannot be null.");
+        }
+
+        final long time = System.currentTimeMillis();
+
+        IOException failure = null;
+        final ContextVersion version = this.getVersion(context);
+        version.lock.lock();
+        try
+        {
+            version.value++;
+
+            boolean slowest = true;
+            for(int i = this.tiers.size() - 1; i >= 0; i--)
+            {
+                final Tier tier = this.tiers.get(i);
+                if(!(tier.provider instanceof WritableLicenseProvider))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    if(slowest || this.writeThrough)
+                    {
+                        ((WritableLicenseProvider) tier.provider).putLicense(context, signedLicense);
+                        tier.stored.put(context, time);
+                    }
+                    else
+                    {
+                        tier.stored.remove(context);
+                        ((WritableLicenseProvider) tier.provider).removeLicense(context);
+                    }
+                }
+                catch(final IOException e)
+                {
+                    failure = TieredLicenseProvider.addFailure(failure, e);
+                }
+                slowest = false;
+            }
+        }
+        finally
+        {
+            version.lock.unlock();
+        }
+
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Removes the license for the given context from every writable tier.
+     *
+     * @param context The context whose license should be removed
+     *
+     * @throws IOException if the license could not be removed from a tier; it is still removed from the other tiers.
+     */
+    @Override
+    public void removeLicense(final Object context) throws IOException
+    {
+        if(context == null)
+        {
+            throw new IllegalArgumentException("Argument context cannot be null.");
+        }
+
+        final IOException failure;
+        final ContextVersion version = this.getVersion(context);
+        version.lock.lock();
+        try
+        {
+            version.value++;
+            failure = this.removeFromTiers(context, this.tiers.size());
+        }
+        finally
+        {
+            version.lock.unlock();
+        }
+
+        if(failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Gets the number of tiers.
+     *
+     * @return the number of tiers.
+     */
+    public int getTierCount()
+    {
+        return this.tiers.size();
+    }
+
+    /**
+     * Refreshes a stale copy of a license found in the given tier from the slower tiers, in the background, unless a
+     * refresh for the context is already under way.
+     *
+     * @param context The context
+     * @param tier The tier in which the stale copy was found
+     */
+    private void scheduleRefresh(final Object context, final int tier)
+    {
+        if(this.refreshing.putIfAbsent(context, Boolean.TRUE) != null)
+        {
+            return;
+        }
+
+        try
+        {
+            final Executor executor = this.refreshExecutor == null ?
+                                      LicenseManagerProperties.getAsynchronousExecutor() :
+                                      this.refreshExecutor;
+            executor.execute(() -> this.refresh(context, tier));
+        }
+        catch(final RejectedExecutionException e)
+        {
+            this.refreshing.remove(context);
+        }
+    }
+
+    /**
+     * Queries the tiers slower than the given tier until one has a fresh copy of the license, and copies it into the
+     * faster tiers. If the last tier has no license, the copies are removed. If the slower tiers fail, the stale
+     * copies are kept.
+     *
+     * @param context The context
+     * @param tier The tier in which the stale copy was found
+     */
+    private void refresh(final Object context, final int tier)
+    {
+        try
+        {
+            final long time = System.currentTimeMillis();
+            final int last = this.tiers.size() - 1;
+            final long version = this.getVersion(context).value;
+            for(int i = tier + 1; i <= last; i++)
+            {
+                final SignedLicense license;
+                try
+                {
+                    license = this.tiers.get(i).provider.getLicense(context);
+                }
+                catch(final RuntimeException e)
+                {
+                    continue;
+                }
+
+                if(license == null && i == last)
+                {
+                    this.removeCopies(context, version);
+                    return;
+                }
+                if(license != null && (i == last || this.tiers.get(i).isFresh(context, time)))
+                {
+                    this.copyToFasterTiers(context, license, i, time, version);
+                    return;
+                }
+            }
+        }
+        finally
+        {
+            this.refreshing.remove(context);
+        }
+    }
+
+    private ContextVersion getVersion(final Object context)
+    {
+        return this.versions.computeIfAbsent(context, (key) -> new ContextVersion());
+    }
+
+    /**
+     * Copies a license read from a slower tier into the faster tiers, unless the license for the context was saved or
+     * removed since the given version was read, in which case the copy is out of date.
+     *
+     * @param context The context
+     * @param license The license read from the slower tier
+     * @param tier The tier the license was read from
+     * @param time The time the license was read
+     * @param expectedVersion The version of the context read before the license was read
+     */
+    private void copyToFasterTiers(
+        final Object context, final SignedLicense license, final int tier, final long time, final long expectedVersion
+    )
+    {
+        if(tier == 0)
+        {
+            return;
+        }
+
+        final ContextVersion version = this.getVersion(context);
+        version.lock.lock();
+        try
+        {
+            if(version.value != expectedVersion)
+            {
+                return;
+            }
+
+            for(int i = 0; i < tier; i++)
+            {
+                final Tier faster = this.tiers.get(i);
+                if(faster.provider instanceof WritableLicenseProvider)
+                {
+                    try
+                    {
+                        ((WritableLicenseProvider) faster.provider).putLicense(context, license);
+                        faster.stored.put(context, time);
+                    }
+                    catch(final IOException | RuntimeException ignore)
+                    {
+                        // the license is copied again the next time it is retrieved from a slower tier
+                    }
+                }
+            }
+        }
+        finally
+        {
+            version.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the copies of a license that the last tier no longer has, unless the license for the context was saved
+     * or removed since the given version was read.
+     *
+     * @param context The context
+     * @param expectedVersion The version of the context read before the last tier was queried
+     */
+    private void removeCopies(final Object context, final long expectedVersion)
+    {
+        final ContextVersion version = this.getVersion(context);
+        version.lock.lock();
+        try
+        {
+            if(version.value == expectedVersion)
+            {
+                this.removeFromTiers(context, this.tiers.size() - 1);
+            }
+        }
+        finally
+        {
+            version.lock.unlock();
+        }
+    }
+
+    private IOException removeFromTiers(final Object context, final int tiers)
+    {
+        IOException failure = null;
+        for(int i = 0; i < tiers; i++)
+        {
+            final Tier tier = this.tiers.get(i);
+            tier.stored.remove(context);
+            if(tier.provider instanceof WritableLicenseProvider)
+            {
+                try
+                {
+                    ((WritableLicenseProvider) tier.provider).removeLicense(context);
+                }
+                catch(final IOException e)
+                {
+                    failure = TieredLicenseProvider.addFailure(failure, e);
+                }
+            }
+        }
+
+        return failure;
+    }
+
+    private static IOException addFailure(final IOException failure, final IOException e)
+    {
+        if(failure == null)
+        {
+            return e;
+        }
+
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * The result of looking up a license: the license, the tier that answered, and whether the tier's copy was fresh.
+     *
+     * @author Nick Williams
+     * @version 1.0.0
+     * @since 2.0.0
+     */
+    public static final class Lookup
+    {
+        private final SignedLicense license;
+
+        private final int tier;
+
+        private final boolean fresh;
+
+        private Lookup(final SignedLicense license, final int tier, final boolean fresh)
+        {
+            this.license = license;
+            this.tier = tier;
+            this.fresh = fresh;
+        }
+
+        /**
+         * Gets the signed license.
+         *
+         * @return the signed license, or null if no tier has a license for the context.
+         */
+        public SignedLicense getLicense()
+        {
+            return this.license;
+        }
+
+        /**
+         * Gets the index of the tier that answered, starting with zero for the fastest tier.
+         *
+         * @return the tier, or -1 if no tier has a license for the context.
+         */
+        public int getTier()
+        {
+            return this.tier;
+        }
+
+        /**
+         * Indicates whether the tier's copy of the license was within the tier's time to live. A stale copy is
+         * refreshed from the slower tiers in the background. Licenses from the last tier are always fresh.
+         *
+         * @return {@code true} if the copy was fresh.
+         */
+        public boolean isFresh()
+        {
+            return this.fresh;
+        }
+    }
+
+    /**
+     * The number of times the license for a context has been saved or removed, which changes only while holding the
+     * lock, so that copies from slower tiers can be discarded if the license changed while they were being read.
+     */
+    private static final class ContextVersion
+    {
+        private final Lock lock = new ReentrantLock();
+
+        private volatile long value;
+    }
+
+    /**
+     * A tier's license provider and time to live, and when each license was copied into the tier.
+     */
+    private static final class Tier
+    {
+        private final LicenseProvider provider;
+
+        private final long timeToLive;
+
+        private final Map<Object, Long> stored = new ConcurrentHashMap<>();
+
+        private Tier(final LicenseProvider provider, final long timeToLive)
+        {
+            this.provider = provider;
+            this.timeToLive = timeToLive;
+        }
+
+        private boolean isFresh(final Object context, final long time)
+        {
+            final Long storedTime = this.stored.get(context);
+
+            return storedTime != null && time - storedTime < this.timeToLive;
+        }
+    }
+
+    /**
+     * A builder for tiered license providers.
+     *
+     * @author Nick Williams
+     * @version 1.0.0
+     * @since 2.0.0
+     */
+    public static final class Builder
+    {
+        private final List<Tier> tiers = new ArrayList<>();
+
+        private boolean writeThrough = true;
+
+        private Executor refreshExecutor;
+
+        /**
+         * Creates a new builder for a tiered license provider.
+         */
+        public Builder()
+        {
+
+        }
+
+        /**
+         * Adds a tier, slower than the tiers already added. The time to live of the last tier added is ignored,
+         * because the last tier is the authoritative source of licenses.
+         *
+         * @param provider The tier's license provider
+         * @param timeToLiveInMilliseconds How long a license copied into the tier is fresh, which must be positive
+         *
+         * @return the builder instance.
+         */
+        public Builder withTier(final LicenseProvider provider, final long timeToLiveInMilliseconds)
+        {
+            if(provider == null)
+            {
+                throw new IllegalArgumentException("Argument provider cannot be null.");
+            }
+            if(timeToLiveInMilliseconds < 1L)
+            {
+                throw new IllegalArgumentException("Argument timeToLiveInMilliseconds must be positive.");
+            }
+
+            this.tiers.add(new Tier(provider, timeToLiveInMilliseconds));
+            return this;
+        }
+
+        /**
+         * Sets whether saved licenses are written to every writable tier, which is the default, or only to the
+         * slowest writable tier.
+         *
+         * @param writeThrough Whether to write licenses through to every writable tier
+         *
+         * @return the builder instance.
+         */
+        public Builder withWriteThrough(final boolean writeThrough)
+        {
+            this.writeThrough = writeThrough;
+            return this;
+        }
+
+        /**
+         * Sets the executor on which stale copies of licenses are refreshed. This is optional and defaults to the
+         * {@link LicenseManagerProperties#setAsynchronousExecutor(Executor) license manager's asynchronous executor}.
+         *
+         * @param refreshExecutor The executor for refreshing stale licenses
+         *
+         * @return the builder instance.
+         */
+        public Builder withRefreshExecutor(final Executor refreshExecutor)
+        {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        /**
+         * Builds the tiered license provider.
+         *
+         * @return the new tiered license provider.
+         *
+         * @throws IllegalStateException if no tiers were added.
+         */
+        public TieredLicenseProvider build()
+        {
+            if(this.tiers.isEmpty())
+            {
+                throw new IllegalStateException("At least one tier must be added.");
+            }
+
+            return new TieredLicenseProvider(this);
+        }
+    }
+}
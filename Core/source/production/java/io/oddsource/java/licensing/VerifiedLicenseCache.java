@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.codec.binary.Base64;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * A cache of licenses that have already been verified and decrypted, keyed by a digest of the signed license they
+ * came from rather than by context. Any number of contexts whose signed licenses are byte-for-byte identical share one
+ * entry, and a license that is retrieved again after its context's cache entry expires is found here as long as its
+ * bytes have not changed. Because the digest covers the license content, the signature, and the signature algorithm,
+ * any change to a signed license results in a different key, so a license that has not been verified can never be
+ * returned.<br>
+ * <br>
+ * The cache holds a fixed number of entries and discards the least recently used entry when it is full. It is safe
+ * for use by multiple threads.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+final class VerifiedLicenseCache
+{
+    private static final String algorithm = "SHA-256";
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<String, License> licenses;
+
+    /**
+     * Constructor.
+     *
+     * @param maximumSize The maximum number of licenses to hold
+     */
+    VerifiedLicenseCache(final int maximumSize)
+    {
+        if(maximumSize < 1)
+        {
+            throw new IllegalArgumentException("Parameter maximumSize must be positive.");
+        }
+
+        this.maximumSize = maximumSize;
+        this.licenses = new LinkedHashMap<>(16, 0.75F, true);
+    }
+
+    /**
+     * Computes the key that identifies the given signed license in this cache.
+     *
+     * @param signedLicense The signed license
+     *
+     * @return the cache key.
+     */
+    static String getKey(final SignedLicense signedLicense)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(VerifiedLicenseCache.algorithm);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(VerifiedLicenseCache.algorithm, e);
+        }
+
+        final byte[] content = signedLicense.getLicenseContent();
+        final byte[] signature = signedLicense.getSignatureContent();
+        final String signatureAlgorithm = signedLicense.getSignatureAlgorithm();
+
+        // lengths are included so that bytes cannot be moved from one field to another without changing the key
+        digest.update(ByteBuffer.allocate(8).putInt(content.length).putInt(signature.length).array());
+        digest.update(content);
+        digest.update(signature);
+        if(signatureAlgorithm != null)
+        {
+            digest.update(signatureAlgorithm.getBytes(LicensingCharsets.UTF_8));
+        }
+
+        Arrays.fill(content, (byte) 0);
+
+        return Base64.encodeBase64String(digest.digest());
+    }
+
+    /**
+     * Returns the verified license with the given key, if it is in the cache.
+     *
+     * @param key The cache key
+     *
+     * @return the license, or null if it is not in the cache.
+     */
+    License get(final String key)
+    {
+        synchronized(this.licenses)
+        {
+            return this.licenses.get(key);
+        }
+    }
+
+    /**
+     * Adds a license that has been verified and decrypted to the cache, discarding the least recently used license if
+     * the cache is full.
+     *
+     * @param key The cache key of the signed license the license came from
+     * @param license The verified license
+     */
+    void put(final String key, final License license)
+    {
+        synchronized(this.licenses)
+        {
+            this.licenses.put(key, license);
+
+            final Iterator<String> iterator = this.licenses.keySet().iterator();
+            while(this.licenses.size() > this.maximumSize)
+            {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of licenses in the cache.
+     *
+     * @return the number of licenses.
+     */
+    int size()
+    {
+        synchronized(this.licenses)
+        {
+            return this.licenses.size();
+        }
+    }
+
+    /**
+     * Removes all licenses from the cache.
+     */
+    void clear()
+    {
+        synchronized(this.licenses)
+        {
+            this.licenses.clear();
+        }
+    }
+}
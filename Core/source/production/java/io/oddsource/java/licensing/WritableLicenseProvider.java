@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import java.io.IOException;
+
+/**
+ * This specifies an interface for license stores that licenses can be saved to as well as retrieved from, such as an
+ * {@link IndexedDirectoryLicenseProvider} or a {@link MemoryLicenseProvider}. A {@link TieredLicenseProvider} copies
+ * licenses found in slower tiers into faster tiers that implement this interface.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public interface WritableLicenseProvider
+{
+    /**
+     * Saves the license for the given context, replacing any existing license for the context. Implementations must
+     * not hold on to the given signed license itself, nor return it from {@link LicenseProvider#getLicense(Object)},
+     * because the {@link LicenseManager} erases signed licenses once it has verified them.
+     *
+     * @param context The context for which to save the license
+     * @param signedLicense The signed license
+     *
+     * @throws IOException if the license could not be saved.
+     */
+    public abstract void putLicense(Object context, SignedLicense signedLicense) throws IOException;
+
+    /**
+     * Removes the license for the given context, if there is one.
+     *
+     * @param context The context whose license should be removed
+     *
+     * @throws IOException if the license could not be removed.
+     */
+    public abstract void removeLicense(Object context) throws IOException;
+}
@@ -15,16 +15,26 @@
  */
 package io.oddsource.java.licensing.encryption;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -45,7 +55,15 @@ import io.oddsource.java.licensing.exception.InappropriateKeySpecificationExcept
  * <br>
  * This encryptor still uses a combination of MD5+DES and SHA-1+AES encryption.<br>
  * <br>
- * Data encrypted with this class prior to version 0.9.1-beta cannot be decrypted anymore.
+ * Data encrypted with this class prior to version 0.9.1-beta cannot be decrypted anymore.<br>
+ * <br>
+ * Since version 2.0.0, {@link #encryptAuthenticated(byte[], char[])} produces a versioned payload encrypted with
+ * AES-GCM. It starts with a short header (a marker, a format version, and the PBKDF2-HMAC-SHA256 iteration count and
+ * per-payload salt the key was derived with) followed by a random 96-bit nonce unique to the payload and the ciphertext
+ * with a 128-bit authentication tag. No custom padding is needed, and any change to the payload is detected before any
+ * decrypted data is returned. All of the decryption methods that accept byte arrays or streams recognize both this
+ * format and the legacy format (AES with the provider's default ECB mode and PKCS#5 padding), so existing encrypted
+ * data remains readable.
  *
  * @author Nick Williams
  * @version 1.5.0
@@ -77,8 +95,26 @@ public final class Encryptor
 
     private static final int intermediateKeyLength = aesKeyLength / 8;
 
+    private static final int aesBlockSize = 16;
+
     private static final String aesWithSha1 = "AES With SHA-1 digest";
 
+    private static final String aesGcm = "AES/GCM/NoPadding";
+
+    private static final byte[] authenticatedMarker = {(byte) 'O', (byte) 'S', (byte) 'L', (byte) 'M'};
+
+    // version 1 was never released; version 2 payloads record their own PBKDF2 parameters
+    private static final byte derivedKeyVersion = 2;
+
+    private static final int authenticatedPrefixLength = Encryptor.authenticatedMarker.length + 1;
+
+    private static final int derivedKeyHeaderLength = Encryptor.authenticatedPrefixLength + 4 +
+                                                      PasswordDerivedKey.saltLength;
+
+    private static final int gcmNonceLength = 12;
+
+    private static final int gcmTagLength = 128;
+
     private static Cipher defaultEncryptionCipher;
 
     private static Cipher defaultDecryptionCipher;
@@ -213,6 +249,240 @@ public final class Encryptor
         }
     }
 
+    /**
+     * Encrypt the binary data into the versioned, authenticated AES-GCM payload format, deriving the key from the
+     * passphrase with a new random salt and {@link PasswordDerivedKey#defaultIterations}. Deriving the key is
+     * deliberately expensive; use {@link #encryptAuthenticated(byte[], PasswordDerivedKey)} to encrypt with a key
+     * derived ahead of time.
+     *
+     * @param unencrypted The binary data to encrypt
+     * @param passphrase The passphrase to encrypt the data with
+     *
+     * @return the encrypted payload.
+     *
+     * @since 2.0.0
+     */
+    public static byte[] encryptAuthenticated(final byte[] unencrypted, final char[] passphrase)
+    {
+        return Encryptor.encryptAuthenticated(
+            unencrypted, PasswordDerivedKey.generate(passphrase, PasswordDerivedKey.defaultIterations)
+        );
+    }
+
+    /**
+     * Encrypt the binary data into the versioned, authenticated AES-GCM payload format using a key derived ahead of
+     * time. The key's salt and iteration count are recorded in the payload header. A new random nonce is generated
+     * for every call, and the data is encrypted directly into the output array without being padded or copied. The
+     * result can be decrypted with {@link #decryptRaw(byte[], char[])}, which fails with a
+     * {@link FailedToDecryptException} if any part of the payload has been altered.
+     *
+     * @param unencrypted The binary data to encrypt
+     * @param key The key to encrypt the data with
+     *
+     * @return the encrypted payload.
+     *
+     * @since 2.0.0
+     */
+    public static byte[] encryptAuthenticated(final byte[] unencrypted, final PasswordDerivedKey key)
+    {
+        final byte[] nonce = new byte[Encryptor.gcmNonceLength];
+        Encryptor.random.nextBytes(nonce);
+
+        final Cipher cipher = Encryptor.getAuthenticatedCipher(Cipher.ENCRYPT_MODE, key.getSecretKey(), nonce, 0);
+
+        final int offset = Encryptor.derivedKeyHeaderLength + Encryptor.gcmNonceLength;
+        final byte[] out = new byte[offset + cipher.getOutputSize(unencrypted.length)];
+
+        final ByteBuffer header = ByteBuffer.wrap(out);
+        header.put(Encryptor.authenticatedMarker).put(Encryptor.derivedKeyVersion).putInt(key.getIterations()).
+            put(key.getSalt()).put(nonce);
+
+        try
+        {
+            // the header is authenticated along with the ciphertext so that it cannot be altered either
+            cipher.updateAAD(out, 0, Encryptor.derivedKeyHeaderLength);
+            cipher.doFinal(unencrypted, 0, unencrypted.length, out, offset);
+        }
+        catch(final ShortBufferException | IllegalBlockSizeException | BadPaddingException e)
+        {
+            throw new FailedToEncryptException(e);
+        }
+
+        return out;
+    }
+
+    /**
+     * Indicates whether the encrypted data is in the versioned, authenticated payload format produced by
+     * {@link #encryptAuthenticated(byte[], char[])}, as opposed to the legacy format.
+     *
+     * @param encrypted The encrypted data
+     *
+     * @return {@code true} if the data starts with the authenticated payload header.
+     *
+     * @since 2.0.0
+     */
+    public static boolean isAuthenticatedPayload(final byte[] encrypted)
+    {
+        return Encryptor.isAuthenticatedPayload(encrypted, encrypted.length);
+    }
+
+    private static boolean isAuthenticatedPayload(final byte[] encrypted, final int length)
+    {
+        if(length < Encryptor.authenticatedPrefixLength)
+        {
+            return false;
+        }
+
+        for(int i = 0; i < Encryptor.authenticatedMarker.length; i++)
+        {
+            if(encrypted[i] != Encryptor.authenticatedMarker[i])
+            {
+                return false;
+            }
+        }
+
+        return encrypted[Encryptor.authenticatedMarker.length] == Encryptor.derivedKeyVersion;
+    }
+
+    /**
+     * Indicates whether the encrypted data is an authenticated payload whose key was derived with the same salt and
+     * iteration count as the given key, in which case the key can be passed to
+     * {@link #decryptRaw(byte[], char[], PasswordDerivedKey)} to decrypt it without deriving the key again.
+     *
+     * @param encrypted The encrypted data
+     * @param key The derived key
+     *
+     * @return {@code true} if the data was encrypted with a key derived like the given key.
+     *
+     * @since 2.0.0
+     */
+    public static boolean isEncryptedWith(final byte[] encrypted, final PasswordDerivedKey key)
+    {
+        if(!Encryptor.isAuthenticatedPayload(encrypted) || encrypted.length < Encryptor.derivedKeyHeaderLength)
+        {
+            return false;
+        }
+
+        final int iterations = ByteBuffer.wrap(encrypted, Encryptor.authenticatedPrefixLength, 4).getInt();
+
+        return key.matches(encrypted, Encryptor.authenticatedPrefixLength + 4, iterations);
+    }
+
+    /**
+     * Derives the key that an authenticated payload was encrypted with from the passphrase and the salt and iteration
+     * count in the payload's header. Deriving the key is deliberately costly, so callers that decrypt many payloads
+     * encrypted with the same key should keep the key and check it with
+     * {@link #isEncryptedWith(byte[], PasswordDerivedKey)}.
+     *
+     * @param encrypted The encrypted data
+     * @param passphrase The passphrase the data was encrypted with
+     *
+     * @return the derived key, or null if the data is not an authenticated payload or its header is not valid.
+     *
+     * @since 2.0.0
+     */
+    public static PasswordDerivedKey deriveKey(final byte[] encrypted, final char[] passphrase)
+    {
+        if(!Encryptor.isAuthenticatedPayload(encrypted) || encrypted.length < Encryptor.derivedKeyHeaderLength)
+        {
+            return null;
+        }
+
+        final int iterations = ByteBuffer.wrap(encrypted, Encryptor.authenticatedPrefixLength, 4).getInt();
+        if(iterations < 1 || iterations > PasswordDerivedKey.maximumIterations)
+        {
+            return null;
+        }
+
+        final int saltOffset = Encryptor.authenticatedPrefixLength + 4;
+
+        return PasswordDerivedKey.derive(
+            passphrase, Arrays.copyOfRange(encrypted, saltOffset, Encryptor.derivedKeyHeaderLength), iterations
+        );
+    }
+
+    /**
+     * Encrypt the remaining bytes of the source buffer using the default passphrase and write the encrypted data to
+     * the destination buffer. The data will be padded to a safe number of bytes with randomized data exactly as
+     * {@link #encryptRaw(byte[])} does, but without copying the source bytes into an intermediate array. The output is
+     * interchangeable with the output of {@link #encryptRaw(byte[])}.<br>
+     * <br>
+     * On return, the source buffer's position will equal its limit and the destination buffer's position will have
+     * advanced by the number of bytes written.
+     *
+     * @param source The buffer containing the binary data to encrypt
+     * @param destination The buffer to write the encrypted data to
+     *
+     * @return the number of bytes written to the destination buffer.
+     *
+     * @throws BufferOverflowException if the destination buffer does not have enough space remaining, in which case
+     *     neither buffer is modified.
+     * @see #getEncryptedLength(int)
+     */
+    public static int encrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        return Encryptor.encrypt(Encryptor.getDefaultEncryptionCipher(), source, destination);
+    }
+
+    /**
+     * Encrypt the remaining bytes of the source buffer and write the encrypted data to the destination buffer. The
+     * data will be padded to a safe number of bytes with randomized data exactly as
+     * {@link #encryptRaw(byte[], char[])} does, but without copying the source bytes into an intermediate array. The
+     * output is interchangeable with the output of {@link #encryptRaw(byte[], char[])}.<br>
+     * <br>
+     * On return, the source buffer's position will equal its limit and the destination buffer's position will have
+     * advanced by the number of bytes written.
+     *
+     * @param source The buffer containing the binary data to encrypt
+     * @param destination The buffer to write the encrypted data to
+     * @param passphrase The passphrase to encrypt the data with
+     *
+     * @return the number of bytes written to the destination buffer.
+     *
+     * @throws BufferOverflowException if the destination buffer does not have enough space remaining, in which case
+     *     neither buffer is modified.
+     * @see #getEncryptedLength(int)
+     */
+    public static int encrypt(final ByteBuffer source, final ByteBuffer destination, final char[] passphrase)
+    {
+        return Encryptor.encrypt(Encryptor.getEncryptionCipher(passphrase), source, destination);
+    }
+
+    /**
+     * Returns the number of bytes that {@link #encryptRaw(byte[])} and {@link #encrypt(ByteBuffer, ByteBuffer)} will
+     * produce for plain-text data of the specified length. Use this to size destination buffers.
+     *
+     * @param unencryptedLength The length of the plain-text data
+     *
+     * @return the length of the encrypted data.
+     */
+    public static int getEncryptedLength(final int unencryptedLength)
+    {
+        // the cipher's own PKCS #5 padding always adds between 1 and a full block of bytes
+        final int padded = Math.max(unencryptedLength, Encryptor.minimumPaddedLength) + 1;
+        return (padded / Encryptor.aesBlockSize + 1) * Encryptor.aesBlockSize;
+    }
+
+    private static int encrypt(final Cipher cipher, final ByteBuffer source, final ByteBuffer destination)
+    {
+        final byte[] padding = Encryptor.getPadding(source.remaining(), Encryptor.minimumPaddedLength);
+
+        if(destination.remaining() < cipher.getOutputSize(source.remaining() + padding.length))
+        {
+            throw new BufferOverflowException();
+        }
+
+        try
+        {
+            final int written = cipher.update(source, destination);
+            return written + cipher.doFinal(ByteBuffer.wrap(padding), destination);
+        }
+        catch(final ShortBufferException | IllegalBlockSizeException | BadPaddingException e)
+        {
+            throw new FailedToEncryptException(e);
+        }
+    }
+
     /**
      * Decrypt an encrypted string using the default passphrase.
      * Any padded data will be removed from the string prior to its return.
@@ -299,6 +569,11 @@ public final class Encryptor
      */
     public static byte[] decryptRaw(final byte[] encrypted)
     {
+        if(Encryptor.isAuthenticatedPayload(encrypted))
+        {
+            return Encryptor.decryptRaw(encrypted, Encryptor.defaultPassphrase);
+        }
+
         try
         {
             return Encryptor.unPad(
@@ -326,16 +601,235 @@ public final class Encryptor
      */
     public static byte[] decryptRaw(final byte[] encrypted, final char[] passphrase)
     {
+        return Encryptor.decryptRaw(encrypted, passphrase, null);
+    }
+
+    /**
+     * Decrypt encrypted data, using a key derived ahead of time if it matches the salt and iteration count recorded in
+     * an authenticated payload. Otherwise, the key is derived from the passphrase, exactly as in
+     * {@link #decryptRaw(byte[], char[])}. Legacy payloads are always decrypted with the passphrase.
+     *
+     * @param encrypted The encrypted data to decrypt
+     * @param passphrase The passphrase to decrypt the data with
+     * @param derivedKey The key derived ahead of time from the same passphrase, or null
+     *
+     * @return the decrypted binary data.
+     *
+     * @throws FailedToDecryptException when the data was corrupt and undecryptable or when the provided decryption
+     *     password was incorrect. It is impossible to know which is the actual cause.
+     *
+     * @since 2.0.0
+     */
+    public static byte[] decryptRaw(
+        final byte[] encrypted, final char[] passphrase, final PasswordDerivedKey derivedKey
+    )
+    {
+        if(Encryptor.isAuthenticatedPayload(encrypted))
+        {
+            try
+            {
+                return Encryptor.decryptAuthenticated(encrypted, passphrase, derivedKey);
+            }
+            catch(final FailedToDecryptException e)
+            {
+                // legacy data starts with the 5-byte marker and version by chance once in about 2^40 payloads
+                if(encrypted.length % Encryptor.aesBlockSize != 0)
+                {
+                    throw e;
+                }
+
+                try
+                {
+                    return Encryptor.decryptLegacy(encrypted, Encryptor.getSecretKey(passphrase));
+                }
+                catch(final FailedToDecryptException ignore)
+                {
+                    throw e;
+                }
+            }
+        }
+
+        return Encryptor.decryptLegacy(encrypted, Encryptor.getSecretKey(passphrase));
+    }
+
+    private static byte[] decryptLegacy(final byte[] encrypted, final SecretKey secretKey)
+    {
+        final byte[] decrypted;
         try
         {
-            return Encryptor.unPad(
-                Encryptor.getDecryptionCipher(passphrase).doFinal(encrypted)
-            );
+            decrypted = Encryptor.getDecryptionCipher(secretKey).doFinal(encrypted);
         }
         catch(final IllegalBlockSizeException | BadPaddingException e)
         {
             throw new FailedToDecryptException(e);
         }
+
+        final int padded = decrypted.length == 0 ? 0 : (int) decrypted[decrypted.length - 1];
+        if(padded < 1 || padded > decrypted.length)
+        {
+            throw new FailedToDecryptException();
+        }
+
+        return Encryptor.unPad(decrypted);
+    }
+
+    private static byte[] decryptAuthenticated(
+        final byte[] encrypted, final char[] passphrase, final PasswordDerivedKey derivedKey
+    )
+    {
+        final int headerLength = Encryptor.derivedKeyHeaderLength;
+        final int offset = headerLength + Encryptor.gcmNonceLength;
+        if(encrypted.length < offset + Encryptor.gcmTagLength / 8)
+        {
+            throw new FailedToDecryptException();
+        }
+
+        final int iterations = ByteBuffer.wrap(encrypted, Encryptor.authenticatedPrefixLength, 4).getInt();
+        final int saltOffset = Encryptor.authenticatedPrefixLength + 4;
+
+        final SecretKey secretKey;
+        if(derivedKey != null && derivedKey.matches(encrypted, saltOffset, iterations))
+        {
+            secretKey = derivedKey.getSecretKey();
+        }
+        else if(iterations < 1 || iterations > PasswordDerivedKey.maximumIterations)
+        {
+            throw new FailedToDecryptException();
+        }
+        else
+        {
+            secretKey = PasswordDerivedKey.derive(
+                passphrase, Arrays.copyOfRange(encrypted, saltOffset, headerLength), iterations
+            ).getSecretKey();
+        }
+
+        final Cipher cipher = Encryptor.getAuthenticatedCipher(Cipher.DECRYPT_MODE, secretKey, encrypted, headerLength);
+        try
+        {
+            cipher.updateAAD(encrypted, 0, headerLength);
+            return cipher.doFinal(encrypted, offset, encrypted.length - offset);
+        }
+        catch(final IllegalBlockSizeException | BadPaddingException e)
+        {
+            throw new FailedToDecryptException(e);
+        }
+    }
+
+    /**
+     * Decrypt the remaining bytes of the source buffer using the default passphrase and write the decrypted data to
+     * the destination buffer. The padding is removed in place: on return, the destination buffer's position will
+     * have advanced only by the length of the original, un-padded data. The bytes between the new position and the end
+     * of the decrypted padding are left unspecified.<br>
+     * <br>
+     * The destination buffer must have at least as many bytes remaining as the source buffer.
+     *
+     * @param source The buffer containing the encrypted data to decrypt
+     * @param destination The buffer to write the decrypted data to
+     *
+     * @return the number of un-padded bytes written to the destination buffer.
+     *
+     * @throws BufferOverflowException if the destination buffer does not have enough space remaining, in which case
+     *     neither buffer is modified.
+     * @throws FailedToDecryptException when the data was corrupt and undecryptable or when the provided decryption
+     *     password was incorrect. It is impossible to know which is the actual cause.
+     */
+    public static int decrypt(final ByteBuffer source, final ByteBuffer destination)
+    {
+        return Encryptor.decrypt(Encryptor.getDefaultDecryptionCipher(), source, destination);
+    }
+
+    /**
+     * Decrypt the remaining bytes of the source buffer and write the decrypted data to the destination buffer. The
+     * padding is removed in place: on return, the destination buffer's position will have advanced only by the length
+     * of the original, un-padded data. The bytes between the new position and the end of the decrypted padding are
+     * left unspecified.<br>
+     * <br>
+     * The destination buffer must have at least as many bytes remaining as the source buffer.
+     *
+     * @param source The buffer containing the encrypted data to decrypt
+     * @param destination The buffer to write the decrypted data to
+     * @param passphrase The passphrase to decrypt the data with
+     *
+     * @return the number of un-padded bytes written to the destination buffer.
+     *
+     * @throws BufferOverflowException if the destination buffer does not have enough space remaining, in which case
+     *     neither buffer is modified.
+     * @throws FailedToDecryptException when the data was corrupt and undecryptable or when the provided decryption
+     *     password was incorrect. It is impossible to know which is the actual cause.
+     */
+    public static int decrypt(final ByteBuffer source, final ByteBuffer destination, final char[] passphrase)
+    {
+        return Encryptor.decrypt(Encryptor.getDecryptionCipher(passphrase), source, destination);
+    }
+
+    private static int decrypt(final Cipher cipher, final ByteBuffer source, final ByteBuffer destination)
+    {
+        if(destination.remaining() < cipher.getOutputSize(source.remaining()))
+        {
+            throw new BufferOverflowException();
+        }
+
+        final int written;
+        try
+        {
+            written = cipher.doFinal(source, destination);
+        }
+        catch(final ShortBufferException | IllegalBlockSizeException | BadPaddingException e)
+        {
+            throw new FailedToDecryptException(e);
+        }
+
+        final int padded = written == 0 ? 0 : (int) destination.get(destination.position() - 1);
+        if(padded < 1 || padded > written)
+        {
+            throw new FailedToDecryptException();
+        }
+
+        destination.position(destination.position() - padded);
+
+        return written - padded;
+    }
+
+    /**
+     * Wraps a stream of encrypted data in a stream that decrypts it as it is read. The encrypted data is read and
+     * decrypted in fixed-size chunks, so neither the encrypted nor the decrypted data ever needs to be held in memory
+     * all at once. Only the final few decrypted bytes, which might be padding, are held back until the end of the
+     * encrypted data is reached, at which point the padding is removed.<br>
+     * <br>
+     * If the stream contains an {@link #encryptAuthenticated(byte[], char[]) authenticated payload}, it is instead
+     * read completely and authenticated before any decrypted data is returned, so it is held in memory.<br>
+     * <br>
+     * Closing the returned stream closes the underlying stream and clears the decryption buffers.
+     *
+     * @param encrypted The stream of encrypted data to decrypt
+     * @param passphrase The passphrase to decrypt the data with
+     *
+     * @return the stream of decrypted binary data. When reading from this stream, {@link FailedToDecryptException}
+     *     will be thrown if the data was corrupt and undecryptable or if the decryption password was incorrect.
+     */
+    public static InputStream newDecryptingInputStream(final InputStream encrypted, final char[] passphrase)
+    {
+        return Encryptor.newDecryptingInputStream(encrypted, passphrase, null);
+    }
+
+    /**
+     * Wraps a stream of encrypted data in a stream that decrypts it as it is read, exactly like
+     * {@link #newDecryptingInputStream(InputStream, char[])}, but using a key derived ahead of time if it matches the
+     * salt and iteration count recorded in an authenticated payload.
+     *
+     * @param encrypted The stream of encrypted data to decrypt
+     * @param passphrase The passphrase to decrypt the data with
+     * @param derivedKey The key derived ahead of time from the same passphrase, or null
+     *
+     * @return the stream of decrypted binary data.
+     *
+     * @since 2.0.0
+     */
+    public static InputStream newDecryptingInputStream(
+        final InputStream encrypted, final char[] passphrase, final PasswordDerivedKey derivedKey
+    )
+    {
+        return new DecryptingInputStream(encrypted, passphrase, derivedKey);
     }
 
     /**
@@ -376,24 +870,41 @@ public final class Encryptor
             return out;
         }
 
+        // fill the whole array with random bytes, then overwrite the beginning with the input
         final byte[] out = new byte[length + 1];
+        Encryptor.random.nextBytes(out);
+        System.arraycopy(bytes, 0, out, 0, bytes.length);
 
-        int i = 0;
-        for(; i < bytes.length; i++)
-        {
-            out[i] = bytes[i];
-        }
+        out[length] = (byte) (length - bytes.length + 1);
 
-        final int padded = length - i;
+        return out;
+    }
 
-        // fill the rest with random bytes
-        final byte[] fill = new byte[padded - 1];
-        Encryptor.random.nextBytes(fill);
-        System.arraycopy(fill, 0, out, i, padded - 1);
+    /**
+     * Returns just the padding that {@link #pad(byte[], int)} would append to an array of {@code byte}s of the
+     * specified length. This allows the padding to be fed to a cipher after the data itself without first copying the
+     * data into a padded array.
+     *
+     * @param dataLength The length of the data to pad
+     * @param length The length to pad the data to
+     *
+     * @return the padding {@code byte}s.
+     *
+     * @see Encryptor#pad(byte[], int)
+     */
+    @SuppressWarnings("SameParameterValue")
+    private static byte[] getPadding(final int dataLength, final int length)
+    {
+        if(dataLength >= length)
+        {
+            return new byte[] {(byte) 1};
+        }
 
-        out[length] = (byte) (padded + 1);
+        final byte[] padding = new byte[length - dataLength + 1];
+        Encryptor.random.nextBytes(padding);
+        padding[padding.length - 1] = (byte) padding.length;
 
-        return out;
+        return padding;
     }
 
     /**
@@ -534,4 +1045,275 @@ public final class Encryptor
             throw new InappropriateKeyException(e.getMessage(), e);
         }
     }
+
+    private static Cipher getAuthenticatedCipher(
+        final int mode, final SecretKey secretKey, final byte[] nonce, final int nonceOffset
+    )
+    {
+        final GCMParameterSpec parameters = new GCMParameterSpec(
+            Encryptor.gcmTagLength, nonce, nonceOffset, Encryptor.gcmNonceLength
+        );
+
+        try
+        {
+            final Cipher cipher = Cipher.getInstance(Encryptor.aesGcm);
+            cipher.init(mode, secretKey, parameters);
+            return cipher;
+        }
+        catch(final NoSuchAlgorithmException | NoSuchPaddingException e)
+        {
+            throw new AlgorithmNotSupportedException(Encryptor.aesGcm, e);
+        }
+        catch(final InvalidKeyException e)
+        {
+            throw new InappropriateKeyException(e.getMessage(), e);
+        }
+        catch(final InvalidAlgorithmParameterException e)
+        {
+            if(mode == Cipher.ENCRYPT_MODE)
+            {
+                throw new FailedToEncryptException(e.getMessage(), e);
+            }
+            throw new FailedToDecryptException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A stream that decrypts data read from another stream chunk by chunk and removes the padding at the end. If the
+     * data turns out to be an authenticated payload, it is instead read and authenticated as a whole before any of it
+     * is returned.
+     */
+    private static final class DecryptingInputStream extends FilterInputStream
+    {
+        private static final int maximumPaddingLength = Encryptor.minimumPaddedLength + 1;
+
+        private static final int chunkSize = 8192;
+
+        private final char[] passphrase;
+
+        private final PasswordDerivedKey derivedKey;
+
+        private Cipher cipher;
+
+        private final byte[] encrypted = new byte[DecryptingInputStream.chunkSize];
+
+        private byte[] decrypted;
+
+        private int decryptedStart;
+
+        private int decryptedEnd;
+
+        private boolean started;
+
+        private boolean finished;
+
+        DecryptingInputStream(final InputStream in, final char[] passphrase, final PasswordDerivedKey derivedKey)
+        {
+            super(in);
+
+            // the format, and therefore the key, is not known until the first bytes have been read
+            this.passphrase = passphrase.clone();
+            this.derivedKey = derivedKey;
+            this.decrypted = new byte[DecryptingInputStream.chunkSize + Encryptor.aesBlockSize +
+                                      DecryptingInputStream.maximumPaddingLength];
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final byte[] single = new byte[1];
+            return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) throws IOException
+        {
+            if(length == 0)
+            {
+                return 0;
+            }
+
+            int available;
+            while((available = this.available()) == 0 && !this.finished)
+            {
+                this.fill();
+            }
+
+            if(available == 0)
+            {
+                return -1;
+            }
+
+            final int read = Math.min(available, length);
+            System.arraycopy(this.decrypted, this.decryptedStart, bytes, offset, read);
+            this.decryptedStart += read;
+
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException
+        {
+            final byte[] buffer = new byte[(int) Math.min(length, DecryptingInputStream.chunkSize)];
+
+            long skipped = 0;
+            while(skipped < length)
+            {
+                final int read = this.read(buffer, 0, (int) Math.min(buffer.length, length - skipped));
+                if(read < 0)
+                {
+                    break;
+                }
+
+                skipped += read;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public int available()
+        {
+            final int buffered = this.decryptedEnd - this.decryptedStart;
+
+            // until the end is reached, anything in the last few bytes could be padding
+            return this.finished ? buffered : Math.max(0, buffered - DecryptingInputStream.maximumPaddingLength);
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(final int readLimit)
+        {
+
+        }
+
+        @Override
+        public synchronized void reset() throws IOException
+        {
+            throw new IOException("Mark and reset are not supported.");
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            Arrays.fill(this.passphrase, '\u0000');
+            Arrays.fill(this.encrypted, (byte) 0);
+            Arrays.fill(this.decrypted, (byte) 0);
+            this.decryptedStart = this.decryptedEnd = 0;
+            this.finished = true;
+
+            super.close();
+        }
+
+        private void fill() throws IOException
+        {
+            // move the held-back bytes to the front to make room
+            final int buffered = this.decryptedEnd - this.decryptedStart;
+            System.arraycopy(this.decrypted, this.decryptedStart, this.decrypted, 0, buffered);
+            this.decryptedStart = 0;
+            this.decryptedEnd = buffered;
+
+            final int read = this.started ? this.in.read(this.encrypted) : this.readFirst();
+            if(this.finished)
+            {
+                return;
+            }
+
+            try
+            {
+                if(read < 0)
+                {
+                    this.ensureCapacity(this.cipher.getOutputSize(0));
+                    this.decryptedEnd += this.cipher.doFinal(this.decrypted, this.decryptedEnd);
+                    this.unPad();
+                    this.finished = true;
+                }
+                else if(read > 0)
+                {
+                    this.ensureCapacity(this.cipher.getOutputSize(read));
+                    this.decryptedEnd += this.cipher.update(this.encrypted, 0, read, this.decrypted, this.decryptedEnd);
+                }
+            }
+            catch(final ShortBufferException | IllegalBlockSizeException | BadPaddingException e)
+            {
+                throw new FailedToDecryptException(e);
+            }
+        }
+
+        private int readFirst() throws IOException
+        {
+            this.started = true;
+
+            int read = 0;
+            while(read < Encryptor.authenticatedPrefixLength)
+            {
+                final int chunk = this.in.read(this.encrypted, read, this.encrypted.length - read);
+                if(chunk < 0)
+                {
+                    break;
+                }
+                read += chunk;
+            }
+
+            if(!Encryptor.isAuthenticatedPayload(this.encrypted, read))
+            {
+                this.cipher = Encryptor.getDecryptionCipher(this.passphrase);
+                Arrays.fill(this.passphrase, '\u0000');
+
+                return read == 0 ? -1 : read;
+            }
+
+            // authenticated payloads must be verified as a whole before any of the data may be used
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream(DecryptingInputStream.chunkSize * 2);
+            payload.write(this.encrypted, 0, read);
+            while((read = this.in.read(this.encrypted)) >= 0)
+            {
+                payload.write(this.encrypted, 0, read);
+            }
+
+            final byte[] encryptedPayload = payload.toByteArray();
+            try
+            {
+                Arrays.fill(this.decrypted, (byte) 0);
+                this.decrypted = Encryptor.decryptRaw(encryptedPayload, this.passphrase, this.derivedKey);
+                this.decryptedStart = 0;
+                this.decryptedEnd = this.decrypted.length;
+                this.finished = true;
+            }
+            finally
+            {
+                Arrays.fill(this.passphrase, '\u0000');
+                Arrays.fill(encryptedPayload, (byte) 0);
+            }
+
+            return read;
+        }
+
+        private void ensureCapacity(final int additional)
+        {
+            if(this.decrypted.length - this.decryptedEnd < additional)
+            {
+                final byte[] larger = Arrays.copyOf(this.decrypted, this.decryptedEnd + additional);
+                Arrays.fill(this.decrypted, (byte) 0);
+                this.decrypted = larger;
+            }
+        }
+
+        private void unPad()
+        {
+            final int buffered = this.decryptedEnd - this.decryptedStart;
+            final int padded = buffered == 0 ? 0 : (int) this.decrypted[this.decryptedEnd - 1];
+            if(padded < 1 || padded > buffered)
+            {
+                throw new FailedToDecryptException();
+            }
+
+            this.decryptedEnd -= padded;
+        }
+    }
 }
@@ -141,18 +141,28 @@ public final class KeyFileUtilities
             Encryptor.decryptRaw(fileContents, passphrase)
         );
 
-        try
+        // keys do not record their algorithm, so try each registered key algorithm in turn, starting with RSA
+        InvalidKeySpecException failure = null;
+        for(final String algorithm : SignatureAlgorithms.getKeyAlgorithms())
         {
-            return KeyFactory.getInstance(KeyFileUtilities.keyAlgorithm).generatePrivate(privateKeySpec);
-        }
-        catch(final NoSuchAlgorithmException e)
-        {
-            throw new AlgorithmNotSupportedException(KeyFileUtilities.keyAlgorithm, e);
-        }
-        catch(final InvalidKeySpecException e)
-        {
-            throw new InappropriateKeySpecificationException(e);
+            try
+            {
+                return KeyFactory.getInstance(algorithm).generatePrivate(privateKeySpec);
+            }
+            catch(final NoSuchAlgorithmException e)
+            {
+                if(algorithm.equals(KeyFileUtilities.keyAlgorithm))
+                {
+                    throw new AlgorithmNotSupportedException(algorithm, e);
+                }
+            }
+            catch(final InvalidKeySpecException e)
+            {
+                failure = failure == null ? e : failure;
+            }
         }
+
+        throw new InappropriateKeySpecificationException(failure);
     }
 
     /**
@@ -182,17 +192,27 @@ public final class KeyFileUtilities
     {
         final X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(Encryptor.decryptRaw(fileContents, passphrase));
 
-        try
+        // keys do not record their algorithm, so try each registered key algorithm in turn, starting with RSA
+        InvalidKeySpecException failure = null;
+        for(final String algorithm : SignatureAlgorithms.getKeyAlgorithms())
         {
-            return KeyFactory.getInstance(KeyFileUtilities.keyAlgorithm).generatePublic(publicKeySpec);
-        }
-        catch(final NoSuchAlgorithmException e)
-        {
-            throw new AlgorithmNotSupportedException(KeyFileUtilities.keyAlgorithm, e);
-        }
-        catch(final InvalidKeySpecException e)
-        {
-            throw new InappropriateKeySpecificationException(e);
+            try
+            {
+                return KeyFactory.getInstance(algorithm).generatePublic(publicKeySpec);
+            }
+            catch(final NoSuchAlgorithmException e)
+            {
+                if(algorithm.equals(KeyFileUtilities.keyAlgorithm))
+                {
+                    throw new AlgorithmNotSupportedException(algorithm, e);
+                }
+            }
+            catch(final InvalidKeySpecException e)
+            {
+                failure = failure == null ? e : failure;
+            }
         }
+
+        throw new InappropriateKeySpecificationException(failure);
     }
 }
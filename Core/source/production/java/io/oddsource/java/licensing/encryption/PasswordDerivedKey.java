@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+import io.oddsource.java.licensing.exception.InappropriateKeySpecificationException;
+
+/**
+ * An AES key derived from a passphrase with PBKDF2-HMAC-SHA256, along with the salt and iteration count it was derived
+ * with. The salt and iteration count are recorded in the header of every payload encrypted with
+ * {@link Encryptor#encryptAuthenticated(byte[], PasswordDerivedKey)}, so that the key can be derived again when the
+ * payload is decrypted.<br>
+ * <br>
+ * Deriving a key is deliberately expensive. To keep that cost off of the threads that encrypt or decrypt licenses,
+ * derive the key once up front and pass it to {@link Encryptor#encryptAuthenticated(byte[], PasswordDerivedKey)} or
+ * {@link Encryptor#decryptRaw(byte[], char[], PasswordDerivedKey)}. Keep in mind that the derived key stays in memory
+ * for as long as this object is referenced.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class PasswordDerivedKey
+{
+    /**
+     * The iteration count used when none is specified.
+     */
+    public static final int defaultIterations = 310000;
+
+    /**
+     * The largest iteration count accepted, which bounds the work a payload header can demand.
+     */
+    public static final int maximumIterations = 10000000;
+
+    /**
+     * The length of the salt, in bytes.
+     */
+    public static final int saltLength = 16;
+
+    private static final String algorithm = "PBKDF2WithHmacSHA256";
+
+    private static final int keyLength = 128;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final byte[] salt;
+
+    private final int iterations;
+
+    private final SecretKey secretKey;
+
+    private PasswordDerivedKey(final byte[] salt, final int iterations, final SecretKey secretKey)
+    {
+        this.salt = salt;
+        this.iterations = iterations;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * Derives a key from the passphrase using a new random salt.
+     *
+     * @param passphrase The passphrase to derive the key from
+     * @param iterations The PBKDF2 iteration count, between 1 and {@link #maximumIterations}
+     *
+     * @return the derived key.
+     */
+    public static PasswordDerivedKey generate(final char[] passphrase, final int iterations)
+    {
+        final byte[] salt = new byte[PasswordDerivedKey.saltLength];
+        PasswordDerivedKey.random.nextBytes(salt);
+
+        return PasswordDerivedKey.derive(passphrase, salt, iterations);
+    }
+
+    /**
+     * Derives a key from the passphrase using the given salt.
+     *
+     * @param passphrase The passphrase to derive the key from
+     * @param salt The salt, which must be {@link #saltLength} bytes long
+     * @param iterations The PBKDF2 iteration count, between 1 and {@link #maximumIterations}
+     *
+     * @return the derived key.
+     */
+    public static PasswordDerivedKey derive(final char[] passphrase, final byte[] salt, final int iterations)
+    {
+        if(salt == null || salt.length != PasswordDerivedKey.saltLength)
+        {
+            throw new IllegalArgumentException("The salt must be " + PasswordDerivedKey.saltLength + " bytes long.");
+        }
+
+        if(iterations < 1 || iterations > PasswordDerivedKey.maximumIterations)
+        {
+            throw new IllegalArgumentException(
+                "The iteration count must be between 1 and " + PasswordDerivedKey.maximumIterations + "."
+            );
+        }
+
+        final PBEKeySpec keySpec = new PBEKeySpec(passphrase, salt, iterations, PasswordDerivedKey.keyLength);
+        try
+        {
+            final byte[] key = SecretKeyFactory.getInstance(PasswordDerivedKey.algorithm).
+                generateSecret(keySpec).getEncoded();
+
+            final SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Arrays.fill(key, (byte) 0);
+
+            return new PasswordDerivedKey(salt.clone(), iterations, secretKey);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(PasswordDerivedKey.algorithm, e);
+        }
+        catch(final InvalidKeySpecException e)
+        {
+            throw new InappropriateKeySpecificationException(e);
+        }
+        finally
+        {
+            keySpec.clearPassword();
+        }
+    }
+
+    /**
+     * Returns a copy of the salt this key was derived with.
+     *
+     * @return the salt.
+     */
+    public byte[] getSalt()
+    {
+        return this.salt.clone();
+    }
+
+    /**
+     * Returns the PBKDF2 iteration count this key was derived with.
+     *
+     * @return the iteration count.
+     */
+    public int getIterations()
+    {
+        return this.iterations;
+    }
+
+    SecretKey getSecretKey()
+    {
+        return this.secretKey;
+    }
+
+    boolean matches(final byte[] salt, final int saltOffset, final int iterations)
+    {
+        if(iterations != this.iterations)
+        {
+            return false;
+        }
+
+        int difference = 0;
+        for(int i = 0; i < PasswordDerivedKey.saltLength; i++)
+        {
+            difference |= this.salt[i] ^ salt[saltOffset + i];
+        }
+
+        return difference == 0;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import java.security.KeyPair;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * This specifies an interface for a signature algorithm with which licenses can be signed and verified. The standard
+ * algorithms are defined in {@link StandardSignatureAlgorithm}; additional algorithms can be made available by
+ * implementing this interface and registering the implementation with
+ * {@link SignatureAlgorithms#register(SignatureAlgorithm)}.<br>
+ * <br>
+ * The {@link #getIdentifier() identifier} of the algorithm is stored with each signed license, so that the license
+ * manager knows which algorithm to verify the license with. Licenses without an identifier were signed with
+ * {@link StandardSignatureAlgorithm#SHA1_WITH_RSA}.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+@SuppressWarnings({"UnusedReturnValue", "unused"})
+public interface SignatureAlgorithm
+{
+    /**
+     * Returns the identifier stored with each license signed using this algorithm. This must never change once
+     * licenses have been signed with the algorithm.
+     *
+     * @return the license header identifier.
+     */
+    public abstract String getIdentifier();
+
+    /**
+     * Returns the name of the algorithm for {@link java.security.Signature#getInstance(String)}.
+     *
+     * @return the signature algorithm name.
+     */
+    public abstract String getSignatureAlgorithmName();
+
+    /**
+     * Returns the name of the algorithm for {@link java.security.KeyFactory#getInstance(String)}, used to read the
+     * keys for this signature algorithm.
+     *
+     * @return the key algorithm name.
+     */
+    public abstract String getKeyAlgorithm();
+
+    /**
+     * Generates a new public/private key pair suitable for use with this signature algorithm.
+     *
+     * @return a public/private key pair.
+     *
+     * @throws AlgorithmNotSupportedException if the algorithm or its key parameters are not supported on this system.
+     */
+    public abstract KeyPair generateKeyPair() throws AlgorithmNotSupportedException;
+}
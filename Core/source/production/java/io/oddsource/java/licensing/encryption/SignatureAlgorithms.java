@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * The registry of signature algorithms known to the license manager, looked up by the identifier stored in each signed
+ * license. All of the {@link StandardSignatureAlgorithm}s are registered automatically.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class SignatureAlgorithms
+{
+    private static final Map<String, SignatureAlgorithm> algorithms = new LinkedHashMap<>();
+
+    static
+    {
+        for(final StandardSignatureAlgorithm algorithm : StandardSignatureAlgorithm.values())
+        {
+            SignatureAlgorithms.algorithms.put(algorithm.getIdentifier(), algorithm);
+        }
+    }
+
+    private SignatureAlgorithms()
+    {
+        throw new AssertionError("This class cannot be instantiated.");
+    }
+
+    /**
+     * Returns the algorithm used to sign licenses that do not specify an algorithm, which is
+     * {@link StandardSignatureAlgorithm#SHA1_WITH_RSA}.
+     *
+     * @return the legacy signature algorithm.
+     */
+    public static SignatureAlgorithm getLegacyAlgorithm()
+    {
+        return StandardSignatureAlgorithm.SHA1_WITH_RSA;
+    }
+
+    /**
+     * Registers an additional signature algorithm so that licenses signed with it can be verified.
+     *
+     * @param algorithm The algorithm to register
+     *
+     * @throws IllegalArgumentException if an algorithm with the same identifier is already registered.
+     */
+    public static void register(final SignatureAlgorithm algorithm)
+    {
+        if(algorithm == null || algorithm.getIdentifier() == null)
+        {
+            throw new IllegalArgumentException("The algorithm and its identifier must not be null.");
+        }
+
+        synchronized(SignatureAlgorithms.algorithms)
+        {
+            if(SignatureAlgorithms.algorithms.containsKey(algorithm.getIdentifier()))
+            {
+                throw new IllegalArgumentException(
+                    "A signature algorithm with identifier \"" + algorithm.getIdentifier() + "\" is already registered."
+                );
+            }
+
+            SignatureAlgorithms.algorithms.put(algorithm.getIdentifier(), algorithm);
+        }
+    }
+
+    /**
+     * Returns the algorithm with the given license header identifier. A null identifier denotes the
+     * {@link #getLegacyAlgorithm() legacy algorithm}.
+     *
+     * @param identifier The identifier stored in the license
+     *
+     * @return the matching algorithm.
+     *
+     * @throws AlgorithmNotSupportedException if no algorithm is registered with the given identifier.
+     */
+    public static SignatureAlgorithm forIdentifier(final String identifier) throws AlgorithmNotSupportedException
+    {
+        if(identifier == null)
+        {
+            return SignatureAlgorithms.getLegacyAlgorithm();
+        }
+
+        final SignatureAlgorithm algorithm;
+        synchronized(SignatureAlgorithms.algorithms)
+        {
+            algorithm = SignatureAlgorithms.algorithms.get(identifier);
+        }
+
+        if(algorithm == null)
+        {
+            throw new AlgorithmNotSupportedException(identifier);
+        }
+
+        return algorithm;
+    }
+
+    /**
+     * Returns the distinct key algorithms of all registered signature algorithms, in registration order (so the
+     * legacy RSA key algorithm is always first).
+     *
+     * @return the key algorithm names.
+     */
+    static List<String> getKeyAlgorithms()
+    {
+        final List<String> keyAlgorithms = new ArrayList<>();
+        synchronized(SignatureAlgorithms.algorithms)
+        {
+            for(final SignatureAlgorithm algorithm : SignatureAlgorithms.algorithms.values())
+            {
+                if(!keyAlgorithms.contains(algorithm.getKeyAlgorithm()))
+                {
+                    keyAlgorithms.add(algorithm.getKeyAlgorithm());
+                }
+            }
+        }
+
+        return keyAlgorithms;
+    }
+}
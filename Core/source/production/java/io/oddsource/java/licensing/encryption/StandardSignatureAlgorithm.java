@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.ECGenParameterSpec;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * The signature algorithms supported out of the box.<br>
+ * <br>
+ * {@link #SHA1_WITH_RSA} is the legacy algorithm and remains the default. {@link #SHA256_WITH_ECDSA} (on the NIST
+ * P-256 curve) and {@link #ED25519} produce much smaller keys and signatures (64 bytes versus 256 bytes for RSA-2048),
+ * and are considerably faster at signing. Ed25519 is only available on Java 15 and newer.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public enum StandardSignatureAlgorithm implements SignatureAlgorithm
+{
+    /**
+     * SHA-1 with RSA-2048, the algorithm all licenses were signed with before signature algorithms were selectable.
+     */
+    SHA1_WITH_RSA("SHA1withRSA", "SHA1withRSA", KeyFileUtilities.keyAlgorithm)
+        {
+            @Override
+            void initialize(final KeyPairGenerator generator)
+            {
+                try
+                {
+                    generator.initialize(2048);
+                }
+                catch(final InvalidParameterException e)
+                {
+                    throw new AlgorithmNotSupportedException("RSA-2048", e);
+                }
+            }
+        },
+
+    /**
+     * SHA-256 with ECDSA on the NIST P-256 (secp256r1) curve.
+     */
+    SHA256_WITH_ECDSA("SHA256withECDSA", "SHA256withECDSA", "EC")
+        {
+            @Override
+            void initialize(final KeyPairGenerator generator)
+            {
+                try
+                {
+                    generator.initialize(new ECGenParameterSpec("secp256r1"));
+                }
+                catch(final InvalidAlgorithmParameterException e)
+                {
+                    throw new AlgorithmNotSupportedException("EC secp256r1", e);
+                }
+            }
+        },
+
+    /**
+     * The Edwards-curve digital signature algorithm on Curve25519. Requires Java 15 or newer.
+     */
+    ED25519("Ed25519", "Ed25519", "Ed25519")
+        {
+            @Override
+            void initialize(final KeyPairGenerator generator)
+            {
+
+            }
+        };
+
+    private final String identifier;
+
+    private final String signatureAlgorithmName;
+
+    private final String keyAlgorithm;
+
+    StandardSignatureAlgorithm(final String identifier, final String signatureAlgorithmName, final String keyAlgorithm)
+    {
+        this.identifier = identifier;
+        this.signatureAlgorithmName = signatureAlgorithmName;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    @Override
+    public String getIdentifier()
+    {
+        return this.identifier;
+    }
+
+    @Override
+    public String getSignatureAlgorithmName()
+    {
+        return this.signatureAlgorithmName;
+    }
+
+    @Override
+    public String getKeyAlgorithm()
+    {
+        return this.keyAlgorithm;
+    }
+
+    @Override
+    public KeyPair generateKeyPair() throws AlgorithmNotSupportedException
+    {
+        final KeyPairGenerator generator;
+        try
+        {
+            generator = KeyPairGenerator.getInstance(this.keyAlgorithm);
+        }
+        catch(final NoSuchAlgorithmException e)
+        {
+            throw new AlgorithmNotSupportedException(this.keyAlgorithm, e);
+        }
+
+        this.initialize(generator);
+
+        return generator.generateKeyPair();
+    }
+
+    abstract void initialize(KeyPairGenerator generator);
+}
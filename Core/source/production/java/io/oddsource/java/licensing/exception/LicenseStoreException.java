@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.exception;
+
+/**
+ * This exception is thrown when a license store cannot be reached or fails while retrieving a license, such as when a
+ * database query fails. Unlike a provider returning null, which means that there is no license for the context, it
+ * means that whether there is a license is not known.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+@SuppressWarnings("unused")
+public class LicenseStoreException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     */
+    public LicenseStoreException()
+    {
+        super("An error occurred while retrieving the license from the license store.");
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param message The message
+     */
+    public LicenseStoreException(final String message)
+    {
+        super(message);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cause The cause
+     */
+    public LicenseStoreException(final Throwable cause)
+    {
+        super("An error occurred while retrieving the license from the license store.", cause);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param message The message
+     * @param cause The cause
+     */
+    public LicenseStoreException(final String message, final Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -22,7 +22,11 @@ import java.util.Collection;
  * Wraps a collection such that it cannot be modified. There is some overhead
  * associated with this due to verification of hash codes on every call to
  * prevent tampering with via reflection, but this is well worth it if your goal
- * is security and you truly need an unmodifiable collection.
+ * is security and you truly need an unmodifiable collection.<br>
+ * <br>
+ * Reads do not lock. The wrapped collection is never modified after
+ * construction and is published through a final field, so any number of
+ * threads (including virtual threads) can read it at once.
  *
  * @param <E> Any object
  *
@@ -83,104 +87,77 @@ public abstract class ImmutableAbstractCollection<E> extends ValidObject
     @Override
     public final boolean equals(final Object o)
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return o == this || (
-                o instanceof ImmutableAbstractCollection &&
-                this.internalCollection.equals(
-                    ((ImmutableAbstractCollection) o).internalCollection
-                )
-            );
-        }
+        this.checkValidity();
+        return o == this || (
+            o instanceof ImmutableAbstractCollection &&
+            this.internalCollection.equals(
+                ((ImmutableAbstractCollection) o).internalCollection
+            )
+        );
     }
 
     @Override
     public final int hashCode()
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalHashCode;
-        }
+        this.checkValidity();
+        return this.internalHashCode;
     }
 
     @Override
     public final boolean contains(final Object object)
     {
-        synchronized(this.internalCollection)
+        this.checkValidity();
+        try
         {
-            this.checkValidity();
-            try
-            {
-                return this.internalCollection.contains(object);
-            }
-            catch(final ClassCastException e)
-            {
-                return false;
-            }
+            return this.internalCollection.contains(object);
+        }
+        catch(final ClassCastException e)
+        {
+            return false;
         }
     }
 
     @Override
     public final boolean containsAll(final Collection<?> c)
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalCollection.containsAll(c);
-        }
+        this.checkValidity();
+        return this.internalCollection.containsAll(c);
     }
 
     @Override
     public final boolean isEmpty()
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalCollection.isEmpty();
-        }
+        this.checkValidity();
+        return this.internalCollection.isEmpty();
     }
 
     @Override
     public final ImmutableIterator<E> iterator()
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return new ImmutableIterator<>(this.internalCollection.iterator(), this);
-        }
+        this.checkValidity();
+        return new ImmutableIterator<>(this.internalCollection.iterator(), this);
     }
 
     @Override
     public final int size()
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalCollection.size();
-        }
+        this.checkValidity();
+        return this.internalCollection.size();
     }
 
     @Override
     public final Object[] toArray()
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalCollection.toArray();
-        }
+        this.checkValidity();
+        return this.internalCollection.toArray();
     }
 
     @Override
     @SuppressWarnings("SuspiciousToArrayCall")
     public final <T> T[] toArray(final T[] prototype)
     {
-        synchronized(this.internalCollection)
-        {
-            this.checkValidity();
-            return this.internalCollection.toArray(prototype);
-        }
+        this.checkValidity();
+        return this.internalCollection.toArray(prototype);
     }
 
     @Override
@@ -58,72 +58,51 @@ public final class ImmutableArrayList<E> extends ImmutableAbstractCollection<E>
     @SuppressWarnings({"unchecked", "CloneDoesntCallSuperClone"})
     public final ImmutableArrayList<E> clone()
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return new ImmutableArrayList<>((List<E>) this.internalList.clone());
-        }
+        this.checkValidity();
+        return new ImmutableArrayList<>((List<E>) this.internalList.clone());
     }
 
     @Override
     public final E get(final int index)
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return this.internalList.get(index);
-        }
+        this.checkValidity();
+        return this.internalList.get(index);
     }
 
     @Override
     public final int indexOf(final Object o)
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return this.internalList.indexOf(o);
-        }
+        this.checkValidity();
+        return this.internalList.indexOf(o);
     }
 
     @Override
     public final int lastIndexOf(final Object o)
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return this.internalList.lastIndexOf(o);
-        }
+        this.checkValidity();
+        return this.internalList.lastIndexOf(o);
     }
 
     @Override
     public final ImmutableListIterator<E> listIterator()
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return new ImmutableListIterator<>(this.internalList.listIterator(), this);
-        }
+        this.checkValidity();
+        return new ImmutableListIterator<>(this.internalList.listIterator(), this);
     }
 
     @Override
     public final ImmutableListIterator<E> listIterator(final int index)
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            return new ImmutableListIterator<>(this.internalList.listIterator(index), this);
-        }
+        this.checkValidity();
+        return new ImmutableListIterator<>(this.internalList.listIterator(index), this);
     }
 
     @Override
     public final ImmutableArrayList<E> subList(final int fromIndex, final int toIndex)
     {
-        synchronized(this.internalList)
-        {
-            this.checkValidity();
-            final List<E> subList = this.internalList.subList(fromIndex, toIndex);
-            return new ImmutableArrayList<>(subList);
-        }
+        this.checkValidity();
+        final List<E> subList = this.internalList.subList(fromIndex, toIndex);
+        return new ImmutableArrayList<>(subList);
     }
 
     @Override
@@ -41,21 +41,15 @@ public final class ImmutableIterator<E> implements Immutable, Iterator<E>
     @Override
     public boolean hasNext()
     {
-        synchronized(this.validObject)
-        {
-            this.validObject.checkValidity();
-            return this.internal.hasNext();
-        }
+        this.validObject.checkValidity();
+        return this.internal.hasNext();
     }
 
     @Override
     public E next()
     {
-        synchronized(this.validObject)
-        {
-            this.validObject.checkValidity();
-            return this.internal.next();
-        }
+        this.validObject.checkValidity();
+        return this.internal.next();
     }
 
     @Override
@@ -60,11 +60,8 @@ public final class ImmutableLinkedHashSet<E> extends ImmutableAbstractCollection
     @SuppressWarnings({"unchecked", "CloneDoesntCallSuperClone"})
     public final ImmutableLinkedHashSet<E> clone()
     {
-        synchronized(this.internalSet)
-        {
-            this.checkValidity();
-            return new ImmutableLinkedHashSet<>((Set<E>) this.internalSet.clone());
-        }
+        this.checkValidity();
+        return new ImmutableLinkedHashSet<>((Set<E>) this.internalSet.clone());
     }
 
     /**
@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for AsynchronousFileLicenseProvider.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestAsynchronousFileLicenseProvider
+{
+    private AsynchronousFileLicenseProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        this.provider = new AsynchronousFileLicenseProvider();
+        this.provider.setFilePrefix("testAsynchronousFile");
+        this.provider.setFileSuffix(".lic");
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    private SignedLicense getLicenseAsync(Object context) throws Exception
+    {
+        return this.provider.getLicenseAsync(context).toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseAsyncNullContext()
+    {
+        this.provider.getLicenseAsync(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetExecutorNull()
+    {
+        this.provider.setExecutor(null);
+    }
+
+    @Test
+    public void testGetLicenseAsyncOpensFileOnExecutor() throws Exception
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x09}, new byte[] {0x0A});
+        File file = new File("testAsynchronousFile05.lic");
+        FileUtils.writeByteArrayToFile(file, new ObjectSerializer().writeObject(signedLicense));
+        List<Runnable> tasks = new ArrayList<>();
+        this.provider.setExecutor(tasks::add);
+
+        try
+        {
+            CompletableFuture<SignedLicense> future = this.provider.getLicenseAsync("05").toCompletableFuture();
+
+            assertFalse("The future should not be complete before the executor runs.", future.isDone());
+            assertEquals("The number of tasks is not correct.", 1, tasks.size());
+
+            tasks.get(0).run();
+            SignedLicense returned = future.get(10, TimeUnit.SECONDS);
+
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                signedLicense.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+        }
+        finally
+        {
+            FileUtils.forceDelete(file);
+        }
+    }
+
+    @Test
+    public void testGetLicenseAsyncExecutorRejects() throws Exception
+    {
+        this.provider.setExecutor((task) -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        try
+        {
+            this.getLicenseAsync("NoSuchFile");
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertTrue("The cause is not correct.", e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testGetLicenseAsyncNoFile() throws Exception
+    {
+        assertNull("The license should be null.", this.getLicenseAsync("NoSuchFile"));
+    }
+
+    @Test
+    public void testGetLicenseAsync01() throws Exception
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01, 0x02, 0x03}, new byte[] {0x04, 0x05});
+        File file = new File("testAsynchronousFile01.lic");
+        FileUtils.writeByteArrayToFile(file, new ObjectSerializer().writeObject(signedLicense));
+
+        try
+        {
+            SignedLicense returned = this.getLicenseAsync("01");
+
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                signedLicense.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+            assertArrayEquals(
+                "The signature content is not correct.",
+                signedLicense.getSignatureContent(),
+                returned.getSignatureContent()
+            );
+        }
+        finally
+        {
+            FileUtils.forceDelete(file);
+        }
+    }
+
+    @Test
+    public void testGetLicenseAsync02() throws Exception
+    {
+        // large enough that it may take more than one read
+        byte[] content = new byte[300000];
+        for(int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte) (i % 251);
+        }
+        SignedLicense signedLicense = new SignedLicense(content, new byte[] {0x06}, "Ed25519");
+        File file = new File("testAsynchronousFile02.lic");
+        FileUtils.writeByteArrayToFile(file, Base64.encodeBase64(new ObjectSerializer().writeObject(signedLicense)));
+        this.provider.setBase64Encoded(true);
+
+        try
+        {
+            SignedLicense returned = this.getLicenseAsync("02");
+
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals("The license content is not correct.", content, returned.getLicenseContent());
+            assertEquals("The algorithm is not correct.", "Ed25519", returned.getSignatureAlgorithm());
+        }
+        finally
+        {
+            FileUtils.forceDelete(file);
+        }
+    }
+
+    @Test
+    public void testGetLicenseAsyncCorrupt() throws Exception
+    {
+        File file = new File("testAsynchronousFile03.lic");
+        FileUtils.writeByteArrayToFile(file, new byte[] {0x01, 0x02, 0x03});
+
+        try
+        {
+            this.getLicenseAsync("03");
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertTrue("The cause is not correct.", e.getCause() instanceof RuntimeException);
+        }
+        finally
+        {
+            FileUtils.forceDelete(file);
+        }
+    }
+
+    @Test
+    public void testGetLicenseMatchesBlocking() throws IOException
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x07}, new byte[] {0x08});
+        File file = new File("testAsynchronousFile04.lic");
+        FileUtils.writeByteArrayToFile(file, new ObjectSerializer().writeObject(signedLicense));
+
+        try
+        {
+            SignedLicense returned = this.provider.getLicense("04");
+
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                signedLicense.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+        }
+        finally
+        {
+            FileUtils.forceDelete(file);
+        }
+    }
+}
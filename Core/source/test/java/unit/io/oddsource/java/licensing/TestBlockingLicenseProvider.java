@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for BlockingLicenseProvider.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestBlockingLicenseProvider
+{
+    private AsynchronousLicenseProvider wrapped;
+
+    private BlockingLicenseProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        this.wrapped = EasyMock.createStrictMock(AsynchronousLicenseProvider.class);
+        this.provider = new BlockingLicenseProvider(this.wrapped);
+    }
+
+    @After
+    public void tearDown()
+    {
+        EasyMock.verify(this.wrapped);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullProvider()
+    {
+        EasyMock.replay(this.wrapped);
+
+        new BlockingLicenseProvider(null);
+    }
+
+    @Test
+    public void testGetLicense()
+    {
+        final SignedLicense signedLicense = new SignedLicense(new byte[] {0x01}, new byte[] {0x02});
+        final CompletableFuture<SignedLicense> future = new CompletableFuture<>();
+        EasyMock.expect(this.wrapped.getLicenseAsync("blocking-1")).andReturn(future);
+        EasyMock.replay(this.wrapped);
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                future.complete(signedLicense);
+            }
+        }).start();
+
+        assertSame("The license is not correct.", signedLicense, this.provider.getLicense("blocking-1"));
+    }
+
+    @Test
+    public void testGetLicenseAsync()
+    {
+        CompletableFuture<SignedLicense> future = new CompletableFuture<>();
+        EasyMock.expect(this.wrapped.getLicenseAsync("blocking-2")).andReturn(future);
+        EasyMock.replay(this.wrapped);
+
+        assertSame("The stage is not correct.", future, this.provider.getLicenseAsync("blocking-2"));
+    }
+
+    @Test
+    public void testGetLicenseUncheckedFailure()
+    {
+        CompletableFuture<SignedLicense> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("test-3"));
+        EasyMock.expect(this.wrapped.getLicenseAsync("blocking-3")).andReturn(future);
+        EasyMock.replay(this.wrapped);
+
+        try
+        {
+            this.provider.getLicense("blocking-3");
+            fail("Expected java.lang.IllegalStateException, got no exception.");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("The message is not correct.", "test-3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testGetLicenseCheckedFailure()
+    {
+        CompletableFuture<SignedLicense> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("test-4"));
+        EasyMock.expect(this.wrapped.getLicenseAsync("blocking-4")).andReturn(future);
+        EasyMock.replay(this.wrapped);
+
+        try
+        {
+            this.provider.getLicense("blocking-4");
+            fail("Expected java.util.concurrent.CompletionException, got no exception.");
+        }
+        catch(CompletionException e)
+        {
+            assertSame("The cause is not correct.", IOException.class, e.getCause().getClass());
+        }
+    }
+}
@@ -15,17 +15,30 @@
  */
 package io.oddsource.java.licensing;
 
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.binary.Base64;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithms;
+import io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm;
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+import io.oddsource.java.licensing.exception.CorruptSignatureException;
+import io.oddsource.java.licensing.exception.InappropriateKeyException;
 import io.oddsource.java.licensing.exception.InvalidSignatureException;
 
 /**
@@ -197,4 +210,267 @@ public class TestDataSignatureManager
             TestDataSignatureManager.publicKey, data, signature
         );
     }
+
+    @Test
+    public void testStreamingSignature01() throws Exception
+    {
+        byte[] data = Arrays.copyOf(new byte[] {(byte) 19, (byte) 23, (byte) 29, (byte) 31}, 629383);
+
+        byte[] signature = this.manager.signData(
+            TestDataSignatureManager.privateKey, data
+        );
+
+        this.manager.verifySignature(
+            TestDataSignatureManager.publicKey, new ByteArrayInputStream(data), signature
+        );
+    }
+
+    @Test(expected = InvalidSignatureException.class)
+    public void testStreamingSignature02() throws Exception
+    {
+        byte[] data = Arrays.copyOf(new byte[] {(byte) 19, (byte) 23, (byte) 29, (byte) 31}, 629383);
+
+        byte[] signature = this.manager.signData(
+            TestDataSignatureManager.privateKey, data
+        );
+
+        data[629382] = 76;
+
+        this.manager.verifySignature(
+            TestDataSignatureManager.publicKey, new ByteArrayInputStream(data), signature
+        );
+    }
+
+    @Test
+    public void testChannelSignature01() throws Exception
+    {
+        byte[] data = Arrays.copyOf(new byte[] {(byte) 19, (byte) 23, (byte) 29, (byte) 31}, 629383);
+
+        byte[] signature = this.manager.signData(
+            TestDataSignatureManager.privateKey, data
+        );
+
+        this.manager.verifySignature(
+            TestDataSignatureManager.publicKey, Channels.newChannel(new ByteArrayInputStream(data)), signature
+        );
+    }
+
+    @Test(expected = InvalidSignatureException.class)
+    public void testChannelSignature02() throws Exception
+    {
+        byte[] data = Arrays.copyOf(new byte[] {(byte) 19, (byte) 23, (byte) 29, (byte) 31}, 629383);
+
+        byte[] signature = this.manager.signData(
+            TestDataSignatureManager.privateKey, data
+        );
+
+        data[8192] = 76;
+
+        this.manager.verifySignature(
+            TestDataSignatureManager.publicKey, Channels.newChannel(new ByteArrayInputStream(data)), signature
+        );
+    }
+
+    @Test
+    public void testDefaultSignatureAlgorithm()
+    {
+        assertSame(
+            "The default algorithm is not correct.",
+            SignatureAlgorithms.getLegacyAlgorithm(),
+            this.manager.getSignatureAlgorithm()
+        );
+    }
+
+    private void assertSignatureAlgorithm(SignatureAlgorithm algorithm, int maximumSignatureLength)
+    {
+        KeyPair keyPair;
+        try
+        {
+            keyPair = algorithm.generateKeyPair();
+        }
+        catch(AlgorithmNotSupportedException e)
+        {
+            keyPair = null;
+        }
+        Assume.assumeTrue(algorithm.getIdentifier() + " is not supported on this JVM.", keyPair != null);
+
+        DataSignatureManager manager = new DataSignatureManager(algorithm);
+
+        byte[] data = Arrays.copyOf(new byte[] {(byte) 19, (byte) 23, (byte) 29, (byte) 31}, 4096);
+
+        byte[] signature = manager.signData(keyPair.getPrivate(), data);
+
+        assertTrue("The signature is too long.", signature.length <= maximumSignatureLength);
+
+        manager.verifySignature(keyPair.getPublic(), data, signature);
+
+        data[4095] = 76;
+
+        try
+        {
+            manager.verifySignature(keyPair.getPublic(), data, signature);
+            fail("Expected InvalidSignatureException, but no exception thrown.");
+        }
+        catch(InvalidSignatureException ignore)
+        {
+
+        }
+    }
+
+    @Test
+    public void testEllipticCurveSignature()
+    {
+        this.assertSignatureAlgorithm(StandardSignatureAlgorithm.SHA256_WITH_ECDSA, 72);
+    }
+
+    @Test
+    public void testEd25519Signature()
+    {
+        this.assertSignatureAlgorithm(StandardSignatureAlgorithm.ED25519, 64);
+    }
+
+    @Test(expected = InappropriateKeyException.class)
+    public void testMismatchedKeyAlgorithm()
+    {
+        new DataSignatureManager(StandardSignatureAlgorithm.SHA256_WITH_ECDSA).verifySignature(
+            TestDataSignatureManager.publicKey, new byte[] {(byte) 19}, new byte[] {(byte) 23}
+        );
+    }
+
+    @Test
+    public void testReuseAfterFailures()
+    {
+        byte[] data = new byte[] {(byte) 29, (byte) 31, (byte) 37};
+        byte[] signature = this.manager.signData(TestDataSignatureManager.privateKey, data);
+
+        try
+        {
+            this.manager.verifySignature(TestDataSignatureManager.publicKey, new byte[] {(byte) 41}, signature);
+            fail("Expected InvalidSignatureException, but no exception thrown.");
+        }
+        catch(InvalidSignatureException ignore)
+        {
+
+        }
+
+        try
+        {
+            this.manager.verifySignature(TestDataSignatureManager.publicKey, data, new byte[] {(byte) 43});
+            fail("Expected CorruptSignatureException, but no exception thrown.");
+        }
+        catch(CorruptSignatureException ignore)
+        {
+
+        }
+
+        this.manager.verifySignature(TestDataSignatureManager.publicKey, data, signature);
+        this.manager.verifySignature(TestDataSignatureManager.publicKey, data, signature);
+
+        assertArrayEquals(
+            "The signature should be the same.",
+            signature,
+            this.manager.signData(TestDataSignatureManager.privateKey, data)
+        );
+    }
+
+    @Test
+    public void testReuseWithDifferentKeys()
+    {
+        KeyPair keyPair = SignatureAlgorithms.getLegacyAlgorithm().generateKeyPair();
+        byte[] data = new byte[] {(byte) 47, (byte) 53};
+
+        byte[] first = this.manager.signData(TestDataSignatureManager.privateKey, data);
+        byte[] second = this.manager.signData(keyPair.getPrivate(), data);
+
+        this.manager.verifySignature(TestDataSignatureManager.publicKey, data, first);
+        this.manager.verifySignature(keyPair.getPublic(), data, second);
+
+        try
+        {
+            this.manager.verifySignature(TestDataSignatureManager.publicKey, data, second);
+            fail("Expected InvalidSignatureException, but no exception thrown.");
+        }
+        catch(InvalidSignatureException ignore)
+        {
+
+        }
+    }
+
+    @Test
+    public void testVerifyAll()
+    {
+        byte[][] data = new byte[][] {
+            new byte[] {(byte) 59}, new byte[] {(byte) 61}, new byte[] {(byte) 67}, new byte[] {(byte) 71}
+        };
+        byte[][] signatures = new byte[][] {
+            this.manager.signData(TestDataSignatureManager.privateKey, data[0]),
+            this.manager.signData(TestDataSignatureManager.privateKey, data[0]),
+            new byte[] {(byte) 73},
+            this.manager.signData(TestDataSignatureManager.privateKey, data[3])
+        };
+
+        boolean[] results = this.manager.verifyAll(TestDataSignatureManager.publicKey, data, signatures);
+
+        assertEquals("The number of results is not correct.", 4, results.length);
+        assertTrue("The first signature should be valid.", results[0]);
+        assertFalse("The second signature should be invalid.", results[1]);
+        assertFalse("The third signature should be corrupt.", results[2]);
+        assertTrue("The fourth signature should be valid.", results[3]);
+    }
+
+    @Test
+    public void testVerifyAllEmpty()
+    {
+        assertEquals(
+            "There should be no results.",
+            0,
+            this.manager.verifyAll(TestDataSignatureManager.publicKey, new byte[0][], new byte[0][]).length
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVerifyAllMismatchedLengths()
+    {
+        this.manager.verifyAll(TestDataSignatureManager.publicKey, new byte[2][], new byte[1][]);
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception
+    {
+        final byte[] data = new byte[] {(byte) 79, (byte) 83, (byte) 89};
+        final byte[] signature = this.manager.signData(TestDataSignatureManager.privateKey, data);
+        final AtomicInteger failures = new AtomicInteger();
+
+        Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int j = 0; j < 50; j++)
+                    {
+                        try
+                        {
+                            TestDataSignatureManager.this.manager.verifySignature(
+                                TestDataSignatureManager.publicKey, data, signature
+                            );
+                        }
+                        catch(RuntimeException e)
+                        {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals("No verification should have failed.", 0, failures.get());
+    }
 }
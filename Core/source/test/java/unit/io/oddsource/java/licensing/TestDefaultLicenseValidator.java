@@ -178,4 +178,31 @@ public class TestDefaultLicenseValidator
 
         this.validator.validateLicense(license);
     }
+
+    @Test(expected = ExpiredLicenseException.class)
+    public void testValidateLicenseAsOfDate01()
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Simple Product Name(TM)").
+            withGoodAfterDate(2000000L).
+            withGoodBeforeDate(3000000L).
+            build();
+
+        this.validator.validateLicense(license, 3000001L);
+    }
+
+    @Test
+    public void testValidateLicenseAsOfDate02()
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Simple Product Name(TM)").
+            withGoodAfterDate(2000000L).
+            withGoodBeforeDate(3000000L).
+            build();
+
+        // the license expired long ago, but was valid as of the given date
+        this.validator.validateLicense(license, 2500000L);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.encryption.Encryptor;
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
+
+/**
+ * Test class for DerivedKeyCache.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestDerivedKeyCache
+{
+    @Before
+    public void setUp()
+    {
+
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    private static PasswordDerivedKey key(final int salt)
+    {
+        byte[] bytes = new byte[PasswordDerivedKey.saltLength];
+        bytes[0] = (byte) salt;
+        return PasswordDerivedKey.derive("keyCachePassword".toCharArray(), bytes, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructionZeroSize()
+    {
+        new DerivedKeyCache(0);
+    }
+
+    @Test
+    public void testGetMatchingKey()
+    {
+        DerivedKeyCache cache = new DerivedKeyCache(2);
+        PasswordDerivedKey key1 = TestDerivedKeyCache.key(1);
+        PasswordDerivedKey key2 = TestDerivedKeyCache.key(2);
+        cache.put(key1);
+        cache.put(key2);
+
+        assertSame("The first key is not correct.", key1, cache.get(Encryptor.encryptAuthenticated(new byte[5], key1)));
+        assertSame(
+            "The second key is not correct.",
+            key2,
+            cache.get(Encryptor.encryptAuthenticated(new byte[5], key2))
+        );
+        assertNull(
+            "There should be no key for another salt.",
+            cache.get(Encryptor.encryptAuthenticated(new byte[5], TestDerivedKeyCache.key(3)))
+        );
+        assertNull("There should be no key for a legacy payload.", cache.get(Encryptor.encryptRaw(new byte[5])));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDiscarded()
+    {
+        DerivedKeyCache cache = new DerivedKeyCache(2);
+        PasswordDerivedKey key1 = TestDerivedKeyCache.key(1);
+        PasswordDerivedKey key2 = TestDerivedKeyCache.key(2);
+        PasswordDerivedKey key3 = TestDerivedKeyCache.key(3);
+        cache.put(key1);
+        cache.put(key2);
+        assertSame("The first key is not correct.", key1, cache.get(Encryptor.encryptAuthenticated(new byte[5], key1)));
+
+        cache.put(key3);
+
+        assertEquals("The size is not correct.", 2, cache.size());
+        assertSame("The first key should remain.", key1, cache.get(Encryptor.encryptAuthenticated(new byte[5], key1)));
+        assertNull("The second key should be gone.", cache.get(Encryptor.encryptAuthenticated(new byte[5], key2)));
+    }
+
+    @Test
+    public void testSameParametersReplaced()
+    {
+        DerivedKeyCache cache = new DerivedKeyCache(2);
+        PasswordDerivedKey key1 = TestDerivedKeyCache.key(1);
+        PasswordDerivedKey duplicate = TestDerivedKeyCache.key(1);
+        cache.put(key1);
+        cache.put(duplicate);
+
+        assertEquals("The size is not correct.", 1, cache.size());
+        assertSame(
+            "The key is not correct.",
+            duplicate,
+            cache.get(Encryptor.encryptAuthenticated(new byte[5], key1))
+        );
+    }
+}
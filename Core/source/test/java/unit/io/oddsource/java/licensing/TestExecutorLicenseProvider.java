@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for ExecutorLicenseProvider.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestExecutorLicenseProvider
+{
+    private LicenseProvider wrapped;
+
+    private ExecutorService executor;
+
+    private ExecutorLicenseProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        this.wrapped = EasyMock.createStrictMock(LicenseProvider.class);
+        this.executor = Executors.newSingleThreadExecutor();
+        this.provider = new ExecutorLicenseProvider(this.wrapped, this.executor);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdownNow();
+        EasyMock.verify(this.wrapped);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullProvider()
+    {
+        EasyMock.replay(this.wrapped);
+
+        new ExecutorLicenseProvider(null, this.executor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullExecutor()
+    {
+        EasyMock.replay(this.wrapped);
+
+        new ExecutorLicenseProvider(this.wrapped, null);
+    }
+
+    @Test
+    public void testGetLicense()
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01}, new byte[] {0x02});
+        EasyMock.expect(this.wrapped.getLicense("executor-1")).andReturn(signedLicense);
+        EasyMock.replay(this.wrapped);
+
+        assertSame("The license is not correct.", signedLicense, this.provider.getLicense("executor-1"));
+    }
+
+    @Test
+    public void testGetLicenseAsync() throws Exception
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x03}, new byte[] {0x04});
+        EasyMock.expect(this.wrapped.getLicense("executor-2")).andReturn(signedLicense);
+        EasyMock.replay(this.wrapped);
+
+        assertSame(
+            "The license is not correct.",
+            signedLicense,
+            this.provider.getLicenseAsync("executor-2").toCompletableFuture().get(10, TimeUnit.SECONDS)
+        );
+    }
+
+    @Test
+    public void testGetLicenseAsyncFailure() throws Exception
+    {
+        EasyMock.expect(this.wrapped.getLicense("executor-3")).andThrow(new IllegalStateException("test-3"));
+        EasyMock.replay(this.wrapped);
+
+        try
+        {
+            this.provider.getLicenseAsync("executor-3").toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertSame("The cause is not correct.", IllegalStateException.class, e.getCause().getClass());
+            assertEquals("The message is not correct.", "test-3", e.getCause().getMessage());
+        }
+    }
+}
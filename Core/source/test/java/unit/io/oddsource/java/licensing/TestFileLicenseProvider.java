@@ -18,10 +18,17 @@ package io.oddsource.java.licensing;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
@@ -238,7 +245,7 @@ public class TestFileLicenseProvider
     @Test
     public void testGetLicenseData02()
     {
-        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).
+        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).withConstructor().
             addMockedMethod("getLicenseFile").createStrictMock();
 
         EasyMock.expect(this.provider.getLicenseFile("test02")).andReturn(null);
@@ -252,7 +259,7 @@ public class TestFileLicenseProvider
     @Test
     public void testGetLicenseData03()
     {
-        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).
+        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).withConstructor().
             addMockedMethod("getLicenseFile").createStrictMock();
 
         EasyMock.expect(this.provider.getLicenseFile("another03")).andReturn(new File("file03"));
@@ -269,7 +276,7 @@ public class TestFileLicenseProvider
         File temp = new File("testGetLicenseData04.lic");
         FileUtils.writeStringToFile(temp, "test get 04", StandardCharsets.UTF_8);
 
-        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).
+        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).withConstructor().
             addMockedMethod("getLicenseFile").createStrictMock();
 
         EasyMock.expect(this.provider.getLicenseFile("test04")).andReturn(new File("testGetLicenseData04.lic"));
@@ -289,7 +296,7 @@ public class TestFileLicenseProvider
         File temp = new File("testGetLicenseData05.lic");
         FileUtils.writeByteArrayToFile(temp, Base64.encodeBase64("another get 05".getBytes()));
 
-        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).
+        this.provider = EasyMock.createMockBuilder(FileLicenseProvider.class).withConstructor().
             addMockedMethod("getLicenseFile").createStrictMock();
 
         EasyMock.expect(this.provider.getLicenseFile("test05")).andReturn(new File("testGetLicenseData05.lic"));
@@ -303,4 +310,315 @@ public class TestFileLicenseProvider
 
         FileUtils.forceDelete(temp);
     }
+
+    @Test
+    public void testSetWatchingForChanges() throws IOException
+    {
+        assertFalse("watchingForChanges should be false.", this.provider.isWatchingForChanges());
+        this.provider.setWatchingForChanges(true);
+        assertTrue("watchingForChanges should be true now.", this.provider.isWatchingForChanges());
+        this.provider.setWatchingForChanges(false);
+        assertFalse("watchingForChanges should be false again.", this.provider.isWatchingForChanges());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddLicenseChangeListenerNull()
+    {
+        this.provider.addLicenseChangeListener(null);
+    }
+
+    @Test
+    public void testWatchingForChanges01() throws Exception
+    {
+        File temp = new File("testWatchingForChanges01.lic");
+        FileUtils.writeStringToFile(temp, "test watch 01", StandardCharsets.UTF_8);
+
+        BlockingQueue<Object> changes = new LinkedBlockingQueue<>();
+        this.provider.setFilePrefix("testWatchingForChanges");
+        this.provider.setFileSuffix(".lic");
+        this.provider.addLicenseChangeListener(changes::add);
+        this.provider.setWatchingForChanges(true);
+
+        try
+        {
+            assertNotNull("The data should not be null.", this.provider.getLicenseData("01"));
+
+            FileUtils.writeStringToFile(temp, "test watch 01 modified", StandardCharsets.UTF_8);
+
+            assertEquals("The listener should have been notified.", "01", changes.poll(30, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            this.provider.setWatchingForChanges(false);
+            FileUtils.forceDelete(temp);
+        }
+    }
+
+    @Test
+    public void testWatchingForChanges02() throws Exception
+    {
+        File temp = new File("testWatchingForChanges02.lic");
+
+        BlockingQueue<Object> changes = new LinkedBlockingQueue<>();
+        this.provider.setFilePrefix("testWatchingForChanges");
+        this.provider.setFileSuffix(".lic");
+        this.provider.setWatchingForChanges(true);
+        this.provider.addLicenseChangeListener(changes::add);
+
+        try
+        {
+            assertNull("The data should be null.", this.provider.getLicenseData("02"));
+
+            FileUtils.writeStringToFile(temp, "test watch 02", StandardCharsets.UTF_8);
+
+            assertEquals("The listener should have been notified.", "02", changes.poll(30, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            this.provider.setWatchingForChanges(false);
+            FileUtils.forceDelete(temp);
+        }
+    }
+
+    @Test
+    public void testSetMaximumFileSize()
+    {
+        assertEquals(
+            "The maximum file size is not correct.",
+            FileLicenseProvider.defaultMaximumFileSize,
+            this.provider.getMaximumFileSize()
+        );
+        this.provider.setMaximumFileSize(1024);
+        assertEquals("The maximum file size is not correct now.", 1024, this.provider.getMaximumFileSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetMaximumFileSizeZero()
+    {
+        this.provider.setMaximumFileSize(0);
+    }
+
+    @Test
+    public void testGetLicenseDataTooLarge() throws IOException
+    {
+        File temp = new File("testGetLicenseDataTooLarge.lic");
+        FileUtils.writeStringToFile(temp, "too large", StandardCharsets.UTF_8);
+
+        this.provider.setFilePrefix("testGetLicenseData");
+        this.provider.setFileSuffix(".lic");
+
+        try
+        {
+            assertNotNull("The data should not be null.", this.provider.getLicenseData("TooLarge"));
+
+            this.provider.setMaximumFileSize(8);
+
+            assertNull("The data should be null.", this.provider.getLicenseData("TooLarge"));
+        }
+        finally
+        {
+            FileUtils.forceDelete(temp);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseIfModifiedNullContext()
+    {
+        this.provider.getLicenseIfModified(null);
+    }
+
+    @Test
+    public void testGetLicenseIfModified() throws IOException
+    {
+        SignedLicense first = new SignedLicense(new byte[] {0x01, 0x02, 0x03}, new byte[] {0x04, 0x05});
+        SignedLicense second = new SignedLicense(new byte[] {0x01, 0x02, 0x03, 0x04}, new byte[] {0x05, 0x06});
+        File temp = new File("testGetLicenseIfModified.lic");
+        FileUtils.writeByteArrayToFile(temp, new ObjectSerializer().writeObject(first));
+
+        this.provider.setFilePrefix("testGetLicenseIfModified");
+        this.provider.setFileSuffix(".lic");
+
+        try
+        {
+            SignedLicense returned = this.provider.getLicense("");
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                first.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+
+            assertSame(
+                "The license should not be modified.",
+                ConditionalLicenseProvider.NOT_MODIFIED,
+                this.provider.getLicenseIfModified("")
+            );
+
+            FileUtils.writeByteArrayToFile(temp, new ObjectSerializer().writeObject(second));
+
+            returned = this.provider.getLicenseIfModified("");
+            assertNotNull("The modified license should not be null.", returned);
+            assertNotSame("The license should be modified.", ConditionalLicenseProvider.NOT_MODIFIED, returned);
+            assertArrayEquals(
+                "The modified license content is not correct.",
+                second.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+
+            assertSame(
+                "The modified license should not be modified again.",
+                ConditionalLicenseProvider.NOT_MODIFIED,
+                this.provider.getLicenseIfModified("")
+            );
+        }
+        finally
+        {
+            FileUtils.forceDelete(temp);
+        }
+
+        assertNull("The deleted license should be null.", this.provider.getLicenseIfModified(""));
+    }
+
+    @Test
+    public void testGetLicenseIfModifiedCorrupt() throws IOException
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01, 0x02, 0x03}, new byte[] {0x04, 0x05});
+        File temp = new File("testGetLicenseIfModifiedCorrupt.lic");
+        FileUtils.writeByteArrayToFile(temp, new ObjectSerializer().writeObject(signedLicense));
+
+        this.provider.setFilePrefix("testGetLicenseIfModifiedCorrupt");
+        this.provider.setFileSuffix(".lic");
+
+        try
+        {
+            assertNotNull("The license should not be null.", this.provider.getLicense(""));
+
+            FileUtils.writeByteArrayToFile(temp, new byte[] {0x01, 0x02, 0x03, 0x04, 0x05});
+
+            for(int i = 0; i < 2; i++)
+            {
+                try
+                {
+                    this.provider.getLicenseIfModified("");
+                    fail("Expected RuntimeException for the corrupt license (" + i + "), but no exception thrown.");
+                }
+                catch(RuntimeException ignore)
+                {
+                    // the corrupt file must never be reported as not modified, which would keep the old license
+                }
+            }
+        }
+        finally
+        {
+            FileUtils.forceDelete(temp);
+        }
+    }
+
+    @Test
+    public void testGetLicenseFromJar() throws IOException
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x07, 0x08, 0x09}, new byte[] {0x0A}, "Ed25519");
+        File jar = new File("testGetLicenseFromJar.jar");
+        try(JarOutputStream output = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            output.putNextEntry(new JarEntry("licenses/testJar01.lic"));
+            output.write(Base64.encodeBase64(new ObjectSerializer().writeObject(signedLicense)));
+            output.closeEntry();
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null);
+        try
+        {
+            this.provider = new FileLicenseProvider(classLoader);
+            this.provider.setFilePrefix("/licenses/testJar");
+            this.provider.setFileSuffix(".lic");
+            this.provider.setBase64Encoded(true);
+
+            assertNull("There should be no file for a license in a JAR.", this.provider.getLicenseFile("01"));
+
+            SignedLicense returned = this.provider.getLicense("01");
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                signedLicense.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+            assertEquals("The algorithm is not correct.", "Ed25519", returned.getSignatureAlgorithm());
+
+            assertSame(
+                "The license should not be modified.",
+                ConditionalLicenseProvider.NOT_MODIFIED,
+                this.provider.getLicenseIfModified("01")
+            );
+
+            assertNull("The missing license should be null.", this.provider.getLicense("02"));
+        }
+        finally
+        {
+            classLoader.close();
+            FileUtils.forceDelete(jar);
+        }
+    }
+
+    private static void writeJar(File jar, SignedLicense signedLicense) throws IOException
+    {
+        try(JarOutputStream output = new JarOutputStream(new FileOutputStream(jar)))
+        {
+            output.putNextEntry(new JarEntry("licenses/testJar01.lic"));
+            output.write(new ObjectSerializer().writeObject(signedLicense));
+            output.closeEntry();
+        }
+    }
+
+    @Test
+    public void testGetLicenseFromReplacedJar() throws IOException
+    {
+        SignedLicense first = new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03});
+        SignedLicense second = new SignedLicense(new byte[] {0x04, 0x05, 0x06, 0x07}, new byte[] {0x08, 0x09});
+        File jar = new File("testGetLicenseFromReplacedJar.jar");
+        TestFileLicenseProvider.writeJar(jar, first);
+
+        URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null);
+        this.provider = new FileLicenseProvider(classLoader);
+        this.provider.setFilePrefix("/licenses/testJar");
+        this.provider.setFileSuffix(".lic");
+        try
+        {
+            SignedLicense returned = this.provider.getLicense("01");
+            assertNotNull("The license should not be null.", returned);
+            assertArrayEquals(
+                "The license content is not correct.",
+                first.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+
+            // redeploying the application replaces the JAR file under the handle the provider holds open
+            TestFileLicenseProvider.writeJar(jar, second);
+
+            returned = this.provider.getLicenseIfModified("01");
+            assertNotNull("The replaced license should not be null.", returned);
+            assertNotSame("The license should be modified.", ConditionalLicenseProvider.NOT_MODIFIED, returned);
+            assertArrayEquals(
+                "The replaced license content is not correct.",
+                second.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+
+            this.provider.close();
+
+            returned = this.provider.getLicense("01");
+            assertNotNull("The license should be read again after closing.", returned);
+            assertArrayEquals(
+                "The license content after closing is not correct.",
+                second.getLicenseContent(),
+                returned.getLicenseContent()
+            );
+        }
+        finally
+        {
+            this.provider.close();
+            classLoader.close();
+            FileUtils.forceDelete(jar);
+        }
+    }
 }
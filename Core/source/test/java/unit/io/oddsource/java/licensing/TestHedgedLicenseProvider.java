@@ -0,0 +1,274 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for HedgedLicenseProvider.
+ */
+public class TestHedgedLicenseProvider
+{
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    private static SignedLicense license(int content)
+    {
+        return new SignedLicense(new byte[] {(byte) content}, new byte[] {0x01});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNoReplicas()
+    {
+        new HedgedLicenseProvider();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullReplica()
+    {
+        new HedgedLicenseProvider(new Replica(null, 0L), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetHedgePercentileTooLarge()
+    {
+        new HedgedLicenseProvider(new Replica(null, 0L)).setHedgePercentile(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        new HedgedLicenseProvider(new Replica(null, 0L)).getLicense(null);
+    }
+
+    @Test
+    public void testPrimaryAnswersBeforeHedge()
+    {
+        Replica primary = new Replica(TestHedgedLicenseProvider.license(1), 0L);
+        Replica secondary = new Replica(TestHedgedLicenseProvider.license(2), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+        provider.setHedgeDelay(10000L);
+
+        assertArrayEquals("The license is not correct.", new byte[] {0x01},
+                          provider.getLicense("tenant1").getLicenseContent()
+        );
+        assertEquals("The primary should have been asked.", 1, primary.requests.get());
+        assertEquals("The secondary should not have been asked.", 0, secondary.requests.get());
+    }
+
+    @Test
+    public void testSlowPrimaryHedged() throws InterruptedException
+    {
+        Replica primary = new Replica(TestHedgedLicenseProvider.license(1), 30000L);
+        Replica secondary = new Replica(TestHedgedLicenseProvider.license(2), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+        provider.setHedgePercentile(0);
+        provider.setHedgeDelay(20L);
+
+        long start = System.nanoTime();
+        SignedLicense returned = provider.getLicense("tenant1");
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertArrayEquals("The secondary license should win.", new byte[] {0x02}, returned.getLicenseContent());
+        assertTrue("The read should not have waited for the primary (" + elapsed + " ms).", elapsed < 10000L);
+        assertTrue("The primary read should have been cancelled.", primary.interrupted.await(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSlowPrimaryHedgedOnDefaultExecutor() throws InterruptedException
+    {
+        Replica primary = new Replica(TestHedgedLicenseProvider.license(1), 30000L);
+        Replica secondary = new Replica(TestHedgedLicenseProvider.license(2), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(primary, secondary);
+        provider.setHedgePercentile(0);
+        provider.setHedgeDelay(20L);
+
+        SignedLicense returned = provider.getLicense("tenant1");
+
+        assertArrayEquals("The secondary license should win.", new byte[] {0x02}, returned.getLicenseContent());
+        assertTrue("The primary read should have been cancelled.", primary.interrupted.await(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailedPrimaryNotWaitedFor()
+    {
+        Replica primary = new Replica(null, 0L);
+        primary.failure = new IllegalStateException("The primary is down.");
+        Replica secondary = new Replica(TestHedgedLicenseProvider.license(2), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+        provider.setHedgeDelay(60000L);
+
+        assertArrayEquals("The secondary license should be returned.", new byte[] {0x02},
+                          provider.getLicense("tenant1").getLicenseContent()
+        );
+    }
+
+    @Test
+    public void testNoReplicaHasLicense()
+    {
+        Replica primary = new Replica(null, 0L);
+        primary.failure = new IllegalStateException("The primary is down.");
+        Replica secondary = new Replica(null, 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+
+        assertNull("The license should be null.", provider.getLicense("tenant1"));
+        assertEquals("The secondary should have been asked.", 1, secondary.requests.get());
+    }
+
+    @Test
+    public void testEveryReplicaFails()
+    {
+        Replica primary = new Replica(null, 0L);
+        primary.failure = new IllegalStateException("The primary is down.");
+        Replica secondary = new Replica(null, 0L);
+        secondary.failure = new IllegalStateException("The secondary is down.");
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+
+        try
+        {
+            provider.getLicense("tenant1");
+            fail("Expected exception IllegalStateException.");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("The number of suppressed failures is not correct.", 1, e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void testAsynchronousReplica() throws Exception
+    {
+        CompletableFuture<SignedLicense> pending = new CompletableFuture<>();
+        AsynchronousReplica primary = new AsynchronousReplica(pending);
+        Replica secondary = new Replica(TestHedgedLicenseProvider.license(2), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, secondary);
+        provider.setHedgePercentile(0);
+        provider.setHedgeDelay(20L);
+
+        SignedLicense returned = provider.getLicenseAsync("tenant1").toCompletableFuture().get(10L, TimeUnit.SECONDS);
+
+        assertArrayEquals("The secondary license should win.", new byte[] {0x02}, returned.getLicenseContent());
+        assertTrue("The primary read should have been cancelled.", pending.isCancelled());
+    }
+
+    @Test
+    public void testObservedHedgeDelay()
+    {
+        Replica primary = new Replica(TestHedgedLicenseProvider.license(1), 0L);
+        HedgedLicenseProvider provider = new HedgedLicenseProvider(this.executor, primary, primary);
+        provider.setHedgeDelay(5000L);
+
+        assertEquals("The fixed delay should be used at first.", 5000L, provider.getCurrentHedgeDelay());
+
+        for(int i = 0; i < 20; i++)
+        {
+            provider.getLicense("tenant1");
+        }
+
+        assertTrue("The observed delay should be used.", provider.getCurrentHedgeDelay() < 5000L);
+
+        provider.setHedgePercentile(0);
+
+        assertEquals("The fixed delay should be used again.", 5000L, provider.getCurrentHedgeDelay());
+    }
+
+    private static final class Replica implements LicenseProvider
+    {
+        private final SignedLicense license;
+
+        private final long delay;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        private volatile RuntimeException failure;
+
+        private Replica(SignedLicense license, long delay)
+        {
+            this.license = license;
+            this.delay = delay;
+        }
+
+        @Override
+        public SignedLicense getLicense(Object context)
+        {
+            this.requests.incrementAndGet();
+            if(this.delay > 0L)
+            {
+                try
+                {
+                    Thread.sleep(this.delay);
+                }
+                catch(InterruptedException e)
+                {
+                    this.interrupted.countDown();
+                    return null;
+                }
+            }
+            if(this.failure != null)
+            {
+                throw this.failure;
+            }
+
+            return this.license;
+        }
+    }
+
+    private static final class AsynchronousReplica implements LicenseProvider, AsynchronousLicenseProvider
+    {
+        private final CompletableFuture<SignedLicense> future;
+
+        private AsynchronousReplica(CompletableFuture<SignedLicense> future)
+        {
+            this.future = future;
+        }
+
+        @Override
+        public SignedLicense getLicense(Object context)
+        {
+            return this.future.join();
+        }
+
+        @Override
+        public CompletableFuture<SignedLicense> getLicenseAsync(Object context)
+        {
+            return this.future;
+        }
+    }
+}
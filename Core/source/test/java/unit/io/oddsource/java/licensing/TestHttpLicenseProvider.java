@@ -0,0 +1,267 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * Test class for HttpLicenseProvider.
+ */
+public class TestHttpLicenseProvider
+{
+    private final Map<String, byte[]> licenses = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+
+    private final List<String> conditions = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private HttpLicenseProvider provider;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/licenses/", this::handle);
+        this.server.start();
+
+        this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/licenses/";
+        this.provider = new HttpLicenseProvider(this.baseUrl);
+        this.directory = new File("testHttpLicenseProvider");
+    }
+
+    @After
+    public void tearDown()
+    {
+        if(this.server != null)
+        {
+            this.server.stop(0);
+        }
+        FileUtils.deleteQuietly(this.directory);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        String context = exchange.getRequestURI().getPath().substring("/licenses/".length());
+        String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if(condition != null)
+        {
+            this.conditions.add(condition);
+        }
+
+        if(this.failures.get() > 0)
+        {
+            this.failures.decrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+        }
+        else if(!this.licenses.containsKey(context))
+        {
+            exchange.sendResponseHeaders(404, -1);
+        }
+        else
+        {
+            String entityTag = "\"" + this.versions.get(context) + "\"";
+            exchange.getResponseHeaders().set("ETag", entityTag);
+            if(entityTag.equals(condition))
+            {
+                exchange.sendResponseHeaders(304, -1);
+            }
+            else
+            {
+                byte[] data = this.licenses.get(context);
+                exchange.sendResponseHeaders(200, data.length);
+                try(OutputStream output = exchange.getResponseBody())
+                {
+                    output.write(data);
+                }
+            }
+        }
+        exchange.close();
+    }
+
+    private void putLicense(String context, byte[] content)
+    {
+        this.licenses.put(
+            context,
+            new ObjectSerializer().writeObject(new SignedLicense(content, new byte[] {0x01}))
+        );
+        this.versions.merge(context, 1, Integer::sum);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullUrl()
+    {
+        new HttpLicenseProvider(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNotHttpUrl()
+    {
+        new HttpLicenseProvider("file:///licenses/");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        this.provider.getLicense(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetReadTimeoutZero()
+    {
+        this.provider.setReadTimeout(0);
+    }
+
+    @Test
+    public void testGetLicense()
+    {
+        this.putLicense("tenant 1/ä", new byte[] {0x01, 0x02});
+
+        SignedLicense returned = this.provider.getLicense("tenant 1/ä");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01, 0x02},
+                          returned.getLicenseContent()
+        );
+
+        assertNull("The missing license should be null.", this.provider.getLicense("tenant2"));
+    }
+
+    @Test
+    public void testGetLicenseIfModified()
+    {
+        this.putLicense("tenant1", new byte[] {0x01});
+
+        SignedLicense returned = this.provider.getLicenseIfModified("tenant1");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01}, returned.getLicenseContent());
+        assertTrue("The first request should not be conditional.", this.conditions.isEmpty());
+
+        assertSame(
+            "The license should not be modified.",
+            ConditionalLicenseProvider.NOT_MODIFIED,
+            this.provider.getLicenseIfModified("tenant1")
+        );
+        assertEquals("The second request should be conditional.", 1, this.conditions.size());
+
+        assertArrayEquals("The unchanged license should be returned.", new byte[] {0x01},
+                          this.provider.getLicense("tenant1").getLicenseContent()
+        );
+
+        this.putLicense("tenant1", new byte[] {0x02});
+
+        returned = this.provider.getLicenseIfModified("tenant1");
+        assertNotNull("The changed license should not be null.", returned);
+        assertNotSame("The license should be modified.", ConditionalLicenseProvider.NOT_MODIFIED, returned);
+        assertArrayEquals("The changed license is not correct.", new byte[] {0x02}, returned.getLicenseContent());
+
+        this.licenses.remove("tenant1");
+
+        assertNull("The removed license should be null.", this.provider.getLicenseIfModified("tenant1"));
+    }
+
+    @Test
+    public void testServerError()
+    {
+        this.putLicense("tenant1", new byte[] {0x01});
+        assertNotNull("The license should not be null.", this.provider.getLicense("tenant1"));
+
+        this.failures.set(2);
+
+        assertArrayEquals("The last copy should be returned.", new byte[] {0x01},
+                          this.provider.getLicense("tenant1").getLicenseContent()
+        );
+        assertSame(
+            "The last copy should be reported unchanged.",
+            ConditionalLicenseProvider.NOT_MODIFIED,
+            this.provider.getLicenseIfModified("tenant1")
+        );
+
+        this.failures.set(1);
+
+        try
+        {
+            this.provider.getLicense("tenant2");
+            fail("Expected exception LicenseStoreException.");
+        }
+        catch(LicenseStoreException e)
+        {
+            assertNotNull("The cause should not be null.", e.getCause());
+        }
+    }
+
+    @Test
+    public void testFallbackDirectory() throws IOException
+    {
+        this.putLicense("tenant1", new byte[] {0x01, 0x02, 0x03});
+        this.provider.setFallbackDirectory(this.directory);
+        assertNotNull("The license should not be null.", this.provider.getLicense("tenant1"));
+
+        this.server.stop(0);
+        this.server = null;
+
+        HttpLicenseProvider restarted = new HttpLicenseProvider(this.baseUrl);
+        restarted.setConnectTimeout(1000);
+        restarted.setFallbackDirectory(this.directory);
+
+        SignedLicense returned = restarted.getLicense("tenant1");
+        assertNotNull("The saved license should not be null.", returned);
+        assertArrayEquals("The saved license is not correct.", new byte[] {0x01, 0x02, 0x03},
+                          returned.getLicenseContent()
+        );
+        assertSame(
+            "The saved license should be reported unchanged.",
+            ConditionalLicenseProvider.NOT_MODIFIED,
+            restarted.getLicenseIfModified("tenant1")
+        );
+
+        try
+        {
+            restarted.getLicense("tenant2");
+            fail("Expected exception LicenseStoreException.");
+        }
+        catch(LicenseStoreException e)
+        {
+            assertTrue("The cause is not correct.", e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for IndexedDirectoryLicenseProvider.
+ */
+public class TestIndexedDirectoryLicenseProvider
+{
+    private File directory;
+
+    private IndexedDirectoryLicenseProvider provider;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.directory = new File("testIndexedDirectoryLicenseProvider");
+        FileUtils.deleteQuietly(this.directory);
+
+        this.provider = new IndexedDirectoryLicenseProvider(this.directory);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.forceDelete(this.directory);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullDirectory() throws IOException
+    {
+        new IndexedDirectoryLicenseProvider(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        this.provider.getLicense(null);
+    }
+
+    @Test
+    public void testGetLicenseNotFound()
+    {
+        assertNull("The license should be null.", this.provider.getLicense("tenant1"));
+        assertTrue("There should be no contexts.", this.provider.getContexts().isEmpty());
+    }
+
+    @Test
+    public void testPutAndGetLicense() throws IOException
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01, 0x02, 0x03}, new byte[] {0x04}, "Ed25519");
+
+        this.provider.putLicense("tenant1", signedLicense);
+
+        Path path = this.provider.getLicensePath("tenant1");
+        assertTrue("The license file should exist.", Files.isRegularFile(path));
+        assertEquals(
+            "The license file should be two directories below the root.",
+            this.directory.toPath(),
+            path.getParent().getParent().getParent()
+        );
+
+        SignedLicense returned = this.provider.getLicense("tenant1");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01, 0x02, 0x03},
+                          returned.getLicenseContent()
+        );
+        assertArrayEquals("The signature content is not correct.", new byte[] {0x04}, returned.getSignatureContent());
+        assertEquals("The algorithm is not correct.", "Ed25519", returned.getSignatureAlgorithm());
+
+        assertNull("The other license should be null.", this.provider.getLicense("tenant2"));
+    }
+
+    @Test
+    public void testIndexPersisted() throws IOException
+    {
+        for(int i = 0; i < 50; i++)
+        {
+            this.provider.putLicense("tenant" + i, new SignedLicense(new byte[] {(byte) i}, new byte[] {0x01}));
+        }
+        Path replacedPath = this.provider.getLicensePath("tenant7");
+        Path removedPath = this.provider.getLicensePath("tenant9");
+        this.provider.putLicense("tenant7", new SignedLicense(new byte[] {0x70}, new byte[] {0x01}));
+        this.provider.removeLicense("tenant9");
+
+        IndexedDirectoryLicenseProvider reopened = new IndexedDirectoryLicenseProvider(this.directory);
+
+        assertEquals("The number of contexts is not correct.", 49, reopened.getContexts().size());
+        assertTrue("The contexts are not correct.", reopened.getContexts().containsAll(
+            Arrays.asList("tenant0", "tenant7", "tenant49")
+        ));
+        assertFalse("The removed context should not be listed.", reopened.getContexts().contains("tenant9"));
+
+        assertArrayEquals("The replaced license is not correct.", new byte[] {0x70},
+                          reopened.getLicense("tenant7").getLicenseContent()
+        );
+        assertArrayEquals("The license is not correct.", new byte[] {0x31},
+                          reopened.getLicense("tenant49").getLicenseContent()
+        );
+        assertNull("The removed license should be null.", reopened.getLicense("tenant9"));
+        assertNull("The removed license should have no file.", reopened.getLicensePath("tenant9"));
+        assertFalse("The removed license file should be deleted.", Files.exists(removedPath));
+        assertFalse("The replaced license file should be deleted.", Files.exists(replacedPath));
+    }
+
+    @Test
+    public void testChangesFromOtherProvider() throws IOException
+    {
+        this.provider.putLicense("tenant1", new SignedLicense(new byte[] {0x01}, new byte[] {0x01}));
+
+        IndexedDirectoryLicenseProvider other = new IndexedDirectoryLicenseProvider(this.directory);
+        assertNotNull("The first license should not be null.", other.getLicense("tenant1"));
+
+        this.provider.putLicense("tenant2", new SignedLicense(new byte[] {0x02}, new byte[] {0x01}));
+        this.provider.putLicense("tenant1", new SignedLicense(new byte[] {0x03}, new byte[] {0x01}));
+
+        assertArrayEquals("The added license is not correct.", new byte[] {0x02},
+                          other.getLicense("tenant2").getLicenseContent()
+        );
+        assertArrayEquals("The replaced license is not correct.", new byte[] {0x03},
+                          other.getLicense("tenant1").getLicenseContent()
+        );
+        assertEquals(
+            "The contexts are not correct.",
+            new HashSet<>(Arrays.asList("tenant1", "tenant2")),
+            other.getContexts()
+        );
+    }
+
+    @Test
+    public void testFileNotMatchingIndex() throws IOException
+    {
+        this.provider.putLicense("tenant1", new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03}));
+
+        Path path = this.provider.getLicensePath("tenant1");
+        byte[] data = Files.readAllBytes(path);
+        data[data.length - 1] ^= 0x01;
+        Files.write(path, data);
+
+        assertNull("The changed license should be null.", this.provider.getLicense("tenant1"));
+        assertEquals("The context should still be listed.", 1, this.provider.getContexts().size());
+    }
+
+    @Test
+    public void testUnfinishedIndexRecord() throws IOException
+    {
+        this.provider.putLicense("tenant1", new SignedLicense(new byte[] {0x01}, new byte[] {0x01}));
+
+        File index = new File(this.directory, IndexedDirectoryLicenseProvider.indexFileName);
+        long length = index.length();
+        Files.write(index.toPath(), new byte[] {0x00, 0x07, 0x74}, StandardOpenOption.APPEND);
+
+        IndexedDirectoryLicenseProvider reopened = new IndexedDirectoryLicenseProvider(this.directory);
+        assertEquals("The number of contexts is not correct.", 1, reopened.getContexts().size());
+
+        reopened.putLicense("tenant2", new SignedLicense(new byte[] {0x02}, new byte[] {0x01}));
+
+        assertTrue("The unfinished record should have been overwritten.", index.length() > length + 3);
+        assertEquals(
+            "The number of contexts is not correct after reopening.",
+            2,
+            new IndexedDirectoryLicenseProvider(this.directory).getContexts().size()
+        );
+    }
+
+    @Test
+    public void testCorruptIndexRecordSize() throws IOException
+    {
+        this.provider.putLicense("tenant1", new SignedLicense(new byte[] {0x01}, new byte[] {0x01}));
+
+        // a record for "t" with an impossible size, followed by its digest
+        File index = new File(this.directory, IndexedDirectoryLicenseProvider.indexFileName);
+        ByteBuffer record = ByteBuffer.allocate(2 + 1 + 8 + 32);
+        record.putShort((short) 1).put((byte) 0x74).putLong(Integer.MAX_VALUE + 1L);
+        Files.write(index.toPath(), record.array(), StandardOpenOption.APPEND);
+
+        try
+        {
+            new IndexedDirectoryLicenseProvider(this.directory);
+            fail("Expected java.io.IOException, got no exception.");
+        }
+        catch(IOException ignore)
+        {
+
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutLicenseTooLarge() throws IOException
+    {
+        this.provider.putLicense(
+            "tenant1",
+            new SignedLicense(new byte[FileLicenseProvider.defaultMaximumFileSize], new byte[] {0x01})
+        );
+    }
+
+    @Test
+    public void testCompactIndex() throws IOException
+    {
+        for(int i = 0; i < 10; i++)
+        {
+            this.provider.putLicense("tenant1", new SignedLicense(new byte[] {(byte) i}, new byte[] {0x01}));
+        }
+        this.provider.putLicense("tenant2", new SignedLicense(new byte[] {0x02}, new byte[] {0x01}));
+        this.provider.removeLicense("tenant2");
+
+        File index = new File(this.directory, IndexedDirectoryLicenseProvider.indexFileName);
+        long length = index.length();
+        IndexedDirectoryLicenseProvider other = new IndexedDirectoryLicenseProvider(this.directory);
+
+        this.provider.compactIndex();
+
+        assertTrue("The index should be smaller.", index.length() < length);
+
+        this.provider.putLicense("tenant3", new SignedLicense(new byte[] {0x03}, new byte[] {0x01}));
+        assertArrayEquals("The license is not correct.", new byte[] {0x09},
+                          this.provider.getLicense("tenant1").getLicenseContent()
+        );
+
+        assertEquals(
+            "The other provider's contexts are not correct.",
+            new HashSet<>(Arrays.asList("tenant1", "tenant3")),
+            other.getContexts()
+        );
+
+        IndexedDirectoryLicenseProvider reopened = new IndexedDirectoryLicenseProvider(this.directory);
+        assertEquals(
+            "The contexts are not correct.",
+            new HashSet<>(Arrays.asList("tenant1", "tenant3")),
+            reopened.getContexts()
+        );
+        assertArrayEquals("The reopened license is not correct.", new byte[] {0x09},
+                          reopened.getLicense("tenant1").getLicenseContent()
+        );
+    }
+}
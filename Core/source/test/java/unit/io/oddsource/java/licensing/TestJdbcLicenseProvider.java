@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * Test class for JdbcLicenseProvider.
+ */
+public class TestJdbcLicenseProvider
+{
+    private CountingDataSource dataSource;
+
+    private Connection connection;
+
+    private JdbcLicenseProvider provider;
+
+    @Before
+    public void setUp() throws SQLException
+    {
+        this.dataSource = new CountingDataSource();
+        this.dataSource.setURL("jdbc:h2:mem:testJdbcLicenseProvider;DB_CLOSE_DELAY=-1");
+
+        this.connection = this.dataSource.getConnection();
+        try(Statement statement = this.connection.createStatement())
+        {
+            statement.execute(
+                "CREATE TABLE licenses (context VARCHAR(255) PRIMARY KEY, license VARBINARY(4096) NOT NULL, " +
+                "last_modified TIMESTAMP NOT NULL)"
+            );
+        }
+
+        this.dataSource.connections.set(0);
+        this.provider = new JdbcLicenseProvider(this.dataSource);
+    }
+
+    @After
+    public void tearDown() throws SQLException
+    {
+        this.provider.close();
+
+        try(Statement statement = this.connection.createStatement())
+        {
+            statement.execute("DROP TABLE licenses");
+        }
+        this.connection.close();
+    }
+
+    private void insertLicense(String context, byte[] content, long lastModified) throws SQLException
+    {
+        try(PreparedStatement statement = this.connection.prepareStatement(
+            "MERGE INTO licenses (context, license, last_modified) KEY (context) VALUES (?, ?, ?)"
+        ))
+        {
+            statement.setString(1, context);
+            statement.setBytes(2, new ObjectSerializer().writeObject(new SignedLicense(content, new byte[] {0x01})));
+            statement.setTimestamp(3, new Timestamp(lastModified));
+            statement.executeUpdate();
+        }
+    }
+
+    private void deleteLicenses() throws SQLException
+    {
+        try(Statement statement = this.connection.createStatement())
+        {
+            statement.executeUpdate("DELETE FROM licenses");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullDataSource()
+    {
+        new JdbcLicenseProvider(null);
+    }
+
+    @Test
+    public void testDefaults()
+    {
+        assertEquals("The table name is not correct.", "licenses", this.provider.getTableName());
+        assertEquals("The context column is not correct.", "context", this.provider.getContextColumn());
+        assertEquals("The license column is not correct.", "license", this.provider.getLicenseColumn());
+        assertEquals("The last modified column is not correct.", "last_modified",
+                     this.provider.getLastModifiedColumn()
+        );
+        assertEquals("The batch size is not correct.", JdbcLicenseProvider.defaultBatchSize,
+                     this.provider.getBatchSize()
+        );
+        assertEquals("The maximum idle statements is not correct.", JdbcLicenseProvider.defaultMaximumIdleStatements,
+                     this.provider.getMaximumIdleStatements()
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetTableNameInvalid()
+    {
+        this.provider.setTableName("licenses; DROP TABLE licenses");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetBatchSizeZero()
+    {
+        this.provider.setBatchSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        this.provider.getLicense(null);
+    }
+
+    @Test
+    public void testGetLicense() throws SQLException
+    {
+        this.insertLicense("tenant1", new byte[] {0x01, 0x02}, 1000L);
+
+        SignedLicense returned = this.provider.getLicense("tenant1");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01, 0x02},
+                          returned.getLicenseContent()
+        );
+
+        assertNull("The missing license should be null.", this.provider.getLicense("tenant2"));
+        assertNotNull("The license should not be null the second time.", this.provider.getLicense("tenant1"));
+
+        assertEquals("The connection should have been reused.", 1, this.dataSource.connections.get());
+    }
+
+    @Test
+    public void testGetLicenseNoIdleStatements() throws SQLException
+    {
+        this.insertLicense("tenant1", new byte[] {0x01}, 1000L);
+        this.provider.setMaximumIdleStatements(0);
+
+        assertNotNull("The license should not be null.", this.provider.getLicense("tenant1"));
+        assertNotNull("The license should not be null the second time.", this.provider.getLicense("tenant1"));
+
+        assertEquals("The connection should not have been reused.", 2, this.dataSource.connections.get());
+    }
+
+    @Test
+    public void testGetLicenseStaleConnection() throws SQLException
+    {
+        this.insertLicense("tenant1", new byte[] {0x01}, 1000L);
+
+        assertNotNull("The license should not be null.", this.provider.getLicense("tenant1"));
+        this.dataSource.lastConnection.close();
+
+        assertNotNull("The license should not be null the second time.", this.provider.getLicense("tenant1"));
+        assertEquals("The stale connection should have been replaced.", 2, this.dataSource.connections.get());
+
+        assertNotNull("The license should not be null the third time.", this.provider.getLicense("tenant1"));
+        assertEquals("The new connection should have been reused.", 2, this.dataSource.connections.get());
+    }
+
+    @Test
+    public void testGetLicenseQueryFails()
+    {
+        this.provider.setTableName("no_such_table");
+
+        try
+        {
+            this.provider.getLicense("tenant1");
+            fail("Expected exception LicenseStoreException.");
+        }
+        catch(LicenseStoreException e)
+        {
+            assertTrue("The cause is not correct.", e.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    public void testPrefetchLicenses() throws SQLException
+    {
+        List<String> contexts = new ArrayList<>();
+        for(int i = 0; i < 25; i++)
+        {
+            this.insertLicense("tenant" + i, new byte[] {(byte) i}, 1000L);
+            contexts.add("tenant" + i);
+        }
+        contexts.add("tenant99");
+
+        this.provider.setBatchSize(10);
+        this.provider.prefetchLicenses(contexts);
+
+        this.deleteLicenses();
+
+        for(int i = 0; i < 25; i++)
+        {
+            SignedLicense returned = this.provider.getLicense("tenant" + i);
+            assertNotNull("The prefetched license for tenant" + i + " should not be null.", returned);
+            assertArrayEquals("The prefetched license for tenant" + i + " is not correct.", new byte[] {(byte) i},
+                              returned.getLicenseContent()
+            );
+        }
+        assertNull("The missing license should be null.", this.provider.getLicense("tenant99"));
+
+        assertNull("The prefetched license should only be returned once.", this.provider.getLicense("tenant1"));
+        assertEquals("The connection should have been reused.", 1, this.dataSource.connections.get());
+    }
+
+    @Test
+    public void testDiscardPrefetchedLicenses() throws SQLException
+    {
+        this.insertLicense("tenant1", new byte[] {0x01}, 1000L);
+        this.insertLicense("tenant2", new byte[] {0x02}, 1000L);
+
+        this.provider.prefetchLicenses(Arrays.asList("tenant1", "tenant2"));
+        this.provider.discardPrefetchedLicenses(Arrays.asList("tenant1", "tenant2"));
+
+        this.deleteLicenses();
+        this.insertLicense("tenant1", new byte[] {0x03}, 2000L);
+
+        SignedLicense returned = this.provider.getLicense("tenant1");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The discarded license should not be returned.", new byte[] {0x03},
+                          returned.getLicenseContent()
+        );
+        assertNull("The discarded missing license should not be returned.", this.provider.getLicense("tenant2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrefetchLicensesNullContext()
+    {
+        this.provider.prefetchLicenses(Arrays.asList("tenant1", null));
+    }
+
+    @Test
+    public void testCheckForChanges() throws SQLException
+    {
+        this.insertLicense("tenant1", new byte[] {0x01}, 1000L);
+        this.insertLicense("tenant2", new byte[] {0x02}, 2000L);
+        this.insertLicense("tenant3", new byte[] {0x03}, 3000L);
+
+        this.provider.prefetchLicenses(Collections.singletonList("tenant3"));
+        this.insertLicense("tenant3", new byte[] {0x04}, 4000L);
+
+        List<Object> changes = new ArrayList<>();
+        this.provider.addLicenseChangeListener(changes::add);
+
+        assertEquals(
+            "The changed contexts are not correct.",
+            new HashSet<>(Arrays.asList("tenant2", "tenant3")),
+            this.provider.checkForChanges(1500L)
+        );
+        assertEquals("The listener was not notified correctly.", 2, changes.size());
+        assertTrue(
+            "The listener was not notified correctly.",
+            changes.containsAll(Arrays.asList("tenant2", "tenant3"))
+        );
+
+        assertArrayEquals("The changed license should no longer be prefetched.", new byte[] {0x04},
+                          this.provider.getLicense("tenant3").getLicenseContent()
+        );
+
+        assertTrue("There should be no changes.", this.provider.checkForChanges(4000L).isEmpty());
+    }
+
+    private static final class CountingDataSource extends JdbcDataSource
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger connections = new AtomicInteger();
+
+        private volatile Connection lastConnection;
+
+        @Override
+        public Connection getConnection() throws SQLException
+        {
+            this.connections.incrementAndGet();
+            this.lastConnection = super.getConnection();
+            return this.lastConnection;
+        }
+    }
+}
@@ -17,9 +17,11 @@ package io.oddsource.java.licensing;
 
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.BitSet;
 
 import org.junit.After;
 import org.junit.Before;
@@ -296,6 +298,33 @@ public class TestLicense
         );
     }
 
+    @Test
+    public void testCheckFeatures01()
+    {
+        BitSet licensed = this.license.checkFeatures("nickFeature1", "timFeature1", "allisonFeature2", "dogFeature1");
+
+        assertEquals("The number of licensed features is not correct.", 2, licensed.cardinality());
+        assertTrue("Feature 1 should be licensed.", licensed.get(0));
+        assertFalse("Feature 2 should not be licensed.", licensed.get(1));
+        assertTrue("Feature 3 should be licensed.", licensed.get(2));
+        assertFalse("Feature 4 should not be licensed.", licensed.get(3));
+
+        assertTrue("There should be no licensed features.", this.license.checkFeatures(new String[0]).isEmpty());
+    }
+
+    @Test
+    public void testCheckFeatures02()
+    {
+        BitSet licensed = this.license.checkFeatures(
+            2348917325001L,
+            new MockFeatureObject("allisonFeature2"),
+            new MockFeatureObject("nickFeature1")
+        );
+
+        assertFalse("Feature 1 should be expired.", licensed.get(0));
+        assertTrue("Feature 2 should be licensed.", licensed.get(1));
+    }
+
     @Test
     public void testFeatures07()
     {
@@ -890,4 +919,64 @@ public class TestLicense
         assertNotEquals("The objects should not be equal.", feature1, feature2);
         assertNotEquals("The hash codes should not be equal.", feature1.hashCode(), feature2.hashCode());
     }
+
+    @Test
+    public void testStreamingDeserialization01() throws Exception
+    {
+        License license = License.deserialize(new StringReader(
+            "[5565-1039-AF89-GGX7-TN31-14AL][CN=John E. Smith, C=CA, ST=QE][CN=OurCompany, C=US, ST=KY][Cool " +
+            "Product, by Company][14429073214631][1443907325000][1443917325000][12][fordFeature1" +
+            (char) 0x1F + "-1, chevyFeature2" + (char) 0x1F + Long.MAX_VALUE + ", hondaFeature3" + (char) 0x1F +
+            "1234567890, toyotaFeature4" + (char) 0x1F + "-1]"
+        ));
+
+        assertEquals("The product key is not correct.", "5565-1039-AF89-GGX7-TN31-14AL", license.getProductKey());
+        assertEquals("The holder is not correct.", "CN=John E. Smith, C=CA, ST=QE", license.getHolder());
+        assertEquals("The issuer is not correct.", "CN=OurCompany, C=US, ST=KY", license.getIssuer());
+        assertEquals("The company is not correct.", "Cool Product, by Company", license.getSubject());
+        assertEquals("The issue date is not correct.", 14429073214631L, license.getIssueDate());
+        assertEquals("The good after date is not correct.", 1443907325000L, license.getGoodAfterDate());
+        assertEquals("The good before date is not correct.", 1443917325000L, license.getGoodBeforeDate());
+        assertEquals("The number of licenses is not correct.", 12, license.getNumberOfLicenses());
+        assertEquals("The number of features is not correct.", 4, license.getFeatures().size());
+        assertTrue("Feature 1 is missing.", license.hasLicenseForAllFeatures("fordFeature1"));
+        assertTrue("Feature 2 is missing.", license.hasLicenseForAllFeatures("chevyFeature2"));
+        assertFalse("Feature 3 should be expired.", license.hasLicenseForAllFeatures("hondaFeature3"));
+        assertTrue("Feature 4 is missing.", license.hasLicenseForAllFeatures("toyotaFeature4"));
+    }
+
+    @Test
+    public void testStreamingDeserialization02() throws Exception
+    {
+        License.Builder builder = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withNumberOfLicenses(3);
+        for(int i = 0; i < 10000; i++)
+        {
+            builder.addFeature("feature" + i, i % 2 == 0 ? -1L : Long.MAX_VALUE);
+        }
+        License license = builder.build();
+
+        License deserialized = License.deserialize(new StringReader(license.toString()));
+
+        assertEquals("The license is not correct.", license, deserialized);
+        assertEquals("The number of features is not correct.", 10000, deserialized.getFeatures().size());
+    }
+
+    @Test
+    public void testStreamingDeserialization03() throws Exception
+    {
+        License license = new License.Builder().withSubject("No Features").build();
+
+        License deserialized = License.deserialize(new StringReader(license.toString()));
+
+        assertEquals("The license is not correct.", license, deserialized);
+        assertEquals("There should be no features.", 0, deserialized.getFeatures().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamingDeserializationTooFewParts() throws Exception
+    {
+        License.deserialize(new StringReader("[5565-1039][CN=John][CN=OurCompany][Cool][1][2][3]"));
+    }
 }
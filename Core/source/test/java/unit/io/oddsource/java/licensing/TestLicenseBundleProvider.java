@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for LicenseBundleProvider.
+ */
+public class TestLicenseBundleProvider
+{
+    private File file;
+
+    @Before
+    public void setUp()
+    {
+        this.file = new File("testLicenseBundleProvider.bundle");
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(this.file);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullFile() throws IOException
+    {
+        new LicenseBundleProvider(null);
+    }
+
+    @Test(expected = IOException.class)
+    public void testConstructorNotBundle() throws IOException
+    {
+        Files.write(this.file.toPath(), new byte[] {0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A});
+
+        new LicenseBundleProvider(this.file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testConstructorCorruptBundle() throws IOException
+    {
+        LicenseBundleProvider.writeBundle(
+            this.file,
+            Collections.singletonMap("tenant1", new SignedLicense(new byte[] {0x01}, new byte[] {0x02}))
+        );
+
+        byte[] data = Files.readAllBytes(this.file.toPath());
+        Files.write(this.file.toPath(), Arrays.copyOf(data, data.length - 1));
+
+        new LicenseBundleProvider(this.file);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteBundleDuplicateContexts() throws IOException
+    {
+        Map<Object, SignedLicense> licenses = new HashMap<>();
+        licenses.put("1", new SignedLicense(new byte[] {0x01}, new byte[] {0x02}));
+        licenses.put(1, new SignedLicense(new byte[] {0x03}, new byte[] {0x04}));
+
+        LicenseBundleProvider.writeBundle(this.file, licenses);
+    }
+
+    @Test
+    public void testEmptyBundle() throws IOException
+    {
+        LicenseBundleProvider.writeBundle(this.file, Collections.<String, SignedLicense>emptyMap());
+
+        LicenseBundleProvider provider = new LicenseBundleProvider(this.file);
+
+        assertEquals("The license count is not correct.", 0, provider.getLicenseCount());
+        assertNull("The license should be null.", provider.getLicense("tenant1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext() throws IOException
+    {
+        LicenseBundleProvider.writeBundle(this.file, Collections.<String, SignedLicense>emptyMap());
+
+        new LicenseBundleProvider(this.file).getLicense(null);
+    }
+
+    @Test
+    public void testGetLicense() throws IOException
+    {
+        Map<String, SignedLicense> licenses = new LinkedHashMap<>();
+        for(int i = 999; i >= 0; i--)
+        {
+            licenses.put("tenant" + i, new SignedLicense(new byte[] {(byte) i, (byte) (i >> 8)}, new byte[] {0x01}));
+        }
+        licenses.put("ténant", new SignedLicense(new byte[] {0x05}, new byte[] {0x06}, "Ed25519"));
+
+        LicenseBundleProvider.writeBundle(this.file, licenses);
+        LicenseBundleProvider provider = new LicenseBundleProvider(this.file);
+
+        assertEquals("The license count is not correct.", 1001, provider.getLicenseCount());
+
+        for(int i = 0; i < 1000; i++)
+        {
+            SignedLicense returned = provider.getLicense("tenant" + i);
+            assertNotNull("The license for tenant" + i + " should not be null.", returned);
+            assertArrayEquals("The license for tenant" + i + " is not correct.",
+                              new byte[] {(byte) i, (byte) (i >> 8)}, returned.getLicenseContent()
+            );
+        }
+
+        SignedLicense returned = provider.getLicense("ténant");
+        assertNotNull("The non-ASCII license should not be null.", returned);
+        assertArrayEquals("The non-ASCII license is not correct.", new byte[] {0x05}, returned.getLicenseContent());
+        assertEquals("The algorithm is not correct.", "Ed25519", returned.getSignatureAlgorithm());
+
+        assertNull("The missing license should be null.", provider.getLicense("tenant1000"));
+        assertNull("The prefix license should be null.", provider.getLicense("tenant"));
+        assertNull("The first missing license should be null.", provider.getLicense("a"));
+        assertNull("The last missing license should be null.", provider.getLicense("ÿ"));
+    }
+
+    @Test
+    public void testGetContexts() throws IOException
+    {
+        Map<String, SignedLicense> licenses = new HashMap<>();
+        licenses.put("b", new SignedLicense(new byte[] {0x01}, new byte[] {0x01}));
+        licenses.put("é", new SignedLicense(new byte[] {0x02}, new byte[] {0x01}));
+        licenses.put("a", new SignedLicense(new byte[] {0x03}, new byte[] {0x01}));
+        licenses.put("ab", new SignedLicense(new byte[] {0x04}, new byte[] {0x01}));
+
+        LicenseBundleProvider.writeBundle(this.file, licenses);
+
+        assertEquals(
+            "The contexts are not correct.",
+            Arrays.asList("a", "ab", "b", "é"),
+            new LicenseBundleProvider(this.file).getContexts()
+        );
+    }
+
+    @Test
+    public void testReplaceBundleWhileMapped() throws IOException
+    {
+        Map<String, SignedLicense> licenses = new HashMap<>();
+        for(int i = 0; i < 100; i++)
+        {
+            licenses.put("tenant" + i, new SignedLicense(new byte[] {(byte) i}, new byte[] {0x01}));
+        }
+        LicenseBundleProvider.writeBundle(this.file, licenses);
+        LicenseBundleProvider provider = new LicenseBundleProvider(this.file);
+
+        LicenseBundleProvider.writeBundle(this.file, Collections.singletonMap(
+            "tenant1", new SignedLicense(new byte[] {0x7F}, new byte[] {0x01})
+        ));
+
+        assertEquals("The mapped bundle should be unchanged.", 100, provider.getLicenseCount());
+        assertArrayEquals("The mapped license is not correct.", new byte[] {0x63},
+                          provider.getLicense("tenant99").getLicenseContent()
+        );
+
+        LicenseBundleProvider replaced = new LicenseBundleProvider(this.file);
+        assertEquals("The new bundle's license count is not correct.", 1, replaced.getLicenseCount());
+        assertArrayEquals("The new license is not correct.", new byte[] {0x7F},
+                          replaced.getLicense("tenant1").getLicenseContent()
+        );
+    }
+}
@@ -17,11 +17,25 @@ package io.oddsource.java.licensing;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.easymock.EasyMock;
@@ -33,9 +47,13 @@ import org.junit.Test;
 
 import io.oddsource.java.licensing.encryption.Encryptor;
 import io.oddsource.java.licensing.encryption.KeyFileUtilities;
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
 import io.oddsource.java.licensing.encryption.PublicKeyDataProvider;
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
 import io.oddsource.java.licensing.exception.ExpiredLicenseException;
+import io.oddsource.java.licensing.exception.InvalidSignatureException;
+import io.oddsource.java.licensing.exception.LicenseStoreException;
 import io.oddsource.java.licensing.mock.MockFeatureObject;
 
 /**
@@ -110,6 +128,7 @@ public class TestLicenseManager
         LicenseManagerProperties.setLicensePasswordProvider(TestLicenseManager.licensePasswordProvider);
         LicenseManagerProperties.setLicenseValidator(TestLicenseManager.licenseValidator);
         LicenseManagerProperties.setCacheTimeInMinutes(0);
+        LicenseManagerProperties.setStaleCacheTimeInMinutes(1);
 
         LicenseManager.getInstance();
 
@@ -298,6 +317,116 @@ public class TestLicenseManager
         assertNotSame("The returned objects should not be the same anymore.", returned, returnedAgain);
     }
 
+    @Test
+    public void testGetLicenseFromMemoryTierAfterExpiry() throws Exception
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withHolder("CN=Joe Customer, C=CA, ST=QE").
+            withSubject("OddSource Code Database Browser/v.9.5").
+            withNumberOfLicenses(5).
+            build();
+
+        byte[] data = Encryptor.encryptRaw(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+
+        MemoryLicenseProvider memory = new MemoryLicenseProvider();
+        MemoryLicenseProvider backing = new MemoryLicenseProvider();
+        backing.putLicense("CUSTOMER-TIER-1", new SignedLicense(data, signature));
+        TieredLicenseProvider tiered = new TieredLicenseProvider.Builder().withTier(memory, 60000L)
+                                                                          .withTier(backing, 60000L)
+                                                                          .build();
+
+        for(int i = 0; i < 2; i++)
+        {
+            if(i > 0)
+            {
+                Thread.sleep(12000);
+
+                TestLicenseManager.control.verify();
+                TestLicenseManager.control.reset();
+            }
+
+            EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("CUSTOMER-TIER-1")).andDelegateTo(tiered);
+            EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+            EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+                andReturn(encryptedPublicKey.clone());
+            EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).
+                andReturn(licensePassword.clone());
+            TestLicenseManager.control.replay();
+
+            License returned = this.manager.getLicense("CUSTOMER-TIER-1");
+
+            assertEquals("The returned license is not correct in cycle " + i + ".", license, returned);
+            assertEquals("The license should be in the memory tier.", 1, memory.size());
+        }
+    }
+
+    @Test
+    public void testGetLicenseLastKnownGood() throws Exception
+    {
+        License license = this.setupLicenseMocking("CUSTOMER-LKG-1");
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.getLicense("CUSTOMER-LKG-1");
+
+        assertEquals("The returned license is not correct.", license, returned);
+
+        Thread.sleep(12000);
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("CUSTOMER-LKG-1")).andThrow(
+            new LicenseStoreException("The license store is down.")
+        );
+        TestLicenseManager.control.replay();
+
+        assertSame(
+            "The last known good license should be returned.",
+            returned,
+            this.manager.getLicense("CUSTOMER-LKG-1")
+        );
+    }
+
+    @Test
+    public void testGetLicenseLastKnownGoodTooStale() throws Exception
+    {
+        License license = this.setupLicenseMocking("CUSTOMER-LKG-3");
+        TestLicenseManager.control.replay();
+
+        assertEquals("The returned license is not correct.", license, this.manager.getLicense("CUSTOMER-LKG-3"));
+
+        Thread.sleep(72000);
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("CUSTOMER-LKG-3")).andThrow(
+            new LicenseStoreException("The license store is down.")
+        );
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.getLicense("CUSTOMER-LKG-3");
+            fail("Expected LicenseStoreException, got no exception.");
+        }
+        catch(LicenseStoreException ignore)
+        {
+            // the license expired too long ago to be returned
+        }
+    }
+
+    @Test(expected = LicenseStoreException.class)
+    public void testGetLicenseLastKnownGoodNone()
+    {
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("CUSTOMER-LKG-2")).andThrow(
+            new LicenseStoreException("The license store is down.")
+        );
+        TestLicenseManager.control.replay();
+
+        this.manager.getLicense("CUSTOMER-LKG-2");
+    }
+
     @Test
     public void testClearLicenseCache01() throws Exception
     {
@@ -1130,4 +1259,636 @@ public class TestLicenseManager
             object.getClass().getMethod("method")
         ));
     }
+
+    @Test
+    public void testDecryptAndVerifyLicenseStream01() throws Exception
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withIssuer("CN=Nick Williams, C=US, ST=TN").
+            withHolder("CN=Tim Williams, C=US, ST=AL").
+            withSubject("Streamed Product Name(TM)").
+            withIssueDate(2348907324983L).
+            withGoodAfterDate(2348907325000L).
+            withGoodBeforeDate(2348917325000L).
+            withNumberOfLicenses(22).
+            addFeature("nickFeature1").
+            addFeature("allisonFeature2").
+            build();
+
+        byte[] data = Encryptor.encryptRaw(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).andReturn(licensePassword.clone());
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.decryptAndVerifyLicense(new ByteArrayInputStream(data), signature);
+
+        assertNotNull("The returned license should not be null.", returned);
+        assertEquals("The returned license is not correct.", license, returned);
+    }
+
+    @Test
+    public void testDecryptAndVerifyLicenseStream02() throws Exception
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Streamed Product Name(TM)").
+            withNumberOfLicenses(22).
+            build();
+
+        byte[] data = Encryptor.encryptRaw(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+        signature[5] = (byte) (signature[5] + 1);
+
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).andReturn(licensePassword.clone());
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.decryptAndVerifyLicense(new ByteArrayInputStream(data), signature);
+            fail("Expected InvalidSignatureException, but no exception thrown.");
+        }
+        catch(InvalidSignatureException ignore)
+        {
+
+        }
+    }
+
+    @Test
+    public void testGetLicenseUnknownSignatureAlgorithm()
+    {
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("UNKNOWN-ALGORITHM-1")).andReturn(
+            new SignedLicense(new byte[] {0x29, 0x7F, 0x3C}, new byte[] {0x01, 0x02}, "SHA1withMadeUpAlgorithm")
+        );
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.getLicense("UNKNOWN-ALGORITHM-1");
+            fail("Expected AlgorithmNotSupportedException, but no exception thrown.");
+        }
+        catch(AlgorithmNotSupportedException ignore)
+        {
+
+        }
+    }
+
+    @Test
+    public void testGetLicenseAuthenticatedEncryption()
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Authenticated Product Name(TM)").
+            withNumberOfLicenses(14).
+            addFeature("nickFeature1").
+            build();
+
+        byte[] data = Encryptor.encryptAuthenticated(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("AUTHENTICATED-1")).andReturn(new SignedLicense(
+            data,
+            signature
+        ));
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).andReturn(licensePassword.clone());
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.getLicense("AUTHENTICATED-1");
+
+        assertNotNull("The returned license should not be null.", returned);
+        assertEquals("The returned license is not correct.", license, returned);
+    }
+
+    @Test
+    public void testDecryptAndVerifyLicenseStreamAuthenticated() throws Exception
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Authenticated Product Name(TM)").
+            withNumberOfLicenses(15).
+            build();
+
+        byte[] data = Encryptor.encryptAuthenticated(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).andReturn(licensePassword.clone());
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.decryptAndVerifyLicense(new ByteArrayInputStream(data), signature);
+
+        assertEquals("The returned license is not correct.", license, returned);
+    }
+
+    @Test
+    public void testDecryptAndVerifyLicenseStreamAuthenticatedVerifiedFirst() throws Exception
+    {
+        License license = new License.Builder().withProductKey("5565-1039-AF89-GGX7-TN31-14AL").build();
+
+        byte[] data = Encryptor.encryptAuthenticated(license.serialize(), TestLicenseManager.licensePassword);
+        byte[] signature = new DataSignatureManager().signData(TestLicenseManager.privateKey, data);
+        // an unsigned header asking for the maximum PBKDF2 iteration count
+        ByteBuffer.wrap(data, 5, 4).putInt(PasswordDerivedKey.maximumIterations);
+
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.decryptAndVerifyLicense(new ByteArrayInputStream(data), signature);
+            fail("Expected InvalidSignatureException, but no exception thrown.");
+        }
+        catch(InvalidSignatureException ignore)
+        {
+            // the license password is never asked for, so no key is derived
+        }
+    }
+
+    @Test
+    public void testVerifyLicenseSignatures()
+    {
+        byte[] first = new byte[] {0x11, 0x22, 0x33};
+        byte[] second = new byte[] {0x44, 0x55};
+        DataSignatureManager signer = new DataSignatureManager();
+
+        SignedLicense[] signedLicenses = new SignedLicense[] {
+            new SignedLicense(first, signer.signData(TestLicenseManager.privateKey, first)),
+            new SignedLicense(second, signer.signData(TestLicenseManager.privateKey, first)),
+            new SignedLicense(second, new byte[] {0x01}),
+            new SignedLicense(
+                second, signer.signData(TestLicenseManager.privateKey, second), "SHA1withMadeUpAlgorithm"
+            ),
+            new SignedLicense(second, signer.signData(TestLicenseManager.privateKey, second))
+        };
+
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        TestLicenseManager.control.replay();
+
+        boolean[] results = this.manager.verifyLicenseSignatures(signedLicenses);
+
+        assertEquals("The number of results is not correct.", 5, results.length);
+        assertTrue("The first license should be valid.", results[0]);
+        assertFalse("The second license should be invalid.", results[1]);
+        assertFalse("The third license should be corrupt.", results[2]);
+        assertFalse("The fourth license should be unsupported.", results[3]);
+        assertTrue("The fifth license should be valid.", results[4]);
+    }
+
+    @Test
+    public void testVerifyLicenseSignaturesEmpty()
+    {
+        TestLicenseManager.control.replay();
+
+        assertEquals("There should be no results.", 0, this.manager.verifyLicenseSignatures().length);
+    }
+
+    @Test
+    public void testClearLicenseCacheForContext()
+    {
+        License license = this.setupLicenseMocking("CLEAR-1");
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.getLicense("CLEAR-1");
+        assertEquals("The returned license is not correct.", license, returned);
+        assertSame("The license should be cached.", returned, this.manager.getLicense("CLEAR-1"));
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        this.setupLicenseMocking("CLEAR-1");
+        TestLicenseManager.control.replay();
+
+        this.manager.clearLicenseCache("CLEAR-1");
+
+        License reloaded = this.manager.getLicense("CLEAR-1");
+        assertNotSame("The license should have been retrieved again.", returned, reloaded);
+        assertEquals("The reloaded license is not correct.", license, reloaded);
+    }
+
+    @Test
+    public void testClearLicenseCacheForContextDuringLoad() throws Exception
+    {
+        License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withSubject("Changing Product Name(TM)").
+            withNumberOfLicenses(3).
+            build();
+        byte[] data = Encryptor.encryptRaw(license.serialize(), TestLicenseManager.licensePassword);
+        SignedLicense signedLicense = new SignedLicense(
+            data,
+            new DataSignatureManager().signData(TestLicenseManager.privateKey, data)
+        );
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        LicenseProvider blocking = (context) -> {
+            reading.countDown();
+            try
+            {
+                assertTrue("The license should have changed.", changed.await(10, TimeUnit.SECONDS));
+            }
+            catch(InterruptedException e)
+            {
+                throw new RuntimeException(e);
+            }
+            return signedLicense;
+        };
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("RACE-1")).andDelegateTo(blocking);
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        EasyMock.expect(TestLicenseManager.licensePasswordProvider.getPassword()).andReturn(licensePassword.clone());
+        TestLicenseManager.control.replay();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<License> load = executor.submit(() -> this.manager.getLicense("RACE-1"));
+
+            // the license file changes while the old one is still being read
+            assertTrue("The provider should be reading.", reading.await(10, TimeUnit.SECONDS));
+            this.manager.clearLicenseCache("RACE-1");
+            changed.countDown();
+
+            assertEquals("The loaded license is not correct.", license, load.get(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        License reloaded = this.setupLicenseMocking("RACE-1");
+        TestLicenseManager.control.replay();
+
+        assertEquals(
+            "The license read before the change should not have been cached.",
+            reloaded,
+            this.manager.getLicense("RACE-1")
+        );
+    }
+
+    @Test
+    public void testCheckFeatures01()
+    {
+        License license = this.setupLicenseMocking("BATCH-1");
+        TestLicenseManager.licenseValidator.validateLicense(license);
+        EasyMock.expectLastCall();
+        TestLicenseManager.control.replay();
+
+        BitSet licensed = this.manager.checkFeatures("BATCH-1", "feature#1", "feature#3", "feature#5", "feature#2");
+
+        assertEquals("The number of licensed features is not correct.", 3, licensed.cardinality());
+        assertTrue("Feature 1 should be licensed.", licensed.get(0));
+        assertFalse("Feature 3 should not be licensed.", licensed.get(1));
+        assertTrue("Feature 5 should be licensed.", licensed.get(2));
+        assertTrue("Feature 2 should be licensed.", licensed.get(3));
+    }
+
+    @Test
+    public void testCheckFeatures02()
+    {
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("BATCH-2")).andReturn(null);
+        TestLicenseManager.control.replay();
+
+        assertTrue(
+            "There should be no licensed features.",
+            this.manager.checkFeatures("BATCH-2", new MockFeatureObject("feature#1")).isEmpty()
+        );
+    }
+
+    @Test
+    public void testCheckFeatureMatrix()
+    {
+        License license = this.setupLicenseMocking("MATRIX-1");
+        TestLicenseManager.control.replay();
+
+        assertNotNull("The license should be cached.", this.manager.getLicense("MATRIX-1"));
+
+        // the licenses are loaded in parallel, so only one of them may go to the strictly ordered mocks
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("MATRIX-2")).andReturn(null);
+        TestLicenseManager.licenseValidator.validateLicense(EasyMock.eq(license), EasyMock.anyLong());
+        EasyMock.expectLastCall();
+        TestLicenseManager.control.replay();
+
+        Map<Object, BitSet> matrix = this.manager.checkFeatureMatrix(
+            Arrays.asList("MATRIX-1", "MATRIX-2"),
+            "feature#2",
+            "feature#4"
+        );
+
+        assertEquals("The number of rows is not correct.", 2, matrix.size());
+        assertEquals("The first row is not correct.", BitSet.valueOf(new long[] {0x01}), matrix.get("MATRIX-1"));
+        assertTrue("The second row should be empty.", matrix.get("MATRIX-2").isEmpty());
+    }
+
+    @Test
+    public void testCheckFeatureMatrixValidatesAsOfOneDate()
+    {
+        License license1 = this.setupLicenseMocking("MATRIX-3");
+        License license2 = this.setupLicenseMocking("MATRIX-4");
+        TestLicenseManager.control.replay();
+
+        assertNotNull("The first license should be cached.", this.manager.getLicense("MATRIX-3"));
+        assertNotNull("The second license should be cached.", this.manager.getLicense("MATRIX-4"));
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        List<Long> dates = new ArrayList<>();
+        LicenseValidator recorder = new LicenseValidator()
+        {
+            @Override
+            public void validateLicense(License license)
+            {
+                fail("The license should be validated as of a date.");
+            }
+
+            @Override
+            public void validateLicense(License license, long currentDate)
+            {
+                dates.add(currentDate);
+            }
+        };
+        TestLicenseManager.licenseValidator.validateLicense(EasyMock.eq(license1), EasyMock.anyLong());
+        EasyMock.expectLastCall().andDelegateTo(recorder);
+        TestLicenseManager.licenseValidator.validateLicense(EasyMock.eq(license2), EasyMock.anyLong());
+        EasyMock.expectLastCall().andDelegateTo(recorder);
+        TestLicenseManager.control.replay();
+
+        Map<Object, BitSet> matrix = this.manager.checkFeatureMatrix(
+            Arrays.asList("MATRIX-3", "MATRIX-4"),
+            new MockFeatureObject("feature#5"),
+            new MockFeatureObject("feature#3")
+        );
+
+        assertEquals("The number of rows is not correct.", 2, matrix.size());
+        assertEquals("The first row is not correct.", BitSet.valueOf(new long[] {0x01}), matrix.get("MATRIX-3"));
+        assertEquals("The second row is not correct.", BitSet.valueOf(new long[] {0x01}), matrix.get("MATRIX-4"));
+        assertEquals("The number of validations is not correct.", 2, dates.size());
+        assertEquals("The licenses should be validated as of the same date.", dates.get(0), dates.get(1));
+    }
+
+    @Test
+    public void testGetLicenseAsync01() throws Exception
+    {
+        License license = this.setupLicenseMocking("ASYNC-1");
+        TestLicenseManager.control.replay();
+
+        License returned = this.manager.getLicenseAsync("ASYNC-1").get(10, TimeUnit.SECONDS);
+
+        assertNotNull("The returned license should not be null.", returned);
+        assertEquals("The returned license is not correct.", license, returned);
+
+        CompletableFuture<License> cached = this.manager.getLicenseAsync("ASYNC-1");
+
+        assertTrue("The future for a cached license should already be complete.", cached.isDone());
+        assertSame("The returned objects should be the same.", returned, cached.get());
+    }
+
+    @Test
+    public void testGetLicenseAsync02() throws Exception
+    {
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("ASYNC-2")).andReturn(null);
+        TestLicenseManager.control.replay();
+
+        assertNull(
+            "The returned license should be null.",
+            this.manager.getLicenseAsync("ASYNC-2").get(10, TimeUnit.SECONDS)
+        );
+    }
+
+    @Test
+    public void testGetLicenseAsyncIllegalArgument() throws Exception
+    {
+        TestLicenseManager.control.replay();
+
+        CompletableFuture<License> future = this.manager.getLicenseAsync(null);
+
+        assertTrue("The future should have failed already.", future.isCompletedExceptionally());
+        try
+        {
+            future.get();
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertSame(
+                "The cause is not correct.",
+                IllegalArgumentException.class,
+                e.getCause().getClass()
+            );
+        }
+    }
+
+    @Test
+    public void testGetLicenseAsyncFailure() throws Exception
+    {
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("ASYNC-3")).andReturn(
+            new SignedLicense(new byte[] {0x29, 0x7F, 0x3C}, new byte[] {0x01, 0x02}, "SHA1withMadeUpAlgorithm")
+        );
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.getLicenseAsync("ASYNC-3").get(10, TimeUnit.SECONDS);
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertSame(
+                "The cause is not correct.",
+                AlgorithmNotSupportedException.class,
+                e.getCause().getClass()
+            );
+        }
+    }
+
+    @Test
+    public void testHasLicenseForFeatureAsync01() throws Exception
+    {
+        License license = this.setupLicenseMocking("ASYNC-4");
+        TestLicenseManager.licenseValidator.validateLicense(license);
+        EasyMock.expectLastCall();
+        TestLicenseManager.licenseValidator.validateLicense(license);
+        EasyMock.expectLastCall();
+        TestLicenseManager.control.replay();
+
+        assertTrue(
+            "The returned value is not correct (1).",
+            this.manager.hasLicenseForFeatureAsync("ASYNC-4", "feature#1").get(10, TimeUnit.SECONDS)
+        );
+
+        CompletableFuture<Boolean> cached = this.manager.hasLicenseForAllFeaturesAsync(
+            "ASYNC-4", "feature#1", "feature#2"
+        );
+
+        assertTrue("The future for a cached license should already be complete.", cached.isDone());
+        assertTrue("The returned value is not correct (2).", cached.get());
+    }
+
+    @Test
+    public void testHasLicenseForFeatureAsync02() throws Exception
+    {
+        License license = this.setupLicenseMocking("ASYNC-5");
+        TestLicenseManager.licenseValidator.validateLicense(license);
+        EasyMock.expectLastCall().andThrow(new ExpiredLicenseException());
+        TestLicenseManager.control.replay();
+
+        try
+        {
+            this.manager.hasLicenseForAnyFeatureAsync("ASYNC-5", "feature#1").get(10, TimeUnit.SECONDS);
+            fail("Expected java.util.concurrent.ExecutionException, got no exception.");
+        }
+        catch(ExecutionException e)
+        {
+            assertSame("The cause is not correct.", ExpiredLicenseException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testGetLicenses01()
+    {
+        License license = this.setupLicenseMocking("BULK-1");
+        TestLicenseManager.control.replay();
+
+        assertNotNull("The license should be cached.", this.manager.getLicense("BULK-1"));
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("BULK-2")).andReturn(null);
+        TestLicenseManager.control.replay();
+
+        LicenseBatchResult result = this.manager.getLicenses(Arrays.asList("BULK-1", "BULK-2", "BULK-1"));
+
+        assertFalse("There should be no failures.", result.hasFailures());
+        assertEquals("The number of licenses is not correct.", 2, result.getLicenses().size());
+        assertEquals("The first license is not correct.", license, result.getLicenses().get("BULK-1"));
+        assertTrue("The second context should be present.", result.getLicenses().containsKey("BULK-2"));
+        assertNull("The second license should be null.", result.getLicenses().get("BULK-2"));
+    }
+
+    @Test
+    public void testGetLicenses02()
+    {
+        License license = this.setupLicenseMocking("BULK-3");
+        TestLicenseManager.control.replay();
+
+        assertNotNull("The license should be cached.", this.manager.getLicense("BULK-3"));
+
+        TestLicenseManager.control.verify();
+        TestLicenseManager.control.reset();
+        EasyMock.expect(TestLicenseManager.licenseProvider.getLicense("BULK-4")).andReturn(
+            new SignedLicense(new byte[] {0x29, 0x7F, 0x3C}, new byte[] {0x01, 0x02}, "SHA1withMadeUpAlgorithm")
+        );
+        TestLicenseManager.control.replay();
+
+        LicenseBatchResult result = this.manager.getLicenses(Arrays.asList("BULK-4", null, "BULK-3"));
+
+        assertTrue("There should be failures.", result.hasFailures());
+        assertEquals("The number of licenses is not correct.", 1, result.getLicenses().size());
+        assertEquals("The license is not correct.", license, result.getLicenses().get("BULK-3"));
+        assertEquals("The number of failures is not correct.", 2, result.getFailures().size());
+        assertSame(
+            "The first failure is not correct.",
+            AlgorithmNotSupportedException.class,
+            result.getFailures().get("BULK-4").getClass()
+        );
+        assertSame(
+            "The second failure is not correct.",
+            IllegalArgumentException.class,
+            result.getFailures().get(null).getClass()
+        );
+    }
+
+    @Test
+    public void testWarmUp01()
+    {
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        TestLicenseManager.control.replay();
+
+        LicenseBatchResult result = this.manager.warmUp(Arrays.asList());
+
+        assertFalse("There should be no failures.", result.hasFailures());
+        assertTrue("There should be no licenses.", result.getLicenses().isEmpty());
+        assertTrue("The duration should not be negative.", result.getDurationInMilliseconds() >= 0L);
+    }
+
+    @Test
+    public void testWarmUp02()
+    {
+        EasyMock.expect(TestLicenseManager.publicKeyPasswordProvider.getPassword()).andReturn(keyPassword.clone());
+        EasyMock.expect(TestLicenseManager.keyDataProvider.getEncryptedPublicKeyData()).
+            andReturn(encryptedPublicKey.clone());
+        License license = this.setupLicenseMocking("WARM-1");
+        TestLicenseManager.control.replay();
+
+        LicenseBatchResult result = this.manager.warmUp(Arrays.asList("WARM-1"), 100);
+
+        assertFalse("There should be no failures.", result.hasFailures());
+        assertEquals("The license is not correct.", license, result.getLicenses().get("WARM-1"));
+        assertTrue("The duration should not be negative.", result.getDurationInMilliseconds() >= 0L);
+    }
+
+    @Test
+    public void testHasLicenseForFeatureConcurrently() throws Exception
+    {
+        final int checks = 100_000;
+
+        License license = this.setupLicenseMocking("CONCURRENT-1");
+        TestLicenseManager.licenseValidator.validateLicense(license);
+        EasyMock.expectLastCall().times(checks);
+        TestLicenseManager.control.replay();
+
+        ExecutorService executor = TestLicenseManager.newStressTestExecutor();
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<>(checks);
+            for(int i = 0; i < checks; i++)
+            {
+                results.add(executor.submit(() -> this.manager.hasLicenseForFeature("CONCURRENT-1", "feature#2")));
+            }
+
+            for(Future<Boolean> result : results)
+            {
+                assertTrue("The returned value is not correct.", result.get(60, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newStressTestExecutor() throws Exception
+    {
+        try
+        {
+            // one virtual thread per check when the runtime supports them
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(NoSuchMethodException e)
+        {
+            return Executors.newFixedThreadPool(64);
+        }
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for MemoryLicenseProvider.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestMemoryLicenseProvider
+{
+    private MemoryLicenseProvider provider;
+
+    @Before
+    public void setUp()
+    {
+        this.provider = new MemoryLicenseProvider();
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        this.provider.getLicense(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutLicenseNullLicense()
+    {
+        this.provider.putLicense("tenant1", null);
+    }
+
+    @Test
+    public void testPutGetAndRemoveLicense()
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01}, new byte[] {0x02});
+
+        assertNull("The license should be null.", this.provider.getLicense("tenant1"));
+
+        this.provider.putLicense("tenant1", signedLicense);
+
+        SignedLicense returned = this.provider.getLicense("tenant1");
+        assertNotNull("The license should not be null.", returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01}, returned.getLicenseContent());
+        assertArrayEquals("The signature content is not correct.", new byte[] {0x02}, returned.getSignatureContent());
+        assertEquals("The size is not correct.", 1, this.provider.size());
+
+        this.provider.removeLicense("tenant1");
+
+        assertNull("The license should be null after removal.", this.provider.getLicense("tenant1"));
+
+        this.provider.putLicense("tenant2", signedLicense);
+        this.provider.clear();
+
+        assertEquals("The size is not correct after clearing.", 0, this.provider.size());
+    }
+
+    @Test
+    public void testLicensesAreCopied()
+    {
+        SignedLicense signedLicense = new SignedLicense(new byte[] {0x01}, new byte[] {0x02}, "SHA512withRSA");
+
+        this.provider.putLicense("tenant1", signedLicense);
+        signedLicense.erase();
+
+        SignedLicense returned = this.provider.getLicense("tenant1");
+        assertNotSame("The stored license should be a copy.", signedLicense, returned);
+        assertArrayEquals("The license content is not correct.", new byte[] {0x01}, returned.getLicenseContent());
+        assertEquals("The signature algorithm is not correct.", "SHA512withRSA", returned.getSignatureAlgorithm());
+
+        returned.erase();
+
+        returned = this.provider.getLicense("tenant1");
+        assertArrayEquals("The license content is not correct again.", new byte[] {0x01}, returned.getLicenseContent());
+        assertArrayEquals("The signature content is not correct again.", new byte[] {0x02},
+                          returned.getSignatureContent()
+        );
+    }
+}
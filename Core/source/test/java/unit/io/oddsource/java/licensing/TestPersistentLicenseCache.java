@@ -0,0 +1,260 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PersistentLicenseCache.
+ */
+public class TestPersistentLicenseCache
+{
+    private static final byte[] publicKeyData = new byte[] {0x01, 0x02, 0x03, 0x04};
+
+    private File directory;
+
+    private PersistentLicenseCache cache;
+
+    private License license;
+
+    private String key;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        this.directory = new File("testPersistentLicenseCache");
+        FileUtils.deleteQuietly(this.directory);
+
+        this.cache = this.newCache(TestPersistentLicenseCache.publicKeyData, "password");
+        this.license = new License.Builder().withProductKey("5565-1039-AF89-GGX7-TN31-14AL").withHolder("Holder")
+                                            .addFeature("feature1").addFeature("feature2", 2000000000000L).build();
+        this.key = VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03}));
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(this.directory);
+    }
+
+    private PersistentLicenseCache newCache(byte[] publicKeyData, String password) throws IOException
+    {
+        byte[] secret = LicenseCacheSeal.readOrCreateSecret(
+            PersistentLicenseCache.getKeyFile(this.directory), PersistentLicenseCache.keyFilePermissions
+        );
+        return new PersistentLicenseCache(
+            this.directory, new LicenseCacheSeal(secret, publicKeyData, password.toCharArray())
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullDirectory()
+    {
+        new PersistentLicenseCache(null, new LicenseCacheSeal(
+            new byte[LicenseCacheSeal.secretLength], TestPersistentLicenseCache.publicKeyData, "password".toCharArray()
+        ));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorZeroMaximumAge()
+    {
+        new PersistentLicenseCache(this.directory, new LicenseCacheSeal(
+            new byte[LicenseCacheSeal.secretLength], TestPersistentLicenseCache.publicKeyData, "password".toCharArray()
+        ), 0L);
+    }
+
+    @Test
+    public void testGetNotCached()
+    {
+        assertNull("The license should not be cached.", this.cache.get(this.key));
+    }
+
+    @Test
+    public void testPutAndGetAfterRestart() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        License restored = this.newCache(TestPersistentLicenseCache.publicKeyData, "password").get(this.key);
+
+        assertNotNull("The license should be restored.", restored);
+        assertEquals("The license is not correct.", this.license, restored);
+        assertEquals("The features are not correct.", this.license.getFeatures(), restored.getFeatures());
+    }
+
+    @Test
+    public void testDifferentPasswordIgnored() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        assertNull(
+            "The entry should not be accepted with another password.",
+            this.newCache(TestPersistentLicenseCache.publicKeyData, "other").get(this.key)
+        );
+    }
+
+    @Test
+    public void testDifferentPublicKeyIgnored() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        assertNull(
+            "The entry should not be accepted with another public key.",
+            this.newCache(new byte[] {0x01, 0x02, 0x03, 0x05}, "password").get(this.key)
+        );
+    }
+
+    @Test
+    public void testDifferentSecretIgnored() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        Files.delete(PersistentLicenseCache.getKeyFile(this.directory));
+
+        assertNull(
+            "The entry should not be accepted with another secret.",
+            this.newCache(TestPersistentLicenseCache.publicKeyData, "password").get(this.key)
+        );
+    }
+
+    @Test
+    public void testKeyFile() throws IOException
+    {
+        Path keyFile = PersistentLicenseCache.getKeyFile(this.directory);
+
+        assertTrue("The key file should exist.", Files.exists(keyFile));
+        assertEquals("The key file length is not correct.", LicenseCacheSeal.secretLength, Files.size(keyFile));
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        {
+            assertEquals(
+                "The key file should be readable only by its owner.",
+                PosixFilePermissions.fromString("rw-------"),
+                Files.getPosixFilePermissions(keyFile)
+            );
+        }
+
+        byte[] secret = Files.readAllBytes(keyFile);
+        this.newCache(TestPersistentLicenseCache.publicKeyData, "password");
+        assertArrayEquals("The key file should not be replaced.", secret, Files.readAllBytes(keyFile));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidKeyFile() throws IOException
+    {
+        Files.write(PersistentLicenseCache.getKeyFile(this.directory), new byte[] {0x01, 0x02, 0x03});
+
+        this.newCache(TestPersistentLicenseCache.publicKeyData, "password");
+    }
+
+    @Test
+    public void testTamperedEntryIgnored() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        Path path = this.cache.getPath(this.key);
+        byte[] entry = Files.readAllBytes(path);
+        entry[12] ^= 0x01;
+        Files.write(path, entry);
+
+        assertNull("The tampered entry should not be accepted.", this.cache.get(this.key));
+    }
+
+    @Test
+    public void testTruncatedEntryIgnored() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+
+        Path path = this.cache.getPath(this.key);
+        byte[] entry = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(entry, entry.length - 1));
+
+        assertNull("The truncated entry should not be accepted.", this.cache.get(this.key));
+    }
+
+    @Test
+    public void testMovedEntryIgnored() throws IOException
+    {
+        String otherKey = VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x04}, new byte[] {0x03}));
+        this.cache.put(this.key, this.license);
+
+        Files.copy(this.cache.getPath(this.key), this.cache.getPath(otherKey), StandardCopyOption.REPLACE_EXISTING);
+
+        assertNotNull("The original entry should still be accepted.", this.cache.get(this.key));
+        assertNull("The entry should not be accepted for another signed license.", this.cache.get(otherKey));
+    }
+
+    @Test
+    public void testClear()
+    {
+        this.cache.put(this.key, this.license);
+        this.cache.clear();
+
+        assertNull("The license should no longer be cached.", this.cache.get(this.key));
+    }
+
+    @Test
+    public void testPutPrunesOldEntries() throws IOException
+    {
+        String otherKey = VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x04}, new byte[] {0x05}));
+        this.cache.put(this.key, this.license);
+        Path oldEntry = this.cache.getPath(this.key);
+        Path oldTemporary = Files.createFile(this.directory.toPath().resolve("license123.tmp"));
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31));
+        Files.setLastModifiedTime(oldEntry, old);
+        Files.setLastModifiedTime(oldTemporary, old);
+
+        PersistentLicenseCache restarted = this.newCache(TestPersistentLicenseCache.publicKeyData, "password");
+        restarted.put(otherKey, this.license);
+
+        assertFalse("The old entry should have been pruned.", Files.exists(oldEntry));
+        assertFalse("The old temporary file should have been pruned.", Files.exists(oldTemporary));
+        assertNotNull("The new entry should be kept.", restarted.get(otherKey));
+        assertTrue("The key file should be kept.", Files.exists(PersistentLicenseCache.getKeyFile(this.directory)));
+    }
+
+    @Test
+    public void testGetRenewsOldEntry() throws IOException
+    {
+        this.cache.put(this.key, this.license);
+        Path entry = this.cache.getPath(this.key);
+        long age = TimeUnit.DAYS.toMillis(20);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - age));
+
+        assertNotNull("The license should be cached.", this.cache.get(this.key));
+        assertTrue(
+            "The entry should have been renewed.",
+            System.currentTimeMillis() - Files.getLastModifiedTime(entry).toMillis() < age
+        );
+
+        this.cache.prune(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(20));
+        assertNotNull("The renewed entry should not have been pruned.", this.cache.get(this.key));
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.exception.LicenseStoreException;
+
+/**
+ * Test class for ResilientLicenseProvider.
+ */
+public class TestResilientLicenseProvider
+{
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorNullProvider()
+    {
+        new ResilientLicenseProvider(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetFailureThresholdZero()
+    {
+        new ResilientLicenseProvider(new Store()).setFailureThreshold(0);
+    }
+
+    @Test
+    public void testGetLicense()
+    {
+        Store store = new Store();
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+
+        assertSame("The license is not correct.", store.license, provider.getLicense("tenant1"));
+        assertNull("The missing license is not correct.", provider.getLicense("missing"));
+        assertFalse("The circuit should be closed.", provider.isCircuitOpen());
+        assertEquals("No retrievals should be under way.", 0, provider.getRetrievalsUnderWay());
+    }
+
+    @Test
+    public void testTimeout() throws InterruptedException
+    {
+        Store store = new Store();
+        store.delay = 30000L;
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+        provider.setTimeoutInMilliseconds(50L);
+
+        long start = System.nanoTime();
+        try
+        {
+            provider.getLicense("tenant1");
+            fail("Expected LicenseStoreException, got no exception.");
+        }
+        catch(LicenseStoreException e)
+        {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("The retrieval should not have been waited for (" + elapsed + " ms).", elapsed < 10000L);
+        }
+
+        assertTrue("The retrieval should have been interrupted.", store.interrupted.await(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailureWrapped()
+    {
+        Store store = new Store();
+        store.failure = new IllegalStateException("The store is down.");
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+
+        try
+        {
+            provider.getLicense("tenant1");
+            fail("Expected LicenseStoreException, got no exception.");
+        }
+        catch(LicenseStoreException e)
+        {
+            assertSame("The cause is not correct.", store.failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testCircuitOpensAndCloses() throws InterruptedException
+    {
+        Store store = new Store();
+        store.failure = new LicenseStoreException("The store is down.");
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+        provider.setFailureThreshold(3);
+        provider.setOpenDurationInMilliseconds(200L);
+
+        for(int i = 0; i < 3; i++)
+        {
+            assertFalse("The circuit should be closed (" + i + ").", provider.isCircuitOpen());
+            TestResilientLicenseProvider.assertFails(provider);
+        }
+
+        assertTrue("The circuit should be open.", provider.isCircuitOpen());
+        TestResilientLicenseProvider.assertFails(provider);
+        assertEquals("The store should not be reached while the circuit is open.", 3, store.requests.get());
+
+        Thread.sleep(300L);
+
+        TestResilientLicenseProvider.assertFails(provider);
+        assertEquals("The trial retrieval should reach the store.", 4, store.requests.get());
+        assertTrue("The circuit should be open again.", provider.isCircuitOpen());
+
+        Thread.sleep(300L);
+        store.failure = null;
+
+        assertSame("The license is not correct.", store.license, provider.getLicense("tenant1"));
+        assertFalse("The circuit should be closed.", provider.isCircuitOpen());
+        assertSame("The license is not correct.", store.license, provider.getLicense("tenant1"));
+        assertEquals("The number of retrievals is not correct.", 6, store.requests.get());
+    }
+
+    @Test
+    public void testSuccessResetsFailures()
+    {
+        Store store = new Store();
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+        provider.setFailureThreshold(2);
+
+        store.failure = new LicenseStoreException("The store is down.");
+        TestResilientLicenseProvider.assertFails(provider);
+        store.failure = null;
+        provider.getLicense("tenant1");
+        store.failure = new LicenseStoreException("The store is down.");
+        TestResilientLicenseProvider.assertFails(provider);
+
+        assertFalse("The circuit should still be closed.", provider.isCircuitOpen());
+    }
+
+    @Test
+    public void testBulkhead() throws Exception
+    {
+        Store store = new Store();
+        store.delay = 30000L;
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+        provider.setMaximumConcurrentRetrievals(2);
+        provider.setFailureThreshold(10);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<?> first = callers.submit(() -> provider.getLicense("tenant1"));
+            Future<?> second = callers.submit(() -> provider.getLicense("tenant2"));
+            assertTrue("The retrievals should have started.", store.started.await(10L, TimeUnit.SECONDS));
+
+            try
+            {
+                provider.getLicense("tenant3");
+                fail("Expected LicenseStoreException, got no exception.");
+            }
+            catch(LicenseStoreException e)
+            {
+                assertEquals("The third retrieval should not reach the store.", 2, store.requests.get());
+            }
+
+            first.cancel(true);
+            second.cancel(true);
+        }
+        finally
+        {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBulkheadReleasedWhenCancelledBeforeStarting() throws Exception
+    {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        CountDownLatch blocker = new CountDownLatch(1);
+        try
+        {
+            single.submit(() -> {
+                blocker.await();
+                return null;
+            });
+
+            Store store = new Store();
+            ResilientLicenseProvider provider = new ResilientLicenseProvider(store, single);
+            provider.setTimeoutInMilliseconds(50L);
+            provider.setMaximumConcurrentRetrievals(1);
+            provider.setFailureThreshold(10);
+
+            for(int i = 0; i < 3; i++)
+            {
+                try
+                {
+                    provider.getLicense("tenant1");
+                    fail("Expected LicenseStoreException, got no exception.");
+                }
+                catch(LicenseStoreException e)
+                {
+                    assertTrue("The retrieval should have timed out.", e.getMessage().startsWith("Timed out"));
+                }
+            }
+
+            assertEquals("No retrievals should be under way.", 0, provider.getRetrievalsUnderWay());
+
+            blocker.countDown();
+            single.shutdown();
+            assertTrue("The executor should have finished.", single.awaitTermination(10L, TimeUnit.SECONDS));
+            assertEquals("The cancelled retrievals should not reach the store.", 0, store.requests.get());
+            assertEquals("No retrievals should be under way afterward.", 0, provider.getRetrievalsUnderWay());
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConditionalPassedThrough()
+    {
+        Store store = new Store();
+        ResilientLicenseProvider provider = new ResilientLicenseProvider(store, this.executor);
+
+        assertSame(
+            "The not-modified marker is not correct.",
+            ConditionalLicenseProvider.NOT_MODIFIED,
+            provider.getLicenseIfModified("unchanged")
+        );
+        assertSame("The license is not correct.", store.license, provider.getLicenseIfModified("tenant1"));
+    }
+
+    private static void assertFails(ResilientLicenseProvider provider)
+    {
+        try
+        {
+            provider.getLicense("tenant1");
+            fail("Expected LicenseStoreException, got no exception.");
+        }
+        catch(LicenseStoreException ignore)
+        {
+            // expected
+        }
+    }
+
+    private static final class Store implements LicenseProvider, ConditionalLicenseProvider
+    {
+        private final SignedLicense license = new SignedLicense(new byte[] {0x01}, new byte[] {0x02});
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final CountDownLatch started = new CountDownLatch(2);
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        private volatile long delay;
+
+        private volatile RuntimeException failure;
+
+        @Override
+        public SignedLicense getLicense(Object context)
+        {
+            this.requests.incrementAndGet();
+            this.started.countDown();
+            if(this.delay > 0L)
+            {
+                try
+                {
+                    Thread.sleep(this.delay);
+                }
+                catch(InterruptedException e)
+                {
+                    this.interrupted.countDown();
+                    return null;
+                }
+            }
+            if(this.failure != null)
+            {
+                throw this.failure;
+            }
+            return "missing".equals(context) ? null : this.license;
+        }
+
+        @Override
+        public SignedLicense getLicenseIfModified(Object context)
+        {
+            return "unchanged".equals(context) ? ConditionalLicenseProvider.NOT_MODIFIED : this.getLicense(context);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for SharedLicenseCache.
+ */
+public class TestSharedLicenseCache
+{
+    private static final byte[] publicKeyData = new byte[] {0x01, 0x02, 0x03, 0x04};
+
+    private final List<SharedLicenseCache> caches = new ArrayList<>();
+
+    private File file;
+
+    private License license;
+
+    private String key;
+
+    @Before
+    public void setUp()
+    {
+        this.file = new File("testSharedLicenseCache.cache");
+        FileUtils.deleteQuietly(this.file);
+
+        this.license = new License.Builder().withProductKey("5565-1039-AF89-GGX7-TN31-14AL").withHolder("Holder")
+                                            .addFeature("feature1").addFeature("feature2", 2000000000000L).build();
+        this.key = TestSharedLicenseCache.key(1);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        for(SharedLicenseCache cache : this.caches)
+        {
+            cache.close();
+        }
+        FileUtils.deleteQuietly(this.file);
+        FileUtils.deleteQuietly(SharedLicenseCache.getKeyFile(this.file).toFile());
+    }
+
+    private static String key(int content)
+    {
+        return VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {(byte) content}, new byte[] {0x03}));
+    }
+
+    private SharedLicenseCache open(int slotCount, int slotSize, String password) throws IOException
+    {
+        byte[] secret = LicenseCacheSeal.readOrCreateSecret(
+            SharedLicenseCache.getKeyFile(this.file), SharedLicenseCache.keyFilePermissions
+        );
+        SharedLicenseCache cache = new SharedLicenseCache(
+            this.file, slotCount, slotSize,
+            new LicenseCacheSeal(secret, TestSharedLicenseCache.publicKeyData, password.toCharArray())
+        );
+        this.caches.add(cache);
+        return cache;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorSlotTooSmall() throws IOException
+    {
+        this.open(16, 64, "password");
+    }
+
+    @Test(expected = IOException.class)
+    public void testConstructorNotACacheFile() throws IOException
+    {
+        Files.write(this.file.toPath(), new byte[128]);
+
+        this.open(16, 512, "password");
+    }
+
+    @Test
+    public void testGetNotCached() throws IOException
+    {
+        assertNull("The license should not be cached.", this.open(16, 512, "password").get(this.key));
+    }
+
+    @Test
+    public void testSharedBetweenMappings() throws IOException
+    {
+        SharedLicenseCache writer = this.open(16, 512, "password");
+        SharedLicenseCache reader = this.open(16, 512, "password");
+
+        writer.put(this.key, this.license);
+        License shared = reader.get(this.key);
+
+        assertNotNull("The license should be shared.", shared);
+        assertEquals("The license is not correct.", this.license, shared);
+        assertEquals("The features are not correct.", this.license.getFeatures(), shared.getFeatures());
+    }
+
+    @Test
+    public void testExistingLayoutKept() throws IOException
+    {
+        this.open(16, 512, "password").put(this.key, this.license);
+
+        SharedLicenseCache reopened = this.open(64, 1024, "password");
+
+        assertEquals("The slot count is not correct.", 16, reopened.getSlotCount());
+        assertEquals("The license is not correct.", this.license, reopened.get(this.key));
+    }
+
+    @Test
+    public void testFilesShareableByGroup() throws IOException
+    {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        this.open(16, 512, "password");
+
+        assertEquals(
+            "The cache file should be readable and writable by its group.",
+            PosixFilePermissions.fromString("rw-rw----"),
+            Files.getPosixFilePermissions(this.file.toPath())
+        );
+        assertEquals(
+            "The key file should be readable by its group.",
+            PosixFilePermissions.fromString("rw-r-----"),
+            Files.getPosixFilePermissions(SharedLicenseCache.getKeyFile(this.file))
+        );
+    }
+
+    @Test
+    public void testDifferentPasswordIgnored() throws IOException
+    {
+        this.open(16, 512, "password").put(this.key, this.license);
+
+        assertNull("The entry should not be accepted.", this.open(16, 512, "other").get(this.key));
+    }
+
+    @Test
+    public void testTamperedEntryIgnored() throws IOException
+    {
+        SharedLicenseCache cache = this.open(1, 512, "password");
+        cache.put(this.key, this.license);
+
+        try(RandomAccessFile raf = new RandomAccessFile(this.file, "rw"))
+        {
+            // the first byte of the serialized license in the only slot
+            long position = 64 + 8 + 32 + 4;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0x01);
+        }
+
+        assertNull("The tampered entry should not be accepted.", cache.get(this.key));
+    }
+
+    @Test
+    public void testLicenseTooLargeNotShared() throws IOException
+    {
+        SharedLicenseCache cache = this.open(16, 128, "password");
+        cache.put(this.key, this.license);
+
+        assertNull("The license should not fit.", cache.get(this.key));
+    }
+
+    @Test
+    public void testFullCacheReplacesEntry() throws IOException
+    {
+        SharedLicenseCache cache = this.open(1, 512, "password");
+        License other = new License.Builder().withProductKey("OTHER").build();
+
+        cache.put(this.key, this.license);
+        cache.put(TestSharedLicenseCache.key(2), other);
+
+        assertNull("The first license should have been replaced.", cache.get(this.key));
+        assertEquals("The second license is not correct.", other, cache.get(TestSharedLicenseCache.key(2)));
+    }
+
+    @Test
+    public void testClear() throws IOException
+    {
+        SharedLicenseCache cache = this.open(16, 512, "password");
+        cache.put(this.key, this.license);
+
+        this.open(16, 512, "password").clear();
+
+        assertNull("The license should no longer be cached.", cache.get(this.key));
+    }
+
+    @Test
+    public void testReadersNeverSeeTornEntries() throws Exception
+    {
+        SharedLicenseCache writer = this.open(1, 512, "password");
+        SharedLicenseCache reader = this.open(1, 512, "password");
+        License other = new License.Builder().withProductKey("OTHER").withHolder("Someone else").build();
+        String otherKey = TestSharedLicenseCache.key(2);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for(int i = 0; i < 3; i++)
+            {
+                readers.add(executor.submit(() -> {
+                    int found = 0;
+                    while(running.get())
+                    {
+                        License read = reader.get(this.key);
+                        if(read != null)
+                        {
+                            assertEquals("A torn license was returned.", this.license, read);
+                            found++;
+                        }
+                        read = reader.get(otherKey);
+                        if(read != null)
+                        {
+                            assertEquals("A torn license was returned.", other, read);
+                            found++;
+                        }
+                    }
+                    return found;
+                }));
+            }
+
+            for(int i = 0; i < 2000; i++)
+            {
+                writer.put(this.key, this.license);
+                writer.put(otherKey, other);
+            }
+            running.set(false);
+
+            int found = 0;
+            for(Future<Integer> result : readers)
+            {
+                found += result.get(30, TimeUnit.SECONDS);
+            }
+            assertTrue("The readers should have found licenses.", found > 0);
+        }
+        finally
+        {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+}
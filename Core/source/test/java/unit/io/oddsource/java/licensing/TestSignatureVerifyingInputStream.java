@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.encryption.KeyFileUtilities;
+import io.oddsource.java.licensing.exception.InvalidSignatureException;
+
+/**
+ * Test class for SignatureVerifyingInputStream.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestSignatureVerifyingInputStream
+{
+    private static KeyPair keyPair;
+
+    private static byte[] data;
+
+    private static byte[] signature;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        TestSignatureVerifyingInputStream.keyPair =
+            KeyPairGenerator.getInstance(KeyFileUtilities.keyAlgorithm).generateKeyPair();
+
+        TestSignatureVerifyingInputStream.data = new byte[50000];
+        for(int i = 0; i < TestSignatureVerifyingInputStream.data.length; i++)
+        {
+            TestSignatureVerifyingInputStream.data[i] = (byte) (i % 113);
+        }
+
+        TestSignatureVerifyingInputStream.signature = new DataSignatureManager().signData(
+            TestSignatureVerifyingInputStream.keyPair.getPrivate(), TestSignatureVerifyingInputStream.data
+        );
+    }
+
+    private SignatureVerifyingInputStream stream;
+
+    @Before
+    public void setUp()
+    {
+        this.stream = new DataSignatureManager().newVerifyingInputStream(
+            TestSignatureVerifyingInputStream.keyPair.getPublic(),
+            new ByteArrayInputStream(TestSignatureVerifyingInputStream.data)
+        );
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testVerifyAfterPartialRead() throws IOException
+    {
+        byte[] buffer = new byte[1000];
+        assertEquals("The first byte is not correct.", 0, this.stream.read());
+        assertEquals("The wrong number of bytes was read.", 1000, this.stream.read(buffer));
+        assertArrayEquals(
+            "The bytes read are not correct.",
+            Arrays.copyOfRange(TestSignatureVerifyingInputStream.data, 1, 1001),
+            buffer
+        );
+        assertEquals("The wrong number of bytes was skipped.", 2000, this.stream.skip(2000));
+
+        this.stream.verify(TestSignatureVerifyingInputStream.signature);
+
+        assertEquals("The stream should be at the end.", -1, this.stream.read());
+    }
+
+    @Test
+    public void testVerifyWithoutReading() throws IOException
+    {
+        this.stream.verify(TestSignatureVerifyingInputStream.signature);
+    }
+
+    @Test(expected = InvalidSignatureException.class)
+    public void testVerifyWrongSignature() throws IOException
+    {
+        byte[] wrong = TestSignatureVerifyingInputStream.signature.clone();
+        wrong[10] = (byte) (wrong[10] + 1);
+
+        this.stream.verify(wrong);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVerifyTwice() throws IOException
+    {
+        this.stream.verify(TestSignatureVerifyingInputStream.signature);
+        this.stream.verify(TestSignatureVerifyingInputStream.signature);
+    }
+
+    @Test
+    public void testMarkNotSupported()
+    {
+        assertFalse("Mark should not be supported.", this.stream.markSupported());
+    }
+}
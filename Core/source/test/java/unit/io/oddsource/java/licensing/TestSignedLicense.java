@@ -16,6 +16,8 @@
 package io.oddsource.java.licensing;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import org.junit.After;
 import org.junit.Before;
@@ -73,4 +75,24 @@ public class TestSignedLicense
                           this.license.getSignatureContent(), signedLicense.getSignatureContent()
         );
     }
+
+    @Test
+    public void testLegacySignatureAlgorithm()
+    {
+        assertNull("The signature algorithm should be null.", this.license.getSignatureAlgorithm());
+    }
+
+    @Test
+    public void testSignatureAlgorithmDeserialization() throws ClassNotFoundException
+    {
+        Class.forName("io.oddsource.java.licensing.LicenseSecurityManager");
+
+        SignedLicense license = new SignedLicense(new byte[] {0x29, 0x7F}, new byte[] {0x01, 0x02}, "Ed25519");
+
+        byte[] data = new ObjectSerializer().writeObject(license);
+
+        SignedLicense signedLicense = new ObjectSerializer().readObject(SignedLicense.class, data);
+
+        assertEquals("The signature algorithm is not correct.", "Ed25519", signedLicense.getSignatureAlgorithm());
+    }
 }
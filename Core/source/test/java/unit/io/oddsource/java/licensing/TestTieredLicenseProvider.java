@@ -0,0 +1,401 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for TieredLicenseProvider.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestTieredLicenseProvider
+{
+    private MemoryLicenseProvider memory;
+
+    private MemoryLicenseProvider disk;
+
+    private RemoteProvider remote;
+
+    private List<Runnable> refreshes;
+
+    @Before
+    public void setUp()
+    {
+        this.memory = new MemoryLicenseProvider();
+        this.disk = new MemoryLicenseProvider();
+        this.remote = new RemoteProvider();
+        this.refreshes = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    private TieredLicenseProvider build(long memoryTimeToLive, boolean writeThrough)
+    {
+        return new TieredLicenseProvider.Builder().withTier(this.memory, memoryTimeToLive)
+                                                  .withTier(this.disk, 60000L)
+                                                  .withTier(this.remote, 1L)
+                                                  .withWriteThrough(writeThrough)
+                                                  .withRefreshExecutor(this.refreshes::add)
+                                                  .build();
+    }
+
+    private void runRefreshes()
+    {
+        List<Runnable> pending = new ArrayList<>(this.refreshes);
+        this.refreshes.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    private static SignedLicense license(int content)
+    {
+        return new SignedLicense(new byte[] {(byte) content}, new byte[] {0x01});
+    }
+
+    private static void assertLicense(String message, SignedLicense expected, SignedLicense actual)
+    {
+        assertNotNull(message, actual);
+        assertArrayEquals(message, expected.getLicenseContent(), actual.getLicenseContent());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildNoTiers()
+    {
+        new TieredLicenseProvider.Builder().build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithTierZeroTimeToLive()
+    {
+        new TieredLicenseProvider.Builder().withTier(this.memory, 0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetLicenseNullContext()
+    {
+        this.build(60000L, true).getLicense(null);
+    }
+
+    @Test
+    public void testLookUpLicenseNotFound()
+    {
+        TieredLicenseProvider.Lookup lookup = this.build(60000L, true).lookUpLicense("tenant1");
+
+        assertNull("The license should be null.", lookup.getLicense());
+        assertEquals("The tier is not correct.", -1, lookup.getTier());
+        assertEquals("The remote tier should have been queried.", 1, this.remote.requests.get());
+    }
+
+    @Test
+    public void testLookUpLicenseCopiedToFasterTiers()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        SignedLicense signedLicense = TestTieredLicenseProvider.license(1);
+        this.remote.licenses.putLicense("tenant1", signedLicense);
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        TestTieredLicenseProvider.assertLicense("The license is not correct.", signedLicense, lookup.getLicense());
+        assertEquals("The remote tier should have answered.", 2, lookup.getTier());
+        assertTrue("The license should be fresh.", lookup.isFresh());
+
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be in memory.", signedLicense, this.memory.getLicense("tenant1")
+        );
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be on disk.", signedLicense, this.disk.getLicense("tenant1")
+        );
+
+        lookup = provider.lookUpLicense("tenant1");
+        TestTieredLicenseProvider.assertLicense(
+            "The license is not correct the second time.", signedLicense, lookup.getLicense()
+        );
+        assertEquals("The memory tier should have answered.", 0, lookup.getTier());
+        assertTrue("The license should still be fresh.", lookup.isFresh());
+
+        assertEquals("The remote tier should have been queried once.", 1, this.remote.requests.get());
+        assertTrue("Nothing should have been refreshed.", this.refreshes.isEmpty());
+    }
+
+    @Test
+    public void testStaleCopyRefreshedInBackground() throws InterruptedException
+    {
+        TieredLicenseProvider provider = this.build(1L, true);
+        this.remote.licenses.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        provider.getLicense("tenant1");
+
+        Thread.sleep(5L);
+
+        SignedLicense updated = TestTieredLicenseProvider.license(2);
+        this.disk.putLicense("tenant1", updated);
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        assertArrayEquals("The stale license should be returned.", new byte[] {0x01},
+                          lookup.getLicense().getLicenseContent()
+        );
+        assertEquals("The memory tier should have answered.", 0, lookup.getTier());
+        assertFalse("The license should be stale.", lookup.isFresh());
+        assertEquals("One refresh should be scheduled.", 1, this.refreshes.size());
+
+        provider.lookUpLicense("tenant1");
+        assertEquals("Only one refresh should be scheduled at a time.", 1, this.refreshes.size());
+
+        this.runRefreshes();
+
+        TestTieredLicenseProvider.assertLicense("The memory tier should have been refreshed from disk.", updated,
+                   this.memory.getLicense("tenant1")
+        );
+        assertEquals("The remote tier should not have been queried again.", 1, this.remote.requests.get());
+    }
+
+    @Test
+    public void testUnknownCopyRefreshedFromRemote()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        this.disk.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        this.remote.licenses.putLicense("tenant1", TestTieredLicenseProvider.license(2));
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        assertArrayEquals("The disk license should be returned.", new byte[] {0x01},
+                          lookup.getLicense().getLicenseContent()
+        );
+        assertEquals("The disk tier should have answered.", 1, lookup.getTier());
+        assertFalse("A license already on disk should be stale.", lookup.isFresh());
+        assertEquals("The remote tier should not have been queried yet.", 0, this.remote.requests.get());
+
+        this.runRefreshes();
+
+        assertArrayEquals("The disk tier should have been refreshed.", new byte[] {0x02},
+                          this.disk.getLicense("tenant1").getLicenseContent()
+        );
+        assertArrayEquals("The memory tier should have been refreshed.", new byte[] {0x02},
+                          this.memory.getLicense("tenant1").getLicenseContent()
+        );
+        assertTrue("The memory copy should be fresh.", provider.lookUpLicense("tenant1").isFresh());
+    }
+
+    @Test
+    public void testStaleCopyKeptWhenRemoteFails()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        this.disk.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        this.remote.failing = true;
+
+        assertNotNull("The disk license should be returned.", provider.getLicense("tenant1"));
+
+        this.runRefreshes();
+
+        assertNotNull("The disk license should be kept.", this.disk.getLicense("tenant1"));
+        assertNull("The memory tier should not have a copy.", this.memory.getLicense("tenant1"));
+
+        try
+        {
+            provider.getLicense("tenant2");
+            fail("Expected exception IllegalStateException.");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("The message is not correct.", "The remote tier is down.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testStaleCopyRemovedWhenRemoteHasNoLicense()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        this.disk.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+
+        assertNotNull("The disk license should be returned.", provider.getLicense("tenant1"));
+
+        this.runRefreshes();
+
+        assertNull("The disk license should be removed.", this.disk.getLicense("tenant1"));
+        assertNull("The license should no longer be found.", provider.getLicense("tenant1"));
+    }
+
+    @Test
+    public void testReadOnlyTierRefreshedOncePerTimeToLive() throws InterruptedException
+    {
+        RemoteProvider mirror = new RemoteProvider();
+        TieredLicenseProvider provider = new TieredLicenseProvider.Builder().withTier(mirror, 200L)
+                                                                            .withTier(this.remote, 1L)
+                                                                            .withRefreshExecutor(this.refreshes::add)
+                                                                            .build();
+        mirror.licenses.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        this.remote.licenses.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        assertEquals("The mirror tier should have answered.", 0, lookup.getTier());
+        assertFalse("A license already in the mirror should be stale.", lookup.isFresh());
+        this.runRefreshes();
+        assertEquals("The remote tier should have been queried.", 1, this.remote.requests.get());
+
+        lookup = provider.lookUpLicense("tenant1");
+        assertEquals("The mirror tier should have answered again.", 0, lookup.getTier());
+        assertTrue("The mirror license should be fresh.", lookup.isFresh());
+        assertTrue("Nothing should have been refreshed.", this.refreshes.isEmpty());
+
+        Thread.sleep(250L);
+
+        assertFalse("The mirror license should be stale.", provider.lookUpLicense("tenant1").isFresh());
+        assertEquals("One refresh should be scheduled.", 1, this.refreshes.size());
+        this.runRefreshes();
+        assertEquals("The remote tier should have been queried again.", 2, this.remote.requests.get());
+        assertTrue("The mirror license should be fresh again.", provider.lookUpLicense("tenant1").isFresh());
+    }
+
+    @Test
+    public void testCopyDiscardedWhenLicenseSavedDuringRead()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        this.remote.licenses.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        SignedLicense saved = TestTieredLicenseProvider.license(2);
+        this.remote.onRequest = () -> {
+            try
+            {
+                provider.putLicense("tenant1", saved);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        assertArrayEquals("The remote license should be returned.", new byte[] {0x01},
+                          lookup.getLicense().getLicenseContent()
+        );
+
+        TestTieredLicenseProvider.assertLicense(
+            "The saved license should not have been overwritten in memory.", saved, this.memory.getLicense("tenant1")
+        );
+        TestTieredLicenseProvider.assertLicense(
+            "The saved license should not have been overwritten on disk.", saved, this.disk.getLicense("tenant1")
+        );
+    }
+
+    @Test
+    public void testCopiesKeptWhenLicenseSavedDuringRefresh()
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        this.disk.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        SignedLicense saved = TestTieredLicenseProvider.license(2);
+        this.remote.onRequest = () -> {
+            try
+            {
+                provider.putLicense("tenant1", saved);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        assertNotNull("The disk license should be returned.", provider.getLicense("tenant1"));
+
+        this.runRefreshes();
+
+        TestTieredLicenseProvider.assertLicense(
+            "The saved license should not have been removed from disk.", saved, this.disk.getLicense("tenant1")
+        );
+    }
+
+    @Test
+    public void testPutLicenseWriteThrough() throws IOException
+    {
+        TieredLicenseProvider provider = this.build(60000L, true);
+        SignedLicense signedLicense = TestTieredLicenseProvider.license(1);
+
+        provider.putLicense("tenant1", signedLicense);
+
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be in memory.", signedLicense, this.memory.getLicense("tenant1")
+        );
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be on disk.", signedLicense, this.disk.getLicense("tenant1")
+        );
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        assertEquals("The memory tier should have answered.", 0, lookup.getTier());
+        assertTrue("The license should be fresh.", lookup.isFresh());
+
+        provider.removeLicense("tenant1");
+
+        assertNull("The license should be removed from memory.", this.memory.getLicense("tenant1"));
+        assertNull("The license should be removed from disk.", this.disk.getLicense("tenant1"));
+    }
+
+    @Test
+    public void testPutLicenseNotWriteThrough() throws IOException
+    {
+        TieredLicenseProvider provider = this.build(60000L, false);
+        this.memory.putLicense("tenant1", TestTieredLicenseProvider.license(1));
+        SignedLicense signedLicense = TestTieredLicenseProvider.license(2);
+
+        provider.putLicense("tenant1", signedLicense);
+
+        assertNull("The old license should be removed from memory.", this.memory.getLicense("tenant1"));
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be on disk.", signedLicense, this.disk.getLicense("tenant1")
+        );
+
+        TieredLicenseProvider.Lookup lookup = provider.lookUpLicense("tenant1");
+        TestTieredLicenseProvider.assertLicense("The license is not correct.", signedLicense, lookup.getLicense());
+        assertEquals("The disk tier should have answered.", 1, lookup.getTier());
+        assertTrue("The license should be fresh.", lookup.isFresh());
+        TestTieredLicenseProvider.assertLicense(
+            "The license should be copied to memory.", signedLicense, this.memory.getLicense("tenant1")
+        );
+    }
+
+    private static final class RemoteProvider implements LicenseProvider
+    {
+        private final MemoryLicenseProvider licenses = new MemoryLicenseProvider();
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private volatile boolean failing;
+
+        private volatile Runnable onRequest;
+
+        @Override
+        public SignedLicense getLicense(Object context)
+        {
+            this.requests.incrementAndGet();
+            if(this.onRequest != null)
+            {
+                this.onRequest.run();
+            }
+            if(this.failing)
+            {
+                throw new IllegalStateException("The remote tier is down.");
+            }
+
+            return this.licenses.getLicense(context);
+        }
+    }
+}
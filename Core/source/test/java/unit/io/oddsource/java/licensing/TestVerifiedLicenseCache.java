@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for VerifiedLicenseCache.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestVerifiedLicenseCache
+{
+    @Before
+    public void setUp()
+    {
+
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructionZeroSize()
+    {
+        new VerifiedLicenseCache(0);
+    }
+
+    @Test
+    public void testKeyIdenticalLicenses()
+    {
+        assertEquals(
+            "The keys should be equal.",
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03})),
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03}))
+        );
+    }
+
+    @Test
+    public void testKeyDifferentLicenses()
+    {
+        String key = VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03}));
+
+        assertNotEquals(
+            "The keys should differ by content.",
+            key,
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x04}, new byte[] {0x03}))
+        );
+        assertNotEquals(
+            "The keys should differ by signature.",
+            key,
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x05}))
+        );
+        assertNotEquals(
+            "The keys should differ by the boundary between content and signature.",
+            key,
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01}, new byte[] {0x02, 0x03}))
+        );
+        assertNotEquals(
+            "The keys should differ by algorithm.",
+            key,
+            VerifiedLicenseCache.getKey(new SignedLicense(new byte[] {0x01, 0x02}, new byte[] {0x03}, "Ed25519"))
+        );
+    }
+
+    @Test
+    public void testGetAndPut()
+    {
+        VerifiedLicenseCache cache = new VerifiedLicenseCache(10);
+        License license = new License.Builder().withProductKey("5565-1039-AF89-GGX7-TN31-14AL").build();
+
+        assertNull("The license should not be cached yet.", cache.get("key1"));
+
+        cache.put("key1", license);
+
+        assertSame("The license is not correct.", license, cache.get("key1"));
+        assertEquals("The size is not correct.", 1, cache.size());
+
+        cache.clear();
+
+        assertNull("The license should no longer be cached.", cache.get("key1"));
+        assertEquals("The size is not correct after clearing.", 0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted()
+    {
+        VerifiedLicenseCache cache = new VerifiedLicenseCache(2);
+        License first = new License.Builder().withSubject("First").build();
+        License second = new License.Builder().withSubject("Second").build();
+        License third = new License.Builder().withSubject("Third").build();
+
+        cache.put("key1", first);
+        cache.put("key2", second);
+        assertSame("The first license is not correct.", first, cache.get("key1"));
+
+        cache.put("key3", third);
+
+        assertEquals("The size is not correct.", 2, cache.size());
+        assertSame("The first license should have been kept.", first, cache.get("key1"));
+        assertNull("The second license should have been evicted.", cache.get("key2"));
+        assertSame("The third license is not correct.", third, cache.get("key3"));
+    }
+}
@@ -17,9 +17,15 @@ package io.oddsource.java.licensing.encryption;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
@@ -549,4 +555,491 @@ public class TestEncryptor
 
         }
     }
+
+    @Test
+    public void testByteBufferEncryptMatchesRaw()
+    {
+        byte[] toEncrypt = "testAPasswordThatIsLongerThanThePaddingLengthToPreventRandomness".getBytes();
+
+        ByteBuffer source = ByteBuffer.wrap(toEncrypt);
+        ByteBuffer destination = ByteBuffer.allocate(Encryptor.getEncryptedLength(toEncrypt.length));
+
+        int written = Encryptor.encrypt(source, destination, "bufferPassword1".toCharArray());
+
+        assertEquals("The number of bytes written is not correct.", destination.capacity(), written);
+        assertFalse("The source buffer should have been consumed.", source.hasRemaining());
+        assertArrayEquals(
+            "The encrypted data should match the array-based encryption.",
+            Encryptor.encryptRaw(toEncrypt, "bufferPassword1".toCharArray()),
+            destination.array()
+        );
+    }
+
+    @Test
+    public void testByteBufferRoundTripShortData()
+    {
+        byte[] toEncrypt = "g1nger".getBytes();
+
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(Encryptor.getEncryptedLength(toEncrypt.length));
+        Encryptor.encrypt(ByteBuffer.wrap(toEncrypt), encrypted);
+        encrypted.flip();
+
+        ByteBuffer decrypted = ByteBuffer.allocate(64);
+        decrypted.position(10);
+        int written = Encryptor.decrypt(encrypted, decrypted);
+
+        assertEquals("The number of bytes written is not correct.", toEncrypt.length, written);
+        assertEquals("The position is not correct.", 10 + toEncrypt.length, decrypted.position());
+
+        byte[] result = new byte[written];
+        decrypted.flip();
+        decrypted.position(10);
+        decrypted.get(result);
+
+        assertArrayEquals("The decrypted data is not correct.", toEncrypt, result);
+    }
+
+    @Test
+    public void testByteBufferDecryptOfRawEncryption()
+    {
+        byte[] toEncrypt = "testAPasswordThatIsLongerThanThePaddingLengthToPreventRandomness".getBytes();
+        byte[] encrypted = Encryptor.encryptRaw(toEncrypt, "bufferPassword2".toCharArray());
+
+        ByteBuffer decrypted = ByteBuffer.allocate(encrypted.length);
+        int written = Encryptor.decrypt(ByteBuffer.wrap(encrypted), decrypted, "bufferPassword2".toCharArray());
+
+        assertEquals("The number of bytes written is not correct.", toEncrypt.length, written);
+        assertArrayEquals(
+            "The decrypted data is not correct.",
+            toEncrypt,
+            Arrays.copyOf(decrypted.array(), written)
+        );
+    }
+
+    @Test
+    public void testByteBufferEncryptDestinationTooSmall()
+    {
+        byte[] toEncrypt = "g1nger".getBytes();
+
+        ByteBuffer source = ByteBuffer.wrap(toEncrypt);
+        ByteBuffer destination = ByteBuffer.allocate(Encryptor.getEncryptedLength(toEncrypt.length) - 1);
+
+        try
+        {
+            Encryptor.encrypt(source, destination, "bufferPassword3".toCharArray());
+            fail("Expected BufferOverflowException, but no exception thrown.");
+        }
+        catch(BufferOverflowException ignore)
+        {
+
+        }
+
+        assertEquals("The source buffer should not have been touched.", 0, source.position());
+        assertEquals("The destination buffer should not have been touched.", 0, destination.position());
+    }
+
+    @Test
+    public void testByteBufferDecryptWrongPassword()
+    {
+        byte[] encrypted = Encryptor.encryptRaw("g1nger".getBytes(), "bufferPassword4".toCharArray());
+
+        try
+        {
+            Encryptor.decrypt(
+                ByteBuffer.wrap(encrypted),
+                ByteBuffer.allocate(encrypted.length),
+                "BufferPassword4".toCharArray()
+            );
+            fail("Expected FailedToDecryptException, but no exception thrown.");
+        }
+        catch(FailedToDecryptException ignore)
+        {
+
+        }
+    }
+
+    private byte[] readDecryptingStream(byte[] encrypted, char[] passphrase, int readSize) throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try(InputStream stream = Encryptor.newDecryptingInputStream(new ByteArrayInputStream(encrypted), passphrase))
+        {
+            byte[] buffer = new byte[readSize];
+            int read;
+            while((read = stream.read(buffer)) >= 0)
+            {
+                output.write(buffer, 0, read);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testDecryptingInputStreamShortData() throws Exception
+    {
+        byte[] encrypted = Encryptor.encryptRaw("g1nger".getBytes(), "streamPassword1".toCharArray());
+
+        byte[] decrypted = this.readDecryptingStream(encrypted, "streamPassword1".toCharArray(), 1);
+
+        assertEquals("The decrypted data is not correct.", "g1nger", new String(decrypted));
+    }
+
+    @Test
+    public void testDecryptingInputStreamLargeData() throws Exception
+    {
+        byte[] toEncrypt = new byte[100003];
+        for(int i = 0; i < toEncrypt.length; i++)
+        {
+            toEncrypt[i] = (byte) (i % 251);
+        }
+        byte[] encrypted = Encryptor.encryptRaw(toEncrypt, "streamPassword2".toCharArray());
+
+        assertArrayEquals(
+            "The decrypted data is not correct (small reads).",
+            toEncrypt,
+            this.readDecryptingStream(encrypted, "streamPassword2".toCharArray(), 17)
+        );
+        assertArrayEquals(
+            "The decrypted data is not correct (large reads).",
+            toEncrypt,
+            this.readDecryptingStream(encrypted, "streamPassword2".toCharArray(), 65536)
+        );
+    }
+
+    @Test
+    public void testDecryptingInputStreamWrongPassword() throws Exception
+    {
+        byte[] toEncrypt = new byte[20000];
+        byte[] encrypted = Encryptor.encryptRaw(toEncrypt, "streamPassword3".toCharArray());
+
+        try
+        {
+            this.readDecryptingStream(encrypted, "StreamPassword3".toCharArray(), 4096);
+            fail("Expected FailedToDecryptException, but no exception thrown.");
+        }
+        catch(FailedToDecryptException ignore)
+        {
+
+        }
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionRoundTrip()
+    {
+        byte[] toEncrypt = new byte[10007];
+        for(int i = 0; i < toEncrypt.length; i++)
+        {
+            toEncrypt[i] = (byte) (i % 239);
+        }
+
+        byte[] encrypted = Encryptor.encryptAuthenticated(toEncrypt, "gcmPassword01".toCharArray());
+
+        assertTrue("The payload should be authenticated.", Encryptor.isAuthenticatedPayload(encrypted));
+        assertEquals("The payload length is not correct.", toEncrypt.length + 53, encrypted.length);
+        assertArrayEquals(
+            "The decrypted data is not correct.",
+            toEncrypt,
+            Encryptor.decryptRaw(encrypted, "gcmPassword01".toCharArray())
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionShortData()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[] {0x11}, "gcmPassword02".toCharArray());
+
+        assertArrayEquals(
+            "The decrypted data is not correct.",
+            new byte[] {0x11},
+            Encryptor.decryptRaw(encrypted, "gcmPassword02".toCharArray())
+        );
+        byte[] empty = Encryptor.encryptAuthenticated(new byte[0], "gcmPassword02".toCharArray());
+        assertArrayEquals(
+            "The empty data is not correct.",
+            new byte[0],
+            Encryptor.decryptRaw(empty, "gcmPassword02".toCharArray())
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionUniqueNonces()
+    {
+        byte[] first = Encryptor.encryptAuthenticated("sameData".getBytes(), "gcmPassword03".toCharArray());
+        byte[] second = Encryptor.encryptAuthenticated("sameData".getBytes(), "gcmPassword03".toCharArray());
+
+        assertFalse("The payloads should differ.", Arrays.equals(first, second));
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionTampered()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[100], "gcmPassword04".toCharArray());
+
+        for(int index : new int[] {4, 10, 40, encrypted.length - 1})
+        {
+            byte[] tampered = encrypted.clone();
+            tampered[index] ^= 0x01;
+
+            try
+            {
+                Encryptor.decryptRaw(tampered, "gcmPassword04".toCharArray());
+                fail("Expected FailedToDecryptException for index " + index + ", but no exception thrown.");
+            }
+            catch(FailedToDecryptException ignore)
+            {
+
+            }
+        }
+    }
+
+    @Test(expected = FailedToDecryptException.class)
+    public void testAuthenticatedEncryptionWrongPassword()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[100], "gcmPassword05".toCharArray());
+
+        Encryptor.decryptRaw(encrypted, "GcmPassword05".toCharArray());
+    }
+
+    @Test(expected = FailedToDecryptException.class)
+    public void testAuthenticatedEncryptionTruncated()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[100], "gcmPassword06".toCharArray());
+
+        Encryptor.decryptRaw(Arrays.copyOf(encrypted, 20), "gcmPassword06".toCharArray());
+    }
+
+    @Test
+    public void testLegacyPayloadNotAuthenticated()
+    {
+        assertFalse(
+            "The payload should not be authenticated.",
+            Encryptor.isAuthenticatedPayload(Encryptor.encryptRaw(new byte[100], "gcmPassword07".toCharArray()))
+        );
+    }
+
+    @Test
+    public void testDecryptingInputStreamAuthenticated() throws Exception
+    {
+        byte[] toEncrypt = new byte[20011];
+        for(int i = 0; i < toEncrypt.length; i++)
+        {
+            toEncrypt[i] = (byte) (i % 233);
+        }
+        byte[] encrypted = Encryptor.encryptAuthenticated(toEncrypt, "gcmPassword08".toCharArray());
+
+        assertArrayEquals(
+            "The decrypted data is not correct.",
+            toEncrypt,
+            this.readDecryptingStream(encrypted, "gcmPassword08".toCharArray(), 100)
+        );
+    }
+
+    @Test
+    public void testDecryptingInputStreamAuthenticatedTampered() throws Exception
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[20000], "gcmPassword09".toCharArray());
+        encrypted[10000] ^= 0x01;
+
+        try
+        {
+            this.readDecryptingStream(encrypted, "gcmPassword09".toCharArray(), 100);
+            fail("Expected FailedToDecryptException, but no exception thrown.");
+        }
+        catch(FailedToDecryptException ignore)
+        {
+
+        }
+    }
+
+    private static final byte[] derivationSalt = {
+        0x10, 0x20, 0x30, 0x40, 0x50, 0x60, 0x70, (byte) 0x80,
+        0x11, 0x21, 0x31, 0x41, 0x51, 0x61, 0x71, (byte) 0x81
+    };
+
+    @Test
+    public void testAuthenticatedEncryptionDerivedKeyHeader()
+    {
+        PasswordDerivedKey key = PasswordDerivedKey.derive("pbkdfPassword01".toCharArray(), derivationSalt, 1234);
+
+        byte[] encrypted = Encryptor.encryptAuthenticated("pbkdfData".getBytes(), key);
+
+        assertTrue("The payload should be authenticated.", Encryptor.isAuthenticatedPayload(encrypted));
+        assertEquals("The iterations are not correct.", 1234, ByteBuffer.wrap(encrypted, 5, 4).getInt());
+        assertArrayEquals(
+            "The salt is not correct.",
+            derivationSalt,
+            Arrays.copyOfRange(encrypted, 9, 9 + PasswordDerivedKey.saltLength)
+        );
+        assertEquals(
+            "The decrypted data is not correct.",
+            "pbkdfData",
+            new String(Encryptor.decryptRaw(encrypted, "pbkdfPassword01".toCharArray()))
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionDefaultIterations()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[10], "pbkdfPassword02".toCharArray());
+
+        assertEquals(
+            "The iterations are not correct.",
+            PasswordDerivedKey.defaultIterations,
+            ByteBuffer.wrap(encrypted, 5, 4).getInt()
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionPrecomputedKey()
+    {
+        PasswordDerivedKey key = PasswordDerivedKey.derive("pbkdfPassword03".toCharArray(), derivationSalt, 1000);
+
+        byte[] encrypted = Encryptor.encryptAuthenticated("pbkdfData".getBytes(), key);
+
+        // the passphrase is not needed when the precomputed key matches the header
+        assertEquals(
+            "The decrypted data is not correct.",
+            "pbkdfData",
+            new String(Encryptor.decryptRaw(encrypted, "wrongPassword".toCharArray(), key))
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionPrecomputedKeyMismatch()
+    {
+        byte[] otherSalt = derivationSalt.clone();
+        otherSalt[15] ^= 0x01;
+
+        byte[] encrypted = Encryptor.encryptAuthenticated(
+            "pbkdfData".getBytes(),
+            PasswordDerivedKey.derive("pbkdfPassword04".toCharArray(), otherSalt, 1000)
+        );
+
+        // a precomputed key for other parameters is ignored and the key is derived from the passphrase instead
+        assertEquals(
+            "The decrypted data is not correct.",
+            "pbkdfData",
+            new String(Encryptor.decryptRaw(
+                encrypted,
+                "pbkdfPassword04".toCharArray(),
+                PasswordDerivedKey.derive("pbkdfPassword04".toCharArray(), derivationSalt, 1000)
+            ))
+        );
+    }
+
+    @Test
+    public void testAuthenticatedEncryptionTamperedIterations()
+    {
+        PasswordDerivedKey key = PasswordDerivedKey.derive("pbkdfPassword05".toCharArray(), derivationSalt, 1000);
+
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[50], key);
+
+        for(int iterations : new int[] {999, 0, -1, PasswordDerivedKey.maximumIterations + 1})
+        {
+            byte[] tampered = encrypted.clone();
+            ByteBuffer.wrap(tampered, 5, 4).putInt(iterations);
+
+            try
+            {
+                Encryptor.decryptRaw(tampered, "pbkdfPassword05".toCharArray(), key);
+                fail("Expected FailedToDecryptException for " + iterations + ", but no exception thrown.");
+            }
+            catch(FailedToDecryptException ignore)
+            {
+
+            }
+        }
+    }
+
+    @Test
+    public void testDeriveKeyFromPayload()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(
+            "pbkdfData".getBytes(),
+            PasswordDerivedKey.derive("pbkdfPassword07".toCharArray(), derivationSalt, 1000)
+        );
+
+        PasswordDerivedKey key = Encryptor.deriveKey(encrypted, "pbkdfPassword07".toCharArray());
+
+        assertNotNull("The key should not be null.", key);
+        assertArrayEquals("The salt is not correct.", derivationSalt, key.getSalt());
+        assertEquals("The iterations are not correct.", 1000, key.getIterations());
+        assertTrue("The payload should be encrypted with the key.", Encryptor.isEncryptedWith(encrypted, key));
+        assertEquals(
+            "The decrypted data is not correct.",
+            "pbkdfData",
+            new String(Encryptor.decryptRaw(encrypted, "wrongPassword".toCharArray(), key))
+        );
+    }
+
+    @Test
+    public void testDeriveKeyInvalidPayloads()
+    {
+        byte[] encrypted = Encryptor.encryptAuthenticated(
+            new byte[10],
+            PasswordDerivedKey.derive("pbkdfPassword08".toCharArray(), derivationSalt, 1000)
+        );
+        byte[] tampered = encrypted.clone();
+        ByteBuffer.wrap(tampered, 5, 4).putInt(PasswordDerivedKey.maximumIterations + 1);
+
+        assertNull(
+            "The legacy payload should have no key.",
+            Encryptor.deriveKey(Encryptor.encryptRaw(new byte[10], "pbkdfPassword08".toCharArray()), new char[0])
+        );
+        assertNull(
+            "The truncated payload should have no key.",
+            Encryptor.deriveKey(Arrays.copyOf(encrypted, 20), null)
+        );
+        assertNull("The tampered payload should have no key.", Encryptor.deriveKey(tampered, null));
+    }
+
+    @Test
+    public void testIsEncryptedWithOtherKey()
+    {
+        byte[] otherSalt = derivationSalt.clone();
+        otherSalt[0] ^= 0x01;
+        PasswordDerivedKey key = PasswordDerivedKey.derive("pbkdfPassword09".toCharArray(), derivationSalt, 1000);
+
+        byte[] encrypted = Encryptor.encryptAuthenticated(new byte[10], key);
+
+        assertFalse(
+            "The payload should not be encrypted with a key for another salt.",
+            Encryptor.isEncryptedWith(encrypted, PasswordDerivedKey.derive(new char[0], otherSalt, 1000))
+        );
+        assertFalse(
+            "The payload should not be encrypted with a key for other iterations.",
+            Encryptor.isEncryptedWith(encrypted, PasswordDerivedKey.derive(new char[0], derivationSalt, 1001))
+        );
+        assertFalse(
+            "The legacy payload should not be encrypted with the key.",
+            Encryptor.isEncryptedWith(Encryptor.encryptRaw(new byte[10]), key)
+        );
+    }
+
+    @Test
+    public void testDecryptingInputStreamPrecomputedKey() throws Exception
+    {
+        byte[] toEncrypt = new byte[10007];
+        for(int i = 0; i < toEncrypt.length; i++)
+        {
+            toEncrypt[i] = (byte) (i % 199);
+        }
+        PasswordDerivedKey key = PasswordDerivedKey.derive("pbkdfPassword06".toCharArray(), derivationSalt, 1000);
+
+        byte[] encrypted = Encryptor.encryptAuthenticated(toEncrypt, key);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try(InputStream stream = Encryptor.newDecryptingInputStream(
+            new ByteArrayInputStream(encrypted), "wrongPassword".toCharArray(), key
+        ))
+        {
+            byte[] buffer = new byte[100];
+            int read;
+            while((read = stream.read(buffer)) >= 0)
+            {
+                output.write(buffer, 0, read);
+            }
+        }
+
+        assertArrayEquals("The decrypted data is not correct.", toEncrypt, output.toByteArray());
+    }
 }
@@ -20,17 +20,22 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+import io.oddsource.java.licensing.exception.InappropriateKeySpecificationException;
+
 /**
  * Test class for KeyFileUtilities.
  */
@@ -312,4 +317,51 @@ public class TestKeyFileUtilities
 
         assertNotEquals("The keys should not be equal (2).", otherKey, publicKey2);
     }
+
+    private void assertKeyPairRoundTrip(KeyPair keyPair, char[] password)
+    {
+        PrivateKey privateKey = KeyFileUtilities.readEncryptedPrivateKey(
+            KeyFileUtilities.writeEncryptedPrivateKey(keyPair.getPrivate(), password), password
+        );
+        PublicKey publicKey = KeyFileUtilities.readEncryptedPublicKey(
+            KeyFileUtilities.writeEncryptedPublicKey(keyPair.getPublic(), password), password
+        );
+
+        assertEquals("The private keys should be the same.", keyPair.getPrivate(), privateKey);
+        assertEquals("The public keys should be the same.", keyPair.getPublic(), publicKey);
+    }
+
+    @Test
+    public void testEllipticCurveKeyEncryption() throws Throwable
+    {
+        this.assertKeyPairRoundTrip(
+            StandardSignatureAlgorithm.SHA256_WITH_ECDSA.generateKeyPair(), "ecTestPassword01".toCharArray()
+        );
+    }
+
+    @Test
+    public void testEd25519KeyEncryption() throws Throwable
+    {
+        KeyPair keyPair;
+        try
+        {
+            keyPair = StandardSignatureAlgorithm.ED25519.generateKeyPair();
+        }
+        catch(AlgorithmNotSupportedException e)
+        {
+            keyPair = null;
+        }
+        Assume.assumeTrue("Ed25519 is not supported on this JVM.", keyPair != null);
+
+        this.assertKeyPairRoundTrip(keyPair, "edTestPassword01".toCharArray());
+    }
+
+    @Test(expected = InappropriateKeySpecificationException.class)
+    public void testUnrecognizedKeyData() throws Throwable
+    {
+        KeyFileUtilities.readEncryptedPublicKey(
+            Encryptor.encryptRaw(new byte[] {0x30, 0x03, 0x02, 0x01, 0x00}, "badKeyPassword01".toCharArray()),
+            "badKeyPassword01".toCharArray()
+        );
+    }
 }
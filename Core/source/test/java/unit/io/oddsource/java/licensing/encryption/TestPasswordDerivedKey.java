@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for PasswordDerivedKey.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestPasswordDerivedKey
+{
+    private static final byte[] salt = {
+        0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF,
+        0x10, 0x32, 0x54, 0x76, (byte) 0x98, (byte) 0xBA, (byte) 0xDC, (byte) 0xFE
+    };
+
+    @Before
+    public void setUp()
+    {
+
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testDeriveDeterministic()
+    {
+        PasswordDerivedKey first = PasswordDerivedKey.derive("keyPassword01".toCharArray(), salt, 1000);
+        PasswordDerivedKey second = PasswordDerivedKey.derive("keyPassword01".toCharArray(), salt, 1000);
+
+        assertEquals("The iterations are not correct.", 1000, first.getIterations());
+        assertArrayEquals("The salt is not correct.", salt, first.getSalt());
+        assertArrayEquals(
+            "The keys should be equal.",
+            first.getSecretKey().getEncoded(),
+            second.getSecretKey().getEncoded()
+        );
+        assertEquals("The key length is not correct.", 16, first.getSecretKey().getEncoded().length);
+        assertEquals("The key algorithm is not correct.", "AES", first.getSecretKey().getAlgorithm());
+    }
+
+    @Test
+    public void testDeriveDifferentParameters()
+    {
+        byte[] key = PasswordDerivedKey.derive("keyPassword02".toCharArray(), salt, 1000).getSecretKey().getEncoded();
+
+        byte[] otherSalt = salt.clone();
+        otherSalt[0] ^= 0x01;
+
+        assertFalse(
+            "The keys should differ by password.",
+            Arrays.equals(
+                key,
+                PasswordDerivedKey.derive("KeyPassword02".toCharArray(), salt, 1000).getSecretKey().getEncoded()
+            )
+        );
+        assertFalse(
+            "The keys should differ by salt.",
+            Arrays.equals(
+                key,
+                PasswordDerivedKey.derive("keyPassword02".toCharArray(), otherSalt, 1000).getSecretKey().getEncoded()
+            )
+        );
+        assertFalse(
+            "The keys should differ by iterations.",
+            Arrays.equals(
+                key,
+                PasswordDerivedKey.derive("keyPassword02".toCharArray(), salt, 1001).getSecretKey().getEncoded()
+            )
+        );
+    }
+
+    @Test
+    public void testGenerateRandomSalt()
+    {
+        PasswordDerivedKey first = PasswordDerivedKey.generate("keyPassword03".toCharArray(), 1000);
+        PasswordDerivedKey second = PasswordDerivedKey.generate("keyPassword03".toCharArray(), 1000);
+
+        assertEquals("The salt length is not correct.", PasswordDerivedKey.saltLength, first.getSalt().length);
+        assertFalse("The salts should differ.", Arrays.equals(first.getSalt(), second.getSalt()));
+    }
+
+    @Test
+    public void testGetSaltReturnsCopy()
+    {
+        byte[] input = salt.clone();
+        PasswordDerivedKey key = PasswordDerivedKey.derive("keyPassword04".toCharArray(), input, 1000);
+
+        input[0] = 0x00;
+        key.getSalt()[1] = 0x00;
+
+        assertArrayEquals("The salt should not have changed.", salt, key.getSalt());
+    }
+
+    @Test
+    public void testMatches()
+    {
+        PasswordDerivedKey key = PasswordDerivedKey.derive("keyPassword05".toCharArray(), salt, 1000);
+
+        byte[] header = new byte[salt.length + 3];
+        System.arraycopy(salt, 0, header, 3, salt.length);
+
+        assertTrue("The key should match.", key.matches(header, 3, 1000));
+        assertFalse("The key should not match the iterations.", key.matches(header, 3, 999));
+        assertFalse("The key should not match the offset.", key.matches(header, 2, 1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeriveShortSalt()
+    {
+        PasswordDerivedKey.derive("keyPassword06".toCharArray(), new byte[8], 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeriveNullSalt()
+    {
+        PasswordDerivedKey.derive("keyPassword07".toCharArray(), null, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeriveZeroIterations()
+    {
+        PasswordDerivedKey.derive("keyPassword08".toCharArray(), salt, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenerateTooManyIterations()
+    {
+        PasswordDerivedKey.generate("keyPassword09".toCharArray(), PasswordDerivedKey.maximumIterations + 1);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.encryption;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.security.KeyPair;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * Test class for SignatureAlgorithms.
+ */
+@SuppressWarnings("EmptyMethod")
+public class TestSignatureAlgorithms
+{
+    @Before
+    public void setUp()
+    {
+
+    }
+
+    @After
+    public void tearDown()
+    {
+
+    }
+
+    @Test
+    public void testConstructionForbidden()
+        throws IllegalAccessException, InstantiationException, NoSuchMethodException
+    {
+        Constructor<SignatureAlgorithms> constructor = SignatureAlgorithms.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        try
+        {
+            constructor.newInstance();
+            fail("Expected exception java.lang.reflect.InvocationTargetException, but got no exception.");
+        }
+        catch(InvocationTargetException e)
+        {
+            assertEquals("The cause should have been an AssertionError.", AssertionError.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testLegacyAlgorithm()
+    {
+        assertSame(
+            "The legacy algorithm is not correct.",
+            StandardSignatureAlgorithm.SHA1_WITH_RSA,
+            SignatureAlgorithms.getLegacyAlgorithm()
+        );
+        assertSame(
+            "A null identifier should be the legacy algorithm.",
+            StandardSignatureAlgorithm.SHA1_WITH_RSA,
+            SignatureAlgorithms.forIdentifier(null)
+        );
+    }
+
+    @Test
+    public void testStandardAlgorithms()
+    {
+        for(StandardSignatureAlgorithm algorithm : StandardSignatureAlgorithm.values())
+        {
+            assertSame(
+                "The algorithm is not correct.", algorithm, SignatureAlgorithms.forIdentifier(algorithm.getIdentifier())
+            );
+        }
+    }
+
+    @Test(expected = AlgorithmNotSupportedException.class)
+    public void testUnknownAlgorithm()
+    {
+        SignatureAlgorithms.forIdentifier("SHA1withMadeUpAlgorithm");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegisterDuplicate()
+    {
+        SignatureAlgorithms.register(new MockSignatureAlgorithm("Ed25519"));
+    }
+
+    @Test
+    public void testRegister()
+    {
+        SignatureAlgorithm algorithm = new MockSignatureAlgorithm("TestSignatureAlgorithms.testRegister");
+
+        SignatureAlgorithms.register(algorithm);
+
+        assertSame(
+            "The algorithm is not correct.",
+            algorithm,
+            SignatureAlgorithms.forIdentifier("TestSignatureAlgorithms.testRegister")
+        );
+    }
+
+    @Test
+    public void testEllipticCurveKeyPair()
+    {
+        KeyPair keyPair = StandardSignatureAlgorithm.SHA256_WITH_ECDSA.generateKeyPair();
+
+        assertEquals("The key algorithm is not correct.", "EC", keyPair.getPublic().getAlgorithm());
+    }
+
+    private static final class MockSignatureAlgorithm implements SignatureAlgorithm
+    {
+        private final String identifier;
+
+        private MockSignatureAlgorithm(String identifier)
+        {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public String getIdentifier()
+        {
+            return this.identifier;
+        }
+
+        @Override
+        public String getSignatureAlgorithmName()
+        {
+            return "SHA256withRSA";
+        }
+
+        @Override
+        public String getKeyAlgorithm()
+        {
+            return "RSA";
+        }
+
+        @Override
+        public KeyPair generateKeyPair()
+        {
+            return StandardSignatureAlgorithm.SHA1_WITH_RSA.generateKeyPair();
+        }
+    }
+}
@@ -17,6 +17,8 @@ package io.oddsource.java.licensing.licensor;
 
 import java.security.PrivateKey;
 import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.oddsource.java.licensing.DataSignatureManager;
 import io.oddsource.java.licensing.License;
@@ -24,7 +26,10 @@ import io.oddsource.java.licensing.ObjectSerializer;
 import io.oddsource.java.licensing.SignedLicense;
 import io.oddsource.java.licensing.encryption.Encryptor;
 import io.oddsource.java.licensing.encryption.KeyFileUtilities;
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithms;
 import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
 import io.oddsource.java.licensing.exception.InappropriateKeyException;
 import io.oddsource.java.licensing.exception.InappropriateKeySpecificationException;
@@ -51,12 +56,26 @@ import io.oddsource.java.licensing.licensor.encryption.PrivateKeyDataProvider;
  */
 public final class LicenseCreator
 {
-    private static LicenseCreator instance;
+    private static final Lock instanceLock = new ReentrantLock();
+
+    private static volatile LicenseCreator instance;
 
     private final PrivateKeyDataProvider privateKeyDataProvider;
 
     private final PasswordProvider privateKeyPasswordProvider;
 
+    private final SignatureAlgorithm signatureAlgorithm;
+
+    private final DataSignatureManager signatureManager;
+
+    private final boolean authenticatedEncryption;
+
+    private final byte[] licenseKeySalt;
+
+    private final int licenseKeyIterations;
+
+    private final PasswordDerivedKey licenseKey;
+
     private LicenseCreator()
     {
         if(LicenseCreatorProperties.getPrivateKeyDataProvider() == null)
@@ -71,6 +90,25 @@ public final class LicenseCreator
 
         this.privateKeyPasswordProvider = LicenseCreatorProperties.getPrivateKeyPasswordProvider();
         this.privateKeyDataProvider = LicenseCreatorProperties.getPrivateKeyDataProvider();
+        this.signatureAlgorithm = LicenseCreatorProperties.getSignatureAlgorithm() == null ?
+                                  SignatureAlgorithms.getLegacyAlgorithm() :
+                                  LicenseCreatorProperties.getSignatureAlgorithm();
+        this.signatureManager = new DataSignatureManager(this.signatureAlgorithm);
+        this.authenticatedEncryption = LicenseCreatorProperties.isAuthenticatedEncryption();
+        this.licenseKeySalt = LicenseCreatorProperties.getLicenseKeySalt();
+        this.licenseKeyIterations = LicenseCreatorProperties.getLicenseKeyIterations();
+
+        // derive the key for the default license password now so that signing licenses does not pay for it
+        if(this.authenticatedEncryption)
+        {
+            final char[] password = this.privateKeyPasswordProvider.getPassword();
+            this.licenseKey = this.deriveLicenseKey(password);
+            Arrays.fill(password, '\u0000');
+        }
+        else
+        {
+            this.licenseKey = null;
+        }
     }
 
     /**
@@ -84,18 +122,36 @@ public final class LicenseCreator
      *     privateKeyDataProvider} or {@link LicenseCreatorProperties#setPrivateKeyPasswordProvider(PasswordProvider)
      *     privateKeyPasswordProvider} are null
      */
-    public static synchronized LicenseCreator getInstance()
+    public static LicenseCreator getInstance()
     {
-        if(LicenseCreator.instance == null)
+        LicenseCreator creator = LicenseCreator.instance;
+        if(creator != null)
         {
-            LicenseCreator.instance = new LicenseCreator();
+            return creator;
         }
 
-        return LicenseCreator.instance;
+        // a lock rather than a monitor, because the providers called while constructing the creator may block
+        LicenseCreator.instanceLock.lock();
+        try
+        {
+            if(LicenseCreator.instance == null)
+            {
+                LicenseCreator.instance = new LicenseCreator();
+            }
+
+            return LicenseCreator.instance;
+        }
+        finally
+        {
+            LicenseCreator.instanceLock.unlock();
+        }
     }
 
     /**
-     * Takes a license object and creates a secure version of it for serialization and delivery to the customer.
+     * Takes a license object and creates a secure version of it for serialization and delivery to the customer.<br>
+     * <br>
+     * When authenticated encryption is enabled, the license key is derived from the given password on every call. Use
+     * {@link #signLicense(License)} to sign with the key derived when this creator was created.
      *
      * @param license The license object to be signed
      * @param licensePassword The password to encrypt the license with
@@ -110,6 +166,13 @@ public final class LicenseCreator
     public final SignedLicense signLicense(final License license, final char[] licensePassword)
         throws AlgorithmNotSupportedException, KeyNotFoundException, InappropriateKeySpecificationException,
                InappropriateKeyException
+    {
+        return this.signLicense(license, licensePassword, null);
+    }
+
+    private SignedLicense signLicense(
+        final License license, final char[] licensePassword, final PasswordDerivedKey licenseKey
+    )
     {
         final char[] password = this.privateKeyPasswordProvider.getPassword();
         final byte[] keyData = this.privateKeyDataProvider.getEncryptedPrivateKeyData();
@@ -119,11 +182,28 @@ public final class LicenseCreator
         Arrays.fill(password, '\u0000');
         Arrays.fill(keyData, (byte) 0);
 
-        final byte[] encrypted = Encryptor.encryptRaw(license.serialize(), licensePassword);
+        final byte[] serialized = license.serialize();
+        final byte[] encrypted;
+        if(this.authenticatedEncryption)
+        {
+            encrypted = Encryptor.encryptAuthenticated(
+                serialized, licenseKey == null ? this.deriveLicenseKey(licensePassword) : licenseKey
+            );
+        }
+        else
+        {
+            encrypted = Encryptor.encryptRaw(serialized, licensePassword);
+        }
+        Arrays.fill(serialized, (byte) 0);
+
+        final byte[] signature = this.signatureManager.signData(key, encrypted);
 
-        final byte[] signature = new DataSignatureManager().signData(key, encrypted);
+        // legacy licenses carry no algorithm identifier, so they stay identical to those signed by older versions
+        final String algorithm = this.signatureAlgorithm == SignatureAlgorithms.getLegacyAlgorithm() ?
+                                 null :
+                                 this.signatureAlgorithm.getIdentifier();
 
-        final SignedLicense signed = new SignedLicense(encrypted, signature);
+        final SignedLicense signed = new SignedLicense(encrypted, signature, algorithm);
 
         Arrays.fill(encrypted, (byte) 0);
         Arrays.fill(signature, (byte) 0);
@@ -147,7 +227,7 @@ public final class LicenseCreator
         throws AlgorithmNotSupportedException, KeyNotFoundException, InappropriateKeySpecificationException,
                InappropriateKeyException
     {
-        return this.signLicense(license, this.privateKeyPasswordProvider.getPassword());
+        return this.signLicense(license, this.privateKeyPasswordProvider.getPassword(), this.licenseKey);
     }
 
     /**
@@ -190,4 +270,11 @@ public final class LicenseCreator
     {
         return new ObjectSerializer().writeObject(this.signLicense(license));
     }
+
+    private PasswordDerivedKey deriveLicenseKey(final char[] licensePassword)
+    {
+        return this.licenseKeySalt == null ?
+               PasswordDerivedKey.generate(licensePassword, this.licenseKeyIterations) :
+               PasswordDerivedKey.derive(licensePassword, this.licenseKeySalt, this.licenseKeyIterations);
+    }
 }
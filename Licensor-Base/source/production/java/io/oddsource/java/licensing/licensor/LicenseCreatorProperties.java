@@ -15,7 +15,9 @@
  */
 package io.oddsource.java.licensing.licensor;
 
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
 import io.oddsource.java.licensing.licensor.encryption.PrivateKeyDataProvider;
 
 /**
@@ -32,6 +34,14 @@ public final class LicenseCreatorProperties
 
     private static PasswordProvider privateKeyPasswordProvider;
 
+    private static SignatureAlgorithm signatureAlgorithm;
+
+    private static boolean authenticatedEncryption;
+
+    private static byte[] licenseKeySalt;
+
+    private static int licenseKeyIterations;
+
     /**
      * This class cannot be instantiated.
      */
@@ -73,4 +83,83 @@ public final class LicenseCreatorProperties
     {
         return LicenseCreatorProperties.privateKeyPasswordProvider;
     }
+
+    /**
+     * Sets the algorithm used to sign licenses. The private key must be a key for this algorithm (for example, an EC
+     * key for {@link io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm#SHA256_WITH_ECDSA}). The
+     * algorithm is recorded in each signed license so that the license manager verifies it with the same algorithm.
+     * <br>
+     * <br>
+     * This field is optional. It defaults to the legacy SHA-1 with RSA algorithm.
+     *
+     * @param signatureAlgorithm The algorithm used to sign licenses
+     *
+     * @since 2.0.0
+     */
+    public static void setSignatureAlgorithm(final SignatureAlgorithm signatureAlgorithm)
+    {
+        LicenseCreatorProperties.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    static SignatureAlgorithm getSignatureAlgorithm()
+    {
+        return LicenseCreatorProperties.signatureAlgorithm;
+    }
+
+    /**
+     * Sets whether licenses are encrypted with the versioned, authenticated AES-GCM payload format (see
+     * {@link io.oddsource.java.licensing.encryption.Encryptor#encryptAuthenticated(byte[], char[])}) instead of the
+     * legacy format. Licenses in the authenticated format can only be read by license manager 2.0.0 and newer.<br>
+     * <br>
+     * This field is optional. It defaults to {@code false}.
+     *
+     * @param authenticatedEncryption Whether to encrypt licenses with the authenticated payload format
+     *
+     * @since 2.0.0
+     */
+    public static void setAuthenticatedEncryption(final boolean authenticatedEncryption)
+    {
+        LicenseCreatorProperties.authenticatedEncryption = authenticatedEncryption;
+    }
+
+    static boolean isAuthenticatedEncryption()
+    {
+        return LicenseCreatorProperties.authenticatedEncryption;
+    }
+
+    /**
+     * Sets the salt and PBKDF2-HMAC-SHA256 iteration count used to derive the license encryption key when
+     * {@link #setAuthenticatedEncryption(boolean) authenticated encryption} is enabled. Both are recorded in every
+     * license, so they can be changed at any time without affecting licenses already issued. The key for the default
+     * license password is derived once when the {@link LicenseCreator} is created.<br>
+     * <br>
+     * To let the license manager derive its key in advance as well, set a fixed salt here and pass the same salt and
+     * iteration count to {@link io.oddsource.java.licensing.LicenseManagerProperties#setLicenseKeyDerivation(byte[],
+     * int) LicenseManagerProperties.setLicenseKeyDerivation}.<br>
+     * <br>
+     * This field is optional. By default a new random salt is generated each time the license creator is created, and
+     * {@link PasswordDerivedKey#defaultIterations} iterations are used.
+     *
+     * @param salt The salt, which must be {@link PasswordDerivedKey#saltLength} bytes long, or null for a random salt
+     * @param iterations The PBKDF2 iteration count, or zero for the default
+     *
+     * @since 2.0.0
+     */
+    public static void setLicenseKeyDerivation(final byte[] salt, final int iterations)
+    {
+        LicenseCreatorProperties.licenseKeySalt = salt == null ? null : salt.clone();
+        LicenseCreatorProperties.licenseKeyIterations = iterations;
+    }
+
+    static byte[] getLicenseKeySalt()
+    {
+        return LicenseCreatorProperties.licenseKeySalt;
+    }
+
+    static int getLicenseKeyIterations()
+    {
+        return LicenseCreatorProperties.licenseKeyIterations < 1 ?
+               PasswordDerivedKey.defaultIterations :
+               LicenseCreatorProperties.licenseKeyIterations;
+    }
 }
@@ -20,6 +20,7 @@ import java.security.KeyPair;
 
 import io.oddsource.java.licensing.encryption.PasswordProvider;
 import io.oddsource.java.licensing.encryption.PublicKeyDataProvider;
+import io.oddsource.java.licensing.encryption.SignatureAlgorithm;
 import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
 import io.oddsource.java.licensing.exception.InappropriateKeyException;
 import io.oddsource.java.licensing.exception.InappropriateKeySpecificationException;
@@ -50,6 +51,29 @@ public interface RSAKeyPairGeneratorInterface
      */
     public abstract KeyPair generateKeyPair() throws RSA2048NotSupportedException;
 
+    /**
+     * Generates a key pair for the given signature algorithm, such as
+     * {@link io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm#ED25519}. Despite the name of this
+     * interface, the key pair is only an RSA key pair if the algorithm calls for one.
+     *
+     * @param algorithm The signature algorithm the keys will be used with
+     *
+     * @return a public/private key pair.
+     *
+     * @throws AlgorithmNotSupportedException if the algorithm is not supported on this system.
+     *
+     * @since 2.0.0
+     */
+    public default KeyPair generateKeyPair(final SignatureAlgorithm algorithm) throws AlgorithmNotSupportedException
+    {
+        if(algorithm == null)
+        {
+            throw new IllegalArgumentException("Argument algorithm cannot be null.");
+        }
+
+        return algorithm.generateKeyPair();
+    }
+
     /**
      * Saves the key pair specified to output files specified, encrypting both with the specified password.
      *
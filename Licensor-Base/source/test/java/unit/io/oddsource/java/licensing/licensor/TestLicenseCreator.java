@@ -144,6 +144,7 @@ public class TestLicenseCreator
         assertNotNull("The signed license should not be null.", signedLicense);
         assertNotNull("The license signature should not be null.", signedLicense.getSignatureContent());
         assertNotNull("The license content should not be null.", signedLicense.getLicenseContent());
+        assertNull("The legacy signature algorithm should not be recorded.", signedLicense.getSignatureAlgorithm());
 
         new DataSignatureManager().verifySignature(
             TestLicenseCreator.publicKey, signedLicense.getLicenseContent(), signedLicense.getSignatureContent()
@@ -24,6 +24,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import io.oddsource.java.licensing.encryption.PasswordDerivedKey;
+import io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm;
+
 /**
  * Test class for LicenseCreatorProperties.
  */
@@ -66,4 +69,62 @@ public class TestLicenseCreatorProperties
             assertEquals("The message was incorrect.", "This class cannot be instantiated.", cause.getMessage());
         }
     }
+
+    @Test
+    public void testSignatureAlgorithm()
+    {
+        assertNull("The signature algorithm should default to null.", LicenseCreatorProperties.getSignatureAlgorithm());
+
+        LicenseCreatorProperties.setSignatureAlgorithm(StandardSignatureAlgorithm.ED25519);
+        assertSame(
+            "The signature algorithm is not correct.",
+            StandardSignatureAlgorithm.ED25519,
+            LicenseCreatorProperties.getSignatureAlgorithm()
+        );
+
+        LicenseCreatorProperties.setSignatureAlgorithm(null);
+        assertNull("The signature algorithm should be null.", LicenseCreatorProperties.getSignatureAlgorithm());
+    }
+
+    @Test
+    public void testAuthenticatedEncryption()
+    {
+        assertFalse(
+            "Authenticated encryption should default to false.",
+            LicenseCreatorProperties.isAuthenticatedEncryption()
+        );
+
+        LicenseCreatorProperties.setAuthenticatedEncryption(true);
+        assertTrue("Authenticated encryption should be true.", LicenseCreatorProperties.isAuthenticatedEncryption());
+
+        LicenseCreatorProperties.setAuthenticatedEncryption(false);
+        assertFalse("Authenticated encryption should be false.", LicenseCreatorProperties.isAuthenticatedEncryption());
+    }
+
+    @Test
+    public void testLicenseKeyDerivation()
+    {
+        assertNull("The salt should be null.", LicenseCreatorProperties.getLicenseKeySalt());
+        assertEquals(
+            "The iterations should default.",
+            PasswordDerivedKey.defaultIterations,
+            LicenseCreatorProperties.getLicenseKeyIterations()
+        );
+
+        byte[] salt = new byte[PasswordDerivedKey.saltLength];
+        salt[0] = 0x05;
+        LicenseCreatorProperties.setLicenseKeyDerivation(salt, 2000);
+        salt[0] = 0x06;
+
+        assertEquals("The salt is not correct.", 0x05, LicenseCreatorProperties.getLicenseKeySalt()[0]);
+        assertEquals("The iterations are not correct.", 2000, LicenseCreatorProperties.getLicenseKeyIterations());
+
+        LicenseCreatorProperties.setLicenseKeyDerivation(null, 0);
+        assertNull("The salt should be null again.", LicenseCreatorProperties.getLicenseKeySalt());
+        assertEquals(
+            "The iterations should default again.",
+            PasswordDerivedKey.defaultIterations,
+            LicenseCreatorProperties.getLicenseKeyIterations()
+        );
+    }
 }
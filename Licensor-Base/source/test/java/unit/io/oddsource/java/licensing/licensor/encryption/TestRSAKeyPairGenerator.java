@@ -50,6 +50,7 @@ import org.junit.Test;
 import io.oddsource.java.licensing.encryption.KeyFileUtilities;
 import io.oddsource.java.licensing.encryption.PasswordProvider;
 import io.oddsource.java.licensing.encryption.PublicKeyDataProvider;
+import io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm;
 
 /**
  * Test class for RSAKeyPairGenerator.
@@ -105,6 +106,22 @@ public class TestRSAKeyPairGenerator
         );
     }
 
+    @Test
+    public void testKeyPairGenerationForSignatureAlgorithm()
+    {
+        KeyPair keyPair = this.generator.generateKeyPair(StandardSignatureAlgorithm.SHA256_WITH_ECDSA);
+
+        assertNotNull("The key pair should not be null.", keyPair);
+        assertEquals("The algorithm is not correct.", "EC", keyPair.getPrivate().getAlgorithm());
+        assertEquals("The algorithm is not correct.", "EC", keyPair.getPublic().getAlgorithm());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyPairGenerationForNullSignatureAlgorithm()
+    {
+        this.generator.generateKeyPair(null);
+    }
+
     @Test
     public void testSaveKeyPairToFiles01() throws IOException
     {
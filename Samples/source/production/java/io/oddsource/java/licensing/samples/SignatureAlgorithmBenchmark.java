@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2010-2019 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.oddsource.java.licensing.samples;
+
+import java.security.KeyPair;
+import java.util.Locale;
+
+import io.oddsource.java.licensing.DataSignatureManager;
+import io.oddsource.java.licensing.License;
+import io.oddsource.java.licensing.encryption.Encryptor;
+import io.oddsource.java.licensing.encryption.StandardSignatureAlgorithm;
+import io.oddsource.java.licensing.exception.AlgorithmNotSupportedException;
+
+/**
+ * A simple benchmark comparing the signing and verification throughput and the signature size of each of the
+ * {@link StandardSignatureAlgorithm}s, using a typical encrypted license as the signed data. Verification happens every
+ * time a license is not in the license manager's cache, so it is usually the throughput that matters most.<br>
+ * <br>
+ * Run it with {@code java io.oddsource.java.licensing.samples.SignatureAlgorithmBenchmark [iterations]}. Algorithms
+ * that are not supported by the running JVM (such as Ed25519 before Java 15) are reported and skipped.
+ *
+ * @author Nick Williams
+ * @version 1.0.0
+ * @since 2.0.0
+ */
+public final class SignatureAlgorithmBenchmark
+{
+    private static final int defaultIterations = 2000;
+
+    private SignatureAlgorithmBenchmark()
+    {
+        throw new AssertionError("This class cannot be instantiated.");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param arguments An optional number of iterations per algorithm and operation
+     */
+    public static void main(final String... arguments)
+    {
+        final int iterations = arguments.length > 0 ?
+                               Integer.parseInt(arguments[0]) :
+                               SignatureAlgorithmBenchmark.defaultIterations;
+
+        final License license = new License.Builder().
+            withProductKey("5565-1039-AF89-GGX7-TN31-14AL").
+            withHolder("CN=Joe Customer, C=US, ST=TN").
+            withIssuer("CN=OddSource Code, C=US, ST=TN").
+            withSubject("Sample Product").
+            withNumberOfLicenses(25).
+            addFeature("FEATURE1").
+            addFeature("FEATURE2").
+            addFeature("FEATURE3").
+            build();
+        final byte[] data = Encryptor.encryptRaw(license.serialize(), "benchmarkPassword".toCharArray());
+
+        System.out.println(String.format(
+            Locale.ENGLISH, "%-18s %12s %12s %10s", "Algorithm", "sign/s", "verify/s", "sig bytes"
+        ));
+
+        for(final StandardSignatureAlgorithm algorithm : StandardSignatureAlgorithm.values())
+        {
+            try
+            {
+                SignatureAlgorithmBenchmark.benchmark(algorithm, data, iterations);
+            }
+            catch(final AlgorithmNotSupportedException e)
+            {
+                System.out.println(String.format(
+                    Locale.ENGLISH, "%-18s not supported on this JVM", algorithm.getIdentifier()
+                ));
+            }
+        }
+    }
+
+    private static void benchmark(
+        final StandardSignatureAlgorithm algorithm, final byte[] data, final int iterations
+    )
+    {
+        final KeyPair keyPair = algorithm.generateKeyPair();
+        final DataSignatureManager manager = new DataSignatureManager(algorithm);
+
+        byte[] signature = manager.signData(keyPair.getPrivate(), data);
+
+        // warm up both code paths before measuring
+        for(int i = 0; i < iterations / 10; i++)
+        {
+            manager.verifySignature(keyPair.getPublic(), data, manager.signData(keyPair.getPrivate(), data));
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++)
+        {
+            signature = manager.signData(keyPair.getPrivate(), data);
+        }
+        final double signPerSecond = iterations / ((System.nanoTime() - start) / 1_000_000_000D);
+
+        start = System.nanoTime();
+        for(int i = 0; i < iterations; i++)
+        {
+            manager.verifySignature(keyPair.getPublic(), data, signature);
+        }
+        final double verifyPerSecond = iterations / ((System.nanoTime() - start) / 1_000_000_000D);
+
+        System.out.println(String.format(
+            Locale.ENGLISH, "%-18s %12.0f %12.0f %10d",
+            algorithm.getIdentifier(), signPerSecond, verifyPerSecond, signature.length
+        ));
+    }
+}